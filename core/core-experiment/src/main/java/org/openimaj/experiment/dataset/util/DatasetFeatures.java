@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.dataset.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.data.dataset.GroupedDataset;
+import org.openimaj.data.dataset.ListBackedDataset;
+import org.openimaj.data.dataset.ListDataset;
+import org.openimaj.data.dataset.MapBackedDataset;
+import org.openimaj.util.function.Function;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+
+/**
+ * Helper methods for extracting features from every instance of a dataset
+ * exactly once, producing an in-memory dataset of features with the same
+ * structure (and instance order) as the original. Because the cross-validation
+ * schemes only create views on the data they are given, running them on the
+ * feature dataset means that the features are shared by all the folds rather
+ * than being re-extracted in each one.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class DatasetFeatures {
+	private DatasetFeatures() {
+	}
+
+	/**
+	 * Extract a feature from every instance of the given dataset. If a thread
+	 * pool is given the features are extracted in parallel, otherwise they are
+	 * extracted on the calling thread.
+	 *
+	 * @param <INSTANCE>
+	 *            The type of instances in the dataset
+	 * @param <FEATURE>
+	 *            The type of feature
+	 * @param dataset
+	 *            the dataset
+	 * @param extractor
+	 *            the feature extractor; must be safe to call from multiple
+	 *            threads if a pool is given
+	 * @param pool
+	 *            the thread pool; can be <code>null</code>
+	 * @return a dataset of features, in the same order as the instances
+	 */
+	public static <INSTANCE, FEATURE> ListDataset<FEATURE> extract(ListDataset<INSTANCE> dataset,
+			Function<INSTANCE, FEATURE> extractor, ThreadPoolExecutor pool)
+	{
+		return new ListBackedDataset<FEATURE>(extractList(dataset, extractor, pool));
+	}
+
+	/**
+	 * Extract a feature from every instance of the given grouped dataset. If a
+	 * thread pool is given the features are extracted in parallel, otherwise
+	 * they are extracted on the calling thread.
+	 *
+	 * @param <KEY>
+	 *            The type of the group keys
+	 * @param <INSTANCE>
+	 *            The type of instances in the dataset
+	 * @param <FEATURE>
+	 *            The type of feature
+	 * @param dataset
+	 *            the dataset
+	 * @param extractor
+	 *            the feature extractor; must be safe to call from multiple
+	 *            threads if a pool is given
+	 * @param pool
+	 *            the thread pool; can be <code>null</code>
+	 * @return a grouped dataset of features, with the same groups as the
+	 *         original and the features of each group in the same order as the
+	 *         instances
+	 */
+	public static <KEY, INSTANCE, FEATURE> GroupedDataset<KEY, ListDataset<FEATURE>, FEATURE> extract(
+			GroupedDataset<KEY, ? extends ListDataset<INSTANCE>, INSTANCE> dataset,
+			Function<INSTANCE, FEATURE> extractor, ThreadPoolExecutor pool)
+	{
+		final MapBackedDataset<KEY, ListDataset<FEATURE>, FEATURE> features = new MapBackedDataset<KEY, ListDataset<FEATURE>, FEATURE>();
+
+		for (final KEY group : dataset.getGroups())
+			features.add(group, extract(dataset.getInstances(group), extractor, pool));
+
+		return features;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <INSTANCE, FEATURE> List<FEATURE> extractList(final ListDataset<INSTANCE> dataset,
+			final Function<INSTANCE, FEATURE> extractor, ThreadPoolExecutor pool)
+	{
+		final Object[] features = new Object[dataset.size()];
+
+		if (pool == null) {
+			for (int i = 0; i < features.length; i++)
+				features[i] = extractor.apply(dataset.getInstance(i));
+		} else {
+			Parallel.forIndex(0, features.length, 1, new Operation<Integer>() {
+				@Override
+				public void perform(Integer i) {
+					features[i] = extractor.apply(dataset.getInstance(i));
+				}
+			}, pool);
+		}
+
+		return (List<FEATURE>) Arrays.asList(features);
+	}
+}
@@ -0,0 +1,292 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.evaluation.retrieval;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.data.identity.Identifiable;
+import org.openimaj.experiment.evaluation.Evaluator;
+import org.openimaj.experiment.evaluation.retrieval.analysers.StreamingRetrievalResult;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.queue.BoundedPriorityQueue;
+
+/**
+ * An {@link Evaluator} for retrieval experiments that scales to very large
+ * numbers of queries. Unlike the {@link RetrievalEvaluator}, the results of
+ * each query are not retained; rather, queries are issued concurrently, the
+ * top-K documents of each result list are selected with a bounded heap, and
+ * the average precision and precision at N of the query are computed
+ * immediately and accumulated into a {@link StreamingRetrievalResult}. Memory
+ * usage thus scales with the number of queries being processed concurrently
+ * rather than with the number of queries multiplied by the size of the
+ * collection.
+ * <p>
+ * If the documents returned by the {@link RetrievalEngine} implement
+ * {@link Scored}, the top-K are selected by descending score; otherwise, if
+ * they implement {@link Ranked} they are selected by ascending rank; failing
+ * both, the order of the result list is used. Ties are broken by position in
+ * the result list.
+ * <p>
+ * Average precision is computed over the top-K documents and normalised by
+ * the total number of relevant documents (as in trec_eval); queries without
+ * any relevant documents do not contribute to the mean average precision.
+ * Precision at N is the number of relevant documents in the top N divided by
+ * N.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <DOCUMENT>
+ *            Type of documents
+ * @param <QUERY>
+ *            Type of query
+ */
+public class StreamingRetrievalEvaluator<DOCUMENT extends Identifiable, QUERY>
+		implements
+		Evaluator<StreamingRetrievalResult<QUERY>, StreamingRetrievalResult<QUERY>>
+{
+	/**
+	 * The default number of results considered per query
+	 */
+	public static final int DEFAULT_K = 1000;
+
+	/**
+	 * The default rank at which precision is measured
+	 */
+	public static final int DEFAULT_N = 10;
+
+	private static class RankedDocument<DOCUMENT> {
+		DOCUMENT document;
+		double key;
+		int position;
+
+		RankedDocument(DOCUMENT document, double key, int position) {
+			this.document = document;
+			this.key = key;
+			this.position = position;
+		}
+	}
+
+	private static final Comparator<RankedDocument<?>> COMPARATOR = new Comparator<RankedDocument<?>>() {
+		@Override
+		public int compare(RankedDocument<?> o1, RankedDocument<?> o2) {
+			final int c = Double.compare(o1.key, o2.key);
+
+			if (c != 0)
+				return c;
+
+			return o1.position < o2.position ? -1 : (o1.position == o2.position ? 0 : 1);
+		}
+	};
+
+	protected RetrievalEngine<DOCUMENT, QUERY> engine;
+	protected Collection<QUERY> queries;
+	protected Map<QUERY, Set<DOCUMENT>> relevant;
+	protected int K = DEFAULT_K;
+	protected int N = DEFAULT_N;
+	protected ThreadPoolExecutor threadPool = GlobalExecutorPool.getPool();
+
+	/**
+	 * Construct a new {@link StreamingRetrievalEvaluator} with a search engine,
+	 * a set of queries to perform and the relevant documents for each query.
+	 *
+	 * @param engine
+	 *            the query engine
+	 * @param queries
+	 *            the queries
+	 * @param relevant
+	 *            the relevant documents for each query
+	 */
+	public StreamingRetrievalEvaluator(RetrievalEngine<DOCUMENT, QUERY> engine, Collection<QUERY> queries,
+			Map<QUERY, Set<DOCUMENT>> relevant)
+	{
+		this.engine = engine;
+		this.queries = queries;
+		this.relevant = relevant;
+	}
+
+	/**
+	 * Construct a new {@link StreamingRetrievalEvaluator} with a search engine
+	 * and the relevant documents for each query. The queries are determined
+	 * automatically from the keys of the map of relevant documents.
+	 *
+	 * @param engine
+	 *            the query engine
+	 * @param relevant
+	 *            the relevant documents for each query
+	 */
+	public StreamingRetrievalEvaluator(RetrievalEngine<DOCUMENT, QUERY> engine, Map<QUERY, Set<DOCUMENT>> relevant) {
+		this(engine, relevant.keySet(), relevant);
+	}
+
+	/**
+	 * Set the number of results considered per query. Only the top-K results
+	 * of each query are retained and scored.
+	 *
+	 * @param k
+	 *            the number of results to consider
+	 */
+	public void setK(int k) {
+		if (k < 1)
+			throw new IllegalArgumentException("K must be positive");
+
+		this.K = k;
+	}
+
+	/**
+	 * @return the number of results considered per query
+	 */
+	public int getK() {
+		return K;
+	}
+
+	/**
+	 * Set the rank at which precision is measured.
+	 *
+	 * @param n
+	 *            the rank
+	 */
+	public void setN(int n) {
+		if (n < 1)
+			throw new IllegalArgumentException("N must be positive");
+
+		this.N = n;
+	}
+
+	/**
+	 * @return the rank at which precision is measured
+	 */
+	public int getN() {
+		return N;
+	}
+
+	/**
+	 * Set the thread pool used to issue queries concurrently. If set to
+	 * <code>null</code> the queries are performed sequentially in the calling
+	 * thread. The {@link RetrievalEngine} must be thread-safe if a pool is
+	 * used.
+	 *
+	 * @param threadPool
+	 *            the thread pool, or <code>null</code>
+	 */
+	public void setThreadPool(ThreadPoolExecutor threadPool) {
+		this.threadPool = threadPool;
+	}
+
+	@Override
+	public StreamingRetrievalResult<QUERY> evaluate() {
+		final StreamingRetrievalResult<QUERY> result = new StreamingRetrievalResult<QUERY>(N, K);
+
+		if (threadPool == null) {
+			for (final QUERY query : queries)
+				evaluateQuery(query, result);
+		} else {
+			Parallel.forEach(queries, new Operation<QUERY>() {
+				@Override
+				public void perform(QUERY query) {
+					evaluateQuery(query, result);
+				}
+			}, threadPool);
+		}
+
+		return result;
+	}
+
+	/**
+	 * The scores are computed during {@link #evaluate()}, so this method just
+	 * returns its input.
+	 */
+	@Override
+	public StreamingRetrievalResult<QUERY> analyse(StreamingRetrievalResult<QUERY> rawData) {
+		return rawData;
+	}
+
+	/**
+	 * Perform a single query and accumulate its scores into the result.
+	 *
+	 * @param query
+	 *            the query
+	 * @param result
+	 *            the result to accumulate into
+	 */
+	protected void evaluateQuery(QUERY query, StreamingRetrievalResult<QUERY> result) {
+		final Set<DOCUMENT> rel = relevant.get(query);
+		final int numRelevant = rel == null ? 0 : rel.size();
+		final List<DOCUMENT> results = engine.search(query);
+
+		if (results == null || numRelevant == 0) {
+			result.addQuery(query, numRelevant == 0 ? Double.NaN : 0, 0);
+			return;
+		}
+
+		final List<RankedDocument<DOCUMENT>> top = selectTop(results);
+
+		double sumPrecision = 0;
+		int relevantSoFar = 0;
+		int relevantAtN = 0;
+		for (int i = 0; i < top.size(); i++) {
+			if (rel.contains(top.get(i).document)) {
+				relevantSoFar++;
+				sumPrecision += (double) relevantSoFar / (double) (i + 1);
+
+				if (i < N)
+					relevantAtN++;
+			}
+		}
+
+		result.addQuery(query, sumPrecision / numRelevant, (double) relevantAtN / (double) N);
+	}
+
+	private List<RankedDocument<DOCUMENT>> selectTop(List<DOCUMENT> results) {
+		final BoundedPriorityQueue<RankedDocument<DOCUMENT>> queue =
+				new BoundedPriorityQueue<RankedDocument<DOCUMENT>>(K, COMPARATOR);
+
+		int position = 0;
+		for (final DOCUMENT doc : results) {
+			final double key;
+			if (doc instanceof Scored)
+				key = -((Scored) doc).getScore();
+			else if (doc instanceof Ranked)
+				key = ((Ranked) doc).getRank();
+			else
+				key = position;
+
+			queue.offer(new RankedDocument<DOCUMENT>(doc, key, position++));
+		}
+
+		return queue.toOrderedListDestructive();
+	}
+}
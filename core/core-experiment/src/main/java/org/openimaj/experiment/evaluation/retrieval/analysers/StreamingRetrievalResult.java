@@ -0,0 +1,226 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.evaluation.retrieval.analysers;
+
+import gnu.trove.map.hash.TObjectDoubleHashMap;
+import gnu.trove.procedure.TObjectDoubleProcedure;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperPrint;
+
+import org.openimaj.data.identity.Identifiable;
+import org.openimaj.experiment.evaluation.AnalysisResult;
+import org.openimaj.experiment.evaluation.retrieval.StreamingRetrievalEvaluator;
+
+/**
+ * {@link AnalysisResult} holding the average precision and precision at N of
+ * each query evaluated by a {@link StreamingRetrievalEvaluator}. Only the
+ * per-query scores and running sums are retained, so the memory required is
+ * independent of the size of the result lists.
+ * <p>
+ * Scores are accumulated by the evaluator as each query completes;
+ * accumulation is thread-safe.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <QUERY>
+ *            Type of query
+ */
+public class StreamingRetrievalResult<QUERY> implements AnalysisResult {
+	TObjectDoubleHashMap<QUERY> averagePrecision = new TObjectDoubleHashMap<QUERY>();
+	TObjectDoubleHashMap<QUERY> precisionAtN = new TObjectDoubleHashMap<QUERY>();
+	double sumAveragePrecision;
+	double sumPrecisionAtN;
+	int N;
+	int K;
+
+	/**
+	 * Construct an empty result.
+	 *
+	 * @param N
+	 *            the rank at which precision is measured
+	 * @param K
+	 *            the number of results considered per query
+	 */
+	public StreamingRetrievalResult(int N, int K) {
+		this.N = N;
+		this.K = K;
+	}
+
+	/**
+	 * Record the scores of a single query.
+	 *
+	 * @param query
+	 *            the query
+	 * @param ap
+	 *            the average precision of the query, or {@link Double#NaN} if
+	 *            the query has no relevant documents
+	 * @param pn
+	 *            the precision at N of the query
+	 */
+	public synchronized void addQuery(QUERY query, double ap, double pn) {
+		if (!Double.isNaN(ap)) {
+			averagePrecision.put(query, ap);
+			sumAveragePrecision += ap;
+		}
+
+		precisionAtN.put(query, pn);
+		sumPrecisionAtN += pn;
+	}
+
+	/**
+	 * @return the number of queries with at least one relevant document
+	 *         that have been scored
+	 */
+	public synchronized int numQueries() {
+		return averagePrecision.size();
+	}
+
+	/**
+	 * @return the mean average precision over all queries with at least one
+	 *         relevant document
+	 */
+	public synchronized double getMeanAveragePrecision() {
+		if (averagePrecision.size() == 0)
+			return 0;
+
+		return sumAveragePrecision / averagePrecision.size();
+	}
+
+	/**
+	 * @return the precision at N averaged over all queries
+	 */
+	public synchronized double getMeanPrecisionAtN() {
+		if (precisionAtN.size() == 0)
+			return 0;
+
+		return sumPrecisionAtN / precisionAtN.size();
+	}
+
+	/**
+	 * Get the average precision of the given query
+	 *
+	 * @param query
+	 *            the query
+	 * @return the average precision, or {@link Double#NaN} if the query was
+	 *         not scored or had no relevant documents
+	 */
+	public synchronized double getAveragePrecision(QUERY query) {
+		if (!averagePrecision.containsKey(query))
+			return Double.NaN;
+
+		return averagePrecision.get(query);
+	}
+
+	/**
+	 * Get the precision at N of the given query
+	 *
+	 * @param query
+	 *            the query
+	 * @return the precision at N, or {@link Double#NaN} if the query was not
+	 *         scored
+	 */
+	public synchronized double getPrecisionAtN(QUERY query) {
+		if (!precisionAtN.containsKey(query))
+			return Double.NaN;
+
+		return precisionAtN.get(query);
+	}
+
+	/**
+	 * @return the rank at which precision is measured
+	 */
+	public int getN() {
+		return N;
+	}
+
+	/**
+	 * @return the number of results considered per query
+	 */
+	public int getK() {
+		return K;
+	}
+
+	@Override
+	public String toString() {
+		return getSummaryReport();
+	}
+
+	@Override
+	public JasperPrint getSummaryReport(String title, String info) throws JRException {
+		// FIXME
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public JasperPrint getDetailReport(String title, String info) throws JRException {
+		// FIXME
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public synchronized String getSummaryReport() {
+		final StringBuilder outBuffer = new StringBuilder();
+
+		outBuffer.append("Aggregate Statistics (top " + K + " results per query):\n");
+		outBuffer.append(String.format("%-15s\t%6d\n", "num_q", precisionAtN.size()));
+		outBuffer.append(String.format("%-15s\t%6d\n", "num_q_rel", averagePrecision.size()));
+		outBuffer.append(String.format("%-15s\t%6.4f\n", "map", getMeanAveragePrecision()));
+		outBuffer.append(String.format("%-15s\t%6.4f\n", "P@" + N, getMeanPrecisionAtN()));
+
+		return outBuffer.toString();
+	}
+
+	@Override
+	public synchronized String getDetailReport() {
+		final StringBuilder outBuffer = new StringBuilder();
+
+		precisionAtN.forEachEntry(new TObjectDoubleProcedure<QUERY>() {
+			@Override
+			public boolean execute(QUERY a, double b) {
+				String id;
+				if (a instanceof Identifiable)
+					id = ((Identifiable) a).getID();
+				else
+					id = a.toString();
+
+				if (averagePrecision.containsKey(a))
+					outBuffer.append(String.format("%-15s\t%10s\t%6.4f\n", "map", id, averagePrecision.get(a)));
+				outBuffer.append(String.format("P@%-13s\t%10s\t%6.4f\n", N, id, b));
+
+				return true;
+			}
+		});
+		outBuffer.append("\n");
+
+		outBuffer.append(getSummaryReport());
+
+		return outBuffer.toString();
+	}
+}
@@ -32,9 +32,13 @@ package org.openimaj.experiment.validation;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.data.dataset.Dataset;
+import org.openimaj.data.dataset.GroupedDataset;
+import org.openimaj.data.dataset.ListDataset;
+import org.openimaj.experiment.dataset.util.DatasetFeatures;
 import org.openimaj.experiment.evaluation.AnalysisResult;
 import org.openimaj.experiment.evaluation.ResultAggregator;
 import org.openimaj.experiment.validation.cross.CrossValidator;
+import org.openimaj.util.function.Function;
 import org.openimaj.util.function.Operation;
 import org.openimaj.util.parallel.GlobalExecutorPool;
 import org.openimaj.util.parallel.Parallel;
@@ -123,4 +127,82 @@ public class ValidationRunner {
 		
 		return aggregator.getAggregatedResult();
 	}
+	
+	/**
+	 * Perform cross validation using the given cross validation scheme
+	 * on the features extracted from the given data. The features of every
+	 * instance are extracted exactly once (in parallel, using the given pool)
+	 * before the cross validation starts, and are shared by all the rounds.
+	 * The rounds of the validation are then performed in parallel using
+	 * the given pool, and the result of each round is passed to the given 
+	 * results aggregator as soon as the round completes.
+	 * 
+	 * @param <INSTANCE> The type of instances in the dataset
+	 * @param <FEATURE> The type of feature extracted from each instance
+	 * @param <ANALYSIS_RESULT> The type of the analysis result from each round
+	 * @param <AGGREGATE_ANALYSIS_RESULT> The type of the aggregated analysis result 
+	 * @param aggregator the results aggregator
+	 * @param dataset the dataset
+	 * @param extractor the feature extractor
+	 * @param cv the cross-validation scheme
+	 * @param round the operation to perform in each round
+	 * @param pool a thread-pool for parallel processing
+	 * @return the aggregated analysis result from all rounds
+	 */
+	public static <INSTANCE,
+			FEATURE,
+			ANALYSIS_RESULT,
+			AGGREGATE_ANALYSIS_RESULT extends AnalysisResult
+			>
+		AGGREGATE_ANALYSIS_RESULT 
+		run(
+				final ResultAggregator<ANALYSIS_RESULT, AGGREGATE_ANALYSIS_RESULT> aggregator, 
+				final ListDataset<INSTANCE> dataset,
+				final Function<INSTANCE, FEATURE> extractor,
+				final CrossValidator<ListDataset<FEATURE>> cv, 
+				final ValidationOperation<ListDataset<FEATURE>, ANALYSIS_RESULT> round,
+				ThreadPoolExecutor pool) 
+	{
+		return run(aggregator, DatasetFeatures.extract(dataset, extractor, pool), cv, round, pool);
+	}
+	
+	/**
+	 * Perform cross validation using the given cross validation scheme
+	 * on the features extracted from the given grouped data. The features of 
+	 * every instance are extracted exactly once (in parallel, using the given 
+	 * pool) before the cross validation starts, and are shared by all the 
+	 * rounds. The rounds of the validation are then performed in parallel 
+	 * using the given pool, and the result of each round is passed to the 
+	 * given results aggregator as soon as the round completes.
+	 * 
+	 * @param <KEY> The type of the group keys
+	 * @param <INSTANCE> The type of instances in the dataset
+	 * @param <FEATURE> The type of feature extracted from each instance
+	 * @param <ANALYSIS_RESULT> The type of the analysis result from each round
+	 * @param <AGGREGATE_ANALYSIS_RESULT> The type of the aggregated analysis result 
+	 * @param aggregator the results aggregator
+	 * @param dataset the dataset
+	 * @param extractor the feature extractor
+	 * @param cv the cross-validation scheme
+	 * @param round the operation to perform in each round
+	 * @param pool a thread-pool for parallel processing
+	 * @return the aggregated analysis result from all rounds
+	 */
+	public static <KEY,
+			INSTANCE,
+			FEATURE,
+			ANALYSIS_RESULT,
+			AGGREGATE_ANALYSIS_RESULT extends AnalysisResult
+			>
+		AGGREGATE_ANALYSIS_RESULT 
+		run(
+				final ResultAggregator<ANALYSIS_RESULT, AGGREGATE_ANALYSIS_RESULT> aggregator, 
+				final GroupedDataset<KEY, ? extends ListDataset<INSTANCE>, INSTANCE> dataset,
+				final Function<INSTANCE, FEATURE> extractor,
+				final CrossValidator<GroupedDataset<KEY, ListDataset<FEATURE>, FEATURE>> cv, 
+				final ValidationOperation<GroupedDataset<KEY, ListDataset<FEATURE>, FEATURE>, ANALYSIS_RESULT> round,
+				ThreadPoolExecutor pool) 
+	{
+		return run(aggregator, DatasetFeatures.extract(dataset, extractor, pool), cv, round, pool);
+	}
 }
@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.evaluation.retrieval;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.data.identity.Identifiable;
+import org.openimaj.experiment.evaluation.retrieval.analysers.StreamingRetrievalResult;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link StreamingRetrievalEvaluator}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class StreamingRetrievalEvaluatorTest {
+	static class Doc implements Identifiable, Scored {
+		String id;
+		double score;
+
+		Doc(String id, double score) {
+			this.id = id;
+			this.score = score;
+		}
+
+		@Override
+		public String getID() {
+			return id;
+		}
+
+		@Override
+		public double getScore() {
+			return score;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Doc && ((Doc) obj).id.equals(id);
+		}
+
+		@Override
+		public int hashCode() {
+			return id.hashCode();
+		}
+	}
+
+	private Map<String, List<Doc>> results;
+	private Map<String, Set<Doc>> relevant;
+	private RetrievalEngine<Doc, String> engine;
+
+	/**
+	 * Setup the results and relevance judgements
+	 */
+	@Before
+	public void setup() {
+		results = new HashMap<String, List<Doc>>();
+		relevant = new HashMap<String, Set<Doc>>();
+
+		// q1: scores are deliberately out of list order: ranking is d1, d2,
+		// d3, d4; relevant are d1 and d3
+		final List<Doc> r1 = new ArrayList<Doc>();
+		r1.add(new Doc("d3", 0.7));
+		r1.add(new Doc("d4", 0.1));
+		r1.add(new Doc("d1", 0.9));
+		r1.add(new Doc("d2", 0.8));
+		results.put("q1", r1);
+		relevant.put("q1", set("d1", "d3"));
+
+		// q2: ranking is d5, d6; relevant are d6 and d7 (which is never
+		// retrieved)
+		final List<Doc> r2 = new ArrayList<Doc>();
+		r2.add(new Doc("d5", 2));
+		r2.add(new Doc("d6", 1));
+		results.put("q2", r2);
+		relevant.put("q2", set("d6", "d7"));
+
+		// q3: no relevant documents
+		results.put("q3", r2);
+		relevant.put("q3", new HashSet<Doc>());
+
+		engine = new RetrievalEngine<Doc, String>() {
+			@Override
+			public List<Doc> search(String query) {
+				return results.get(query);
+			}
+		};
+	}
+
+	private static Set<Doc> set(String... ids) {
+		final Set<Doc> set = new HashSet<Doc>();
+		for (final String id : ids)
+			set.add(new Doc(id, 0));
+		return set;
+	}
+
+	/**
+	 * Test the scores with all results considered
+	 */
+	@Test
+	public void testScores() {
+		final StreamingRetrievalEvaluator<Doc, String> eval = new StreamingRetrievalEvaluator<Doc, String>(engine,
+				relevant);
+		eval.setN(2);
+		eval.setThreadPool(null);
+
+		final StreamingRetrievalResult<String> res = eval.analyse(eval.evaluate());
+
+		assertEquals((1 + 2.0 / 3.0) / 2, res.getAveragePrecision("q1"), 1e-8);
+		assertEquals(0.5 / 2, res.getAveragePrecision("q2"), 1e-8);
+		assertEquals(Double.NaN, res.getAveragePrecision("q3"), 0);
+		assertEquals(2, res.numQueries());
+		assertEquals(((1 + 2.0 / 3.0) / 2 + 0.25) / 2, res.getMeanAveragePrecision(), 1e-8);
+
+		assertEquals(0.5, res.getPrecisionAtN("q1"), 1e-8);
+		assertEquals(0.5, res.getPrecisionAtN("q2"), 1e-8);
+		assertEquals(0, res.getPrecisionAtN("q3"), 1e-8);
+		assertEquals(1.0 / 3.0, res.getMeanPrecisionAtN(), 1e-8);
+	}
+
+	/**
+	 * Test that the results are truncated to the top-K
+	 */
+	@Test
+	public void testTopK() {
+		final StreamingRetrievalEvaluator<Doc, String> eval = new StreamingRetrievalEvaluator<Doc, String>(engine,
+				relevant);
+		eval.setK(2);
+		eval.setN(2);
+		eval.setThreadPool(null);
+
+		final StreamingRetrievalResult<String> res = eval.evaluate();
+
+		assertEquals(0.5, res.getAveragePrecision("q1"), 1e-8);
+		assertEquals(0.5, res.getPrecisionAtN("q1"), 1e-8);
+	}
+
+	/**
+	 * Test that concurrent evaluation gives the same scores as sequential
+	 * evaluation
+	 */
+	@Test
+	public void testParallel() {
+		final Map<String, Set<Doc>> rel = new HashMap<String, Set<Doc>>();
+		for (int q = 0; q < 200; q++) {
+			final List<Doc> r = new ArrayList<Doc>();
+			final Set<Doc> s = new HashSet<Doc>();
+			for (int d = 0; d < 50; d++) {
+				r.add(new Doc("d" + d, (d * 31 + q * 17) % 97));
+				if ((d + q) % 7 == 0)
+					s.add(new Doc("d" + d, 0));
+			}
+			results.put("p" + q, r);
+			rel.put("p" + q, s);
+		}
+
+		final StreamingRetrievalEvaluator<Doc, String> eval = new StreamingRetrievalEvaluator<Doc, String>(engine, rel);
+		eval.setK(20);
+
+		eval.setThreadPool(null);
+		final StreamingRetrievalResult<String> seq = eval.evaluate();
+
+		eval.setThreadPool(GlobalExecutorPool.getPool());
+		final StreamingRetrievalResult<String> par = eval.evaluate();
+
+		assertEquals(seq.numQueries(), par.numQueries());
+		assertEquals(seq.getMeanAveragePrecision(), par.getMeanAveragePrecision(), 1e-8);
+		assertEquals(seq.getMeanPrecisionAtN(), par.getMeanPrecisionAtN(), 1e-8);
+		for (final String q : rel.keySet()) {
+			assertEquals(seq.getAveragePrecision(q), par.getAveragePrecision(q), 1e-8);
+			assertEquals(seq.getPrecisionAtN(q), par.getPrecisionAtN(q), 1e-8);
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.validation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.jasperreports.engine.JasperPrint;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.data.dataset.GroupedDataset;
+import org.openimaj.data.dataset.ListBackedDataset;
+import org.openimaj.data.dataset.ListDataset;
+import org.openimaj.data.dataset.MapBackedDataset;
+import org.openimaj.experiment.evaluation.AnalysisResult;
+import org.openimaj.experiment.evaluation.ResultAggregator;
+import org.openimaj.experiment.validation.cross.GroupedKFold;
+import org.openimaj.experiment.validation.cross.KFold;
+import org.openimaj.util.function.Function;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link ValidationRunner}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ValidationRunnerTest {
+	/**
+	 * Result that records the sum of the values it has seen
+	 */
+	static class SumResult implements AnalysisResult {
+		long sum;
+		int rounds;
+
+		@Override
+		public JasperPrint getSummaryReport(String title, String info) {
+			return null;
+		}
+
+		@Override
+		public JasperPrint getDetailReport(String title, String info) {
+			return null;
+		}
+
+		@Override
+		public String getSummaryReport() {
+			return sum + "";
+		}
+
+		@Override
+		public String getDetailReport() {
+			return sum + "";
+		}
+	}
+
+	/**
+	 * Aggregator that sums the results of each round
+	 */
+	static class SumAggregator implements ResultAggregator<Long, SumResult> {
+		SumResult result = new SumResult();
+
+		@Override
+		public void add(Long value) {
+			result.sum += value;
+			result.rounds++;
+		}
+
+		@Override
+		public SumResult getAggregatedResult() {
+			return result;
+		}
+	}
+
+	AtomicInteger extractions;
+	Function<Integer, Long> extractor;
+	ListBackedDataset<Integer> dataset;
+	MapBackedDataset<String, ListDataset<Integer>, Integer> groupedDataset;
+
+	/**
+	 * Create the datasets and a feature extractor that counts the number of
+	 * times it is called
+	 */
+	@Before
+	public void setup() {
+		extractions = new AtomicInteger();
+		extractor = new Function<Integer, Long>() {
+			@Override
+			public Long apply(Integer in) {
+				extractions.incrementAndGet();
+				return 10L * in;
+			}
+		};
+
+		dataset = new ListBackedDataset<Integer>();
+		for (int i = 0; i < 100; i++)
+			dataset.add(i);
+
+		groupedDataset = new MapBackedDataset<String, ListDataset<Integer>, Integer>();
+		for (final String group : new String[] { "A", "B", "C" }) {
+			final ListBackedDataset<Integer> instances = new ListBackedDataset<Integer>();
+			for (int i = 0; i < 10; i++)
+				instances.add(i);
+			groupedDataset.add(group, instances);
+		}
+	}
+
+	/**
+	 * Features should be extracted once per instance, and every instance
+	 * should be validated once across the folds
+	 */
+	@Test
+	public void testListFeatures() {
+		final SumResult result = ValidationRunner.run(new SumAggregator(), dataset, extractor, new KFold<Long>(10),
+				new ValidationOperation<ListDataset<Long>, Long>() {
+					@Override
+					public Long evaluate(ListDataset<Long> training, ListDataset<Long> validation) {
+						long sum = 0;
+						for (final Long l : validation)
+							sum += l;
+						return sum;
+					}
+				}, GlobalExecutorPool.getPool());
+
+		assertEquals(100, extractions.get());
+		assertEquals(10, result.rounds);
+		assertEquals(10L * 99 * 100 / 2, result.sum);
+	}
+
+	/**
+	 * Features should be extracted once per instance of a grouped dataset
+	 */
+	@Test
+	public void testGroupedFeatures() {
+		final SumResult result = ValidationRunner.run(new SumAggregator(), groupedDataset, extractor,
+				new GroupedKFold<String, Long>(5),
+				new ValidationOperation<GroupedDataset<String, ListDataset<Long>, Long>, Long>() {
+					@Override
+					public Long evaluate(GroupedDataset<String, ListDataset<Long>, Long> training,
+							GroupedDataset<String, ListDataset<Long>, Long> validation)
+					{
+						long sum = 0;
+						for (final Long l : validation)
+							sum += l;
+						return sum;
+					}
+				}, GlobalExecutorPool.getPool());
+
+		assertEquals(30, extractions.get());
+		assertEquals(5, result.rounds);
+		assertEquals(3 * 10L * 9 * 10 / 2, result.sum);
+	}
+}
@@ -30,6 +30,9 @@
 package org.openimaj.image;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -193,6 +196,208 @@ class ExtendedImageIO {
 		return bi;
 	}
 
+	/**
+	 * Decode an image from the given <code>InputStream</code>, reducing its
+	 * resolution by the largest power-of-two factor (up to
+	 * {@link #MAX_SUBSAMPLING}) that keeps the longest side at least
+	 * <code>maxSize</code> pixels. Where the registered
+	 * <code>ImageReader</code> supports it, the reduction is performed by the
+	 * reader during decoding using source subsampling so that a
+	 * full-resolution raster is never allocated; otherwise the image is
+	 * decoded in full with {@link #read(InputStream)} and then subsampled.
+	 * <p>
+	 * In both cases the result has dimensions <code>ceil(w / f)</code> by
+	 * <code>ceil(h / f)</code>, where <code>f</code> is the chosen factor.
+	 * <p>
+	 * This method <em>does not</em> close the provided <code>InputStream</code>.
+	 *
+	 * @param input
+	 *            an <code>InputStream</code> to read from.
+	 * @param maxSize
+	 *            the minimum size of the longest side of the decoded image;
+	 *            values less than 1 disable subsampling.
+	 * @return a <code>BufferedImage</code> containing the decoded contents of
+	 *         the input.
+	 * @exception IOException
+	 *                if an error occurs during reading.
+	 */
+	public static BufferedImage read(InputStream input, int maxSize) throws IOException {
+		if (maxSize <= 0)
+			return read(input);
+
+		if (input == null) {
+			throw new IllegalArgumentException("input == null!");
+		}
+
+		final NonClosableInputStream buffer = new NonClosableInputStream(input);
+		buffer.mark(100 * 1024 * 1024); // 100mb is big enough?
+
+		BufferedImage bi;
+		try {
+			bi = readSubsampledInternal(buffer, maxSize);
+		} catch (final Exception ex) {
+			bi = null;
+		}
+
+		if (bi == null) {
+			buffer.reset();
+			bi = subsample(read(buffer), maxSize);
+		}
+
+		return bi;
+	}
+
+	/**
+	 * Decode an image from the given <code>File</code> with subsampling. See
+	 * {@link #read(InputStream, int)} for details.
+	 *
+	 * @param input
+	 *            a <code>File</code> to read from.
+	 * @param maxSize
+	 *            the minimum size of the longest side of the decoded image;
+	 *            values less than 1 disable subsampling.
+	 * @return a <code>BufferedImage</code> containing the decoded contents of
+	 *         the input.
+	 * @exception IOException
+	 *                if an error occurs during reading.
+	 */
+	public static BufferedImage read(File input, int maxSize) throws IOException {
+		if (input == null) {
+			throw new IllegalArgumentException("input == null!");
+		}
+		if (!input.canRead()) {
+			throw new IIOException("Can't read input file!");
+		}
+		InputStream stream = null;
+		try {
+			stream = new FileInputStream(input);
+			return read(stream, maxSize);
+		} finally {
+			try {
+				stream.close();
+			} catch (final IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * The largest subsampling factor that will be applied when decoding with a
+	 * maximum size. This matches the smallest scale (1/8) at which JPEG data
+	 * can be decoded.
+	 */
+	static final int MAX_SUBSAMPLING = 8;
+
+	/**
+	 * Compute the power-of-two subsampling factor for an image of the given
+	 * size such that the longest side of the subsampled image is at least
+	 * <code>maxSize</code>.
+	 *
+	 * @param width
+	 *            the image width
+	 * @param height
+	 *            the image height
+	 * @param maxSize
+	 *            the minimum size of the longest side after subsampling
+	 * @return the subsampling factor (1, 2, 4 or 8)
+	 */
+	static int subsamplingFactor(int width, int height, int maxSize) {
+		if (maxSize <= 0)
+			return 1;
+
+		final int size = Math.max(width, height);
+		int factor = 1;
+		while (factor < MAX_SUBSAMPLING && size / (factor * 2) >= maxSize)
+			factor *= 2;
+
+		return factor;
+	}
+
+	/**
+	 * Decode with an <code>ImageReader</code> using source subsampling. JPEGs
+	 * use the TwelveMonkeys reader if available (as in
+	 * {@link #readInternal(BufferedInputStream)}); CMYK JPEGs that the
+	 * standard reader cannot handle will cause an exception, which results in
+	 * the caller falling back to a full decode.
+	 */
+	private static BufferedImage readSubsampledInternal(BufferedInputStream binput, int maxSize) throws IOException {
+		final ImageInputStream stream = ImageIO.createImageInputStream(binput);
+		if (stream == null)
+			return null;
+
+		try {
+			final Iterator<ImageReader> iter = ImageIO.getImageReaders(stream);
+			if (!iter.hasNext())
+				return null;
+
+			ImageReader reader = iter.next();
+			if ("jpeg".equalsIgnoreCase(reader.getFormatName())) {
+				final ImageReader monkey = getMonkeyReader();
+				if (monkey != null)
+					reader = monkey;
+			}
+
+			try {
+				reader.setInput(stream, true, true);
+
+				final int factor = subsamplingFactor(reader.getWidth(0), reader.getHeight(0), maxSize);
+				final ImageReadParam param = reader.getDefaultReadParam();
+				if (factor > 1)
+					param.setSourceSubsampling(factor, factor, 0, 0);
+
+				return reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Subsample an already decoded image by the factor given by
+	 * {@link #subsamplingFactor(int, int, int)}, taking the top-left pixel of
+	 * each block as the reader would.
+	 */
+	private static BufferedImage subsample(BufferedImage bi, int maxSize) {
+		if (bi == null)
+			return null;
+
+		final int width = bi.getWidth();
+		final int height = bi.getHeight();
+		final int factor = subsamplingFactor(width, height, maxSize);
+		if (factor == 1)
+			return bi;
+
+		final int sw = (width + factor - 1) / factor;
+		final int sh = (height + factor - 1) / factor;
+
+		final ColorModel cm = bi.getColorModel();
+		final BufferedImage ret;
+		switch (bi.getType()) {
+		case BufferedImage.TYPE_CUSTOM:
+		case BufferedImage.TYPE_BYTE_BINARY:
+		case BufferedImage.TYPE_BYTE_INDEXED:
+			ret = new BufferedImage(cm, cm.createCompatibleWritableRaster(sw, sh), cm.isAlphaPremultiplied(), null);
+			break;
+		default:
+			// keep the standard type so it can be converted efficiently
+			ret = new BufferedImage(sw, sh, bi.getType());
+		}
+
+		final Raster in = bi.getRaster();
+		final WritableRaster out = ret.getRaster();
+
+		Object pixel = null;
+		for (int y = 0; y < sh; y++) {
+			for (int x = 0; x < sw; x++) {
+				pixel = in.getDataElements(x * factor, y * factor, pixel);
+				out.setDataElements(x, y, pixel);
+			}
+		}
+
+		return ret;
+	}
+
 	/**
 	 * Returns a <code>BufferedImage</code> as the result of decoding a supplied
 	 * <code>URL</code> with an <code>ImageReader</code> chosen automatically
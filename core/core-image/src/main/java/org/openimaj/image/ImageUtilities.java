@@ -313,7 +313,7 @@ public class ImageUtilities {
 	 *             if the file cannot be read
 	 */
 	public static FImage readF(final File input) throws IOException {
-		return ImageUtilities.createFImage(ExtendedImageIO.read(input));
+		return ImageUtilities.assignFImage(ExtendedImageIO.read(input), null);
 	}
 
 	/**
@@ -326,7 +326,7 @@ public class ImageUtilities {
 	 *             if the stream cannot be read
 	 */
 	public static FImage readF(final InputStream input) throws IOException {
-		return ImageUtilities.createFImage(ExtendedImageIO.read(input));
+		return ImageUtilities.assignFImage(ExtendedImageIO.read(input), null);
 	}
 
 	/**
@@ -339,7 +339,7 @@ public class ImageUtilities {
 	 *             if the URL stream cannot be read
 	 */
 	public static FImage readF(final URL input) throws IOException {
-		return ImageUtilities.createFImage(ExtendedImageIO.read(input));
+		return ImageUtilities.assignFImage(ExtendedImageIO.read(input), null);
 	}
 
 	/**
@@ -352,7 +352,7 @@ public class ImageUtilities {
 	 *             if the file cannot be read
 	 */
 	public static MBFImage readMBF(final File input) throws IOException {
-		return ImageUtilities.createMBFImage(ExtendedImageIO.read(input), false);
+		return ImageUtilities.assignMBFImage(ExtendedImageIO.read(input), null);
 	}
 
 	/**
@@ -365,7 +365,7 @@ public class ImageUtilities {
 	 *             if the stream cannot be read
 	 */
 	public static MBFImage readMBF(final InputStream input) throws IOException {
-		return ImageUtilities.createMBFImage(ExtendedImageIO.read(input), false);
+		return ImageUtilities.assignMBFImage(ExtendedImageIO.read(input), null);
 	}
 
 	/**
@@ -378,7 +378,227 @@ public class ImageUtilities {
 	 *             if the URL stream cannot be read
 	 */
 	public static MBFImage readMBF(final URL input) throws IOException {
-		return ImageUtilities.createMBFImage(ExtendedImageIO.read(input), false);
+		return ImageUtilities.assignMBFImage(ExtendedImageIO.read(input), null);
+	}
+
+	/**
+	 * Reads an {@link FImage} from the given file, optionally decoding at a
+	 * reduced resolution and reusing the pixel buffer of an existing image.
+	 * <p>
+	 * If <code>maxSize</code> is greater than zero, the image is decoded at
+	 * 1/2, 1/4 or 1/8 of its full resolution; the largest reduction that keeps
+	 * the longest side at least <code>maxSize</code> pixels is chosen. For
+	 * formats such as JPEG, the reduction is applied by the decoder so the
+	 * full-resolution image is never held in memory. The result will
+	 * typically need a final resize (for example with a
+	 * <code>ResizeProcessor</code>) to reach exactly <code>maxSize</code>.
+	 * <p>
+	 * If <code>dest</code> is not null, the decoded pixels are written into
+	 * it; its pixel buffer is reused if it already has the decoded dimensions.
+	 * 
+	 * @param input
+	 *            The file to read the {@link FImage} from.
+	 * @param maxSize
+	 *            the minimum length of the longest side of the decoded image,
+	 *            or 0 to decode at full resolution
+	 * @param dest
+	 *            the image to decode into; can be null.
+	 * @return the decoded {@link FImage}; this will be <code>dest</code> if it
+	 *         was not null.
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static FImage readF(final File input, final int maxSize, final FImage dest) throws IOException {
+		return ImageUtilities.assignFImage(ExtendedImageIO.read(input, maxSize), dest);
+	}
+
+	/**
+	 * Reads an {@link FImage} from the given input stream, optionally decoding
+	 * at a reduced resolution and reusing the pixel buffer of an existing
+	 * image. See {@link #readF(File, int, FImage)} for details.
+	 * 
+	 * @param input
+	 *            The input stream to read the {@link FImage} from.
+	 * @param maxSize
+	 *            the minimum length of the longest side of the decoded image,
+	 *            or 0 to decode at full resolution
+	 * @param dest
+	 *            the image to decode into; can be null.
+	 * @return the decoded {@link FImage}; this will be <code>dest</code> if it
+	 *         was not null.
+	 * @throws IOException
+	 *             if the stream cannot be read
+	 */
+	public static FImage readF(final InputStream input, final int maxSize, final FImage dest) throws IOException {
+		return ImageUtilities.assignFImage(ExtendedImageIO.read(input, maxSize), dest);
+	}
+
+	/**
+	 * Reads an RGB {@link MBFImage} from the given file, optionally decoding at
+	 * a reduced resolution and reusing the band buffers of an existing image.
+	 * See {@link #readF(File, int, FImage)} for details of the subsampling.
+	 * The bands of <code>dest</code> are only reused if it is an
+	 * {@link ColourSpace#RGB} image.
+	 * 
+	 * @param input
+	 *            The file to read the {@link MBFImage} from.
+	 * @param maxSize
+	 *            the minimum length of the longest side of the decoded image,
+	 *            or 0 to decode at full resolution
+	 * @param dest
+	 *            the image to decode into; can be null.
+	 * @return the decoded {@link MBFImage}; this will be <code>dest</code> if
+	 *         it was a non-null RGB image.
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static MBFImage readMBF(final File input, final int maxSize, final MBFImage dest) throws IOException {
+		return ImageUtilities.assignMBFImage(ExtendedImageIO.read(input, maxSize), dest);
+	}
+
+	/**
+	 * Reads an RGB {@link MBFImage} from the given input stream, optionally
+	 * decoding at a reduced resolution and reusing the band buffers of an
+	 * existing image. See {@link #readMBF(File, int, MBFImage)} for details.
+	 * 
+	 * @param input
+	 *            The input stream to read the {@link MBFImage} from.
+	 * @param maxSize
+	 *            the minimum length of the longest side of the decoded image,
+	 *            or 0 to decode at full resolution
+	 * @param dest
+	 *            the image to decode into; can be null.
+	 * @return the decoded {@link MBFImage}; this will be <code>dest</code> if
+	 *         it was a non-null RGB image.
+	 * @throws IOException
+	 *             if the stream cannot be read
+	 */
+	public static MBFImage readMBF(final InputStream input, final int maxSize, final MBFImage dest)
+			throws IOException
+	{
+		return ImageUtilities.assignMBFImage(ExtendedImageIO.read(input, maxSize), dest);
+	}
+
+	/**
+	 * Test whether the pixels of a {@link BufferedImage} can be read directly
+	 * from its byte buffer. This is the case for the opaque types produced by
+	 * the standard JPEG and PNG decoders; images with alpha go through
+	 * {@link #createWorkingImage(BufferedImage)} so that the results are
+	 * unchanged.
+	 */
+	private static boolean isDirectByteImage(final BufferedImage bimg) {
+		switch (bimg.getType()) {
+		case BufferedImage.TYPE_BYTE_GRAY:
+		case BufferedImage.TYPE_3BYTE_BGR:
+			return bimg.getRaster().getSampleModel() instanceof ComponentSampleModel
+					&& bimg.getRaster().getDataBuffer() instanceof DataBufferByte;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Convert a {@link BufferedImage} to a greyscale {@link FImage}, writing
+	 * into the given image if possible. Byte-based images are read directly
+	 * from the raster, avoiding the intermediate ARGB copies made by
+	 * {@link #createFImage(BufferedImage)}; the NTSC weighting used is the
+	 * same, so the results are identical.
+	 */
+	private static FImage assignFImage(final BufferedImage bimg, FImage dest) {
+		if (dest == null)
+			dest = new FImage(bimg.getWidth(), bimg.getHeight());
+
+		if (!isDirectByteImage(bimg))
+			return ImageUtilities.assignBufferedImage(bimg, dest);
+
+		final int width = bimg.getWidth();
+		final int height = bimg.getHeight();
+		if (dest.width != width || dest.height != height)
+			dest.internalAssign(new FImage(width, height));
+
+		final WritableRaster raster = bimg.getRaster();
+		final ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+		final DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
+		final int scanlineStride = sm.getScanlineStride();
+		final int pixelStride = sm.getPixelStride();
+		final int[] bandOffsets = sm.getBandOffsets();
+		final int offset = db.getOffset();
+		final byte[] data = db.getData();
+		final float[][] p = dest.pixels;
+
+		if (bimg.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+			for (int y = 0; y < height; y++) {
+				int i = offset + y * scanlineStride + bandOffsets[0];
+				for (int x = 0; x < width; x++, i += pixelStride) {
+					final int grey = data[i] & 0xff;
+					final float fpix = 0.299f * grey + 0.587f * grey + 0.114f * grey;
+
+					p[y][x] = ImageUtilities.BYTE_TO_FLOAT_LUT[(int) fpix];
+				}
+			}
+		} else {
+			final int ro = offset + bandOffsets[0];
+			final int go = offset + bandOffsets[1];
+			final int bo = offset + bandOffsets[2];
+
+			for (int y = 0; y < height; y++) {
+				for (int x = 0, i = y * scanlineStride; x < width; x++, i += pixelStride) {
+					final int red = data[i + ro] & 0xff;
+					final int green = data[i + go] & 0xff;
+					final int blue = data[i + bo] & 0xff;
+					final float fpix = 0.299f * red + 0.587f * green + 0.114f * blue;
+
+					p[y][x] = ImageUtilities.BYTE_TO_FLOAT_LUT[(int) fpix];
+				}
+			}
+		}
+
+		return dest;
+	}
+
+	/**
+	 * Convert a {@link BufferedImage} to an RGB {@link MBFImage}, writing into
+	 * the given image if possible. Byte-based images are read directly from
+	 * the raster as in {@link #assignFImage(BufferedImage, FImage)}.
+	 */
+	private static MBFImage assignMBFImage(final BufferedImage bimg, MBFImage dest) {
+		if (dest == null || dest.colourSpace != ColourSpace.RGB || dest.numBands() != 3)
+			dest = new MBFImage(bimg.getWidth(), bimg.getHeight(), ColourSpace.RGB);
+
+		if (!isDirectByteImage(bimg))
+			return ImageUtilities.assignBufferedImage(bimg, dest);
+
+		final int width = bimg.getWidth();
+		final int height = bimg.getHeight();
+		if (dest.getWidth() != width || dest.getHeight() != height)
+			dest.internalAssign(dest.newInstance(width, height));
+
+		final WritableRaster raster = bimg.getRaster();
+		final ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+		final DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
+		final int scanlineStride = sm.getScanlineStride();
+		final int pixelStride = sm.getPixelStride();
+		final int[] bandOffsets = sm.getBandOffsets();
+		final byte[] data = db.getData();
+
+		final boolean grey = bimg.getType() == BufferedImage.TYPE_BYTE_GRAY;
+		final int ro = db.getOffset() + bandOffsets[0];
+		final int go = db.getOffset() + bandOffsets[grey ? 0 : 1];
+		final int bo = db.getOffset() + bandOffsets[grey ? 0 : 2];
+
+		final float[][] r = dest.getBand(0).pixels;
+		final float[][] g = dest.getBand(1).pixels;
+		final float[][] b = dest.getBand(2).pixels;
+
+		for (int y = 0; y < height; y++) {
+			for (int x = 0, i = y * scanlineStride; x < width; x++, i += pixelStride) {
+				r[y][x] = ImageUtilities.BYTE_TO_FLOAT_LUT[data[i + ro] & 0xff];
+				g[y][x] = ImageUtilities.BYTE_TO_FLOAT_LUT[data[i + go] & 0xff];
+				b[y][x] = ImageUtilities.BYTE_TO_FLOAT_LUT[data[i + bo] & 0xff];
+			}
+		}
+
+		return dest;
 	}
 
 	/**
@@ -33,12 +33,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.image.colour.ColourSpace;
 import org.openimaj.image.processor.SinglebandImageProcessor;
 import org.openimaj.image.processor.SinglebandKernelProcessor;
 import org.openimaj.image.processor.SinglebandPixelProcessor;
+import org.openimaj.image.processor.ThreadSafeProcessor;
 import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.util.function.Function;
+import org.openimaj.util.parallel.GlobalExecutorPool;
 
 /**
  * A base class for multi-band images.
@@ -69,6 +76,10 @@ public abstract class MultiBandImage<T extends Comparable<T>, I extends MultiBan
 	/** The colour-space of this image */
 	public ColourSpace colourSpace = ColourSpace.CUSTOM;
 
+	private static volatile boolean defaultParallelBandProcessing = false;
+
+	private transient Boolean parallelBandProcessing;
+
 	/**
 	 * Default constructor for a multiband image.
 	 */
@@ -912,6 +923,131 @@ public abstract class MultiBandImage<T extends Comparable<T>, I extends MultiBan
 		return (I) this;
 	}
 
+	/**
+	 * Set whether {@link MultiBandImage}s should process their bands in
+	 * parallel by default when applying a processor that implements
+	 * {@link ThreadSafeProcessor}. The default can be overridden for an
+	 * individual image with {@link #setParallelBandProcessing(Boolean)}.
+	 * Parallel band processing is disabled by default.
+	 *
+	 * @param parallel
+	 *            true if bands should be processed in parallel by default
+	 */
+	public static void setDefaultParallelBandProcessing(boolean parallel) {
+		defaultParallelBandProcessing = parallel;
+	}
+
+	/**
+	 * Get whether {@link MultiBandImage}s process their bands in parallel by
+	 * default.
+	 *
+	 * @see #setDefaultParallelBandProcessing(boolean)
+	 * @return true if bands are processed in parallel by default
+	 */
+	public static boolean isDefaultParallelBandProcessing() {
+		return defaultParallelBandProcessing;
+	}
+
+	/**
+	 * Set whether this image should process its bands in parallel when
+	 * applying a processor that implements {@link ThreadSafeProcessor}.
+	 * Processors that are not marked as thread-safe are always applied to each
+	 * band in turn.
+	 *
+	 * @param parallel
+	 *            true or false to enable or disable parallel processing for
+	 *            this image; null to use the global default.
+	 */
+	public void setParallelBandProcessing(Boolean parallel) {
+		this.parallelBandProcessing = parallel;
+	}
+
+	/**
+	 * Get whether this image will process its bands in parallel when applying
+	 * a processor that implements {@link ThreadSafeProcessor}.
+	 *
+	 * @return true if bands will be processed in parallel
+	 */
+	public boolean isParallelBandProcessing() {
+		if (this.parallelBandProcessing != null)
+			return this.parallelBandProcessing;
+		return defaultParallelBandProcessing;
+	}
+
+	private boolean useParallel(Object processor) {
+		return processor instanceof ThreadSafeProcessor && this.bands.size() > 1 && this.isParallelBandProcessing();
+	}
+
+	/**
+	 * Apply the operation to every band and return a new image built from the
+	 * results.
+	 */
+	private I collectBands(Object processor, Function<S, S> op) {
+		final List<S> results = this.applyToBands(processor, op);
+
+		final I out = this.newInstance();
+		out.bands.addAll(results);
+
+		return out;
+	}
+
+	/**
+	 * Apply the operation to every band, in parallel if enabled and the
+	 * processor is thread-safe. Bands other than the first are submitted to
+	 * the {@link GlobalExecutorPool}; the first band is processed on the
+	 * calling thread, after which any tasks that have not yet been started
+	 * are run directly by the caller. This means nested use (i.e. processing
+	 * from within a pool thread) cannot deadlock.
+	 */
+	private List<S> applyToBands(Object processor, final Function<S, S> op) {
+		final int nb = this.bands.size();
+		final List<S> results = new ArrayList<S>(nb);
+
+		if (!useParallel(processor)) {
+			for (final S sbm : this)
+				results.add(op.apply(sbm));
+
+			return results;
+		}
+
+		final ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+		final List<FutureTask<S>> tasks = new ArrayList<FutureTask<S>>(nb - 1);
+		for (int i = 1; i < nb; i++) {
+			final S band = this.bands.get(i);
+			final FutureTask<S> task = new FutureTask<S>(new Callable<S>() {
+				@Override
+				public S call() {
+					return op.apply(band);
+				}
+			});
+			tasks.add(task);
+			pool.execute(task);
+		}
+
+		results.add(op.apply(this.bands.get(0)));
+
+		for (final FutureTask<S> task : tasks) {
+			// runs the task on this thread if it hasn't started yet
+			task.run();
+
+			try {
+				results.add(task.get());
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (final ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				throw new RuntimeException(cause);
+			}
+		}
+
+		return results;
+	}
+
 	/**
 	 * Returns the number of bands in this image.
 	 *
@@ -928,11 +1064,12 @@ public abstract class MultiBandImage<T extends Comparable<T>, I extends MultiBan
 	 */
 	@Override
 	public I process(final SinglebandImageProcessor<T, S> p) {
-		final I out = this.newInstance();
-		for (final S sbm : this)
-			out.bands.add(sbm.process(p));
-
-		return out;
+		return this.collectBands(p, new Function<S, S>() {
+			@Override
+			public S apply(S band) {
+				return band.process(p);
+			}
+		});
 	}
 
 	/**
@@ -953,11 +1090,12 @@ public abstract class MultiBandImage<T extends Comparable<T>, I extends MultiBan
 	 */
 	@Override
 	public I process(final SinglebandKernelProcessor<T, S> kernel, final boolean pad) {
-		final I out = this.newInstance();
-		for (final S sbm : this)
-			out.bands.add(sbm.process(kernel, pad));
-
-		return out;
+		return this.collectBands(kernel, new Function<S, S>() {
+			@Override
+			public S apply(S band) {
+				return band.process(kernel, pad);
+			}
+		});
 	}
 
 	/**
@@ -969,11 +1107,12 @@ public abstract class MultiBandImage<T extends Comparable<T>, I extends MultiBan
 	 * @return A new image containing the result.
 	 */
 	public I process(final SinglebandPixelProcessor<T> pp) {
-		final I out = this.newInstance();
-		for (final S sbm : this)
-			out.bands.add(sbm.process(pp));
-
-		return out;
+		return this.collectBands(pp, new Function<S, S>() {
+			@Override
+			public S apply(S band) {
+				return band.process(pp);
+			}
+		});
 	}
 
 	/**
@@ -984,8 +1123,12 @@ public abstract class MultiBandImage<T extends Comparable<T>, I extends MultiBan
 	@Override
 	@SuppressWarnings("unchecked")
 	public I processInplace(final SinglebandImageProcessor<T, S> p) {
-		for (final S sbm : this)
-			sbm.processInplace(p);
+		this.applyToBands(p, new Function<S, S>() {
+			@Override
+			public S apply(S band) {
+				return band.processInplace(p);
+			}
+		});
 
 		return (I) this;
 	}
@@ -1009,8 +1152,12 @@ public abstract class MultiBandImage<T extends Comparable<T>, I extends MultiBan
 	@Override
 	@SuppressWarnings("unchecked")
 	public I processInplace(final SinglebandKernelProcessor<T, S> kernel, final boolean pad) {
-		for (final S sbm : this)
-			sbm.processInplace(kernel, pad);
+		this.applyToBands(kernel, new Function<S, S>() {
+			@Override
+			public S apply(S band) {
+				return band.processInplace(kernel, pad);
+			}
+		});
 
 		return (I) this;
 	}
@@ -1025,8 +1172,12 @@ public abstract class MultiBandImage<T extends Comparable<T>, I extends MultiBan
 	 */
 	@SuppressWarnings("unchecked")
 	public I processInplace(final SinglebandPixelProcessor<T> pp) {
-		for (final S sbm : this)
-			sbm.processInplace(pp);
+		this.applyToBands(pp, new Function<S, S>() {
+			@Override
+			public S apply(S band) {
+				return band.processInplace(pp);
+			}
+		});
 
 		return (I) this;
 	}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the subsampled decoding methods of {@link ImageUtilities}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ImageUtilitiesTest {
+	private byte[] png;
+	private FImage full;
+
+	/**
+	 * Encode a test image
+	 * 
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		final BufferedImage bimg = new BufferedImage(203, 157, BufferedImage.TYPE_3BYTE_BGR);
+		for (int y = 0; y < bimg.getHeight(); y++)
+			for (int x = 0; x < bimg.getWidth(); x++)
+				bimg.setRGB(x, y, ((x * 7 + y) & 0xff) << 16 | ((x ^ y) & 0xff) << 8 | ((x * y) & 0xff));
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageIO.write(bimg, "png", baos);
+		png = baos.toByteArray();
+
+		full = ImageUtilities.createFImage(bimg);
+	}
+
+	/**
+	 * Test that reading at full resolution gives the same pixels as converting
+	 * the {@link BufferedImage}
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testReadFull() throws IOException {
+		final FImage img = ImageUtilities.readF(new ByteArrayInputStream(png));
+
+		assertEquals(full.width, img.width);
+		assertEquals(full.height, img.height);
+		for (int y = 0; y < img.height; y++)
+			for (int x = 0; x < img.width; x++)
+				assertEquals(full.pixels[y][x], img.pixels[y][x], 0f);
+	}
+
+	/**
+	 * Test the subsampling factor and buffer reuse
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testReadSubsampled() throws IOException {
+		final int[] maxSizes = { 0, 150, 100, 50, 25, 10 };
+		final int[] factors = { 1, 1, 2, 4, 8, 8 };
+
+		for (int i = 0; i < maxSizes.length; i++) {
+			final int f = factors[i];
+			final FImage img = ImageUtilities.readF(new ByteArrayInputStream(png), maxSizes[i], null);
+
+			assertEquals((203 + f - 1) / f, img.width);
+			assertEquals((157 + f - 1) / f, img.height);
+			for (int y = 0; y < img.height; y++)
+				for (int x = 0; x < img.width; x++)
+					assertEquals(full.pixels[y * f][x * f], img.pixels[y][x], 0f);
+
+			final float[][] pixels = img.pixels;
+			assertSame(img, ImageUtilities.readF(new ByteArrayInputStream(png), maxSizes[i], img));
+			assertSame(pixels, img.pixels);
+
+			final MBFImage mbf = ImageUtilities.readMBF(new ByteArrayInputStream(png), maxSizes[i], null);
+			final float[][] red = mbf.getBand(0).pixels;
+			assertSame(mbf, ImageUtilities.readMBF(new ByteArrayInputStream(png), maxSizes[i], mbf));
+			assertSame(red, mbf.getBand(0).pixels);
+			assertEquals(img.width, mbf.getWidth());
+			assertEquals(img.height, mbf.getHeight());
+		}
+	}
+}
@@ -29,14 +29,21 @@
  */
 package org.openimaj.image;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.openimaj.image.colour.ColourSpace;
+import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.image.processor.ThreadSafeProcessor;
 
 /**
  * Tests for MBFImage
@@ -91,4 +98,44 @@ public class MBFImageTest {
 			}
 		}
 	}
+
+	static class ThreadRecordingProcessor implements SinglebandImageProcessor<Float, FImage>, ThreadSafeProcessor {
+		final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+
+		@Override
+		public void processImage(FImage image) {
+			threads.add(Thread.currentThread());
+
+			for (int y = 0; y < image.height; y++)
+				for (int x = 0; x < image.width; x++)
+					image.pixels[y][x] = 1 - image.pixels[y][x] * image.pixels[y][x];
+		}
+	}
+
+	/**
+	 * Test that parallel band processing gives the same result as sequential
+	 * processing, both for new and in-place results
+	 */
+	@Test
+	public void testParallelBandProcessing() {
+		final ThreadRecordingProcessor proc = new ThreadRecordingProcessor();
+
+		final MBFImage seq = testImage.process(proc);
+		assertEquals(1, proc.threads.size());
+
+		final MBFImage img = testImage.clone();
+		img.setParallelBandProcessing(true);
+		assertTrue(img.isParallelBandProcessing());
+
+		final MBFImage par = img.process(proc);
+		img.processInplace(proc);
+
+		assertEquals(seq.numBands(), par.numBands());
+		for (int b = 0; b < seq.numBands(); b++) {
+			for (int y = 0; y < seq.getHeight(); y++) {
+				assertArrayEquals(seq.getBand(b).pixels[y], par.getBand(b).pixels[y], 0f);
+				assertArrayEquals(seq.getBand(b).pixels[y], img.getBand(b).pixels[y], 0f);
+			}
+		}
+	}
 }
@@ -31,14 +31,23 @@ package org.openimaj.math.model.fit;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
 
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+import org.openimaj.data.RandomData;
 import org.openimaj.math.model.EstimatableModel;
 import org.openimaj.math.model.fit.residuals.ResidualCalculator;
 import org.openimaj.math.util.distance.DistanceCheck;
 import org.openimaj.math.util.distance.ThresholdDistanceCheck;
 import org.openimaj.util.CollectionSampler;
 import org.openimaj.util.UniformSampler;
+import org.openimaj.util.function.Operation;
 import org.openimaj.util.pair.IndependentPair;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+import com.rits.cloning.Cloner;
 
 /**
  * The RANSAC Algorithm (RANdom SAmple Consensus)
@@ -62,6 +71,21 @@ import org.openimaj.util.pair.IndependentPair;
  * In this implementation, the conditions that control the iterations are
  * configurable. In addition, the best matching model is always stored, even if
  * the fitData() method returns false.
+ * </p>
+ * <p>
+ * Scoring of each hypothesis is terminated as soon as it has accumulated
+ * enough outliers that it cannot beat the best hypothesis found so far; the
+ * number of inliers reported to the {@link StoppingCondition} for such
+ * hypotheses is a lower bound on the true number. Optionally, each hypothesis
+ * can first be subjected to the T(d,d) pre-test of Matas and Chum, in which it
+ * is only scored against the full data if <code>d</code> randomly selected
+ * items are all inliers (see {@link #setPreemptiveTests(int)}). Hypotheses can
+ * also be generated and scored in parallel batches (see
+ * {@link #setThreadPool(ThreadPoolExecutor)}); in this case the
+ * {@link ResidualCalculator} is deep-cloned for each worker thread, and the
+ * model is cloned for each hypothesis in a batch. The stopping condition is
+ * still consulted for each hypothesis in the order that it was sampled.
+ * </p>
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  *
@@ -73,6 +97,12 @@ import org.openimaj.util.pair.IndependentPair;
  *            concrete type of model learned
  */
 public class RANSAC<I, D, M extends EstimatableModel<I, D>> implements RobustModelFitting<I, D, M> {
+	/**
+	 * The default number of hypotheses evaluated together when running in
+	 * parallel
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 64;
+
 	/**
 	 * Interface for classes that can control RANSAC iterations
 	 */
@@ -334,6 +364,26 @@ public class RANSAC<I, D, M extends EstimatableModel<I, D>> implements RobustMod
 	protected StoppingCondition stoppingCondition;
 	protected List<? extends IndependentPair<I, D>> modelConstructionData;
 	protected CollectionSampler<IndependentPair<I, D>> sampler;
+	protected int preemptiveTests = 0;
+	protected ThreadPoolExecutor threadPool;
+	protected int batchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * A hypothesis being evaluated as part of a parallel batch
+	 */
+	private static class Hypothesis<I, D, M> {
+		M model;
+		List<? extends IndependentPair<I, D>> sample;
+		int[] tests;
+		boolean estimated;
+		int numInliers;
+		List<IndependentPair<I, D>> inliers = new ArrayList<IndependentPair<I, D>>();
+		List<IndependentPair<I, D>> outliers = new ArrayList<IndependentPair<I, D>>();
+
+		Hypothesis(M model) {
+			this.model = model;
+		}
+	}
 
 	/**
 	 * Create a RANSAC object with uniform random sampling for creating the
@@ -465,6 +515,9 @@ public class RANSAC<I, D, M extends EstimatableModel<I, D>> implements RobustMod
 
 		sampler.setCollection(data);
 
+		if (threadPool != null)
+			return fitDataParallel(data, M);
+
 		for (l = 0; l < nIter; l++) {
 			// 1
 			final List<? extends IndependentPair<I, D>> rnd = sampler.sample(M);
@@ -477,44 +530,177 @@ public class RANSAC<I, D, M extends EstimatableModel<I, D>> implements RobustMod
 			errorModel.setModel(model);
 
 			// 3
-			int K = 0;
-			inliers.clear();
-			outliers.clear();
-			for (final IndependentPair<I, D> dp : data) {
-				if (dc.check(errorModel.computeResidual(dp)))
-				{
-					K++;
-					inliers.add(dp);
-				} else {
-					outliers.add(dp);
-				}
-			}
+			final int K = evaluate(errorModel, data, selectTests(data.size()), inliers, outliers);
 
-			if (bestModelInliers == null || inliers.size() >= bestModelInliers.size()) {
+			if (K >= 0 && (bestModelInliers == null || K >= bestModelInliers.size())) {
 				// copy
 				bestModelInliers = new ArrayList<IndependentPair<I, D>>(inliers);
 				bestModelOutliers = new ArrayList<IndependentPair<I, D>>(outliers);
 			}
 
 			// 4
-			if (stoppingCondition.shouldStopIterations(K)) {
-				// generate "best" fit from all the iterations
-				inliers = bestModelInliers;
-				outliers = bestModelOutliers;
-
-				if (improveEstimate) {
-					if (inliers.size() >= model.numItemsToEstimate())
-						if (!model.estimate(inliers))
-							return false;
+			if (stoppingCondition.shouldStopIterations(Math.max(K, 0))) {
+				return stopIterations();
+			}
+			// 5
+			// ...repeat...
+		}
+
+		return finalFit(M);
+	}
+
+	/**
+	 * Fit the data by generating and scoring batches of hypotheses in parallel
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean fitDataParallel(final List<? extends IndependentPair<I, D>> data, final int M) {
+		final ThreadLocal<ResidualCalculator<I, D, M>> calculators = new ThreadLocal<ResidualCalculator<I, D, M>>() {
+			@Override
+			protected ResidualCalculator<I, D, M> initialValue() {
+				return new Cloner().deepClone(errorModel);
+			}
+		};
+
+		final List<Hypothesis<I, D, M>> batch = new ArrayList<Hypothesis<I, D, M>>(batchSize);
+		for (int i = 0; i < batchSize; i++)
+			batch.add(new Hypothesis<I, D, M>((M) model.clone()));
+
+		int l = 0;
+		while (l < nIter) {
+			final int n = Math.min(batchSize, nIter - l);
+
+			// 1 - sampling happens sequentially as samplers are stateful
+			for (int i = 0; i < n; i++) {
+				final Hypothesis<I, D, M> h = batch.get(i);
+				h.sample = sampler.sample(M);
+				h.tests = selectTests(data.size());
+			}
+
+			// 2 & 3
+			Parallel.forRange(0, n, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					final ResidualCalculator<I, D, M> calculator = calculators.get();
+
+					for (int i = range.start; i < range.stop; i += range.incr) {
+						final Hypothesis<I, D, M> h = batch.get(i);
+
+						h.estimated = h.model.estimate(h.sample);
+						if (!h.estimated)
+							continue; // bad estimate
+
+						calculator.setModel(h.model);
+						h.numInliers = evaluate(calculator, data, h.tests, h.inliers, h.outliers);
+					}
+				}
+			}, threadPool);
+
+			// 4 - consult the stopping condition in sampling order
+			for (int i = 0; i < n; i++) {
+				final Hypothesis<I, D, M> h = batch.get(i);
+				l++;
+
+				this.setModelConstructionData(h.sample);
+				if (!h.estimated)
+					continue;
+
+				final int K = h.numInliers;
+				if (K >= 0 && (bestModelInliers == null || K >= bestModelInliers.size())) {
+					// copy
+					bestModelInliers = new ArrayList<IndependentPair<I, D>>(h.inliers);
+					bestModelOutliers = new ArrayList<IndependentPair<I, D>>(h.outliers);
+				}
+
+				if (stoppingCondition.shouldStopIterations(Math.max(K, 0))) {
+					// leave the model in the same state as the sequential
+					// version would
+					if (!improveEstimate)
+						model.estimate(h.sample);
+
+					return stopIterations();
 				}
-				final boolean stopping = stoppingCondition.finalFitCondition(inliers.size());
-				// System.err.format("done: %b\n",stopping);
-				return stopping;
 			}
 			// 5
 			// ...repeat...
 		}
 
+		return finalFit(M);
+	}
+
+	/**
+	 * Select the indices of the data items used for the T(d,d) pre-test
+	 */
+	private int[] selectTests(int nData) {
+		if (preemptiveTests <= 0)
+			return null;
+
+		return RandomData.getUniqueRandomInts(Math.min(preemptiveTests, nData), 0, nData);
+	}
+
+	/**
+	 * Score the model currently set on the given {@link ResidualCalculator}
+	 * against the data. If the model fails the pre-test, -1 is returned.
+	 * Scoring stops as soon as the model has too many outliers to beat the
+	 * current best model, in which case the returned count is less than the
+	 * number of inliers of the best model.
+	 *
+	 * @return the number of inliers, or -1 if the pre-test failed
+	 */
+	private int evaluate(ResidualCalculator<I, D, M> calculator, List<? extends IndependentPair<I, D>> data,
+			int[] tests, List<IndependentPair<I, D>> in, List<IndependentPair<I, D>> out)
+	{
+		in.clear();
+		out.clear();
+
+		if (tests != null) {
+			for (final int t : tests) {
+				if (!dc.check(calculator.computeResidual(data.get(t))))
+					return -1;
+			}
+		}
+
+		// note that bestModelInliers is only ever updated between batches, so
+		// reading it from the worker threads is safe
+		final int maxOutliers = bestModelInliers == null ? data.size() : data.size() - bestModelInliers.size();
+		for (final IndependentPair<I, D> dp : data) {
+			if (dc.check(calculator.computeResidual(dp))) {
+				in.add(dp);
+			} else {
+				out.add(dp);
+
+				if (out.size() > maxOutliers)
+					break;
+			}
+		}
+
+		return in.size();
+	}
+
+	/**
+	 * Generate the final result when the stopping condition has been met
+	 */
+	private boolean stopIterations() {
+		// generate "best" fit from all the iterations
+		if (bestModelInliers == null) {
+			bestModelInliers = new ArrayList<IndependentPair<I, D>>();
+			bestModelOutliers = new ArrayList<IndependentPair<I, D>>();
+		}
+
+		inliers = bestModelInliers;
+		outliers = bestModelOutliers;
+
+		if (improveEstimate) {
+			if (inliers.size() >= model.numItemsToEstimate())
+				if (!model.estimate(inliers))
+					return false;
+		}
+		return stoppingCondition.finalFitCondition(inliers.size());
+	}
+
+	/**
+	 * Generate the final result when all the iterations have been used
+	 */
+	private boolean finalFit(int M) {
 		// generate "best" fit from all the iterations
 		if (bestModelInliers == null) {
 			bestModelInliers = new ArrayList<IndependentPair<I, D>>();
@@ -576,6 +762,81 @@ public class RANSAC<I, D, M extends EstimatableModel<I, D>> implements RobustMod
 		this.model = model;
 	}
 
+	/**
+	 * @return the number of randomly selected data items that must be inliers
+	 *         before a hypothesis is scored against all the data; 0 if the
+	 *         pre-test is disabled
+	 */
+	public int getPreemptiveTests() {
+		return preemptiveTests;
+	}
+
+	/**
+	 * Set the number of data items, <code>d</code>, used in the T(d,d)
+	 * pre-test. Before a hypothesis is scored against all the data,
+	 * <code>d</code> randomly selected items are checked; if any of them is an
+	 * outlier the hypothesis is rejected without further scoring. Small values
+	 * (typically 1) can greatly reduce the amount of residual computation when
+	 * there are many data items, at the cost of requiring more iterations.
+	 * Setting to 0 (the default) disables the pre-test.
+	 *
+	 * @param preemptiveTests
+	 *            the number of items in the pre-test
+	 */
+	@Reference(
+			type = ReferenceType.Article,
+			author = { "Matas, J.", "Chum, O." },
+			title = "Randomized RANSAC with T(d,d) test",
+			year = "2004",
+			journal = "Image and Vision Computing",
+			pages = { "837", "842" },
+			number = "10",
+			volume = "22")
+	public void setPreemptiveTests(int preemptiveTests) {
+		this.preemptiveTests = preemptiveTests;
+	}
+
+	/**
+	 * @return the thread pool used for evaluating hypotheses in parallel, or
+	 *         null if hypotheses are evaluated sequentially
+	 */
+	public ThreadPoolExecutor getThreadPool() {
+		return threadPool;
+	}
+
+	/**
+	 * Set the thread pool used for evaluating batches of hypotheses in
+	 * parallel. If the pool is <code>null</code> (the default) hypotheses are
+	 * evaluated sequentially.
+	 *
+	 * @param threadPool
+	 *            the thread pool
+	 */
+	public void setThreadPool(ThreadPoolExecutor threadPool) {
+		this.threadPool = threadPool;
+	}
+
+	/**
+	 * @return the number of hypotheses evaluated together when running in
+	 *         parallel
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Set the number of hypotheses evaluated together when running in
+	 * parallel. Larger batches give better utilisation of the thread pool, but
+	 * may result in more hypotheses being evaluated than necessary once the
+	 * stopping condition has been met.
+	 *
+	 * @param batchSize
+	 *            the batch size
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
 	/**
 	 * @return whether RANSAC should attempt to improve the model using all
 	 *         inliers as data
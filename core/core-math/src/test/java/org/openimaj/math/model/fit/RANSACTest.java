@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.model.fit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.math.model.LeastSquaresLinearModel;
+import org.openimaj.math.model.fit.RANSAC.BestFitStoppingCondition;
+import org.openimaj.math.model.fit.RANSAC.ProbabilisticMinInliersStoppingCondition;
+import org.openimaj.math.model.fit.residuals.ResidualCalculator;
+import org.openimaj.util.PROSACSampler;
+import org.openimaj.util.pair.IndependentPair;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link RANSAC} using a simple line model
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class RANSACTest {
+	private static final int N_INLIERS = 200;
+	private static final int N_OUTLIERS = 100;
+
+	/**
+	 * Absolute difference between the predicted and actual value
+	 */
+	static class LineResidual implements ResidualCalculator<Integer, Integer, LeastSquaresLinearModel> {
+		LeastSquaresLinearModel model;
+
+		@Override
+		public void setModel(LeastSquaresLinearModel model) {
+			this.model = model;
+		}
+
+		@Override
+		public double computeResidual(IndependentPair<Integer, Integer> data) {
+			return Math.abs(model.predict(data.firstObject()) - data.secondObject());
+		}
+
+		@Override
+		public void computeResiduals(List<? extends IndependentPair<Integer, Integer>> data, double[] residuals) {
+			for (int i = 0; i < data.size(); i++)
+				residuals[i] = computeResidual(data.get(i));
+		}
+	}
+
+	private List<IndependentPair<Integer, Integer>> data;
+
+	/**
+	 * Create points on the line y = 2x + 3, followed by random outliers
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(42);
+		data = new ArrayList<IndependentPair<Integer, Integer>>();
+
+		for (int i = 0; i < N_INLIERS; i++)
+			data.add(IndependentPair.pair(i, 2 * i + 3));
+
+		for (int i = 0; i < N_OUTLIERS; i++) {
+			final int x = rng.nextInt(N_INLIERS);
+			data.add(IndependentPair.pair(x, 2 * x + 3 + 10 + rng.nextInt(1000)));
+		}
+	}
+
+	private RANSAC<Integer, Integer, LeastSquaresLinearModel> createRANSAC() {
+		return new RANSAC<Integer, Integer, LeastSquaresLinearModel>(new LeastSquaresLinearModel(),
+				new LineResidual(), 0.5, 100, new BestFitStoppingCondition(), true);
+	}
+
+	private void checkFit(RANSAC<Integer, Integer, LeastSquaresLinearModel> ransac) {
+		assertTrue(ransac.fitData(data));
+		assertEquals(2, ransac.getModel().getM(), 1e-6);
+		assertEquals(3, ransac.getModel().getC(), 1e-6);
+		assertEquals(N_INLIERS, ransac.getInliers().size());
+		assertEquals(N_OUTLIERS, ransac.getOutliers().size());
+	}
+
+	/**
+	 * Test the default sequential fitting
+	 */
+	@Test
+	public void testSequential() {
+		checkFit(createRANSAC());
+	}
+
+	/**
+	 * Test fitting with batches of hypotheses evaluated in parallel
+	 */
+	@Test
+	public void testParallel() {
+		final RANSAC<Integer, Integer, LeastSquaresLinearModel> ransac = createRANSAC();
+		ransac.setThreadPool(GlobalExecutorPool.getPool());
+		ransac.setBatchSize(7);
+
+		checkFit(ransac);
+	}
+
+	/**
+	 * Test fitting with the T(1,1) pre-test
+	 */
+	@Test
+	public void testPreemptive() {
+		final RANSAC<Integer, Integer, LeastSquaresLinearModel> ransac = createRANSAC();
+		ransac.setPreemptiveTests(1);
+
+		checkFit(ransac);
+
+		ransac.setThreadPool(GlobalExecutorPool.getPool());
+		checkFit(ransac);
+	}
+
+	/**
+	 * Test that PROSAC sampling of quality-ordered data finds the model
+	 * quickly
+	 */
+	@Test
+	public void testPROSAC() {
+		final PROSACSampler<IndependentPair<Integer, Integer>> sampler = new PROSACSampler<IndependentPair<Integer, Integer>>();
+		sampler.setCollection(data);
+
+		// the first sample is always the top ranked items
+		final List<IndependentPair<Integer, Integer>> first = sampler.sample(2);
+		assertTrue(first.contains(data.get(0)));
+		assertTrue(first.contains(data.get(1)));
+
+		final RANSAC<Integer, Integer, LeastSquaresLinearModel> ransac = new RANSAC<Integer, Integer, LeastSquaresLinearModel>(
+				new LeastSquaresLinearModel(), new LineResidual(), 0.5, 100,
+				new ProbabilisticMinInliersStoppingCondition(0.01), true, sampler);
+
+		checkFit(ransac);
+		assertTrue(sampler.getPoolSize() < data.size());
+	}
+}
@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.data.dataset;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * A view of a {@link ListDataset} whose iterator reads the upcoming instances
+ * in the background. This is useful for datasets like the
+ * {@link VFSListDataset} where reading an instance involves I/O and decoding
+ * (for example reading a JPEG from a zip file), as it allows the reading to
+ * be overlapped with the processing of the instances by the consumer.
+ * <p>
+ * The iterator submits the reading of the next <code>prefetch</code> instances
+ * to a thread pool, and returns them in order. At most <code>prefetch</code>
+ * instances are held in memory at any time. If an instance is requested
+ * before the pool has started reading it, it is read on the calling thread
+ * instead, so the iterator can safely be consumed from within the same pool
+ * that performs the reading.
+ * <p>
+ * Random access through {@link #getInstance(int)} is passed straight through
+ * to the underlying dataset. The underlying dataset must support concurrent
+ * calls to {@link #getInstance(int)}; for a {@link VFSListDataset} backed by an
+ * archive, consider enabling
+ * {@link VFSListDataset#setPerThreadFileSystems(boolean)} so that the reads
+ * don't contend on a single file handle.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <INSTANCE>
+ *            The type of instance in the dataset
+ */
+public class PrefetchingListDataset<INSTANCE> extends AbstractList<INSTANCE> implements ListDataset<INSTANCE> {
+	/**
+	 * The default number of instances to read ahead
+	 */
+	public static final int DEFAULT_PREFETCH = 2 * Runtime.getRuntime().availableProcessors();
+
+	private ListDataset<INSTANCE> dataset;
+	private int prefetch;
+	private ThreadPoolExecutor pool;
+
+	/**
+	 * Construct a view of the given dataset that reads {@link #DEFAULT_PREFETCH}
+	 * instances ahead using the {@link GlobalExecutorPool}.
+	 * 
+	 * @param dataset
+	 *            the dataset
+	 */
+	public PrefetchingListDataset(ListDataset<INSTANCE> dataset) {
+		this(dataset, DEFAULT_PREFETCH, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Construct a view of the given dataset that reads the given number of
+	 * instances ahead using the given pool.
+	 * 
+	 * @param dataset
+	 *            the dataset
+	 * @param prefetch
+	 *            the maximum number of instances to read ahead
+	 * @param pool
+	 *            the pool with which to read the instances
+	 */
+	public PrefetchingListDataset(ListDataset<INSTANCE> dataset, int prefetch, ThreadPoolExecutor pool) {
+		if (prefetch < 1)
+			throw new IllegalArgumentException("prefetch must be at least 1");
+
+		this.dataset = dataset;
+		this.prefetch = prefetch;
+		this.pool = pool;
+	}
+
+	/**
+	 * Create a view of a grouped dataset in which each group is wrapped in a
+	 * {@link PrefetchingListDataset}.
+	 * 
+	 * @param dataset
+	 *            the grouped dataset
+	 * @param prefetch
+	 *            the maximum number of instances to read ahead in each group
+	 * @param pool
+	 *            the pool with which to read the instances
+	 * @return the prefetching view of the grouped dataset
+	 */
+	public static <KEY, INSTANCE> MapBackedDataset<KEY, ListDataset<INSTANCE>, INSTANCE> wrap(
+			GroupedDataset<KEY, ? extends ListDataset<INSTANCE>, INSTANCE> dataset, int prefetch,
+			ThreadPoolExecutor pool)
+	{
+		final Map<KEY, ListDataset<INSTANCE>> map = new LinkedHashMap<KEY, ListDataset<INSTANCE>>();
+
+		for (final Entry<KEY, ? extends ListDataset<INSTANCE>> e : dataset.entrySet())
+			map.put(e.getKey(), new PrefetchingListDataset<INSTANCE>(e.getValue(), prefetch, pool));
+
+		return new MapBackedDataset<KEY, ListDataset<INSTANCE>, INSTANCE>(map);
+	}
+
+	@Override
+	public INSTANCE getRandomInstance() {
+		return dataset.getRandomInstance();
+	}
+
+	@Override
+	public int numInstances() {
+		return dataset.numInstances();
+	}
+
+	@Override
+	public INSTANCE getInstance(int index) {
+		return dataset.getInstance(index);
+	}
+
+	@Override
+	public INSTANCE get(int index) {
+		return dataset.getInstance(index);
+	}
+
+	@Override
+	public int size() {
+		return dataset.numInstances();
+	}
+
+	@Override
+	public Iterator<INSTANCE> iterator() {
+		return new PrefetchingIterator();
+	}
+
+	private class PrefetchingIterator implements Iterator<INSTANCE> {
+		private final LinkedList<FutureTask<INSTANCE>> queue = new LinkedList<FutureTask<INSTANCE>>();
+		private final int size = dataset.numInstances();
+		private int nextIndex = 0;
+
+		PrefetchingIterator() {
+			while (queue.size() < prefetch && nextIndex < size)
+				submit();
+		}
+
+		private void submit() {
+			final int index = nextIndex++;
+			final FutureTask<INSTANCE> task = new FutureTask<INSTANCE>(new Callable<INSTANCE>() {
+				@Override
+				public INSTANCE call() throws Exception {
+					return dataset.getInstance(index);
+				}
+			});
+
+			queue.add(task);
+
+			if (pool != null) {
+				try {
+					pool.execute(task);
+				} catch (final RejectedExecutionException e) {
+					// the task will be run by the consumer
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !queue.isEmpty();
+		}
+
+		@Override
+		public INSTANCE next() {
+			if (queue.isEmpty())
+				throw new NoSuchElementException();
+
+			final FutureTask<INSTANCE> task = queue.removeFirst();
+
+			if (nextIndex < size)
+				submit();
+
+			// reads the instance on this thread if the pool hasn't started it
+			task.run();
+
+			try {
+				return task.get();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (final ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s(%s)", this.getClass().getName(), dataset);
+	}
+}
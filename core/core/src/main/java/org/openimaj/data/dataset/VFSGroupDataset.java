@@ -180,6 +180,19 @@ public class VFSGroupDataset<INSTANCE>
 		return directoryInfo.get(key);
 	}
 
+	/**
+	 * Enable or disable per-thread file systems for all the groups.
+	 * 
+	 * @see VFSListDataset#setPerThreadFileSystems(boolean)
+	 * @param enabled
+	 *            true to enable per-thread file systems; false to use the
+	 *            shared file system
+	 */
+	public void setPerThreadFileSystems(boolean enabled) {
+		for (final VFSListDataset<INSTANCE> list : files.values())
+			list.setPerThreadFileSystems(enabled);
+	}
+
 	@Override
 	public String toString() {
 		return String.format("%s(%d groups with a total of %d instances)", this.getClass().getName(), this.size(),
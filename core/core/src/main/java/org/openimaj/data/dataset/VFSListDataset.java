@@ -32,6 +32,7 @@ package org.openimaj.data.dataset;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import org.apache.commons.vfs2.FileContent;
 import org.apache.commons.vfs2.FileObject;
@@ -41,11 +42,11 @@ import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileSystemManager;
 import org.apache.commons.vfs2.FileType;
 import org.apache.commons.vfs2.VFS;
+import org.apache.commons.vfs2.impl.StandardFileSystemManager;
 import org.openimaj.data.identity.Identifiable;
 import org.openimaj.io.IOUtils;
 import org.openimaj.io.InputStreamObjectReader;
 import org.openimaj.io.ObjectReader;
-import org.openimaj.util.array.ArrayIterator;
 
 /**
  * A {@link ListDataset} backed by a directory of items (either locally or
@@ -72,6 +73,13 @@ import org.openimaj.util.array.ArrayIterator;
  * ListDataset&lt;FImage&gt; dataset = new VFSListDataset&lt;FImage&gt;(
  * 		&quot;zip:http://localhost/&tilde;jsh2/thumbnails.zip&quot;, ImageUtilities.FIMAGE_READER);
  * </pre>
+ * <p>
+ * By default all reads go through the shared VFS file system, so concurrent
+ * reads from an archive contend on a single file handle. If instances are to
+ * be read from many threads at once (for example through a
+ * {@link PrefetchingListDataset}), use
+ * {@link #setPerThreadFileSystems(boolean)} to give each thread its own
+ * handle.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
@@ -138,8 +146,22 @@ public class VFSListDataset<INSTANCE> extends ReadableListDataset<INSTANCE, File
 
 	}
 
+	private static final ThreadLocal<StandardFileSystemManager> THREAD_MANAGERS = new ThreadLocal<StandardFileSystemManager>() {
+		@Override
+		protected StandardFileSystemManager initialValue() {
+			try {
+				final StandardFileSystemManager manager = new StandardFileSystemManager();
+				manager.init();
+				return manager;
+			} catch (final FileSystemException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	};
+
 	private FileObject[] files;
 	private FileObject base;
+	private transient ThreadLocal<FileObject> threadBase;
 
 	/**
 	 * Construct a list dataset from any virtual file system source (local
@@ -218,10 +240,51 @@ public class VFSListDataset<INSTANCE> extends ReadableListDataset<INSTANCE, File
 		return files[index];
 	}
 
+	/**
+	 * Enable or disable per-thread file systems. When enabled, each thread
+	 * that reads from the dataset resolves the files through its own VFS
+	 * file system manager, and thus has its own handle on the underlying
+	 * storage (for example its own open zip file). This allows instances to
+	 * be read concurrently without contention, at the cost of opening the
+	 * storage once per thread. The handles remain open for the lifetime of the
+	 * threads, so this is best used with a fixed thread pool.
+	 * 
+	 * @param enabled
+	 *            true to enable per-thread file systems; false to use the
+	 *            shared file system
+	 */
+	public void setPerThreadFileSystems(boolean enabled) {
+		if (!enabled) {
+			threadBase = null;
+		} else if (threadBase == null) {
+			final String uri = base.getName().getURI();
+
+			threadBase = new ThreadLocal<FileObject>() {
+				@Override
+				protected FileObject initialValue() {
+					try {
+						return THREAD_MANAGERS.get().resolveFile(uri);
+					} catch (final FileSystemException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			};
+		}
+	}
+
+	/**
+	 * @return true if each thread reads through its own file system; false
+	 *         otherwise.
+	 * @see #setPerThreadFileSystems(boolean)
+	 */
+	public boolean isPerThreadFileSystems() {
+		return threadBase != null;
+	}
+
 	@Override
 	public INSTANCE getInstance(int index) {
 		try {
-			return read(files[index]);
+			return read(index);
 		} catch (final IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -234,24 +297,32 @@ public class VFSListDataset<INSTANCE> extends ReadableListDataset<INSTANCE, File
 		return files.length;
 	}
 
-	private INSTANCE read(FileObject file) throws IOException {
-		return reader.read(file);
+	private INSTANCE read(int index) throws IOException {
+		final ThreadLocal<FileObject> tb = threadBase;
+
+		if (tb == null)
+			return reader.read(files[index]);
+
+		return reader.read(tb.get().resolveFile(getID(index)));
 	}
 
 	@Override
 	public Iterator<INSTANCE> iterator() {
 		return new Iterator<INSTANCE>() {
-			ArrayIterator<FileObject> filesIterator = new ArrayIterator<FileObject>(files);
+			int index = 0;
 
 			@Override
 			public boolean hasNext() {
-				return filesIterator.hasNext();
+				return files != null && index < files.length;
 			}
 
 			@Override
 			public INSTANCE next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+
 				try {
-					return read(filesIterator.next());
+					return read(index++);
 				} catch (final IOException e) {
 					throw new RuntimeException(e);
 				}
@@ -259,7 +330,7 @@ public class VFSListDataset<INSTANCE> extends ReadableListDataset<INSTANCE, File
 
 			@Override
 			public void remove() {
-				filesIterator.remove();
+				throw new UnsupportedOperationException("Cannot remove from an array");
 			}
 		};
 	}
@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+import org.openimaj.data.RandomData;
+
+/**
+ * Implementation of the PROSAC (PROgressive SAmple Consensus) sampling
+ * strategy. The collection given to {@link #setCollection(Collection)} is
+ * assumed to be ordered by decreasing quality (i.e. the items most likely to
+ * be inliers, such as the matches with the smallest descriptor distance, come
+ * first). Samples are initially drawn from the top few items, and the pool
+ * from which they are drawn grows progressively until, after
+ * <code>maxSamples</code> draws, the sampler behaves exactly like a
+ * {@link UniformSampler}.
+ * <p>
+ * Each sampled set is sampled without replacement (i.e. an item will only
+ * appear once). The sampler is stateful; calling
+ * {@link #setCollection(Collection)} resets the growth schedule.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <T>
+ *            type of items in the collection being sampled
+ */
+@Reference(
+		type = ReferenceType.Inproceedings,
+		author = { "Chum, O.", "Matas, J." },
+		title = "Matching with PROSAC - progressive sample consensus",
+		year = "2005",
+		booktitle = "Computer Vision and Pattern Recognition, 2005. CVPR 2005. IEEE Computer Society Conference on",
+		pages = { "220", "226 vol. 1" },
+		volume = "1")
+public class PROSACSampler<T> implements CollectionSampler<T> {
+	/**
+	 * The default number of samples after which PROSAC degenerates to uniform
+	 * sampling
+	 */
+	public static final int DEFAULT_MAX_SAMPLES = 200000;
+
+	private List<T> data;
+	private int maxSamples;
+
+	private int sampleSize;
+	private int t;
+	private int n;
+	private double Tn;
+	private int TnPrime;
+
+	/**
+	 * Construct with the default number of samples after which the sampling
+	 * becomes uniform.
+	 */
+	public PROSACSampler() {
+		this(DEFAULT_MAX_SAMPLES);
+	}
+
+	/**
+	 * Construct with the given number of samples after which the sampling
+	 * becomes uniform.
+	 * 
+	 * @param maxSamples
+	 *            the number of samples after which PROSAC draws uniformly from
+	 *            the whole collection
+	 */
+	public PROSACSampler(int maxSamples) {
+		this.maxSamples = maxSamples;
+	}
+
+	@Override
+	public void setCollection(Collection<? extends T> collection) {
+		this.data = new ArrayList<T>(collection);
+		this.sampleSize = -1;
+	}
+
+	private void reset(int m) {
+		final int N = data.size();
+
+		sampleSize = m;
+		t = 0;
+		n = m;
+		TnPrime = 1;
+
+		// T_m = maxSamples * prod_{i=0}^{m-1} (m - i) / (N - i)
+		Tn = maxSamples;
+		for (int i = 0; i < m; i++)
+			Tn *= (double) (m - i) / (double) (N - i);
+	}
+
+	@Override
+	public List<T> sample(int nItems) {
+		final int N = data.size();
+
+		if (nItems > N)
+			return null;
+
+		if (nItems != sampleSize)
+			reset(nItems);
+
+		t++;
+
+		// grow the sampling pool according to the schedule
+		while (t > TnPrime && n < N) {
+			final double Tn1 = Tn * (n + 1) / (n + 1 - nItems);
+			TnPrime += (int) Math.ceil(Tn1 - Tn);
+			Tn = Tn1;
+			n++;
+		}
+
+		final List<T> out = new ArrayList<T>(nItems);
+		if (t > TnPrime) {
+			// the pool covers the whole collection; draw uniformly
+			for (final int i : RandomData.getUniqueRandomInts(nItems, 0, n))
+				out.add(data.get(i));
+		} else {
+			// the newest item of the pool plus nItems - 1 from the rest
+			for (final int i : RandomData.getUniqueRandomInts(nItems - 1, 0, n - 1))
+				out.add(data.get(i));
+			out.add(data.get(n - 1));
+		}
+
+		return out;
+	}
+
+	/**
+	 * Get the current size of the pool of top-ranked items from which samples
+	 * are drawn
+	 * 
+	 * @return the size of the sampling pool
+	 */
+	public int getPoolSize() {
+		return n;
+	}
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.data.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link PrefetchingListDataset}.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ */
+public class PrefetchingListDatasetTest {
+	/**
+	 * A dataset that records how many instances have been read
+	 */
+	static class CountingDataset extends ListBackedDataset<Integer> {
+		AtomicInteger reads = new AtomicInteger();
+
+		CountingDataset(int size) {
+			super(new ArrayList<Integer>());
+			for (int i = 0; i < size; i++)
+				data.add(i);
+		}
+
+		@Override
+		public Integer getInstance(int index) {
+			reads.incrementAndGet();
+			if (index == 13)
+				Thread.yield();
+			return super.getInstance(index);
+		}
+	}
+
+	private static ThreadPoolExecutor createPool(int threads) {
+		return new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+	}
+
+	/**
+	 * Test that the iterator returns the instances in order, and never reads
+	 * more than the prefetch distance ahead of the consumer
+	 */
+	@Test
+	public void testOrderAndBound() {
+		final ThreadPoolExecutor pool = createPool(4);
+
+		try {
+			for (final int prefetch : new int[] { 1, 3, 16 }) {
+				final CountingDataset data = new CountingDataset(100);
+				final PrefetchingListDataset<Integer> ds = new PrefetchingListDataset<Integer>(data, prefetch, pool);
+
+				int expected = 0;
+				for (final Integer i : ds) {
+					assertEquals(expected++, (int) i);
+					assertTrue(data.reads.get() <= expected + prefetch);
+				}
+
+				assertEquals(100, expected);
+				assertEquals(100, data.reads.get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Test that the iterator can be consumed from within the pool that does
+	 * the reading without deadlocking, and works without a pool
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testConsumeFromPool() throws Exception {
+		final ThreadPoolExecutor pool = createPool(1);
+
+		try {
+			final PrefetchingListDataset<Integer> ds = new PrefetchingListDataset<Integer>(new CountingDataset(50), 8,
+					pool);
+
+			final List<Integer> out = pool.submit(new Callable<List<Integer>>() {
+				@Override
+				public List<Integer> call() {
+					final List<Integer> list = new ArrayList<Integer>();
+					for (final Integer i : ds)
+						list.add(i);
+					return list;
+				}
+			}).get(10, TimeUnit.SECONDS);
+
+			assertEquals(50, out.size());
+			for (int i = 0; i < out.size(); i++)
+				assertEquals(i, (int) out.get(i));
+		} finally {
+			pool.shutdown();
+		}
+
+		final Iterator<Integer> iter = new PrefetchingListDataset<Integer>(new CountingDataset(3), 2, null).iterator();
+		assertEquals(0, (int) iter.next());
+		assertEquals(1, (int) iter.next());
+		assertEquals(2, (int) iter.next());
+		assertFalse(iter.hasNext());
+	}
+
+	/**
+	 * Test that errors reading an instance are passed to the consumer
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testException() {
+		final ListBackedDataset<Integer> data = new ListBackedDataset<Integer>(new ArrayList<Integer>()) {
+			@Override
+			public Integer getInstance(int index) {
+				throw new IllegalStateException();
+			}
+
+			@Override
+			public int numInstances() {
+				return 5;
+			}
+		};
+
+		final ThreadPoolExecutor pool = createPool(2);
+		try {
+			new PrefetchingListDataset<Integer>(data, 2, pool).iterator().next();
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -34,12 +34,15 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
+import org.openimaj.hadoop.mapreduce.local.LocalJobExecutor;
 import org.openimaj.hadoop.mapreduce.stage.Stage;
 
 /**
  * A StageRunner provides the various components to run an individual stage.
  * StageRunners get given the the arguments of tools and must provide the inputs of jobs,
  * the job output location and the actual stage which will provide the job.
+ * If {@link LocalJobExecutor#LOCAL_MODE} is set in the configuration the stage
+ * is run in-process with a {@link LocalJobExecutor}.
  * 
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
  *
@@ -50,7 +53,10 @@ public abstract class StageRunner extends Configured implements Tool{
 		args(args);
 		Stage<?, ?, ?, ?, ?, ?, ?, ?> thestage = stage();
 		Job job = thestage.stage(inputs(), output(),this.getConf());
-		if(shouldWait()){
+		if(LocalJobExecutor.isEnabled(job.getConfiguration())){
+			thestage.finished(new LocalJobExecutor(job.getConfiguration()).run(job));
+		}
+		else if(shouldWait()){
 			job.waitForCompletion(true);
 			thestage.finished(job);
 		}
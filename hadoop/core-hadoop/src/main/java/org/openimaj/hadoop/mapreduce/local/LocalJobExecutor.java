@@ -0,0 +1,376 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.mapreduce.local;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.MapContext;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.ReduceContext;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.TaskID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.lib.reduce.WrappedReducer;
+import org.apache.hadoop.mapreduce.task.JobContextImpl;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.apache.hadoop.mapreduce.task.ReduceContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.log4j.Logger;
+import org.openimaj.hadoop.mapreduce.stage.IdentityReducer;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+
+/**
+ * Runs a configured mapreduce {@link Job} inside the current JVM, spreading
+ * the map tasks (one per input split) and the reduce tasks (one per
+ * partition) over the local cores. Map output is sorted, combined and
+ * partitioned exactly as the job specifies, using the job's serialisers and
+ * raw comparators; sorted runs are held in memory where the memory budget
+ * allows and spilled to a local temporary directory otherwise, and are then
+ * merged for each reducer. The job's input and output formats and output
+ * committer are used unchanged, so the output is identical to that produced
+ * on a cluster.
+ * <p>
+ * Local execution is switched on by setting {@link #LOCAL_MODE} in the job
+ * configuration (for example with <code>-D openimaj.hadoop.local=true</code>
+ * on the command line of any tool run through the
+ * {@link org.apache.hadoop.util.ToolRunner}). Note that, as with the
+ * {@link org.apache.hadoop.mapreduce.lib.map.MultithreadedMapper}, several
+ * mapper and reducer instances run concurrently in the same JVM, so they
+ * must not share mutable static state. The distributed cache is not
+ * populated, and framework counters other than the record counts are not
+ * maintained.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class LocalJobExecutor {
+	private static final Logger logger = Logger.getLogger(LocalJobExecutor.class);
+
+	/**
+	 * Configuration key which enables local execution
+	 */
+	public static final String LOCAL_MODE = "openimaj.hadoop.local";
+
+	/**
+	 * Configuration key for the number of concurrent tasks; defaults to the
+	 * number of processors
+	 */
+	public static final String THREADS = "openimaj.hadoop.local.threads";
+
+	/**
+	 * Configuration key for the size (in megabytes) of the per-task buffer of
+	 * map output which is sorted before being spilled
+	 */
+	public static final String SORT_MB = "openimaj.hadoop.local.sort.mb";
+
+	/**
+	 * Configuration key for the total amount of memory (in megabytes) used to
+	 * hold sorted map output between the map and reduce phases; map output
+	 * which doesn't fit is spilled to disk
+	 */
+	public static final String MEMORY_MB = "openimaj.hadoop.local.memory.mb";
+
+	/**
+	 * Configuration key for the directory in which spill files are written;
+	 * defaults to <code>java.io.tmpdir</code>
+	 */
+	public static final String TMP_DIR = "openimaj.hadoop.local.tmp";
+
+	/**
+	 * Default value of {@link #SORT_MB}
+	 */
+	public static final int DEFAULT_SORT_MB = 64;
+
+	/**
+	 * Default value of {@link #MEMORY_MB}
+	 */
+	public static final int DEFAULT_MEMORY_MB = 256;
+
+	private static final Random random = new Random();
+
+	private final Configuration conf;
+	private final int threads;
+
+	/**
+	 * Construct an executor configured from the given {@link Configuration}.
+	 * 
+	 * @param conf
+	 *            the configuration
+	 */
+	public LocalJobExecutor(Configuration conf) {
+		this.conf = conf;
+		this.threads = Math.max(1, conf.getInt(THREADS, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Determine whether local execution has been requested in the given
+	 * configuration.
+	 * 
+	 * @param conf
+	 *            the configuration
+	 * @return true if jobs should be run with a {@link LocalJobExecutor}
+	 */
+	public static boolean isEnabled(Configuration conf) {
+		return conf.getBoolean(LOCAL_MODE, false);
+	}
+
+	/**
+	 * Run the given job to completion. The returned {@link Job} reports the
+	 * job as complete and successful, and holds the counters accumulated by
+	 * all the tasks; it can be handed to
+	 * {@link org.openimaj.hadoop.mapreduce.stage.Stage#finished(Job)}.
+	 * 
+	 * @param job
+	 *            the job to run
+	 * @return the completed job
+	 * @throws Exception
+	 *             if the job fails
+	 */
+	public Job run(Job job) throws Exception {
+		final JobConf jobConf = new JobConf(job.getConfiguration());
+		final JobID jobId = new JobID("local" + Math.abs(random.nextInt()), 1);
+		final JobContext jobContext = new JobContextImpl(jobConf, jobId);
+
+		final OutputFormat<?, ?> outputFormat = ReflectionUtils.newInstance(jobContext.getOutputFormatClass(), jobConf);
+		outputFormat.checkOutputSpecs(jobContext);
+
+		final TaskAttemptContext setupContext = new TaskAttemptContextImpl(jobConf,
+				new TaskAttemptID(new TaskID(jobId, TaskType.JOB_SETUP, 0), 0));
+		final OutputCommitter committer = outputFormat.getOutputCommitter(setupContext);
+		committer.setupJob(jobContext);
+
+		final Counters counters = new Counters();
+		final ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(threads,
+				new GlobalExecutorPool.DaemonThreadFactory());
+		Shuffle shuffle = null;
+		try {
+			final InputFormat<?, ?> inputFormat = ReflectionUtils.newInstance(jobContext.getInputFormatClass(), jobConf);
+			final List<InputSplit> splits = inputFormat.getSplits(jobContext);
+			final int numReduces = jobContext.getNumReduceTasks();
+
+			if (numReduces > 0) {
+				final File tmpDir = new File(jobConf.get(TMP_DIR, System.getProperty("java.io.tmpdir")));
+				shuffle = new Shuffle(numReduces, tmpDir, jobConf.getLong(MEMORY_MB, DEFAULT_MEMORY_MB) << 20);
+			}
+
+			logger.info("Running " + jobContext.getJobName() + " locally: " + splits.size() + " map tasks, "
+					+ numReduces + " reduce tasks, " + threads + " threads");
+
+			final Shuffle mapShuffle = shuffle;
+			runTasks(splits.size(), new TaskRunner() {
+				@Override
+				public Counters run(int task) throws Exception {
+					return runMap(jobContext, task, splits.get(task), mapShuffle);
+				}
+			}, counters, pool);
+
+			if (numReduces > 0) {
+				runTasks(numReduces, new TaskRunner() {
+					@Override
+					public Counters run(int task) throws Exception {
+						return runReduce(jobContext, task, mapShuffle);
+					}
+				}, counters, pool);
+			}
+
+			committer.commitJob(jobContext);
+		} catch (final Exception e) {
+			committer.abortJob(jobContext, JobStatus.State.FAILED);
+			throw e;
+		} finally {
+			pool.shutdown();
+			if (shuffle != null)
+				shuffle.close();
+		}
+
+		return new LocalJob(jobConf, counters);
+	}
+
+	private interface TaskRunner {
+		Counters run(int task) throws Exception;
+	}
+
+	private void runTasks(int numTasks, final TaskRunner runner, final Counters counters, ThreadPoolExecutor pool)
+			throws Exception
+	{
+		final Throwable[] errors = new Throwable[numTasks];
+		Parallel.forIndex(0, numTasks, 1, new Operation<Integer>() {
+			@Override
+			public void perform(Integer i) {
+				try {
+					final Counters taskCounters = runner.run(i);
+					synchronized (counters) {
+						counters.incrAllCounters(taskCounters);
+					}
+				} catch (final Throwable t) {
+					// don't throw here, as the parallel loop would never
+					// complete
+					errors[i] = t;
+				}
+			}
+		}, pool);
+
+		for (final Throwable t : errors) {
+			if (t instanceof Exception)
+				throw (Exception) t;
+			if (t instanceof Error)
+				throw (Error) t;
+		}
+	}
+
+	private static TaskAttemptID attemptId(JobContext jobContext, TaskType type, int task) {
+		return new TaskAttemptID(new TaskID(jobContext.getJobID(), type, task), 0);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Counters runMap(JobContext jobContext, int task, InputSplit split, Shuffle shuffle) throws Exception {
+		final Counters counters = new Counters();
+		final LocalStatusReporter reporter = new LocalStatusReporter(counters);
+		final JobConf taskConf = new JobConf(jobContext.getConfiguration());
+		final TaskAttemptID attemptId = attemptId(jobContext, TaskType.MAP, task);
+		final TaskAttemptContext context = new TaskAttemptContextImpl(taskConf, attemptId, reporter);
+
+		final InputFormat inputFormat = ReflectionUtils.newInstance(jobContext.getInputFormatClass(), taskConf);
+		final RecordReader reader = inputFormat.createRecordReader(split, context);
+		reader.initialize(split, context);
+
+		OutputCommitter committer = null;
+		final RecordWriter writer;
+		if (shuffle == null) {
+			// map-only jobs write directly to the output format
+			final OutputFormat outputFormat = ReflectionUtils.newInstance(jobContext.getOutputFormatClass(),
+					taskConf);
+			committer = outputFormat.getOutputCommitter(context);
+			committer.setupTask(context);
+			writer = outputFormat.getRecordWriter(context);
+		} else {
+			Class<? extends Reducer> combinerClass = jobContext.getCombinerClass();
+			if (combinerClass == IdentityReducer.class)
+				combinerClass = null;
+
+			writer = new MapOutputBuffer(shuffle, task,
+					ReflectionUtils.newInstance(jobContext.getPartitionerClass(), taskConf),
+					jobContext.getSortComparator(), combinerClass, context, reporter,
+					jobContext.getMapOutputKeyClass(), jobContext.getMapOutputValueClass(),
+					taskConf.getInt(SORT_MB, DEFAULT_SORT_MB) << 20);
+		}
+
+		final Mapper mapper = ReflectionUtils.newInstance(jobContext.getMapperClass(), taskConf);
+		final MapContext mapContext = new MapContextImpl(taskConf, attemptId, reader, writer, committer, reporter,
+				split);
+
+		try {
+			try {
+				mapper.run(new WrappedMapper().getMapContext(mapContext));
+			} finally {
+				reader.close();
+			}
+			writer.close(context);
+		} catch (final Exception e) {
+			if (committer != null)
+				committer.abortTask(context);
+			throw e;
+		}
+
+		if (committer != null && committer.needsTaskCommit(context))
+			committer.commitTask(context);
+
+		return counters;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Counters runReduce(JobContext jobContext, int partition, Shuffle shuffle) throws Exception {
+		final Counters counters = new Counters();
+		final LocalStatusReporter reporter = new LocalStatusReporter(counters);
+		final JobConf taskConf = new JobConf(jobContext.getConfiguration());
+		final TaskAttemptID attemptId = attemptId(jobContext, TaskType.REDUCE, partition);
+		final TaskAttemptContext context = new TaskAttemptContextImpl(taskConf, attemptId, reporter);
+
+		final List<Segment> segments = shuffle.take(partition);
+		long memory = 0;
+		for (final Segment s : segments)
+			memory += s.memory();
+
+		final MergingIterator input = new MergingIterator(segments, jobContext.getSortComparator());
+		try {
+			final OutputFormat outputFormat = ReflectionUtils.newInstance(jobContext.getOutputFormatClass(), taskConf);
+			final OutputCommitter committer = outputFormat.getOutputCommitter(context);
+			committer.setupTask(context);
+
+			try {
+				final RecordWriter writer = outputFormat.getRecordWriter(context);
+				final Reducer reducer = ReflectionUtils.newInstance(jobContext.getReducerClass(), taskConf);
+				final ReduceContext reduceContext = new ReduceContextImpl(taskConf, attemptId, input,
+						reporter.getCounter(TaskCounter.REDUCE_INPUT_GROUPS),
+						reporter.getCounter(TaskCounter.REDUCE_INPUT_RECORDS), writer, committer, reporter,
+						jobContext.getGroupingComparator(), jobContext.getMapOutputKeyClass(),
+						jobContext.getMapOutputValueClass());
+
+				reducer.run(new WrappedReducer().getReducerContext(reduceContext));
+				writer.close(context);
+			} catch (final Exception e) {
+				committer.abortTask(context);
+				throw e;
+			}
+
+			if (committer.needsTaskCommit(context))
+				committer.commitTask(context);
+		} finally {
+			input.close();
+			shuffle.release(memory);
+		}
+
+		return counters;
+	}
+}
@@ -0,0 +1,353 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.mapreduce.local;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.io.serializer.SerializationFactory;
+import org.apache.hadoop.io.serializer.Serializer;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.counters.GenericCounter;
+import org.apache.hadoop.mapreduce.lib.reduce.WrappedReducer;
+import org.apache.hadoop.mapreduce.task.ReduceContextImpl;
+import org.apache.hadoop.util.Progress;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * The {@link RecordWriter} given to mappers by the {@link LocalJobExecutor}
+ * when a job has reducers. Records are serialised into a buffer which is
+ * sorted by partition and key, optionally combined, and spilled to the
+ * {@link Shuffle} whenever it fills. The final spill of each task is kept in
+ * memory if the shuffle's memory budget allows.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <K>
+ *            map output key type
+ * @param <V>
+ *            map output value type
+ */
+class MapOutputBuffer<K, V> extends RecordWriter<K, V> {
+	private final Shuffle shuffle;
+	private final int task;
+	private final int numPartitions;
+	private final Partitioner<K, V> partitioner;
+	private final RawComparator<K> comparator;
+	private final Class<? extends Reducer<K, V, K, V>> combinerClass;
+	private final TaskAttemptContext context;
+	private final StatusReporter reporter;
+	private final Class<K> keyClass;
+	private final Class<V> valueClass;
+	private final SerializationFactory serializationFactory;
+	private final int spillSize;
+
+	private final DataOutputBuffer data = new DataOutputBuffer();
+	private final Serializer<K> keySerializer;
+	private final Serializer<V> valueSerializer;
+	// partition, key start, value start and value end of each record
+	private int[] meta = new int[4 * 1024];
+	private int count;
+	private int spills;
+
+	/**
+	 * @param shuffle
+	 *            the shuffle receiving the sorted segments
+	 * @param task
+	 *            the index of the map task
+	 * @param partitioner
+	 *            the partitioner
+	 * @param comparator
+	 *            the sort comparator
+	 * @param combinerClass
+	 *            the combiner; may be null
+	 * @param context
+	 *            the context of the map task
+	 * @param reporter
+	 *            the reporter of the map task
+	 * @param keyClass
+	 *            the map output key class
+	 * @param valueClass
+	 *            the map output value class
+	 * @param spillSize
+	 *            the number of bytes of records buffered before spilling
+	 * @throws IOException
+	 */
+	MapOutputBuffer(Shuffle shuffle, int task, Partitioner<K, V> partitioner, RawComparator<K> comparator,
+			Class<? extends Reducer<K, V, K, V>> combinerClass, TaskAttemptContext context, StatusReporter reporter,
+			Class<K> keyClass, Class<V> valueClass, int spillSize) throws IOException
+	{
+		this.shuffle = shuffle;
+		this.task = task;
+		this.numPartitions = shuffle.numPartitions();
+		this.partitioner = partitioner;
+		this.comparator = comparator;
+		this.combinerClass = combinerClass;
+		this.context = context;
+		this.reporter = reporter;
+		this.keyClass = keyClass;
+		this.valueClass = valueClass;
+		this.spillSize = spillSize;
+
+		this.serializationFactory = new SerializationFactory(context.getConfiguration());
+		this.keySerializer = serializationFactory.getSerializer(keyClass);
+		this.keySerializer.open(data);
+		this.valueSerializer = serializationFactory.getSerializer(valueClass);
+		this.valueSerializer.open(data);
+	}
+
+	@Override
+	public void write(K key, V value) throws IOException, InterruptedException {
+		final int partition = numPartitions == 1 ? 0 : partitioner.getPartition(key, value, numPartitions);
+		if (partition < 0 || partition >= numPartitions)
+			throw new IOException("Illegal partition for " + key + " (" + partition + ")");
+
+		final int keyStart = data.getLength();
+		keySerializer.serialize(key);
+		final int valueStart = data.getLength();
+		valueSerializer.serialize(value);
+		final int valueEnd = data.getLength();
+
+		if (meta.length < 4 * (count + 1))
+			meta = Arrays.copyOf(meta, meta.length * 2);
+		meta[4 * count] = partition;
+		meta[4 * count + 1] = keyStart;
+		meta[4 * count + 2] = valueStart;
+		meta[4 * count + 3] = valueEnd;
+		count++;
+
+		reporter.getCounter(TaskCounter.MAP_OUTPUT_RECORDS).increment(1);
+
+		if (valueEnd >= spillSize)
+			spill(false);
+	}
+
+	@Override
+	public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+		spill(true);
+		keySerializer.close();
+		valueSerializer.close();
+	}
+
+	private Integer[] sort() {
+		final Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++)
+			order[i] = i;
+
+		final byte[] bytes = data.getData();
+		final int[] meta = this.meta;
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				final int pa = meta[4 * a];
+				final int pb = meta[4 * b];
+				if (pa != pb)
+					return pa < pb ? -1 : 1;
+
+				final int ka = meta[4 * a + 1];
+				final int kb = meta[4 * b + 1];
+				return comparator.compare(bytes, ka, meta[4 * a + 2] - ka, bytes, kb, meta[4 * b + 2] - kb);
+			}
+		});
+
+		return order;
+	}
+
+	private void spill(boolean last) throws IOException, InterruptedException {
+		if (count == 0)
+			return;
+
+		final Integer[] order = sort();
+
+		// the final spill is written to memory, and only goes to disk if it
+		// doesn't fit in the shuffle's memory budget
+		DataOutputBuffer memoryOut = null;
+		File file = null;
+		final DataOutputStream out;
+		if (last) {
+			out = memoryOut = new DataOutputBuffer();
+		} else {
+			file = shuffle.newSpillFile();
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		}
+
+		final long[] offsets = new long[numPartitions + 1];
+		try {
+			int i = 0;
+			for (int p = 0; p < numPartitions; p++) {
+				offsets[p] = out.size();
+
+				int j = i;
+				while (j < count && meta[4 * order[j]] == p)
+					j++;
+
+				if (j > i) {
+					if (combinerClass != null)
+						combine(order, i, j, out);
+					else
+						for (int k = i; k < j; k++)
+							writeRecord(out, order[k]);
+				}
+				i = j;
+			}
+			offsets[numPartitions] = out.size();
+		} finally {
+			out.close();
+		}
+
+		if (last && !shuffle.reserve(memoryOut.getLength())) {
+			file = shuffle.newSpillFile();
+			final FileOutputStream fos = new FileOutputStream(file);
+			try {
+				fos.write(memoryOut.getData(), 0, memoryOut.getLength());
+			} finally {
+				fos.close();
+			}
+		}
+
+		for (int p = 0; p < numPartitions; p++) {
+			final long length = offsets[p + 1] - offsets[p];
+			if (length == 0)
+				continue;
+
+			if (file == null)
+				shuffle.add(p, Segment.inMemory(task, spills, memoryOut.getData(), (int) offsets[p], (int) length));
+			else
+				shuffle.add(p, Segment.onDisk(task, spills, file, offsets[p], length));
+		}
+
+		spills++;
+		count = 0;
+		data.reset();
+	}
+
+	private void writeRecord(DataOutputStream out, int record) throws IOException {
+		final int keyStart = meta[4 * record + 1];
+		final int valueStart = meta[4 * record + 2];
+		final int valueEnd = meta[4 * record + 3];
+
+		WritableUtils.writeVInt(out, valueStart - keyStart);
+		WritableUtils.writeVInt(out, valueEnd - valueStart);
+		out.write(data.getData(), keyStart, valueEnd - keyStart);
+	}
+
+	private void combine(final Integer[] order, final int from, final int to, final DataOutputStream out)
+			throws IOException, InterruptedException
+	{
+		final byte[] bytes = data.getData();
+		final int[] meta = this.meta;
+		final DataInputBuffer key = new DataInputBuffer();
+		final DataInputBuffer value = new DataInputBuffer();
+		final Progress progress = new Progress();
+
+		final RawKeyValueIterator input = new RawKeyValueIterator() {
+			int pos = from - 1;
+
+			@Override
+			public DataInputBuffer getKey() {
+				return key;
+			}
+
+			@Override
+			public DataInputBuffer getValue() {
+				return value;
+			}
+
+			@Override
+			public boolean next() {
+				if (++pos >= to)
+					return false;
+
+				final int r = order[pos];
+				key.reset(bytes, meta[4 * r + 1], meta[4 * r + 2] - meta[4 * r + 1]);
+				value.reset(bytes, meta[4 * r + 2], meta[4 * r + 3] - meta[4 * r + 2]);
+				return true;
+			}
+
+			@Override
+			public void close() {
+			}
+
+			@Override
+			public Progress getProgress() {
+				return progress;
+			}
+		};
+
+		final DataOutputBuffer buffer = new DataOutputBuffer();
+		final Serializer<K> combinedKeySerializer = serializationFactory.getSerializer(keyClass);
+		combinedKeySerializer.open(buffer);
+		final Serializer<V> combinedValueSerializer = serializationFactory.getSerializer(valueClass);
+		combinedValueSerializer.open(buffer);
+
+		final RecordWriter<K, V> writer = new RecordWriter<K, V>() {
+			@Override
+			public void write(K key, V value) throws IOException {
+				buffer.reset();
+				combinedKeySerializer.serialize(key);
+				final int keyLength = buffer.getLength();
+				combinedValueSerializer.serialize(value);
+
+				WritableUtils.writeVInt(out, keyLength);
+				WritableUtils.writeVInt(out, buffer.getLength() - keyLength);
+				out.write(buffer.getData(), 0, buffer.getLength());
+				reporter.getCounter(TaskCounter.COMBINE_OUTPUT_RECORDS).increment(1);
+			}
+
+			@Override
+			public void close(TaskAttemptContext context) {
+			}
+		};
+
+		final Configuration conf = context.getConfiguration();
+		final Reducer<K, V, K, V> combiner = ReflectionUtils.newInstance(combinerClass, conf);
+		final ReduceContextImpl<K, V, K, V> combineContext = new ReduceContextImpl<K, V, K, V>(conf,
+				context.getTaskAttemptID(), input, new GenericCounter(),
+				reporter.getCounter(TaskCounter.COMBINE_INPUT_RECORDS), writer, null, reporter, comparator, keyClass,
+				valueClass);
+		combiner.run(new WrappedReducer<K, V, K, V>().getReducerContext(combineContext));
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.mapreduce.local;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.util.Progress;
+
+/**
+ * A {@link RawKeyValueIterator} performing a k-way merge of sorted
+ * {@link Segment}s. Records with equal keys are returned in segment order.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+class MergingIterator implements RawKeyValueIterator {
+	private final PriorityQueue<Segment.Reader> queue;
+	private final DataInputBuffer key = new DataInputBuffer();
+	private final DataInputBuffer value = new DataInputBuffer();
+	private final Progress progress = new Progress();
+	private Segment.Reader current;
+
+	/**
+	 * @param segments
+	 *            the segments to merge
+	 * @param comparator
+	 *            the comparator with which the segments are sorted
+	 * @throws IOException
+	 */
+	MergingIterator(List<Segment> segments, final RawComparator<?> comparator) throws IOException {
+		this.queue = new PriorityQueue<Segment.Reader>(Math.max(1, segments.size()), new Comparator<Segment.Reader>() {
+			@Override
+			public int compare(Segment.Reader a, Segment.Reader b) {
+				final int cmp = comparator.compare(a.key, 0, a.keyLength, b.key, 0, b.keyLength);
+				if (cmp != 0)
+					return cmp;
+				return a.index < b.index ? -1 : (a.index == b.index ? 0 : 1);
+			}
+		});
+
+		try {
+			for (int i = 0; i < segments.size(); i++) {
+				final Segment.Reader reader = new Segment.Reader(segments.get(i), i);
+				if (reader.next())
+					queue.add(reader);
+				else
+					reader.close();
+			}
+		} catch (final IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	@Override
+	public DataInputBuffer getKey() {
+		return key;
+	}
+
+	@Override
+	public DataInputBuffer getValue() {
+		return value;
+	}
+
+	@Override
+	public boolean next() throws IOException {
+		if (current != null) {
+			if (current.next())
+				queue.add(current);
+			else
+				current.close();
+		}
+
+		current = queue.poll();
+		if (current == null)
+			return false;
+
+		key.reset(current.key, 0, current.keyLength);
+		value.reset(current.value, 0, current.valueLength);
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (current != null)
+			current.close();
+		current = null;
+
+		Segment.Reader reader;
+		while ((reader = queue.poll()) != null)
+			reader.close();
+	}
+
+	@Override
+	public Progress getProgress() {
+		return progress;
+	}
+}
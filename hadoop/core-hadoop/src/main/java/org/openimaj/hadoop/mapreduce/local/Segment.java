@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.mapreduce.local;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * A sorted run of serialised map output records belonging to a single
+ * partition. Each record is written as the variable-length key and value
+ * lengths followed by the raw key and value bytes. A segment is either held
+ * in memory or is a byte range of a spill file.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+abstract class Segment implements Comparable<Segment> {
+	final int task;
+	final int spill;
+
+	Segment(int task, int spill) {
+		this.task = task;
+		this.spill = spill;
+	}
+
+	/**
+	 * @return a stream over the bytes of the segment
+	 * @throws IOException
+	 */
+	abstract InputStream open() throws IOException;
+
+	/**
+	 * @return the length of the segment in bytes
+	 */
+	abstract long length();
+
+	/**
+	 * @return the number of bytes of memory held by the segment
+	 */
+	long memory() {
+		return 0;
+	}
+
+	/**
+	 * Segments are ordered by the map task that produced them and then by
+	 * spill, so that values with equal keys are always reduced in the same
+	 * order.
+	 */
+	@Override
+	public int compareTo(Segment o) {
+		if (task != o.task)
+			return task < o.task ? -1 : 1;
+		return spill < o.spill ? -1 : (spill == o.spill ? 0 : 1);
+	}
+
+	/**
+	 * Construct a segment held in memory
+	 * 
+	 * @param task
+	 * @param spill
+	 * @param data
+	 * @param start
+	 * @param length
+	 * @return the segment
+	 */
+	static Segment inMemory(int task, int spill, final byte[] data, final int start, final int length) {
+		return new Segment(task, spill) {
+			@Override
+			InputStream open() {
+				return new ByteArrayInputStream(data, start, length);
+			}
+
+			@Override
+			long length() {
+				return length;
+			}
+
+			@Override
+			long memory() {
+				return length;
+			}
+		};
+	}
+
+	/**
+	 * Construct a segment from a byte range of a file
+	 * 
+	 * @param task
+	 * @param spill
+	 * @param file
+	 * @param start
+	 * @param length
+	 * @return the segment
+	 */
+	static Segment onDisk(int task, int spill, final File file, final long start, final long length) {
+		return new Segment(task, spill) {
+			@Override
+			InputStream open() throws IOException {
+				final FileInputStream fis = new FileInputStream(file);
+				try {
+					fis.getChannel().position(start);
+				} catch (final IOException e) {
+					fis.close();
+					throw e;
+				}
+				return new BufferedInputStream(fis, 1 << 16);
+			}
+
+			@Override
+			long length() {
+				return length;
+			}
+		};
+	}
+
+	/**
+	 * Sequential reader over the records of a segment. The key and value
+	 * buffers are reused between records.
+	 */
+	static class Reader {
+		final int index;
+		private final DataInputStream in;
+		private long remaining;
+
+		byte[] key = new byte[64];
+		int keyLength;
+		byte[] value = new byte[256];
+		int valueLength;
+
+		Reader(Segment segment, int index) throws IOException {
+			this.index = index;
+			this.in = new DataInputStream(segment.open());
+			this.remaining = segment.length();
+		}
+
+		/**
+		 * Read the next record
+		 * 
+		 * @return true if a record was read; false if the end of the segment
+		 *         was reached
+		 * @throws IOException
+		 */
+		boolean next() throws IOException {
+			if (remaining <= 0)
+				return false;
+
+			keyLength = WritableUtils.readVInt(in);
+			valueLength = WritableUtils.readVInt(in);
+			if (key.length < keyLength)
+				key = new byte[Math.max(keyLength, key.length * 2)];
+			if (value.length < valueLength)
+				value = new byte[Math.max(valueLength, value.length * 2)];
+			in.readFully(key, 0, keyLength);
+			in.readFully(value, 0, valueLength);
+
+			remaining -= WritableUtils.getVIntSize(keyLength) + WritableUtils.getVIntSize(valueLength) + keyLength
+					+ valueLength;
+			return true;
+		}
+
+		void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.mapreduce.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The map output of a single job, held as a list of sorted {@link Segment}s
+ * per partition. Segments are kept in memory up to a fixed budget; beyond
+ * that, map tasks spill to files in a temporary directory that is removed
+ * when the shuffle is closed.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+class Shuffle {
+	private final List<List<Segment>> partitions;
+	private final File directory;
+	private final AtomicInteger files = new AtomicInteger();
+	private final AtomicLong memory = new AtomicLong();
+	private final long memoryLimit;
+
+	/**
+	 * @param numPartitions
+	 *            the number of partitions (reduce tasks)
+	 * @param tmpDir
+	 *            the directory in which to create the spill directory
+	 * @param memoryLimit
+	 *            the number of bytes of segments that may be held in memory
+	 * @throws IOException
+	 */
+	Shuffle(int numPartitions, File tmpDir, long memoryLimit) throws IOException {
+		this.partitions = new ArrayList<List<Segment>>(numPartitions);
+		for (int i = 0; i < numPartitions; i++)
+			partitions.add(new ArrayList<Segment>());
+
+		this.directory = File.createTempFile("shuffle", "", tmpDir);
+		if (!directory.delete() || !directory.mkdirs())
+			throw new IOException("Unable to create shuffle directory " + directory);
+
+		this.memoryLimit = memoryLimit;
+	}
+
+	int numPartitions() {
+		return partitions.size();
+	}
+
+	/**
+	 * Try to reserve memory for an in-memory segment
+	 * 
+	 * @param bytes
+	 * @return true if the memory was reserved; false if it would exceed the
+	 *         budget
+	 */
+	boolean reserve(long bytes) {
+		while (true) {
+			final long current = memory.get();
+			if (current + bytes > memoryLimit)
+				return false;
+			if (memory.compareAndSet(current, current + bytes))
+				return true;
+		}
+	}
+
+	void release(long bytes) {
+		memory.addAndGet(-bytes);
+	}
+
+	/**
+	 * @return a new, unique, file in the spill directory
+	 */
+	File newSpillFile() {
+		return new File(directory, "spill" + files.getAndIncrement() + ".out");
+	}
+
+	void add(int partition, Segment segment) {
+		final List<Segment> segments = partitions.get(partition);
+		synchronized (segments) {
+			segments.add(segment);
+		}
+	}
+
+	/**
+	 * Get the segments of a partition in task/spill order and remove them from
+	 * the shuffle
+	 * 
+	 * @param partition
+	 * @return the segments
+	 */
+	List<Segment> take(int partition) {
+		final List<Segment> segments = partitions.get(partition);
+		synchronized (segments) {
+			final List<Segment> ret = new ArrayList<Segment>(segments);
+			segments.clear();
+			Collections.sort(ret);
+			return ret;
+		}
+	}
+
+	/**
+	 * Delete the spill files
+	 */
+	void close() {
+		final File[] spills = directory.listFiles();
+		if (spills != null) {
+			for (final File f : spills)
+				f.delete();
+		}
+		directory.delete();
+	}
+}
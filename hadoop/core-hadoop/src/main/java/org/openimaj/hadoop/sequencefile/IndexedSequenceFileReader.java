@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.sequencefile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.SequenceFile.Reader;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.openimaj.hadoop.sequencefile.SequenceFileIndex.Location;
+
+/**
+ * Random access to the records of a set of {@link SequenceFile}s using a
+ * {@link SequenceFileIndex}. A reader is opened for each sequence file the
+ * first time it is needed and is kept open until {@link #close()} is called.
+ * <p>
+ * Instances are not thread-safe; use a separate reader in each thread (the
+ * index itself can be shared).
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <K>
+ *            Key type
+ * @param <V>
+ *            Value type
+ */
+public class IndexedSequenceFileReader<K extends Writable, V extends Writable> {
+	private final SequenceFileIndex index;
+	private final Configuration config;
+	private final Map<Integer, Reader> readers = new HashMap<Integer, Reader>();
+
+	/**
+	 * Construct with the given index and a default configuration
+	 *
+	 * @param index
+	 *            the index
+	 */
+	public IndexedSequenceFileReader(SequenceFileIndex index) {
+		this(index, new Configuration());
+	}
+
+	/**
+	 * Construct with the given index and configuration
+	 *
+	 * @param index
+	 *            the index
+	 * @param config
+	 *            the configuration
+	 */
+	public IndexedSequenceFileReader(SequenceFileIndex index, Configuration config) {
+		this.index = index;
+		this.config = config;
+	}
+
+	private Reader getReader(int file) throws IOException {
+		Reader reader = readers.get(file);
+
+		if (reader == null) {
+			final Path path = index.getPath(file);
+			reader = new Reader(path.getFileSystem(config), path, config);
+			readers.put(file, reader);
+		}
+
+		return reader;
+	}
+
+	/**
+	 * Read the value of the record with the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value to fill
+	 * @return true if the record was found; false otherwise
+	 * @throws IOException
+	 *             if an error occurs reading the sequence file
+	 */
+	public boolean get(K key, V value) throws IOException {
+		final Location loc = index.find(key);
+
+		if (loc == null)
+			return false;
+
+		final Reader reader = getReader(loc.getFile());
+		return seekAndRead(reader, loc.getOffset(), singleton(key), value, null) > 0;
+	}
+
+	/**
+	 * Read the value of the record with the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the value, or null if the record was not found
+	 * @throws IOException
+	 *             if an error occurs reading the sequence file
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(K key) throws IOException {
+		final Location loc = index.find(key);
+
+		if (loc == null)
+			return null;
+
+		final Reader reader = getReader(loc.getFile());
+		final V value = (V) ReflectionUtils.newInstance(reader.getValueClass(), config);
+
+		if (seekAndRead(reader, loc.getOffset(), singleton(key), value, null) > 0)
+			return value;
+
+		return null;
+	}
+
+	/**
+	 * Read the records with the given keys, passing each one that is found to
+	 * the given {@link KeyValueDump}. The records are read in file and offset
+	 * order rather than the order of the keys, so each sequence file is read
+	 * forwards and records sharing a compressed block only require the block
+	 * to be read once. The key and value objects passed to the dump are reused
+	 * between calls.
+	 *
+	 * @param keys
+	 *            the keys to read
+	 * @param dump
+	 *            the receiver for the records
+	 * @return the keys that were not found
+	 * @throws IOException
+	 *             if an error occurs reading the sequence files
+	 */
+	@SuppressWarnings("unchecked")
+	public List<K> getAll(Collection<K> keys, KeyValueDump<K, V> dump) throws IOException {
+		final List<K> missing = new ArrayList<K>();
+		final List<Location> locations = new ArrayList<Location>();
+		final Map<Location, Set<K>> groups = new HashMap<Location, Set<K>>();
+		final Map<String, Location> canonical = new HashMap<String, Location>();
+
+		for (final K key : keys) {
+			Location loc = index.find(key);
+
+			if (loc == null) {
+				missing.add(key);
+				continue;
+			}
+
+			// keys in the same block share a location
+			final String id = loc.getFile() + ":" + loc.getOffset();
+			if (canonical.containsKey(id)) {
+				loc = canonical.get(id);
+			} else {
+				canonical.put(id, loc);
+				locations.add(loc);
+				groups.put(loc, new HashSet<K>());
+			}
+			groups.get(loc).add(key);
+		}
+
+		Collections.sort(locations, new Comparator<Location>() {
+			@Override
+			public int compare(Location o1, Location o2) {
+				if (o1.getFile() != o2.getFile())
+					return o1.getFile() < o2.getFile() ? -1 : 1;
+				if (o1.getOffset() != o2.getOffset())
+					return o1.getOffset() < o2.getOffset() ? -1 : 1;
+				return 0;
+			}
+		});
+
+		V value = null;
+		for (final Location loc : locations) {
+			final Reader reader = getReader(loc.getFile());
+			final Set<K> group = groups.get(loc);
+
+			if (value == null || value.getClass() != reader.getValueClass())
+				value = (V) ReflectionUtils.newInstance(reader.getValueClass(), config);
+
+			seekAndRead(reader, loc.getOffset(), group, value, dump);
+
+			// anything left in the group wasn't found
+			missing.addAll(group);
+		}
+
+		return missing;
+	}
+
+	private Set<K> singleton(K key) {
+		final Set<K> set = new HashSet<K>();
+		set.add(key);
+		return set;
+	}
+
+	/**
+	 * Seek to the given offset and read forward through the record (or block
+	 * of records) found there, looking for the given keys. Found keys are
+	 * removed from the set, and passed to the dump if it is not null.
+	 */
+	@SuppressWarnings("unchecked")
+	private int seekAndRead(Reader reader, long offset, Set<K> keys, V value, KeyValueDump<K, V> dump)
+			throws IOException
+	{
+		reader.seek(offset);
+
+		final K key = (K) ReflectionUtils.newInstance(reader.getKeyClass(), config);
+		long blockEnd = -1;
+		int found = 0;
+
+		while (!keys.isEmpty() && reader.next(key)) {
+			// stop once we move past the record or block at the offset
+			final long pos = reader.getPosition();
+			if (blockEnd < 0)
+				blockEnd = pos;
+			else if (pos != blockEnd)
+				break;
+
+			if (keys.remove(key)) {
+				reader.getCurrentValue(value);
+				found++;
+
+				if (dump != null)
+					dump.dumpValue(key, value);
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Close all the open sequence file readers
+	 */
+	public void close() {
+		for (final Reader r : readers.values()) {
+			try {
+				r.close();
+			} catch (final IOException e) {
+			}
+		}
+		readers.clear();
+	}
+}
@@ -0,0 +1,441 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.sequencefile;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+
+/**
+ * A sidecar index mapping the keys of one or more {@link SequenceFile}s to the
+ * file and offset at which each record can be found. Records can be retrieved
+ * using the index with an {@link IndexedSequenceFileReader}.
+ * <p>
+ * The index is stored in a local file consisting of a small header listing the
+ * indexed sequence files, a table of fixed-size entries sorted by the
+ * serialised key bytes, and a heap containing the serialised keys. The table
+ * and heap are memory-mapped when the index is opened, so opening an index is
+ * cheap regardless of its size and lookups (which are binary searches) only
+ * touch the pages they need. Lookups are thread-safe.
+ * <p>
+ * Keys are compared by their serialised form, so any {@link Writable} key type
+ * with a deterministic serialisation can be indexed. If a key occurs more than
+ * once, lookups return the first occurrence (by file, then offset).
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class SequenceFileIndex {
+	/**
+	 * The default extension for index files
+	 */
+	public static final String EXTENSION = ".idx";
+
+	private static final int MAGIC = 0x53464931; // "SFI1"
+	private static final int ENTRY_SIZE = 24;
+
+	/**
+	 * The location of a record
+	 */
+	public static class Location {
+		private final Path path;
+		private final int file;
+		private final long offset;
+
+		Location(Path path, int file, long offset) {
+			this.path = path;
+			this.file = file;
+			this.offset = offset;
+		}
+
+		/**
+		 * @return the path of the sequence file containing the record
+		 */
+		public Path getPath() {
+			return path;
+		}
+
+		/**
+		 * @return the index of the sequence file containing the record
+		 */
+		public int getFile() {
+			return file;
+		}
+
+		/**
+		 * @return the offset to seek to in order to read the record
+		 */
+		public long getOffset() {
+			return offset;
+		}
+	}
+
+	private final Path[] files;
+	private final int size;
+	private final ByteBuffer table;
+	private final ByteBuffer keys;
+
+	private SequenceFileIndex(Path[] files, int size, ByteBuffer table, ByteBuffer keys) {
+		this.files = files;
+		this.size = size;
+		this.table = table;
+		this.keys = keys;
+	}
+
+	/**
+	 * Open an index file, memory-mapping its contents.
+	 *
+	 * @param indexFile
+	 *            the index file
+	 * @return the index
+	 * @throws IOException
+	 *             if the file cannot be read or is not an index
+	 */
+	public static SequenceFileIndex read(File indexFile) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+
+		try {
+			if (raf.readInt() != MAGIC)
+				throw new IOException(indexFile + " is not a sequence file index");
+
+			final Path[] files = new Path[raf.readInt()];
+			for (int i = 0; i < files.length; i++)
+				files[i] = new Path(raf.readUTF());
+
+			final int size = raf.readInt();
+			final long heapLength = raf.readLong();
+			final long tableStart = raf.getFilePointer();
+			final long tableLength = (long) size * ENTRY_SIZE;
+
+			if (tableLength > Integer.MAX_VALUE || heapLength > Integer.MAX_VALUE)
+				throw new IOException(indexFile + " is too large to be memory-mapped");
+
+			final FileChannel channel = raf.getChannel();
+			final ByteBuffer table = channel.map(MapMode.READ_ONLY, tableStart, tableLength);
+			final ByteBuffer keys = channel.map(MapMode.READ_ONLY, tableStart + tableLength, heapLength);
+
+			return new SequenceFileIndex(files, size, table, keys);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * @return the number of indexed records
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of indexed sequence files
+	 */
+	public int numFiles() {
+		return files.length;
+	}
+
+	/**
+	 * Get the path of an indexed sequence file
+	 *
+	 * @param file
+	 *            the file index
+	 * @return the path
+	 */
+	public Path getPath(int file) {
+		return files[file];
+	}
+
+	/**
+	 * Find the location of the record with the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the location, or null if the key is not in the index
+	 */
+	public Location find(Writable key) {
+		final DataOutputBuffer buffer = new DataOutputBuffer();
+		try {
+			key.write(buffer);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		final byte[] query = buffer.getData();
+		final int queryLength = buffer.getLength();
+
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+
+			if (compare(mid, query, queryLength) < 0)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+
+		if (lo == size || compare(lo, query, queryLength) != 0)
+			return null;
+
+		final int entry = lo * ENTRY_SIZE;
+		final int file = table.getInt(entry + 12);
+		return new Location(files[file], file, table.getLong(entry + 16));
+	}
+
+	private int compare(int index, byte[] query, int queryLength) {
+		final int entry = index * ENTRY_SIZE;
+		final int pos = (int) table.getLong(entry);
+		final int length = table.getInt(entry + 8);
+
+		final int n = Math.min(length, queryLength);
+		for (int i = 0; i < n; i++) {
+			final int diff = (keys.get(pos + i) & 0xff) - (query[i] & 0xff);
+			if (diff != 0)
+				return diff;
+		}
+		return length - queryLength;
+	}
+
+	/**
+	 * Build an index of the given sequence files using the global thread pool
+	 * and default configuration.
+	 *
+	 * @see #build(Path[], Configuration, File, ThreadPoolExecutor)
+	 *
+	 * @param sequenceFiles
+	 *            the sequence files
+	 * @param indexFile
+	 *            the file to write the index to
+	 * @return the number of indexed records
+	 * @throws IOException
+	 */
+	public static int build(Path[] sequenceFiles, File indexFile) throws IOException {
+		return build(sequenceFiles, new Configuration(), indexFile, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Build an index of the given sequence files and write it to a local file.
+	 * Each file is split at sync markers and the splits are scanned in
+	 * parallel; only the keys are deserialised. If the pool is
+	 * <code>null</code>, each file is scanned as a single split in the calling
+	 * thread. The paths stored in the index are fully qualified. The keys of
+	 * all the records must fit in memory.
+	 *
+	 * @param sequenceFiles
+	 *            the sequence files
+	 * @param config
+	 *            the configuration
+	 * @param indexFile
+	 *            the file to write the index to
+	 * @param pool
+	 *            the thread pool used to scan the files, or <code>null</code>
+	 *            to scan them in the calling thread
+	 * @return the number of indexed records
+	 * @throws IOException
+	 */
+	public static int build(final Path[] sequenceFiles, final Configuration config, File indexFile,
+			ThreadPoolExecutor pool) throws IOException
+	{
+		final int numSplits = pool == null ? 1 : pool.getMaximumPoolSize();
+		final Path[] qualified = new Path[sequenceFiles.length];
+		final List<long[]> splits = new ArrayList<long[]>();
+		for (int i = 0; i < sequenceFiles.length; i++) {
+			final FileSystem fs = sequenceFiles[i].getFileSystem(config);
+			qualified[i] = fs.makeQualified(sequenceFiles[i]);
+
+			final long length = fs.getFileStatus(qualified[i]).getLen();
+			for (final long[] s : SequenceFileSplitReader.split(length, numSplits))
+				splits.add(new long[] { i, s[0], s[1] });
+		}
+
+		final Entries[] results = new Entries[splits.size()];
+		final IOException[] errors = new IOException[splits.size()];
+		final Operation<Integer> scan = new Operation<Integer>() {
+			@Override
+			public void perform(Integer i) {
+				final long[] split = splits.get(i);
+				final int file = (int) split[0];
+
+				SequenceFileSplitReader reader = null;
+				try {
+					final Path path = qualified[file];
+					reader = new SequenceFileSplitReader(path.getFileSystem(config), path, config, split[1], split[2]);
+
+					final Writable key = (Writable) ReflectionUtils.newInstance(reader.getReader().getKeyClass(),
+							config);
+					final Entries entries = new Entries(file);
+					while (reader.next(key))
+						entries.add(key, reader.getRecordOffset());
+
+					results[i] = entries;
+				} catch (final Exception e) {
+					// don't throw here, as the parallel loop would never
+					// complete
+					errors[i] = e instanceof IOException ? (IOException) e : new IOException(e);
+				} finally {
+					if (reader != null)
+						reader.close();
+				}
+			}
+		};
+
+		if (pool == null) {
+			for (int i = 0; i < splits.size(); i++)
+				scan.perform(i);
+		} else {
+			Parallel.forIndex(0, splits.size(), 1, scan, pool);
+		}
+
+		for (final IOException e : errors)
+			if (e != null)
+				throw e;
+
+		return write(qualified, results, indexFile);
+	}
+
+	private static int write(Path[] files, final Entries[] results, File indexFile) throws IOException {
+		int total = 0;
+		for (final Entries e : results)
+			total += e.count;
+
+		final int[][] order = new int[total][];
+		for (int i = 0, k = 0; i < results.length; i++)
+			for (int j = 0; j < results[i].count; j++)
+				order[k++] = new int[] { i, j };
+
+		// the splits are in file/offset order, so a stable sort by key keeps
+		// the first occurrence of duplicate keys first
+		Arrays.sort(order, new Comparator<int[]>() {
+			@Override
+			public int compare(int[] o1, int[] o2) {
+				final Entries e1 = results[o1[0]];
+				final Entries e2 = results[o2[0]];
+
+				final byte[] b1 = e1.heap.getData();
+				final byte[] b2 = e2.heap.getData();
+				final int s1 = e1.keyStarts[o1[1]];
+				final int s2 = e2.keyStarts[o2[1]];
+				final int l1 = e1.keyStarts[o1[1] + 1] - s1;
+				final int l2 = e2.keyStarts[o2[1] + 1] - s2;
+
+				final int n = Math.min(l1, l2);
+				for (int i = 0; i < n; i++) {
+					final int diff = (b1[s1 + i] & 0xff) - (b2[s2 + i] & 0xff);
+					if (diff != 0)
+						return diff;
+				}
+				return l1 - l2;
+			}
+		});
+
+		long heapLength = 0;
+		for (final Entries e : results)
+			heapLength += e.heap.getLength();
+
+		final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+		try {
+			dos.writeInt(MAGIC);
+			dos.writeInt(files.length);
+			for (final Path p : files)
+				dos.writeUTF(p.toString());
+			dos.writeInt(total);
+			dos.writeLong(heapLength);
+
+			long pos = 0;
+			for (final int[] o : order) {
+				final Entries e = results[o[0]];
+				final int length = e.keyStarts[o[1] + 1] - e.keyStarts[o[1]];
+
+				dos.writeLong(pos);
+				dos.writeInt(length);
+				dos.writeInt(e.file);
+				dos.writeLong(e.offsets[o[1]]);
+				pos += length;
+			}
+
+			for (final int[] o : order) {
+				final Entries e = results[o[0]];
+				final int start = e.keyStarts[o[1]];
+				dos.write(e.heap.getData(), start, e.keyStarts[o[1] + 1] - start);
+			}
+		} finally {
+			dos.close();
+		}
+
+		return total;
+	}
+
+	/**
+	 * The serialised keys and offsets read from a single split
+	 */
+	private static class Entries {
+		final int file;
+		final DataOutputBuffer heap = new DataOutputBuffer();
+		int[] keyStarts = new int[1025];
+		long[] offsets = new long[1024];
+		int count;
+
+		Entries(int file) {
+			this.file = file;
+		}
+
+		void add(Writable key, long offset) throws IOException {
+			if (count == offsets.length) {
+				offsets = Arrays.copyOf(offsets, count * 2);
+				keyStarts = Arrays.copyOf(keyStarts, count * 2 + 1);
+			}
+
+			key.write(heap);
+			offsets[count++] = offset;
+			keyStarts[count] = heap.getLength();
+		}
+	}
+}
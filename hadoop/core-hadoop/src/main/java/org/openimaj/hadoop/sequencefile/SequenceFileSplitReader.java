@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.sequencefile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.SequenceFile.Reader;
+import org.apache.hadoop.io.Writable;
+
+/**
+ * Reads the records of a byte range of a {@link SequenceFile}. The range is
+ * aligned to sync markers in the same way as the Hadoop
+ * <code>SequenceFileRecordReader</code>: reading starts at the first sync
+ * marker after the start of the range, and continues until the first sync
+ * marker after its end. This means that a set of contiguous ranges covering a
+ * file will visit every record exactly once, allowing a file to be read by
+ * several threads at the same time.
+ * <p>
+ * The reader also tracks a seekable offset for each record, using the same
+ * scheme as {@link SequenceFileUtility#listKeysAndOffsets()}: for uncompressed
+ * and record-compressed files this is the start of the record, and for
+ * block-compressed files it is the start of the block containing the record.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+class SequenceFileSplitReader {
+	/**
+	 * Splits smaller than this are not worth reading in parallel.
+	 */
+	static final long MIN_SPLIT_SIZE = 16 * 1024 * 1024;
+
+	private final Reader reader;
+	private final long end;
+	private boolean more;
+
+	private long recordStart;
+	private long recordEnd;
+
+	/**
+	 * Construct a reader for the given range of a file
+	 *
+	 * @param fs
+	 *            the filesystem
+	 * @param path
+	 *            the path to the sequence file
+	 * @param config
+	 *            the configuration
+	 * @param start
+	 *            the start of the range (inclusive)
+	 * @param end
+	 *            the end of the range (exclusive)
+	 * @throws IOException
+	 */
+	SequenceFileSplitReader(FileSystem fs, Path path, Configuration config, long start, long end) throws IOException {
+		this.reader = new Reader(fs, path, config);
+		this.end = end;
+
+		if (start > reader.getPosition())
+			reader.sync(start);
+
+		recordEnd = recordStart = reader.getPosition();
+		more = recordStart < end;
+	}
+
+	/**
+	 * @return the underlying reader
+	 */
+	Reader getReader() {
+		return reader;
+	}
+
+	/**
+	 * Read the next key in the range, skipping its value.
+	 *
+	 * @param key
+	 *            the key to fill
+	 * @return true if a record was read; false if the end of the range was
+	 *         reached
+	 * @throws IOException
+	 */
+	boolean next(Writable key) throws IOException {
+		return next(key, null);
+	}
+
+	/**
+	 * Read the next record in the range.
+	 *
+	 * @param key
+	 *            the key to fill
+	 * @param value
+	 *            the value to fill; if null the value is skipped
+	 * @return true if a record was read; false if the end of the range was
+	 *         reached
+	 * @throws IOException
+	 */
+	boolean next(Writable key, Writable value) throws IOException {
+		if (!more)
+			return false;
+
+		final long pos = reader.getPosition();
+		final boolean remaining = value == null ? reader.next(key) : reader.next(key, value);
+
+		if (pos >= end && reader.syncSeen()) {
+			more = false;
+		} else {
+			more = remaining;
+		}
+
+		if (more) {
+			final long newPos = reader.getPosition();
+			if (newPos != recordEnd) {
+				recordStart = recordEnd;
+				recordEnd = newPos;
+			}
+		}
+
+		return more;
+	}
+
+	/**
+	 * Get the offset from which the last record read can be found by seeking
+	 * the reader and reading forward.
+	 *
+	 * @return the offset of the last record
+	 */
+	long getRecordOffset() {
+		return recordStart;
+	}
+
+	/**
+	 * Close the underlying reader
+	 */
+	void close() {
+		try {
+			reader.close();
+		} catch (final IOException e) {
+		}
+	}
+
+	/**
+	 * Divide a file into contiguous byte ranges for parallel reading.
+	 *
+	 * @param length
+	 *            the length of the file
+	 * @param numSplits
+	 *            the desired number of ranges
+	 * @return the ranges as <code>{start, end}</code> pairs
+	 */
+	static List<long[]> split(long length, int numSplits) {
+		final long splitSize = Math.max(MIN_SPLIT_SIZE, (length + numSplits - 1) / Math.max(1, numSplits));
+		final List<long[]> splits = new ArrayList<long[]>();
+
+		long start = 0;
+		do {
+			final long end = Math.min(length, start + splitSize);
+			splits.add(new long[] { start, end });
+			start = end;
+		} while (start < length);
+
+		return splits;
+	}
+}
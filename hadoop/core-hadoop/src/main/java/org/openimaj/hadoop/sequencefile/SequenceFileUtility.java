@@ -48,6 +48,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.UUID;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -69,6 +70,9 @@ import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.DefaultCodec;
 import org.apache.hadoop.util.ReflectionUtils;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
 
 /**
  * Base class for a utility class that deals with specifically typed sequence
@@ -1408,6 +1412,77 @@ public abstract class SequenceFileUtility<K extends Writable, V extends Writable
 		}
 	}
 
+	/**
+	 * Apply an operation to every record of the sequence file in parallel
+	 * using the global thread pool. Read mode only.
+	 *
+	 * @see #parallelScan(Operation, ThreadPoolExecutor)
+	 *
+	 * @param op
+	 *            the operation to apply
+	 */
+	public void parallelScan(Operation<Entry<K, V>> op) {
+		parallelScan(op, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Apply an operation to every record of the sequence file in parallel.
+	 * The file is divided into byte ranges which are aligned to sync markers
+	 * and each range is read by a separate thread, so records are visited in
+	 * no particular order. The {@link Entry} objects passed to the operation
+	 * are reused by each thread, so their keys and values must be copied if
+	 * they need to be retained. Read mode only.
+	 *
+	 * @param op
+	 *            the operation to apply
+	 * @param pool
+	 *            the thread pool
+	 */
+	@SuppressWarnings("unchecked")
+	public void parallelScan(final Operation<Entry<K, V>> op, ThreadPoolExecutor pool) {
+		if (!isReader) {
+			throw new UnsupportedOperationException("Cannot scan in write mode");
+		}
+
+		final List<long[]> splits;
+		try {
+			splits = SequenceFileSplitReader.split(fileSystem.getFileStatus(sequenceFilePath).getLen(),
+					pool.getMaximumPoolSize());
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		final Exception[] errors = new Exception[splits.size()];
+		Parallel.forIndex(0, splits.size(), 1, new Operation<Integer>() {
+			@Override
+			public void perform(Integer i) {
+				SequenceFileSplitReader reader = null;
+				try {
+					reader = new SequenceFileSplitReader(fileSystem, sequenceFilePath, config, splits.get(i)[0],
+							splits.get(i)[1]);
+
+					final SequenceFileEntry entry = new SequenceFileEntry(
+							ReflectionUtils.newInstance((Class<K>) reader.getReader().getKeyClass(), config),
+							ReflectionUtils.newInstance((Class<V>) reader.getReader().getValueClass(), config));
+
+					while (reader.next(entry.key, entry.value))
+						op.perform(entry);
+				} catch (final Exception e) {
+					// don't throw here, as the parallel loop would never
+					// complete
+					errors[i] = e;
+				} finally {
+					if (reader != null)
+						reader.close();
+				}
+			}
+		}, pool);
+
+		for (final Exception e : errors)
+			if (e != null)
+				throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+	}
+
 	@Override
 	public Iterator<Entry<K, V>> iterator() {
 		if (!isReader) {
@@ -113,8 +113,23 @@ public class MultiStagedJobTest {
 	 */
 	@Test
 	public void testMultipleStages() throws Exception {
+		runStages(new String[] {});
+	}
+
+	/**
+	 * Run the same two stages in-process with the
+	 * {@link org.openimaj.hadoop.mapreduce.local.LocalJobExecutor}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testMultipleStagesLocal() throws Exception {
+		runStages(new String[] { "-D", "openimaj.hadoop.local=true" });
+	}
+
+	private void runStages(String[] args) throws Exception {
 		final MultiStagedJob mjob = new MultiStagedJob(initialFile.getAbsolutePath(), outputFile.getAbsolutePath(),
-				new String[] {});
+				args);
 		mjob.queueStage(new Stage<
 				TextInputFormat,
 				TextOutputFormat<NullWritable, Text>,
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.sequencefile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
+import org.apache.hadoop.io.Text;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openimaj.util.function.Operation;
+
+/**
+ * Tests for {@link SequenceFileIndex}, {@link IndexedSequenceFileReader} and
+ * {@link SequenceFileUtility#parallelScan(Operation)}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class SequenceFileIndexTest {
+	/**
+	 * Working dir
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path[] createFiles(Map<String, String> data) throws IOException {
+		final CompressionType[] types = { CompressionType.NONE, CompressionType.RECORD, CompressionType.BLOCK };
+		final Path[] paths = new Path[types.length];
+
+		for (int i = 0; i < types.length; i++) {
+			final File file = new File(folder.getRoot(), "part-" + i);
+			final TextBytesSequenceFileUtility utility = new TextBytesSequenceFileUtility(file.getAbsolutePath(),
+					types[i]);
+
+			for (int j = 0; j < 1000; j++) {
+				final String key = "key-" + i + "-" + j;
+				final String value = "value " + i + " " + j;
+
+				utility.appendData(new Text(key), new BytesWritable(value.getBytes("UTF-8")));
+				data.put(key, value);
+			}
+			utility.close();
+
+			paths[i] = utility.getSequenceFilePath();
+		}
+
+		return paths;
+	}
+
+	/**
+	 * Test that every record can be found through the index
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testIndex() throws IOException {
+		final Map<String, String> data = new HashMap<String, String>();
+		final Path[] paths = createFiles(data);
+
+		final File indexFile = folder.newFile("data" + SequenceFileIndex.EXTENSION);
+		assertEquals(data.size(), SequenceFileIndex.build(paths, indexFile));
+
+		final SequenceFileIndex index = SequenceFileIndex.read(indexFile);
+		assertEquals(data.size(), index.size());
+		assertEquals(paths.length, index.numFiles());
+
+		final IndexedSequenceFileReader<Text, BytesWritable> reader = new IndexedSequenceFileReader<Text, BytesWritable>(
+				index);
+		for (final Entry<String, String> e : data.entrySet()) {
+			final BytesWritable value = reader.get(new Text(e.getKey()));
+			assertEquals(e.getValue(), new String(value.getBytes(), 0, value.getLength(), "UTF-8"));
+		}
+		assertNull(reader.get(new Text("missing")));
+
+		final List<Text> keys = new ArrayList<Text>();
+		for (final String k : data.keySet())
+			keys.add(new Text(k));
+		keys.add(new Text("missing"));
+
+		final Map<String, String> found = new HashMap<String, String>();
+		final List<Text> missing = reader.getAll(keys, new KeyValueDump<Text, BytesWritable>() {
+			@Override
+			public void dumpValue(Text key, BytesWritable val) {
+				try {
+					found.put(key.toString(), new String(val.getBytes(), 0, val.getLength(), "UTF-8"));
+				} catch (final IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		reader.close();
+
+		assertEquals(Arrays.asList(new Text("missing")), missing);
+		assertEquals(data, found);
+	}
+
+	/**
+	 * Test that an index built without a pool finds every record
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testSequentialIndex() throws IOException {
+		final Map<String, String> data = new HashMap<String, String>();
+		final Path[] paths = createFiles(data);
+
+		final File indexFile = folder.newFile("data" + SequenceFileIndex.EXTENSION);
+		assertEquals(data.size(), SequenceFileIndex.build(paths, new Configuration(), indexFile, null));
+
+		final SequenceFileIndex index = SequenceFileIndex.read(indexFile);
+		assertEquals(data.size(), index.size());
+
+		final IndexedSequenceFileReader<Text, BytesWritable> reader = new IndexedSequenceFileReader<Text, BytesWritable>(
+				index);
+		for (final Entry<String, String> e : data.entrySet()) {
+			final BytesWritable value = reader.get(new Text(e.getKey()));
+			assertEquals(e.getValue(), new String(value.getBytes(), 0, value.getLength(), "UTF-8"));
+		}
+		reader.close();
+	}
+
+	/**
+	 * Test that a parallel scan visits every record once
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testParallelScan() throws IOException {
+		final Map<String, String> data = new HashMap<String, String>();
+		final Path[] paths = createFiles(data);
+		final Map<String, String> found = new HashMap<String, String>();
+		final int[] duplicates = { 0 };
+
+		for (final Path p : paths) {
+			final TextBytesSequenceFileUtility utility = new TextBytesSequenceFileUtility(p.toUri(), true);
+			utility.parallelScan(new Operation<Entry<Text, BytesWritable>>() {
+				@Override
+				public void perform(Entry<Text, BytesWritable> e) {
+					final BytesWritable val = e.getValue();
+					final String value = new String(val.getBytes(), 0, val.getLength());
+
+					synchronized (found) {
+						if (found.put(e.getKey().toString(), value) != null)
+							duplicates[0]++;
+					}
+				}
+			});
+		}
+
+		assertEquals(0, duplicates[0]);
+		assertEquals(data, found);
+	}
+}
@@ -0,0 +1,475 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.tools.image.indexing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.MultipleInputs;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.openimaj.feature.local.list.MemoryLocalFeatureList;
+import org.openimaj.feature.local.matcher.FastBasicKeypointMatcher;
+import org.openimaj.hadoop.sequencefile.SequenceFileUtility;
+import org.openimaj.image.feature.local.keypoints.Keypoint;
+import org.openimaj.util.pair.ObjectIntPair;
+import org.openimaj.util.queue.BoundedPriorityQueue;
+
+/**
+ * Tool to verify the candidate duplicate pairs produced by the
+ * {@link SimpleLSHDuplicatesFinder} by matching the SIFT features of the
+ * images. To bound the amount of work, each candidate pair is assigned to the
+ * image with the lexicographically smaller id, and only the pairs with the
+ * highest LSH collision counts are verified for each image. The cap applies to
+ * the pairs assigned to an image, so an image can still be the larger id of
+ * any number of verified pairs; the total number of pairs verified is at most
+ * the cap multiplied by the number of images.
+ * <p>
+ * Verification is performed in two passes, both of which use a secondary sort
+ * so that the features of an image reach the reducer before its candidates
+ * and only a single set of features needs to be held in memory:
+ * <ol>
+ * <li>The candidates are joined with the features of the smaller image of
+ * each pair, the top candidates are selected, and the features are sent on to
+ * the larger image.</li>
+ * <li>The results of the first pass are joined with the features of the
+ * larger image, the features are matched, and pairs with enough matches are
+ * written as <code>id1 id2 matches</code> edges.</li>
+ * </ol>
+ * The edges can be clustered into groups of duplicates with the
+ * {@link DuplicateClusterer}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class DuplicateCandidateVerifier extends Configured implements Tool {
+	private static final String MAX_CANDIDATES_KEY = "max.candidates";
+	private static final String MIN_COUNT_KEY = "min.count";
+	private static final String MIN_MATCHES_KEY = "min.matches";
+
+	static final byte FEATURES = 0;
+	static final byte CANDIDATE = 1;
+
+	/**
+	 * Key holding an image id and a tag. Keys are sorted by id and then tag,
+	 * but partitioned and grouped by id alone.
+	 */
+	public static class TaggedKey implements WritableComparable<TaggedKey> {
+		public String id;
+		public byte tag;
+
+		public TaggedKey() {
+		}
+
+		public TaggedKey(String id, byte tag) {
+			this.id = id;
+			this.tag = tag;
+		}
+
+		@Override
+		public void write(DataOutput out) throws IOException {
+			out.writeUTF(id);
+			out.writeByte(tag);
+		}
+
+		@Override
+		public void readFields(DataInput in) throws IOException {
+			id = in.readUTF();
+			tag = in.readByte();
+		}
+
+		@Override
+		public int compareTo(TaggedKey o) {
+			final int cmp = id.compareTo(o.id);
+			if (cmp != 0)
+				return cmp;
+			return (tag < o.tag ? -1 : (tag == o.tag ? 0 : 1));
+		}
+
+		@Override
+		public int hashCode() {
+			return id.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof TaggedKey && compareTo((TaggedKey) obj) == 0;
+		}
+	}
+
+	/**
+	 * Partitioner that sends keys to reducers based on their id alone.
+	 */
+	public static class TaggedKeyPartitioner extends Partitioner<TaggedKey, BytesWritable> {
+		@Override
+		public int getPartition(TaggedKey key, BytesWritable value, int numPartitions) {
+			return (key.id.hashCode() & Integer.MAX_VALUE) % numPartitions;
+		}
+	}
+
+	/**
+	 * Comparator to group keys by their id alone.
+	 */
+	public static class TaggedKeyGroupingComparator extends WritableComparator {
+		public TaggedKeyGroupingComparator() {
+			super(TaggedKey.class, true);
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public int compare(WritableComparable a, WritableComparable b) {
+			return ((TaggedKey) a).id.compareTo(((TaggedKey) b).id);
+		}
+	}
+
+	/**
+	 * Mapper that tags the features of each image.
+	 */
+	static class FeaturesMapper extends Mapper<Text, BytesWritable, TaggedKey, BytesWritable> {
+		@Override
+		protected void map(Text key, BytesWritable value, Context context) throws IOException, InterruptedException
+		{
+			context.write(new TaggedKey(key.toString(), FEATURES), value);
+		}
+	}
+
+	/**
+	 * Mapper that reads the <code>id1 id2 count</code> candidate edges and
+	 * assigns each to the image with the lexicographically smaller id.
+	 */
+	static class CandidatesMapper extends Mapper<LongWritable, Text, TaggedKey, BytesWritable> {
+		int minCount;
+
+		@Override
+		protected void setup(Context context) throws IOException, InterruptedException {
+			minCount = context.getConfiguration().getInt(MIN_COUNT_KEY, 2);
+		}
+
+		@Override
+		protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException
+		{
+			final String[] parts = value.toString().split("\\s");
+
+			if (parts.length == 3) {
+				final int count = Integer.parseInt(parts[2]);
+
+				if (count >= minCount) {
+					final boolean ordered = parts[0].compareTo(parts[1]) < 0;
+					final String lower = ordered ? parts[0] : parts[1];
+					final String upper = ordered ? parts[1] : parts[0];
+
+					final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+					final DataOutputStream dos = new DataOutputStream(baos);
+					dos.writeUTF(upper);
+					dos.writeInt(count);
+
+					context.write(new TaggedKey(lower, CANDIDATE), new BytesWritable(baos.toByteArray()));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reducer for the first pass. Selects the top candidates of each image and
+	 * sends them, together with the image's features, to the other image of
+	 * the pair.
+	 */
+	static class SelectReducer extends Reducer<TaggedKey, BytesWritable, TaggedKey, BytesWritable> {
+		static enum COUNTERS {
+			MISSING_FEATURES, CANDIDATES, SELECTED;
+		}
+
+		int maxCandidates;
+
+		@Override
+		protected void setup(Context context) throws IOException, InterruptedException {
+			maxCandidates = context.getConfiguration().getInt(MAX_CANDIDATES_KEY, 10);
+		}
+
+		@Override
+		protected void reduce(TaggedKey key, Iterable<BytesWritable> values, Context context) throws IOException,
+				InterruptedException
+		{
+			final String id = key.id;
+			byte[] features = null;
+			final BoundedPriorityQueue<ObjectIntPair<String>> queue = new BoundedPriorityQueue<ObjectIntPair<String>>(
+					maxCandidates, ObjectIntPair.SECOND_ITEM_DESCENDING_COMPARATOR);
+
+			// the key is updated as the values are iterated, and the
+			// features (if present) come first
+			for (final BytesWritable value : values) {
+				if (key.tag == FEATURES) {
+					features = Arrays.copyOf(value.getBytes(), value.getLength());
+				} else {
+					final DataInputStream dis = new DataInputStream(new ByteArrayInputStream(value.getBytes()));
+					queue.offer(new ObjectIntPair<String>(dis.readUTF(), dis.readInt()));
+					context.getCounter(COUNTERS.CANDIDATES).increment(1L);
+				}
+			}
+
+			if (queue.isEmpty())
+				return;
+
+			if (features == null) {
+				context.getCounter(COUNTERS.MISSING_FEATURES).increment(1L);
+				return;
+			}
+
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			final DataOutputStream dos = new DataOutputStream(baos);
+			dos.writeUTF(id);
+			dos.write(features);
+			final BytesWritable out = new BytesWritable(baos.toByteArray());
+
+			for (final ObjectIntPair<String> candidate : queue) {
+				context.write(new TaggedKey(candidate.first, CANDIDATE), out);
+				context.getCounter(COUNTERS.SELECTED).increment(1L);
+			}
+		}
+	}
+
+	/**
+	 * Reducer for the second pass. Matches the features of each image against
+	 * those of each of the selected candidates sent to it.
+	 */
+	static class VerifyReducer extends Reducer<TaggedKey, BytesWritable, Text, IntWritable> {
+		static enum COUNTERS {
+			MISSING_FEATURES, VERIFIED, REJECTED;
+		}
+
+		int minMatches;
+
+		@Override
+		protected void setup(Context context) throws IOException, InterruptedException {
+			minMatches = context.getConfiguration().getInt(MIN_MATCHES_KEY, 10);
+		}
+
+		@Override
+		protected void reduce(TaggedKey key, Iterable<BytesWritable> values, Context context) throws IOException,
+				InterruptedException
+		{
+			final String id = key.id;
+			FastBasicKeypointMatcher<Keypoint> matcher = null;
+
+			for (final BytesWritable value : values) {
+				final ByteArrayInputStream bais = new ByteArrayInputStream(value.getBytes(), 0, value.getLength());
+
+				if (key.tag == FEATURES) {
+					// the model index is built once and reused for every
+					// candidate
+					matcher = new FastBasicKeypointMatcher<Keypoint>();
+					matcher.setModelFeatures(MemoryLocalFeatureList.read(bais, Keypoint.class));
+					continue;
+				}
+
+				if (matcher == null) {
+					context.getCounter(COUNTERS.MISSING_FEATURES).increment(1L);
+					return;
+				}
+
+				final String other = new DataInputStream(bais).readUTF();
+				final List<Keypoint> otherFeatures = MemoryLocalFeatureList.read(bais, Keypoint.class);
+
+				matcher.findMatches(otherFeatures);
+				final int matches = matcher.getMatches().size();
+
+				if (matches >= minMatches) {
+					context.write(new Text(other + " " + id), new IntWritable(matches));
+					context.getCounter(COUNTERS.VERIFIED).increment(1L);
+				} else {
+					context.getCounter(COUNTERS.REJECTED).increment(1L);
+				}
+			}
+		}
+	}
+
+	@Option(
+			name = "--remove",
+			aliases = "-rm",
+			required = false,
+			usage = "Remove the existing output location if it exists.",
+			metaVar = "BOOLEAN")
+	private boolean replace = false;
+
+	@Option(
+			name = "--candidates",
+			aliases = "-c",
+			required = true,
+			usage = "Input candidate graph edges file (from SimpleLSHDuplicatesFinder).",
+			metaVar = "STRING")
+	private String candidates;
+
+	@Option(name = "--features", aliases = "-f", required = true, usage = "Input local features file.", metaVar = "STRING")
+	private String features;
+
+	@Option(name = "--output", aliases = "-o", required = true, usage = "Output verified graph edges file.", metaVar = "STRING")
+	private String output;
+
+	@Option(
+			name = "--max-candidates",
+			aliases = "-k",
+			required = false,
+			usage = "Maximum number of candidates to verify for each image.",
+			metaVar = "NUMBER")
+	private int maxCandidates = 10;
+
+	@Option(
+			name = "--min-count",
+			aliases = "-min",
+			required = false,
+			usage = "Minimum LSH collision count of a candidate.",
+			metaVar = "NUMBER")
+	private int minCount = 2;
+
+	@Option(
+			name = "--min-matches",
+			aliases = "-m",
+			required = false,
+			usage = "Minimum number of matching features for a candidate to be accepted.",
+			metaVar = "NUMBER")
+	private int minMatches = 10;
+
+	@Option(name = "--num-reducers", aliases = "-nr", required = false, usage = "Number of reducers.", metaVar = "NUMBER")
+	private int numReducers = 1;
+
+	@Override
+	public int run(String[] args) throws Exception {
+		final CmdLineParser parser = new CmdLineParser(this);
+
+		try {
+			parser.parseArgument(args);
+		} catch (final CmdLineException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: hadoop jar HadoopImageIndexer.jar [options]");
+			parser.printUsage(System.err);
+			return -1;
+		}
+
+		final Path[] featurePaths = SequenceFileUtility.getFilePaths(features, "part");
+		final Path[] candidatePaths = SequenceFileUtility.getFilePaths(candidates, "part");
+		final Path outputPath = new Path(output);
+		final Path selectedPath = new Path(output + "-selected");
+
+		if (outputPath.getFileSystem(this.getConf()).exists(outputPath) && replace)
+			outputPath.getFileSystem(this.getConf()).delete(outputPath, true);
+		if (selectedPath.getFileSystem(this.getConf()).exists(selectedPath))
+			selectedPath.getFileSystem(this.getConf()).delete(selectedPath, true);
+
+		// first pass: select candidates and attach the features of the
+		// smaller image
+		final Job select = createJob("select duplicate candidates");
+		for (final Path p : featurePaths)
+			MultipleInputs.addInputPath(select, p, SequenceFileInputFormat.class, FeaturesMapper.class);
+		for (final Path p : candidatePaths)
+			MultipleInputs.addInputPath(select, p, TextInputFormat.class, CandidatesMapper.class);
+
+		select.setReducerClass(SelectReducer.class);
+		select.setOutputKeyClass(TaggedKey.class);
+		select.setOutputValueClass(BytesWritable.class);
+		select.setOutputFormatClass(SequenceFileOutputFormat.class);
+		SequenceFileOutputFormat.setOutputPath(select, selectedPath);
+		SequenceFileOutputFormat.setCompressOutput(select, false);
+
+		select.getConfiguration().setInt(MAX_CANDIDATES_KEY, maxCandidates);
+		select.getConfiguration().setInt(MIN_COUNT_KEY, minCount);
+
+		if (!select.waitForCompletion(true))
+			return 1;
+
+		// second pass: attach the features of the larger image and verify
+		final Job verify = createJob("verify duplicate candidates");
+		for (final Path p : featurePaths)
+			MultipleInputs.addInputPath(verify, p, SequenceFileInputFormat.class, FeaturesMapper.class);
+		MultipleInputs.addInputPath(verify, selectedPath, SequenceFileInputFormat.class, Mapper.class);
+
+		verify.setReducerClass(VerifyReducer.class);
+		verify.setOutputKeyClass(Text.class);
+		verify.setOutputValueClass(IntWritable.class);
+		verify.setOutputFormatClass(TextOutputFormat.class);
+		FileOutputFormat.setOutputPath(verify, outputPath);
+		FileOutputFormat.setCompressOutput(verify, false);
+
+		verify.getConfiguration().setInt(MIN_MATCHES_KEY, minMatches);
+
+		final boolean success = verify.waitForCompletion(true);
+		selectedPath.getFileSystem(this.getConf()).delete(selectedPath, true);
+
+		return success ? 0 : 1;
+	}
+
+	private Job createJob(String name) throws IOException {
+		final Job job = new Job(this.getConf(), name);
+		job.setJarByClass(this.getClass());
+
+		job.setMapOutputKeyClass(TaggedKey.class);
+		job.setMapOutputValueClass(BytesWritable.class);
+		job.setPartitionerClass(TaggedKeyPartitioner.class);
+		job.setGroupingComparatorClass(TaggedKeyGroupingComparator.class);
+		job.setNumReduceTasks(numReducers);
+
+		return job;
+	}
+
+	/**
+	 * Main method
+	 * 
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		ToolRunner.run(new DuplicateCandidateVerifier(), args);
+	}
+}
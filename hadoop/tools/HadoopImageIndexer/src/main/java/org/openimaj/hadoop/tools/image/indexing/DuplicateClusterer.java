@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.tools.image.indexing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.openimaj.hadoop.sequencefile.SequenceFileUtility;
+import org.openimaj.util.set.DisjointSetForest;
+
+/**
+ * Tool to group images into clusters of duplicates by finding the connected
+ * components of a graph of <code>id1 id2 count</code> edges (for example, the
+ * output of the {@link DuplicateCandidateVerifier} or {@link DupsEdgeFilter})
+ * with a union-find ({@link DisjointSetForest}). Only the images that appear
+ * in the edges are held in memory. Each cluster is written as a line of
+ * space-separated ids, largest cluster first.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class DuplicateClusterer extends Configured implements Tool {
+	@Option(name = "--input", aliases = "-i", required = true, usage = "Input graph edges file.", metaVar = "STRING")
+	private String input;
+
+	@Option(name = "--output", aliases = "-o", required = true, usage = "Output clusters file.", metaVar = "STRING")
+	private String output;
+
+	@Option(
+			name = "--min-count",
+			aliases = "-min",
+			required = false,
+			usage = "Minimum weight of an edge for it to be used.",
+			metaVar = "NUMBER")
+	private int minCount = 0;
+
+	@Option(
+			name = "--min-cluster-size",
+			aliases = "-mcs",
+			required = false,
+			usage = "Minimum size of a cluster for it to be written.",
+			metaVar = "NUMBER")
+	private int minClusterSize = 2;
+
+	@Override
+	public int run(String[] args) throws Exception {
+		final CmdLineParser parser = new CmdLineParser(this);
+
+		try {
+			parser.parseArgument(args);
+		} catch (final CmdLineException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: hadoop jar HadoopImageIndexer.jar [options]");
+			parser.printUsage(System.err);
+			return -1;
+		}
+
+		final DisjointSetForest<String> forest = new DisjointSetForest<String>();
+
+		for (final Path p : SequenceFileUtility.getFilePaths(input, "part"))
+			readEdges(p, forest);
+
+		final List<Set<String>> clusters = new ArrayList<Set<String>>();
+		for (final Set<String> cluster : forest.getSubsets())
+			if (cluster.size() >= minClusterSize)
+				clusters.add(cluster);
+
+		Collections.sort(clusters, new Comparator<Set<String>>() {
+			@Override
+			public int compare(Set<String> o1, Set<String> o2) {
+				return o2.size() - o1.size();
+			}
+		});
+
+		final Path outputPath = new Path(output);
+		final PrintWriter pw = new PrintWriter(outputPath.getFileSystem(this.getConf()).create(outputPath));
+		try {
+			for (final Set<String> cluster : clusters) {
+				final List<String> ids = new ArrayList<String>(cluster);
+				Collections.sort(ids);
+
+				final StringBuilder sb = new StringBuilder(ids.get(0));
+				for (int i = 1; i < ids.size(); i++)
+					sb.append(' ').append(ids.get(i));
+
+				pw.println(sb);
+			}
+		} finally {
+			pw.close();
+		}
+
+		System.out.println("Found " + clusters.size() + " clusters of " + forest.size() + " images");
+
+		return 0;
+	}
+
+	private void readEdges(Path path, DisjointSetForest<String> forest) throws IOException {
+		final FileSystem fs = path.getFileSystem(this.getConf());
+		final BufferedReader br = new BufferedReader(new InputStreamReader(fs.open(path), "UTF-8"));
+
+		try {
+			readEdges(br, minCount, forest);
+		} finally {
+			br.close();
+		}
+	}
+
+	/**
+	 * Read <code>id1 id2 count</code> edges (separated by any whitespace, as
+	 * in the <code>"id1 id2\tcount"</code> lines written by a
+	 * {@link org.apache.hadoop.mapreduce.lib.output.TextOutputFormat}) and
+	 * join the images of each edge with at least the minimum count. Lines
+	 * that don't have three fields are ignored.
+	 */
+	static void readEdges(BufferedReader br, int minCount, DisjointSetForest<String> forest) throws IOException {
+		String line;
+		while ((line = br.readLine()) != null) {
+			final String[] parts = line.split("\\s");
+
+			if (parts.length == 3 && Integer.parseInt(parts[2]) >= minCount) {
+				forest.add(parts[0]);
+				forest.add(parts[1]);
+				forest.union(parts[0], parts[1]);
+			}
+		}
+	}
+
+	/**
+	 * Main method
+	 * 
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		ToolRunner.run(new DuplicateClusterer(), args);
+	}
+}
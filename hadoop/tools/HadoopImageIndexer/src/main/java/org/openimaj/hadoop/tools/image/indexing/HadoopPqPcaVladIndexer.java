@@ -60,6 +60,9 @@ import org.openimaj.image.indexing.vlad.VLADIndexerData;
 /**
  * Indexer for Product-quantised VLAD-PCA features. Consumes existing
  * local-features and requires a {@link VLADIndexerData} to provide the data.
+ * The codes can optionally be written as memory-mappable shards (see
+ * {@link PQCodeShardOutputFormat}) that can be searched directly with a
+ * {@link org.openimaj.image.indexing.vlad.ShardedPQIndex}.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
@@ -150,6 +153,21 @@ public class HadoopPqPcaVladIndexer extends Configured implements Tool {
 	@Option(name = "--indexer-data", aliases = "-id", required = true, usage = "Indexer data file.", metaVar = "STRING")
 	private String indexerData;
 
+	@Option(
+			name = "--sharded",
+			required = false,
+			usage = "Write the PQ codes as memory-mappable shards (see ShardedPQIndex) rather than a sequencefile.",
+			metaVar = "BOOLEAN")
+	private boolean sharded = false;
+
+	@Option(
+			name = "--num-shards",
+			aliases = "-ns",
+			required = false,
+			usage = "Number of shards to write; by default one shard is written per map task.",
+			metaVar = "NUMBER")
+	private int numShards = -1;
+
 	@Override
 	public int run(String[] args) throws Exception {
 		final CmdLineParser parser = new CmdLineParser(this);
@@ -172,7 +190,15 @@ public class HadoopPqPcaVladIndexer extends Configured implements Tool {
 		final Job job = TextBytesJobUtil.createJob(paths, outputPath, null, this.getConf());
 		job.setJarByClass(this.getClass());
 		job.setMapperClass(PqPcaVladMapper.class);
-		job.setNumReduceTasks(0);
+
+		if (sharded) {
+			job.setOutputFormatClass(PQCodeShardOutputFormat.class);
+
+			// the default reducer passes the codes through to the shards
+			job.setNumReduceTasks(numShards > 0 ? numShards : 0);
+		} else {
+			job.setNumReduceTasks(0);
+		}
 
 		MultipleOutputs.addNamedOutput(job, "pcavlad", SequenceFileOutputFormat.class, Text.class, BytesWritable.class);
 
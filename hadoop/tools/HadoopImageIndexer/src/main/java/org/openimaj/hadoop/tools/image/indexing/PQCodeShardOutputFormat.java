@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.tools.image.indexing;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.openimaj.image.indexing.vlad.PQCodeShard;
+import org.openimaj.image.indexing.vlad.PQCodeShardWriter;
+
+/**
+ * Output format that writes product-quantised codes (keyed by their
+ * identifier) as a memory-mappable {@link PQCodeShard}. Each task writes one
+ * shard, consisting of a <code>part-*.codes</code> file and a corresponding
+ * <code>part-*.ids</code> file. The output directory can be searched directly
+ * with a {@link org.openimaj.image.indexing.vlad.ShardedPQIndex}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class PQCodeShardOutputFormat extends FileOutputFormat<Text, BytesWritable> {
+	@Override
+	public RecordWriter<Text, BytesWritable> getRecordWriter(final TaskAttemptContext context) throws IOException,
+			InterruptedException
+	{
+		final Configuration conf = context.getConfiguration();
+		final Path codesFile = getDefaultWorkFile(context, PQCodeShard.CODES_EXTENSION);
+		final Path idsFile = getDefaultWorkFile(context, PQCodeShard.IDS_EXTENSION);
+		final FileSystem fs = codesFile.getFileSystem(conf);
+
+		return new RecordWriter<Text, BytesWritable>() {
+			// the code length isn't known until the first record arrives
+			PQCodeShardWriter writer;
+
+			@Override
+			public void write(Text key, BytesWritable value) throws IOException {
+				final byte[] code = Arrays.copyOf(value.getBytes(), value.getLength());
+
+				if (writer == null)
+					writer = new PQCodeShardWriter(fs.create(codesFile, false), fs.create(idsFile, false), code.length);
+
+				writer.add(key.toString(), code);
+			}
+
+			@Override
+			public void close(TaskAttemptContext context) throws IOException {
+				if (writer != null)
+					writer.close();
+			}
+		};
+	}
+}
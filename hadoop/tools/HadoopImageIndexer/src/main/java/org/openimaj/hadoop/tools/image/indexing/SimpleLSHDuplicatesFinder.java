@@ -30,6 +30,7 @@
 package org.openimaj.hadoop.tools.image.indexing;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.Path;
@@ -52,18 +53,25 @@ import org.openimaj.hadoop.sequencefile.SequenceFileUtility;
 public class SimpleLSHDuplicatesFinder extends Configured implements Tool {
 	private static final String LOWER_THRESH_KEY = "lower.thresh";
 	private static final String UPPER_THRESH_KEY = "upper.thresh";
+	private static final String SAMPLE_SIZE_KEY = "sample.size";
 
 	static class Map extends Mapper<IntWritable, Text, Text, IntWritable> {
+		static enum COUNTERS {
+			SAMPLED, SKIPPED;
+		}
+
 		private final static IntWritable ONE = new IntWritable(1);
 
 		int lowerThresh;
 		int upperThresh;
+		int sampleSize;
 
 		@Override
 		protected void setup(Context context) throws IOException, InterruptedException
 		{
 			lowerThresh = context.getConfiguration().getInt(LOWER_THRESH_KEY, 0);
 			upperThresh = context.getConfiguration().getInt(UPPER_THRESH_KEY, 100);
+			sampleSize = context.getConfiguration().getInt(SAMPLE_SIZE_KEY, -1);
 		}
 
 		@Override
@@ -76,10 +84,20 @@ public class SimpleLSHDuplicatesFinder extends Configured implements Tool {
 				count++;
 			}
 
-			if (count > upperThresh || count <= lowerThresh)
+			if (count <= lowerThresh)
 				return;
 
-			final String[] ids = value.toString().split(" ");
+			String[] ids = value.toString().split(" ");
+
+			if (count > upperThresh) {
+				if (sampleSize <= 0) {
+					context.getCounter(COUNTERS.SKIPPED).increment(1L);
+					return;
+				}
+
+				ids = sample(ids, key.get(), sampleSize);
+				context.getCounter(COUNTERS.SAMPLED).increment(1L);
+			}
 
 			// FIXME: edge weights
 			for (int i = 0; i < ids.length; i++)
@@ -91,6 +109,40 @@ public class SimpleLSHDuplicatesFinder extends Configured implements Tool {
 		}
 	}
 
+	/**
+	 * Select a deterministic pseudo-random sample of the given size from the
+	 * ids of a bucket, by keeping the ids with the smallest hashes (salted by
+	 * the bucket so that different buckets keep different ids). This bounds
+	 * the number of pairs emitted for a popular bucket to
+	 * <code>size*(size-1)/2</code>.
+	 */
+	static String[] sample(String[] ids, int bucket, int size) {
+		if (ids.length <= size)
+			return ids;
+
+		final long[] hashes = new long[ids.length];
+		for (int i = 0; i < ids.length; i++)
+			hashes[i] = (mix(((long) ids[i].hashCode() << 32) ^ (bucket & 0xffffffffL)) << 32) | i;
+
+		Arrays.sort(hashes);
+
+		final String[] sample = new String[size];
+		for (int i = 0; i < size; i++)
+			sample[i] = ids[(int) (hashes[i] & 0xffffffffL)];
+
+		return sample;
+	}
+
+	// 64-bit finaliser from MurmurHash3; only the high 32 bits are used
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h >>> 32;
+	}
+
 	static class Reduce extends Reducer<Text, IntWritable, Text, IntWritable> {
 		@Override
 		protected void reduce(Text key, Iterable<IntWritable> values, Context context) throws IOException,
@@ -147,6 +199,13 @@ public class SimpleLSHDuplicatesFinder extends Configured implements Tool {
 			usage = "max threshold for bin size (bin count must be < maxThreshold)")
 	private int maxThreshold;
 
+	@Option(
+			name = "--sample-size",
+			aliases = "-ss",
+			required = false,
+			usage = "rather than discarding bins larger than the max threshold, randomly sample this many ids from them")
+	private int sampleSize = -1;
+
 	@Override
 	public int run(String[] args) throws Exception {
 		final CmdLineParser parser = new CmdLineParser(this);
@@ -188,6 +247,7 @@ public class SimpleLSHDuplicatesFinder extends Configured implements Tool {
 
 		job.getConfiguration().setInt(LOWER_THRESH_KEY, minThreshold);
 		job.getConfiguration().setInt(UPPER_THRESH_KEY, maxThreshold);
+		job.getConfiguration().setInt(SAMPLE_SIZE_KEY, sampleSize);
 
 		job.waitForCompletion(true);
 
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.tools.image.indexing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.openimaj.hadoop.tools.image.indexing.DuplicateCandidateVerifier.TaggedKey;
+import org.openimaj.hadoop.tools.image.indexing.DuplicateCandidateVerifier.TaggedKeyGroupingComparator;
+import org.openimaj.hadoop.tools.image.indexing.DuplicateCandidateVerifier.TaggedKeyPartitioner;
+
+/**
+ * Tests for the secondary sort keys of the {@link DuplicateCandidateVerifier}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class DuplicateCandidateVerifierTest {
+	private static final byte FEATURES = DuplicateCandidateVerifier.FEATURES;
+	private static final byte CANDIDATE = DuplicateCandidateVerifier.CANDIDATE;
+
+	/**
+	 * Test that keys sort by id, with the features of an image before its
+	 * candidates
+	 */
+	@Test
+	public void testOrdering() {
+		final List<TaggedKey> keys = new ArrayList<TaggedKey>();
+		keys.add(new TaggedKey("b", CANDIDATE));
+		keys.add(new TaggedKey("a", CANDIDATE));
+		keys.add(new TaggedKey("b", FEATURES));
+		keys.add(new TaggedKey("a", CANDIDATE));
+		keys.add(new TaggedKey("a", FEATURES));
+
+		Collections.sort(keys);
+
+		final String[] ids = { "a", "a", "a", "b", "b" };
+		final byte[] tags = { FEATURES, CANDIDATE, CANDIDATE, FEATURES, CANDIDATE };
+		for (int i = 0; i < keys.size(); i++) {
+			assertEquals(ids[i], keys.get(i).id);
+			assertEquals(tags[i], keys.get(i).tag);
+		}
+	}
+
+	/**
+	 * Test that keys are grouped and partitioned by id alone
+	 */
+	@Test
+	public void testGrouping() {
+		final TaggedKeyGroupingComparator comparator = new TaggedKeyGroupingComparator();
+		final TaggedKeyPartitioner partitioner = new TaggedKeyPartitioner();
+
+		final TaggedKey af = new TaggedKey("a", FEATURES);
+		final TaggedKey ac = new TaggedKey("a", CANDIDATE);
+		final TaggedKey bf = new TaggedKey("b", FEATURES);
+
+		assertEquals(0, comparator.compare(af, ac));
+		assertTrue(comparator.compare(ac, bf) < 0);
+		assertTrue(comparator.compare(bf, ac) > 0);
+
+		for (int n = 1; n < 10; n++)
+			assertEquals(partitioner.getPartition(af, null, n), partitioner.getPartition(ac, null, n));
+	}
+
+	/**
+	 * Test that keys survive serialisation
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testReadWrite() throws IOException {
+		final TaggedKey key = new TaggedKey("images/\u00e9t\u00e9.jpg", CANDIDATE);
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		key.write(new DataOutputStream(baos));
+
+		final TaggedKey read = new TaggedKey();
+		read.readFields(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+
+		assertEquals(key, read);
+		assertEquals(key.hashCode(), read.hashCode());
+	}
+}
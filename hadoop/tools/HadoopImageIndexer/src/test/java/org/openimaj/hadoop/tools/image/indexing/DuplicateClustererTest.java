@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.tools.image.indexing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.openimaj.util.set.DisjointSetForest;
+
+/**
+ * Tests for the edge parsing of the {@link DuplicateClusterer}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class DuplicateClustererTest {
+	private static DisjointSetForest<String> read(String edges, int minCount) throws IOException {
+		final DisjointSetForest<String> forest = new DisjointSetForest<String>();
+		DuplicateClusterer.readEdges(new BufferedReader(new StringReader(edges)), minCount, forest);
+		return forest;
+	}
+
+	/**
+	 * Test that <code>"a b\tN"</code> edges are parsed and joined
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testReadEdges() throws IOException {
+		final DisjointSetForest<String> forest = read("a b\t5\nb c\t3\nd e\t7\n", 0);
+
+		assertEquals(5, forest.size());
+		assertEquals(2, forest.getSubsets().size());
+		assertEquals(forest.find("a"), forest.find("c"));
+		assertEquals(forest.find("d"), forest.find("e"));
+		assertFalse(forest.find("a").equals(forest.find("d")));
+	}
+
+	/**
+	 * Test that edges below the minimum count and malformed lines are
+	 * ignored
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testFiltering() throws IOException {
+		final DisjointSetForest<String> forest = read("a b\t5\nb c\t3\n\nx\ny z w\t9\n", 4);
+
+		assertEquals(2, forest.size());
+		assertEquals(forest.find("a"), forest.find("b"));
+		assertNull(forest.find("c"));
+	}
+}
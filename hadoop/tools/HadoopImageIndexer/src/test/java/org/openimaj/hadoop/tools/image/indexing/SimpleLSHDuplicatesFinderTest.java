@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.tools.image.indexing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for the bucket sampling in {@link SimpleLSHDuplicatesFinder}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class SimpleLSHDuplicatesFinderTest {
+	private static String[] ids(int n) {
+		final String[] ids = new String[n];
+		for (int i = 0; i < n; i++)
+			ids[i] = "image" + i;
+		return ids;
+	}
+
+	/**
+	 * Test that buckets no bigger than the sample size are returned unchanged
+	 */
+	@Test
+	public void testSmallBucket() {
+		final String[] ids = ids(10);
+
+		assertSame(ids, SimpleLSHDuplicatesFinder.sample(ids, 1, 10));
+		assertSame(ids, SimpleLSHDuplicatesFinder.sample(ids, 1, 20));
+	}
+
+	/**
+	 * Test that a sample has the requested size and contains distinct
+	 * members of the bucket
+	 */
+	@Test
+	public void testSampleSize() {
+		final String[] ids = ids(1000);
+		final List<String> all = Arrays.asList(ids);
+
+		final String[] sample = SimpleLSHDuplicatesFinder.sample(ids, 42, 50);
+		assertEquals(50, sample.length);
+
+		final Set<String> distinct = new HashSet<String>(Arrays.asList(sample));
+		assertEquals(sample.length, distinct.size());
+		assertTrue(all.containsAll(distinct));
+	}
+
+	/**
+	 * Test that sampling is deterministic, so the same bucket is sampled in
+	 * the same way by every mapper that sees it, and that it doesn't depend
+	 * on the order of the ids
+	 */
+	@Test
+	public void testDeterministic() {
+		final String[] ids = ids(1000);
+		final String[] reversed = ids.clone();
+		for (int i = 0; i < ids.length; i++)
+			reversed[i] = ids[ids.length - 1 - i];
+
+		final String[] sample = SimpleLSHDuplicatesFinder.sample(ids, 42, 50);
+		assertArrayEquals(sample, SimpleLSHDuplicatesFinder.sample(ids, 42, 50));
+
+		final Set<String> expected = new HashSet<String>(Arrays.asList(sample));
+		assertEquals(expected, new HashSet<String>(Arrays.asList(SimpleLSHDuplicatesFinder.sample(reversed, 42, 50))));
+	}
+
+	/**
+	 * Test that different buckets are sampled differently
+	 */
+	@Test
+	public void testBucketSalt() {
+		final String[] ids = ids(1000);
+
+		final Set<String> s1 = new HashSet<String>(Arrays.asList(SimpleLSHDuplicatesFinder.sample(ids, 1, 50)));
+		final Set<String> s2 = new HashSet<String>(Arrays.asList(SimpleLSHDuplicatesFinder.sample(ids, 2, 50)));
+
+		assertFalse(s1.equals(s2));
+	}
+}
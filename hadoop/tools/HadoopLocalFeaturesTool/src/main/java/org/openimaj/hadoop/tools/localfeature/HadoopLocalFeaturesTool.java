@@ -48,6 +48,7 @@ import org.apache.log4j.Logger;
 import org.openimaj.feature.local.LocalFeature;
 import org.openimaj.feature.local.list.LocalFeatureList;
 import org.openimaj.hadoop.mapreduce.TextBytesJobUtil;
+import org.openimaj.hadoop.mapreduce.local.LocalJobExecutor;
 import org.openimaj.hadoop.sequencefile.MetadataConfiguration;
 import org.openimaj.hadoop.sequencefile.TextBytesSequenceFileUtility;
 import org.openimaj.io.IOUtils;
@@ -152,7 +153,10 @@ public class HadoopLocalFeaturesTool extends Configured implements Tool {
 
 		long start, end;
 		start = System.currentTimeMillis();
-		job.waitForCompletion(true);
+		if (LocalJobExecutor.isEnabled(job.getConfiguration()))
+			new LocalJobExecutor(job.getConfiguration()).run(job);
+		else
+			job.waitForCompletion(true);
 		end = System.currentTimeMillis();
 
 		System.out.println("Took: " + (end - start) + "ms");
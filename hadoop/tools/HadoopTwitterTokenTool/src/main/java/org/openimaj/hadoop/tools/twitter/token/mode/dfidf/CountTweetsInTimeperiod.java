@@ -35,10 +35,11 @@ import gnu.trove.procedure.TLongObjectProcedure;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
@@ -88,6 +89,7 @@ public class CountTweetsInTimeperiod extends StageProvider {
 	private boolean inmemoryCombine;
 	private boolean buildTimeIndex = true;
 	private long timedelta;
+	private int spillSize = DEFAULT_SPILL_SIZE;
 	/**
 	 * option for the timecount dir location
 	 */
@@ -110,6 +112,16 @@ public class CountTweetsInTimeperiod extends StageProvider {
 	 */
 	public final static String TIMEINDEX_LOCATION_PROP = "org.openimaj.hadoop.tools.twitter.token.mode.dfidf.timeindex";
 
+	/**
+	 * The number of word counts a mapper holds in memory before emitting them
+	 */
+	public final static String SPILL_SIZE = "org.openimaj.hadoop.tools.twitter.token.mode.dfidf.spillsize";
+
+	/**
+	 * The default value of {@link #SPILL_SIZE}
+	 */
+	public final static int DEFAULT_SPILL_SIZE = 500000;
+
 	/**
 	 * @param nonHadoopArgs
 	 *            to be sent to the stage
@@ -139,12 +151,37 @@ public class CountTweetsInTimeperiod extends StageProvider {
 		this.timedelta = timedelta;
 	}
 
+	/**
+	 * @param nonHadoopArgs
+	 *            to be sent to the stage
+	 * @param inMemoryCombine
+	 *            whether an in memory combination of word counts should be
+	 *            performed
+	 * @param timedelta
+	 *            the time delta between which to quantise time periods
+	 * @param spillSize
+	 *            the number of word counts each mapper holds in memory before
+	 *            emitting them
+	 */
+	public CountTweetsInTimeperiod(String[] nonHadoopArgs, boolean inMemoryCombine,
+			long timedelta, int spillSize)
+	{
+		this(nonHadoopArgs, inMemoryCombine, timedelta);
+		this.spillSize = spillSize;
+	}
+
 	/**
 	 *
 	 * map input: tweetstatus # json twitter status with JSONPath to words map
 	 * output: <timePeriod: <word:#freq,tweets:#freq>,
 	 * -1:<word:#freq,tweets:#freq> >
 	 *
+	 * The counts are held in memory and emitted when the mapper finishes, or
+	 * earlier if more than {@link CountTweetsInTimeperiod#SPILL_SIZE} word
+	 * counts are held. A time period may therefore be emitted more than once
+	 * by a single mapper; the reducers combine these as they would the
+	 * output of different mappers.
+	 *
 	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk), Sina Samangooei
 	 *         <ss@ecs.soton.ac.uk>
 	 *
@@ -171,6 +208,8 @@ public class CountTweetsInTimeperiod extends StageProvider {
 		private long timeDeltaMillis;
 		private JsonPath jsonPath;
 		private JsonPathFilterSet filters;
+		private int spillSize;
+		private int held;
 
 		protected synchronized void loadOptions(Mapper<LongWritable, Text, LongWritable, BytesWritable>.Context context)
 				throws IOException
@@ -200,6 +239,8 @@ public class CountTweetsInTimeperiod extends StageProvider {
 		{
 			loadOptions(context);
 			this.tweetWordMap = new HashMap<Long, TweetCountWordMap>();
+			this.spillSize = context.getConfiguration().getInt(SPILL_SIZE, DEFAULT_SPILL_SIZE);
+			this.held = 0;
 		}
 
 		@Override
@@ -250,16 +291,16 @@ public class CountTweetsInTimeperiod extends StageProvider {
 			}
 			final TObjectIntHashMap<String> tpMap = timeWordMap.getTweetWordMap();
 			timeWordMap.incrementTweetCount(1);
-			final List<String> seen = new ArrayList<String>();
+			final Set<String> seen = new HashSet<String>();
 			for (final String token : tokens) {
 				// Apply stop words?
 				// Apply junk words?
 				// Already seen it?
 
-				if (seen.contains(token))
+				if (!seen.add(token))
 					continue;
-				seen.add(token);
-				tpMap.adjustOrPutValue(token, 1, 1);
+				if (tpMap.adjustOrPutValue(token, 1, 1) == 1)
+					held++;
 				// if(token.equals("...")){
 				// System.out.println("TOKEN: " + token);
 				// System.out.println("TIME: " + timeIndex);
@@ -267,6 +308,8 @@ public class CountTweetsInTimeperiod extends StageProvider {
 				// }
 			}
 			context.getCounter(TextEntryType.VALID).increment(1);
+			if (held >= spillSize)
+				spill(context);
 		}
 
 		@Override
@@ -274,6 +317,12 @@ public class CountTweetsInTimeperiod extends StageProvider {
 				throws IOException, InterruptedException
 		{
 			System.out.println("Cleaing up mapper, seen " + this.tweetWordMap.entrySet().size() + " time slots");
+			spill(context);
+		}
+
+		private void spill(Mapper<LongWritable, Text, LongWritable, BytesWritable>.Context context)
+				throws IOException, InterruptedException
+		{
 			for (final Entry<Long, TweetCountWordMap> tpMapEntry : this.tweetWordMap.entrySet()) {
 				final Long time = tpMapEntry.getKey();
 				final TweetCountWordMap map = tpMapEntry.getValue();
@@ -286,6 +335,8 @@ public class CountTweetsInTimeperiod extends StageProvider {
 				context.write(new LongWritable(time), toWrite);
 				context.getCounter(TextEntryType.ACUAL_EMITS).increment(1);
 			}
+			this.tweetWordMap.clear();
+			this.held = 0;
 		}
 	}
 
@@ -390,6 +441,7 @@ public class CountTweetsInTimeperiod extends StageProvider {
 			public void setup(Job job) {
 				job.getConfiguration().setStrings(HadoopTwitterTokenToolOptions.ARGS_KEY, nonHadoopArgs);
 				job.getConfiguration().setLong(TIMEDELTA, timedelta);
+				job.getConfiguration().setInt(SPILL_SIZE, spillSize);
 				job.getConfiguration().setStrings(TIMEINDEX_LOCATION_PROP,
 						new Path(actualOutputLocation, TIMEINDEX_FILE).toString());
 				if (!inmemoryCombine) {
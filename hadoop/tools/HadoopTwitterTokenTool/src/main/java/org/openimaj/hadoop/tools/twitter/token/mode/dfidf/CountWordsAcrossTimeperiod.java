@@ -32,12 +32,12 @@ package org.openimaj.hadoop.tools.twitter.token.mode.dfidf;
 import gnu.trove.procedure.TObjectIntProcedure;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.TreeSet;
 
 import org.apache.hadoop.fs.FileSystem;
@@ -88,6 +88,7 @@ import org.openimaj.io.wrappers.WriteableListBinary;
 public class CountWordsAcrossTimeperiod extends StageProvider {
 	private String[] nonHadoopArgs;
 	private boolean combinedTimes = false;
+	private int spillSize = CountTweetsInTimeperiod.DEFAULT_SPILL_SIZE;
 
 	/**
 	 *
@@ -108,6 +109,21 @@ public class CountWordsAcrossTimeperiod extends StageProvider {
 		this.combinedTimes = combinedTimes;
 	}
 
+	/**
+	 * @param nonHadoopArgs
+	 * @param combinedTimes
+	 *            whether the mapper expects times entries with values for each
+	 *            word. i.e. combined times
+	 * @param spillSize
+	 *            the number of word/time period counts each mapper holds in
+	 *            memory before emitting them
+	 */
+	public CountWordsAcrossTimeperiod(String[] nonHadoopArgs, boolean combinedTimes, int spillSize) {
+		this.nonHadoopArgs = nonHadoopArgs;
+		this.combinedTimes = combinedTimes;
+		this.spillSize = spillSize;
+	}
+
 	/**
 	 * arg key
 	 */
@@ -121,8 +137,13 @@ public class CountWordsAcrossTimeperiod extends StageProvider {
 	/**
 	 * function(timePeriodLength) map input: <timePeriod:
 	 * <<tweet:#freq>,<word:#freq>,<word:#freq>,...> map output: [ word:
-	 * <timeperiod, tweet:#freq, word:#freq>, word: <timeperiod, tweet:#freq,
-	 * word:#freq>, ... ]
+	 * [<timeperiod, tweet:#freq, word:#freq>, <timeperiod, tweet:#freq,
+	 * word:#freq>, ...], ... ]
+	 *
+	 * The counts of each word are aggregated in memory across the input
+	 * records as {@link WordTimeperiodCounts} and emitted once
+	 * {@link CountTweetsInTimeperiod#SPILL_SIZE} word/time period counts are
+	 * held, and when the mapper finishes.
 	 *
 	 * @author Sina Samangooei (ss@ecs.soton.ac.uk)
 	 *
@@ -138,6 +159,9 @@ public class CountWordsAcrossTimeperiod extends StageProvider {
 		}
 
 		private static HadoopTwitterTokenToolOptions options;
+		private HashMap<String, WordTimeperiodCounts> wordCounts;
+		private int spillSize;
+		private int held;
 
 		protected static synchronized void loadOptions(
 				Mapper<LongWritable, BytesWritable, Text, BytesWritable>.Context context) throws IOException
@@ -159,6 +183,10 @@ public class CountWordsAcrossTimeperiod extends StageProvider {
 				throws IOException, InterruptedException
 		{
 			loadOptions(context);
+			this.wordCounts = new HashMap<String, WordTimeperiodCounts>();
+			this.spillSize = context.getConfiguration().getInt(CountTweetsInTimeperiod.SPILL_SIZE,
+					CountTweetsInTimeperiod.DEFAULT_SPILL_SIZE);
+			this.held = 0;
 		}
 
 		@Override
@@ -169,30 +197,40 @@ public class CountWordsAcrossTimeperiod extends StageProvider {
 
 			final TweetCountWordMap periodCountWordCount = IOUtils.read(new ByteArrayInputStream(value.getBytes()),
 					TweetCountWordMap.class);
-			final boolean written = periodCountWordCount.getTweetWordMap().forEachEntry(new TObjectIntProcedure<String>()
-					{
-
+			final long ntweets = periodCountWordCount.getNTweets();
+			periodCountWordCount.getTweetWordMap().forEachEntry(new TObjectIntProcedure<String>() {
 				@Override
 				public boolean execute(String word, int wordCount) {
-					final TimeperiodTweetCountWordCount timeMap = new TimeperiodTweetCountWordCount(key.get(), wordCount,
-							periodCountWordCount.getNTweets());
-					final ByteArrayOutputStream os = new ByteArrayOutputStream();
-					try {
-						IOUtils.writeBinary(os, timeMap);
-						final BytesWritable writeable = new BytesWritable(os.toByteArray());
-						context.write(new Text(word), writeable);
-					} catch (final IOException e) {
-						return false;
-					} catch (final InterruptedException e) {
-						return false;
+					WordTimeperiodCounts counts = wordCounts.get(word);
+					if (counts == null) {
+						wordCounts.put(word, counts = new WordTimeperiodCounts());
 					}
+					if (counts.add(key.get(), wordCount, ntweets))
+						held++;
 
 					return true;
 				}
-					});
-			if (!written) {
-				throw new IOException("Couldn't write the TimeperiodTweetCountWordCount object");
+			});
+			if (held >= spillSize) {
+				spill(context);
+			}
+		}
+
+		@Override
+		protected void cleanup(Mapper<LongWritable, BytesWritable, Text, BytesWritable>.Context context)
+				throws IOException, InterruptedException
+		{
+			spill(context);
+		}
+
+		private void spill(Mapper<LongWritable, BytesWritable, Text, BytesWritable>.Context context)
+				throws IOException, InterruptedException
+		{
+			for (final Entry<String, WordTimeperiodCounts> entry : this.wordCounts.entrySet()) {
+				context.write(new Text(entry.getKey()), new BytesWritable(IOUtils.serialize(entry.getValue())));
 			}
+			this.wordCounts.clear();
+			this.held = 0;
 		}
 	}
 
@@ -229,12 +267,13 @@ public class CountWordsAcrossTimeperiod extends StageProvider {
 			TimeperiodTweetCountWordCount endTime = null;
 			final List<TimeperiodTweetCountWordCount> otherTimes = new ArrayList<TimeperiodTweetCountWordCount>();
 			for (final BytesWritable inputArr : values) {
-				final ByteArrayInputStream stream = new ByteArrayInputStream(inputArr.getBytes());
-				final TimeperiodTweetCountWordCount instance = IOUtils.read(stream, TimeperiodTweetCountWordCount.class);
-				if (instance.timeperiod == END_TIME.get())
-					endTime = instance;
-				else
-					otherTimes.add(instance);
+				final WordTimeperiodCounts counts = IOUtils.deserialize(inputArr.getBytes(), WordTimeperiodCounts.class);
+				for (final TimeperiodTweetCountWordCount instance : counts.values()) {
+					if (instance.timeperiod == END_TIME.get())
+						endTime = instance;
+					else
+						otherTimes.add(instance);
+				}
 			}
 			/*
 			 * # for entry in input: # DF = wf/tf # IDF = Ttf/Twf
@@ -346,47 +385,37 @@ public class CountWordsAcrossTimeperiod extends StageProvider {
 			TimeperiodTweetCountWordCount endTime = null;
 			final TreeSet<Long> times = new TreeSet<Long>();
 			final HashMap<Long, TimeperiodTweetCountWordCount> otherTimes = new HashMap<Long, TimeperiodTweetCountWordCount>();
-			System.out.println("STARTING WORD: " + word);
 			for (final BytesWritable inputArr : values) {
-				final ByteArrayInputStream stream = new ByteArrayInputStream(inputArr.getBytes());
-				final TimeperiodTweetCountWordCount instance = IOUtils.read(stream, TimeperiodTweetCountWordCount.class);
-				System.out.println("... FOUND TIME INSTANCE:" + instance.timeperiod);
-				if (instance.timeperiod == END_TIME.get())
-				{
-					if (endTime == null)
+				final WordTimeperiodCounts counts = IOUtils.deserialize(inputArr.getBytes(), WordTimeperiodCounts.class);
+				for (final TimeperiodTweetCountWordCount instance : counts.values()) {
+					if (instance.timeperiod == END_TIME.get())
 					{
-						// System.out.println("... end time CREATED");
-						endTime = instance;
-						endTime.tweetcount = tgs.getValue(TextEntryType.VALID);
+						if (endTime == null)
+						{
+							endTime = instance;
+							endTime.tweetcount = tgs.getValue(TextEntryType.VALID);
+						}
+						else
+						{
+							endTime.wordcount += instance.wordcount;
+						}
+						// Skip, not important!
+
 					}
 					else
 					{
-						// System.out.println("... end time INCREMENTED");
-						endTime.wordcount += instance.wordcount;
-					}
-					// Skip, not important!
-
-				}
-				else
-				{
-					times.add(instance.timeperiod);
-					final TimeperiodTweetCountWordCount currentTimeCounter = otherTimes.get(instance.timeperiod);
-					System.out.println("Instance tweet count: " + instance.tweetcount);
-					System.out.println("Instance word count: " + instance.wordcount);
-					if (currentTimeCounter == null) {
-						System.out.println("... time CREATED");
-						otherTimes.put(instance.timeperiod, instance);
-					}
-					else {
-						System.out.println("... incremented time CREATED");
-						currentTimeCounter.tweetcount += instance.tweetcount;
-						currentTimeCounter.wordcount += instance.wordcount;
+						times.add(instance.timeperiod);
+						final TimeperiodTweetCountWordCount currentTimeCounter = otherTimes.get(instance.timeperiod);
+						if (currentTimeCounter == null) {
+							otherTimes.put(instance.timeperiod, instance);
+						}
+						else {
+							currentTimeCounter.tweetcount += instance.tweetcount;
+							currentTimeCounter.wordcount += instance.wordcount;
+						}
 					}
 				}
 			}
-			// System.out.println("... TOTAL tweets = " + endTime.tweetcount);
-			// System.out.println("... TOTAL tweets with THIS word = " +
-			// endTime.wordcount);
 			/*
 			 * # for entry in input: # DF = wf/tf # IDF = Ttf/Twf
 			 */
@@ -425,6 +454,7 @@ public class CountWordsAcrossTimeperiod extends StageProvider {
 			@Override
 			public void setup(Job job) {
 				job.getConfiguration().setStrings(CountWordsAcrossTimeperiod.ARGS_KEY, nonHadoopArgs);
+				job.getConfiguration().setInt(CountTweetsInTimeperiod.SPILL_SIZE, spillSize);
 
 				// If times are not combined, each reducer has to do a bit more
 				// work than usual, t
@@ -48,6 +48,9 @@ public class DFIDFTokenMode implements TwitterTokenMode {
 	@Option(name = "--time-delta", aliases = "-t", required = false, usage = "The length of a time window in minutes (defaults to 1 hour (60))", metaVar = "STRING")
 	private long timeDelta = 60;
 
+	@Option(name = "--spill-size", aliases = "-spill", required = false, usage = "The number of word counts each mapper holds in memory before emitting them", metaVar = "NUMBER")
+	private int spillSize = CountTweetsInTimeperiod.DEFAULT_SPILL_SIZE;
+
 	private boolean combiningReducers = false;
 	private MultiStagedJob stages;
 	private String[] fstage;
@@ -58,9 +61,9 @@ public class DFIDFTokenMode implements TwitterTokenMode {
 		this.stages = new MultiStagedJob(HadoopToolsUtil.getInputPaths(opts), outpath, opts.getArgs());
 
 		// Associate words with time periods and construct the time index
-		stages.queueStage(new CountTweetsInTimeperiod(opts.getNonHadoopArgs(), combiningReducers, timeDelta).stage());
+		stages.queueStage(new CountTweetsInTimeperiod(opts.getNonHadoopArgs(), combiningReducers, timeDelta, spillSize).stage());
 		// produce the DFIDF per word per time period
-		stages.queueStage(new CountWordsAcrossTimeperiod(opts.getNonHadoopArgs(), combiningReducers).stage());
+		stages.queueStage(new CountWordsAcrossTimeperiod(opts.getNonHadoopArgs(), combiningReducers, spillSize).stage());
 
 		stages.runAll();
 		this.fstage = new String[] { outpath.toString() };
@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.tools.twitter.token.mode.dfidf;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.io.WritableUtils;
+import org.openimaj.hadoop.tools.twitter.utils.TimeperiodTweetCountWordCount;
+import org.openimaj.io.ReadWriteableBinary;
+
+/**
+ * All the {@link TimeperiodTweetCountWordCount} instances of a single
+ * (implicitly defined) word, keyed by time period. Counts added for the same
+ * time period are summed.
+ * <p>
+ * This is the value emitted by {@link CountWordsAcrossTimeperiod.Map}; it
+ * allows a mapper to emit a single record per word rather than one per word
+ * per time period. The binary form is compact: the time periods are written
+ * in ascending order as variable-length deltas and the counts as
+ * variable-length longs.
+ * 
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ * 
+ */
+public class WordTimeperiodCounts implements ReadWriteableBinary {
+	private TLongObjectHashMap<TimeperiodTweetCountWordCount> counts;
+
+	/**
+	 * empty counts
+	 */
+	public WordTimeperiodCounts() {
+		this.counts = new TLongObjectHashMap<TimeperiodTweetCountWordCount>();
+	}
+
+	/**
+	 * Add the counts of a time period, summing with any counts already held
+	 * for that time period
+	 * 
+	 * @param timeperiod
+	 * @param wordcount
+	 * @param tweetcount
+	 * @return true if the time period was not previously held
+	 */
+	public boolean add(long timeperiod, long wordcount, long tweetcount) {
+		final TimeperiodTweetCountWordCount current = this.counts.get(timeperiod);
+		if (current == null) {
+			this.counts.put(timeperiod, new TimeperiodTweetCountWordCount(timeperiod, wordcount, tweetcount));
+			return true;
+		}
+		current.wordcount += wordcount;
+		current.tweetcount += tweetcount;
+		return false;
+	}
+
+	/**
+	 * @return the number of time periods held
+	 */
+	public int size() {
+		return this.counts.size();
+	}
+
+	/**
+	 * @return the held counts ordered by time period
+	 */
+	public List<TimeperiodTweetCountWordCount> values() {
+		final long[] times = this.counts.keys();
+		Arrays.sort(times);
+		final List<TimeperiodTweetCountWordCount> ret = new ArrayList<TimeperiodTweetCountWordCount>(times.length);
+		for (final long time : times) {
+			ret.add(this.counts.get(time));
+		}
+		return ret;
+	}
+
+	@Override
+	public void readBinary(DataInput in) throws IOException {
+		this.counts.clear();
+		final int n = WritableUtils.readVInt(in);
+		long time = 0;
+		for (int i = 0; i < n; i++) {
+			if (i == 0)
+				time = WritableUtils.readVLong(in);
+			else
+				time += WritableUtils.readVLong(in);
+			final long wordcount = WritableUtils.readVLong(in);
+			final long tweetcount = WritableUtils.readVLong(in);
+			this.counts.put(time, new TimeperiodTweetCountWordCount(time, wordcount, tweetcount));
+		}
+	}
+
+	@Override
+	public byte[] binaryHeader() {
+		return "".getBytes();
+	}
+
+	@Override
+	public void writeBinary(DataOutput out) throws IOException {
+		final List<TimeperiodTweetCountWordCount> values = values();
+		WritableUtils.writeVInt(out, values.size());
+		long last = 0;
+		for (int i = 0; i < values.size(); i++) {
+			final TimeperiodTweetCountWordCount tcwc = values.get(i);
+			WritableUtils.writeVLong(out, i == 0 ? tcwc.timeperiod : tcwc.timeperiod - last);
+			WritableUtils.writeVLong(out, tcwc.wordcount);
+			WritableUtils.writeVLong(out, tcwc.tweetcount);
+			last = tcwc.timeperiod;
+		}
+	}
+}
@@ -60,12 +60,20 @@ public class PairwiseMutualInformationMode implements TwitterTokenMode {
 	double minp = 0;
 	@Option(name="--min-pair-count", aliases="-minpc", required=false, usage="The minimum number of times a pair must occur")
 	int minPairCount = 0;
+	@Option(name="--spill-size", aliases="-spill", required=false, usage="The number of unary and pair counts each mapper holds in memory before emitting them", metaVar="NUMBER")
+	int spillSize = PairMutualInformation.DEFAULT_SPILL_SIZE;
+	@Option(name="--sketch-min-count", aliases="-smc", required=false, usage="Approximate the pair counts; a pair is only counted once a count-min sketch estimates a mapper has seen it this many times (defaults to 0, i.e. exact counts)", metaVar="NUMBER")
+	int sketchMinCount = 0;
+	@Option(name="--sketch-depth", aliases="-sd", required=false, usage="The number of hash tables in the count-min sketch", metaVar="NUMBER")
+	int sketchDepth = PairMutualInformation.DEFAULT_SKETCH_DEPTH;
+	@Option(name="--sketch-width", aliases="-sw", required=false, usage="The range of the hash functions in the count-min sketch", metaVar="NUMBER")
+	int sketchWidth = PairMutualInformation.DEFAULT_SKETCH_WIDTH;
 
 	@Override
 	public void perform(final HadoopTwitterTokenToolOptions opts) throws Exception {
 		Path outpath = HadoopToolsUtil.getOutputPath(opts);
 		this.stages = new MultiStagedJob(HadoopToolsUtil.getInputPaths(opts),outpath,opts.getArgs());
-		stages.queueStage(new PairMutualInformation(opts.getNonHadoopArgs(),timeDelta));
+		stages.queueStage(new PairMutualInformation(opts.getNonHadoopArgs(),timeDelta,spillSize,sketchMinCount,sketchDepth,sketchWidth));
 		stages.queueStage(new PMIPairSort(minp, minPairCount, outpath));
 		stages.runAll();
 	}
@@ -29,8 +29,14 @@
  */
 package org.openimaj.hadoop.tools.twitter.token.mode.pointwisemi.count;
 
+import gnu.trove.iterator.TObjectLongIterator;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.map.hash.TObjectLongHashMap;
+
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map.Entry;
 
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.LongWritable;
@@ -41,10 +47,21 @@ import org.joda.time.DateTime;
 import org.kohsuke.args4j.CmdLineException;
 import org.openimaj.hadoop.tools.twitter.HadoopTwitterTokenToolOptions;
 import org.openimaj.io.IOUtils;
+import org.openimaj.ml.sketch.countmin.CountMin;
 import org.openimaj.twitter.USMFStatus;
 
 /**
  * For each pair of tokens in a given document emit a count. Also defines a combiner
+ * <p>
+ * The unary and pair counts are aggregated in memory per time period and
+ * emitted when the mapper finishes, or earlier once
+ * {@link PairMutualInformation#SPILL_SIZE} counts are held. If
+ * {@link PairMutualInformation#SKETCH_MIN_COUNT} is set, each pair is first
+ * counted in a {@link CountMin} sketch and is only held exactly once the
+ * sketch estimates it has been seen that many times; the pair counts are then
+ * approximate and pairs rarer than this within a mapper are not emitted.
+ * Unary counts are always exact.
+ * 
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
  *
  */
@@ -54,10 +71,37 @@ public class PairEmit extends Mapper<LongWritable, Text, BytesWritable, BytesWri
 	 * The string which splits times and places. Constructed to be unlikely to be an actual token (words and punctuation)
 	 */
 	private static final long DEFAULT_TIME = -1;
+	private static final String SKETCH_SPLIT = "\t";
 	private static HadoopTwitterTokenToolOptions options;
 	private static long timeDeltaMillis = DEFAULT_TIME;
 	Logger logger = Logger.getLogger(PairEmit.class);
 
+	/**
+	 * The unary and pair counts of a single time period
+	 */
+	private static class TimeperiodCounts {
+		TObjectLongHashMap<String> unary = new TObjectLongHashMap<String>();
+		HashMap<String, TObjectLongHashMap<String>> pairs = new HashMap<String, TObjectLongHashMap<String>>();
+
+		boolean addUnary(String tok, long count) {
+			return unary.adjustOrPutValue(tok, count, count) == count;
+		}
+
+		boolean addPair(String tok1, String tok2, long count) {
+			TObjectLongHashMap<String> second = pairs.get(tok1);
+			if (second == null) {
+				pairs.put(tok1, second = new TObjectLongHashMap<String>());
+			}
+			return second.adjustOrPutValue(tok2, count, count) == count;
+		}
+	}
+
+	private TLongObjectHashMap<TimeperiodCounts> counts;
+	private int spillSize;
+	private int held;
+	private CountMin sketch;
+	private int sketchMinCount;
+
 	protected static synchronized void loadOptions(Mapper<LongWritable, Text, BytesWritable, BytesWritable>.Context context) throws IOException {
 		if (options == null) {
 			try {
@@ -76,6 +120,16 @@ public class PairEmit extends Mapper<LongWritable, Text, BytesWritable, BytesWri
 	@Override
 	protected void setup(Mapper<LongWritable, Text, BytesWritable, BytesWritable>.Context context) throws IOException, InterruptedException {
 		loadOptions(context);
+		this.counts = new TLongObjectHashMap<TimeperiodCounts>();
+		this.spillSize = context.getConfiguration().getInt(PairMutualInformation.SPILL_SIZE, PairMutualInformation.DEFAULT_SPILL_SIZE);
+		this.held = 0;
+		this.sketchMinCount = context.getConfiguration().getInt(PairMutualInformation.SKETCH_MIN_COUNT, 0);
+		if (this.sketchMinCount > 1) {
+			this.sketch = new CountMin(
+				context.getConfiguration().getInt(PairMutualInformation.SKETCH_DEPTH, PairMutualInformation.DEFAULT_SKETCH_DEPTH),
+				context.getConfiguration().getInt(PairMutualInformation.SKETCH_WIDTH, PairMutualInformation.DEFAULT_SKETCH_WIDTH)
+			);
+		}
 	}
 	
 	@Override
@@ -93,30 +147,81 @@ public class PairEmit extends Mapper<LongWritable, Text, BytesWritable, BytesWri
 		long timeIndex = DEFAULT_TIME;
 		if(timeDeltaMillis > 0)
 			timeIndex = (time.getMillis() / timeDeltaMillis) * timeDeltaMillis;
+		TimeperiodCounts timeCounts = this.counts.get(timeIndex);
+		if(timeCounts == null){
+			this.counts.put(timeIndex, timeCounts = new TimeperiodCounts());
+		}
 		for (int i = 0; i < tokens.size(); i++) 
 		{
 			String tok1 = tokens.get(i);
 			String tok2;
 			for (int j = i+1; j < tokens.size(); j++) {
 				tok2 = tokens.get(j);
-				TokenPairCount tpc = null;
-				int cmp = tok1.compareTo(tok2);
-				if(cmp > 0){
-					tpc = new TokenPairCount(tok2, tok1);
-				}
-				else{
-					tpc = new TokenPairCount(tok1, tok2);
+				String first = tok1, second = tok2;
+				if(tok1.compareTo(tok2) > 0){
+					first = tok2;
+					second = tok1;
 				}
-				tpc.paircount = 1;
-				BytesWritable keywrite = new BytesWritable(tpc.identifierBinary(timeIndex));
-				context.write(keywrite, new BytesWritable(IOUtils.serialize(tpc)));
+				long count = pairIncrement(timeIndex, first, second);
+				if(count > 0 && timeCounts.addPair(first, second, count))
+					held++;
 				context.getCounter(PairEnum.PAIR).increment(1);
 			}
-			TokenPairCount tpc = new TokenPairCount(tok1);
-			tpc.paircount = tokens.size() - 1;
-			context.write(new BytesWritable(tpc.identifierBinary(timeIndex)), new BytesWritable(IOUtils.serialize(tpc)));
+			if(timeCounts.addUnary(tok1, tokens.size() - 1))
+				held++;
 			context.getCounter(PairEnum.UNARY).increment(1);
 		}
-		
-	};
+		if(held >= spillSize)
+			spill(context);
+	}
+
+	/**
+	 * The amount to add to the exact count of a pair. Without a sketch this is
+	 * always 1. With a sketch it is 0 until the pair's estimated count reaches
+	 * the minimum, the estimate itself on the occurrence that takes it to (or,
+	 * through collisions with other pairs, past) the minimum, and 1 afterwards.
+	 */
+	private long pairIncrement(long timeIndex, String first, String second) {
+		if(this.sketch == null) return 1;
+		String id = timeIndex + SKETCH_SPLIT + first + SKETCH_SPLIT + second;
+		int previous = this.sketch.query(id);
+		this.sketch.update(id, 1);
+		int estimate = this.sketch.query(id);
+		if(estimate < this.sketchMinCount) return 0;
+		if(previous < this.sketchMinCount) return estimate;
+		return 1;
+	}
+
+	@Override
+	protected void cleanup(Mapper<LongWritable, Text, BytesWritable, BytesWritable>.Context context) throws IOException, InterruptedException {
+		spill(context);
+	}
+
+	private void spill(Mapper<LongWritable, Text, BytesWritable, BytesWritable>.Context context) throws IOException, InterruptedException {
+		for (long timeIndex : this.counts.keys()) {
+			TimeperiodCounts timeCounts = this.counts.get(timeIndex);
+			TObjectLongIterator<String> unaryIter = timeCounts.unary.iterator();
+			while(unaryIter.hasNext()){
+				unaryIter.advance();
+				TokenPairCount tpc = new TokenPairCount(unaryIter.key());
+				tpc.paircount = unaryIter.value();
+				emit(timeIndex, tpc, context);
+			}
+			for (Entry<String, TObjectLongHashMap<String>> firstEntry : timeCounts.pairs.entrySet()) {
+				TObjectLongIterator<String> pairIter = firstEntry.getValue().iterator();
+				while(pairIter.hasNext()){
+					pairIter.advance();
+					TokenPairCount tpc = new TokenPairCount(firstEntry.getKey(), pairIter.key());
+					tpc.paircount = pairIter.value();
+					emit(timeIndex, tpc, context);
+				}
+			}
+		}
+		this.counts.clear();
+		this.held = 0;
+	}
+
+	private void emit(long timeIndex, TokenPairCount tpc, Mapper<LongWritable, Text, BytesWritable, BytesWritable>.Context context) throws IOException, InterruptedException {
+		context.write(new BytesWritable(tpc.identifierBinary(timeIndex)), new BytesWritable(IOUtils.serialize(tpc)));
+	}
 }
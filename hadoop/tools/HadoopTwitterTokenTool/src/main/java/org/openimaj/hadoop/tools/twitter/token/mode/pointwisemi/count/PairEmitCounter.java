@@ -87,6 +87,12 @@ public class PairEmitCounter extends Reducer<BytesWritable, BytesWritable, Bytes
 				}
 			}
 		}
+		if(!collector.isCurrentPair() && collector.getCurrent() != null){
+			// There were no pairs in this time period, the final unary count was never returned
+			TokenPairCount count = collector.getCurrent();
+			pairsCount += count.paircount;
+			addUnaryWordCount(count);
+		}
 		
 		writeTimeperiodCount(timeperiodCountOutput,pairsCount);
 		
@@ -101,7 +107,8 @@ public class PairEmitCounter extends Reducer<BytesWritable, BytesWritable, Bytes
 				emitPairCount(time,count,context);
 			}
 		}
-		emitPairCount(time,collector.getCurrent(),context);
+		if(collector.isCurrentPair())
+			emitPairCount(time,collector.getCurrent(),context);
 	}
 	private void writeTimeperiodCount(Path timeperiodCountOutput,long pairsCount) throws IOException {
 		FileSystem fs = HadoopToolsUtil.getFileSystem(timeperiodCountOutput);
@@ -76,8 +76,43 @@ public class PairMutualInformation extends TextByteByteStage {
 	 * Name of the timeperiod count directory
 	 */
 	public static final String TIMEPERIOD_OUTPUT_NAME = "timeperiod_counts";
+	/**
+	 * The number of unary and pair counts a {@link PairEmit} mapper holds in
+	 * memory before emitting them
+	 */
+	public static final String SPILL_SIZE = "org.openimaj.hadoop.tools.twitter.token.mode.pairwisemi.spillsize";
+	/**
+	 * The default value of {@link #SPILL_SIZE}
+	 */
+	public static final int DEFAULT_SPILL_SIZE = 500000;
+	/**
+	 * The number of times a pair must be seen by a {@link PairEmit} mapper,
+	 * as estimated by a count-min sketch, before it is counted exactly.
+	 * Values less than 2 disable the sketch.
+	 */
+	public static final String SKETCH_MIN_COUNT = "org.openimaj.hadoop.tools.twitter.token.mode.pairwisemi.sketchmin";
+	/**
+	 * The number of hash tables of the count-min sketch
+	 */
+	public static final String SKETCH_DEPTH = "org.openimaj.hadoop.tools.twitter.token.mode.pairwisemi.sketchdepth";
+	/**
+	 * The default value of {@link #SKETCH_DEPTH}
+	 */
+	public static final int DEFAULT_SKETCH_DEPTH = 4;
+	/**
+	 * The range of the hash functions of the count-min sketch
+	 */
+	public static final String SKETCH_WIDTH = "org.openimaj.hadoop.tools.twitter.token.mode.pairwisemi.sketchwidth";
+	/**
+	 * The default value of {@link #SKETCH_WIDTH}
+	 */
+	public static final int DEFAULT_SKETCH_WIDTH = 1 << 18;
 	private String[] nonHadoopArgs;
 	private long timedelta;
+	private int spillSize = DEFAULT_SPILL_SIZE;
+	private int sketchMinCount = 0;
+	private int sketchDepth = DEFAULT_SKETCH_DEPTH;
+	private int sketchWidth = DEFAULT_SKETCH_WIDTH;
 	private Path actualOutputLocation;
 
 	/**
@@ -90,10 +125,39 @@ public class PairMutualInformation extends TextByteByteStage {
 		this.timedelta = timedelta;
 	}
 
+	/**
+	 * @param nonHadoopArgs
+	 *            the arguments for configuration
+	 * @param timedelta
+	 * @param spillSize
+	 *            the number of counts each mapper holds in memory before
+	 *            emitting them
+	 * @param sketchMinCount
+	 *            the number of times a pair must be seen by a mapper before it
+	 *            is counted exactly (less than 2 to count all pairs exactly)
+	 * @param sketchDepth
+	 *            the number of hash tables of the count-min sketch
+	 * @param sketchWidth
+	 *            the range of the hash functions of the count-min sketch
+	 */
+	public PairMutualInformation(String[] nonHadoopArgs, long timedelta, int spillSize, int sketchMinCount,
+			int sketchDepth, int sketchWidth)
+	{
+		this(nonHadoopArgs, timedelta);
+		this.spillSize = spillSize;
+		this.sketchMinCount = sketchMinCount;
+		this.sketchDepth = sketchDepth;
+		this.sketchWidth = sketchWidth;
+	}
+
 	@Override
 	public void setup(Job job) throws IOException {
 		job.getConfiguration().setStrings(HadoopTwitterTokenToolOptions.ARGS_KEY, nonHadoopArgs);
 		job.getConfiguration().setLong(TIMEDELTA, timedelta);
+		job.getConfiguration().setInt(SPILL_SIZE, spillSize);
+		job.getConfiguration().setInt(SKETCH_MIN_COUNT, sketchMinCount);
+		job.getConfiguration().setInt(SKETCH_DEPTH, sketchDepth);
+		job.getConfiguration().setInt(SKETCH_WIDTH, sketchWidth);
 		final Path tpcOutRoot = new Path(this.actualOutputLocation, TIMEPERIOD_OUTPUT_NAME);
 		job.getConfiguration().set(TIMEPERIOD_COUNT_OUTPUT_ROOT, tpcOutRoot.toString());
 		if (timedelta != -1) {
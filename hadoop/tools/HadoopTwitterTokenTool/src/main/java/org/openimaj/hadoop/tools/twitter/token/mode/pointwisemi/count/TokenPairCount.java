@@ -44,6 +44,7 @@ import java.util.Scanner;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.hadoop.io.WritableUtils;
 import org.openimaj.io.IOUtils;
 import org.openimaj.io.ReadWriteable;
 import org.openimaj.util.pair.IndependentPair;
@@ -54,6 +55,7 @@ import org.openimaj.util.pair.Pair;
  * <ul>
  * <li>number of times the pair appears together in a document</li>
  * </ul>
+ * The count is written as a variable-length long in the binary form.
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
  *
  */
@@ -97,7 +99,7 @@ public class TokenPairCount extends Pair<String> implements ReadWriteable{
 		this.setFirstObject(in.readUTF());
 		if(!isSingle)
 			this.setSecondObject(in.readUTF());
-		this.paircount = in.readLong();
+		this.paircount = WritableUtils.readVLong(in);
 	}
 
 	@Override
@@ -111,7 +113,7 @@ public class TokenPairCount extends Pair<String> implements ReadWriteable{
 		out.writeUTF(this.firstObject());
 		if(!this.isSingle)
 			out.writeUTF(this.secondObject());
-		out.writeLong(paircount);
+		WritableUtils.writeVLong(out, paircount);
 	}
 
 	public void add(TokenPairCount that) {
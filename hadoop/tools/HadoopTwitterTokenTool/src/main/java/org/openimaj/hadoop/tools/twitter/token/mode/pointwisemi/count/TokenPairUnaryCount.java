@@ -35,6 +35,8 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Scanner;
 
+import org.apache.hadoop.io.WritableUtils;
+
 /**
  * A Pair count with a unary count for each item of the pair.
  * 
@@ -101,15 +103,15 @@ public class TokenPairUnaryCount extends TokenPairCount{
 	@Override
 	public void writeBinary(DataOutput out) throws IOException {
 		super.writeBinary(out);
-		out.writeLong(tok1count);
-		out.writeLong(tok2count);
+		WritableUtils.writeVLong(out, tok1count);
+		WritableUtils.writeVLong(out, tok2count);
 	}
 	
 	@Override
 	public void readBinary(DataInput in) throws IOException {
 		super.readBinary(in);
-		this.tok1count = in.readLong();
-		this.tok2count = in.readLong();
+		this.tok1count = WritableUtils.readVLong(in);
+		this.tok2count = WritableUtils.readVLong(in);
 	}
 	
 	@Override
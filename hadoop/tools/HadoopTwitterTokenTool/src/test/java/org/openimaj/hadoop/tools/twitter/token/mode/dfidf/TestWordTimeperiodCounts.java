@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.tools.twitter.token.mode.dfidf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+import org.openimaj.hadoop.tools.twitter.utils.TimeperiodTweetCountWordCount;
+import org.openimaj.io.IOUtils;
+
+/**
+ * Tests the compact per-word time period counts emitted by the
+ * {@link CountWordsAcrossTimeperiod} mapper
+ * 
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ * 
+ */
+public class TestWordTimeperiodCounts {
+	/**
+	 * @throws IOException
+	 */
+	@Test
+	public void testWordTimeperiodCountsReadWrite() throws IOException {
+		final WordTimeperiodCounts counts = new WordTimeperiodCounts();
+		counts.add(1357002000000L, 5, 200);
+		counts.add(-1, 10, 1000);
+		counts.add(1356998400000L, 3, 100);
+		counts.add(1356998400000L, 1, 50);
+		assertEquals(3, counts.size());
+
+		final WordTimeperiodCounts read = IOUtils.deserialize(IOUtils.serialize(counts), WordTimeperiodCounts.class);
+		final List<TimeperiodTweetCountWordCount> values = read.values();
+		assertEquals(counts.values(), values);
+		assertEquals(-1, values.get(0).timeperiod);
+		assertEquals(new TimeperiodTweetCountWordCount(1356998400000L, 4, 150), values.get(1));
+		assertEquals(1357002000000L, values.get(2).timeperiod);
+	}
+}
@@ -29,51 +29,66 @@
  */
 package org.openimaj.hadoop.tools.sequencefile.index;
 
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
-import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapreduce.Job;
-import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
-import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
-import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
+import org.openimaj.hadoop.sequencefile.IndexedSequenceFileReader;
+import org.openimaj.hadoop.sequencefile.SequenceFileIndex;
+import org.openimaj.util.parallel.GlobalExecutorPool.DaemonThreadFactory;
 
-
-
+/**
+ * Tool to build a {@link SequenceFileIndex} for a set of sequence files, which
+ * can be used with an {@link IndexedSequenceFileReader} (or the extract mode
+ * of the SequenceFileTool) to pull out records by key without scanning the
+ * files. The files are split at sync markers and scanned in parallel on the
+ * local machine. If the output is on a remote filesystem the index is built in
+ * a temporary local file and then copied; it must be copied back to a local
+ * disk before it can be read.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
 public class SequenceFileIndexer extends Configured implements Tool {
 
 	@Override
 	public int run(String[] args) throws Exception {
-		SequenceFileIndexerOptions options = new SequenceFileIndexerOptions(args);
+		final SequenceFileIndexerOptions options = new SequenceFileIndexerOptions(args);
 		options.prepare();
 
-		Job job = new Job(getConf());
-		
-		job.setJarByClass(SequenceFileIndexer.class);
-		
-		job.setOutputKeyClass(Text.class);
-		job.setOutputValueClass(Text.class);
-		
-		job.setMapperClass(RecordIndexMapper.class);
-		
-		job.setInputFormatClass(SequenceFileInputFormat.class);
-		job.setOutputFormatClass(TextOutputFormat.class);
-		
-		job.setNumReduceTasks(1);
-		
-		FileInputFormat.setInputPaths(job, options.getInputPaths());
-		TextOutputFormat.setOutputPath(job, options.getOutputPath());
-		TextOutputFormat.setCompressOutput(job, false);
-//		SequenceFileOutputFormat.setOutputCompressorClass(job, DefaultCodec.class);
-//		SequenceFileOutputFormat.setOutputCompressionType(job, CompressionType.BLOCK);
-		
+		final ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(options.getConcurrency(),
+				new DaemonThreadFactory());
+
+		// the index is memory-mapped when read, so it is always built on the
+		// local disk and copied to the target filesystem afterwards
+		final Path outputPath = options.getOutputPath();
+		final FileSystem fs = SequenceFileIndexerOptions.getFileSystem(outputPath.toUri());
+		final boolean local = "file".equals(fs.getUri().getScheme());
+		final File indexFile = local ? new File(outputPath.toUri()) : File.createTempFile("seqindex", ".idx");
+
+		try {
+			final int count = SequenceFileIndex.build(options.getInputPaths(), getConf(), indexFile, pool);
+
+			if (!local)
+				fs.copyFromLocalFile(true, true, new Path(indexFile.getAbsolutePath()), outputPath);
+
+			System.err.println("Indexed " + count + " records to " + outputPath);
+		} finally {
+			pool.shutdown();
+			if (!local)
+				indexFile.delete();
+		}
 
-		job.waitForCompletion(true);
 		return 0;
 	}
-	public static void main(String [] args) throws Exception {
-		int res = ToolRunner.run(new Configuration(), new SequenceFileIndexer(), args);
+
+	public static void main(String[] args) throws Exception {
+		final int res = ToolRunner.run(new Configuration(), new SequenceFileIndexer(), args);
 		System.exit(res);
 	}
 }
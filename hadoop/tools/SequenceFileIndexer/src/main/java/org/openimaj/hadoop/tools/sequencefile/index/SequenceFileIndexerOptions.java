@@ -93,9 +93,12 @@ public class SequenceFileIndexerOptions {
 	@Option(name="--input", aliases="-i", required=true, usage="Input Sequence File.", metaVar="STRING")
 	private String input;
 	
-	@Option(name="--output", aliases="-o", required=true, usage="Output Index File or URL.", metaVar="STRING")
+	@Option(name="--output", aliases="-o", required=true, usage="Output Index File or URL. The index is built on the local disk and copied to the URL if it is on another filesystem.", metaVar="STRING")
 	private String output;
 	
+	@Option(name="--threads", aliases="-j", required=false, usage="Use NUMBER threads for scanning the input.", metaVar="NUMBER")
+	private int concurrency = Runtime.getRuntime().availableProcessors();
+	
 	
 	public String getInputString() {
 		return input;
@@ -116,4 +119,8 @@ public class SequenceFileIndexerOptions {
 		return new Path(SequenceFileUtility.convertToURI(this.getOutputString()).toString());
 	}
 
+	public int getConcurrency() {
+		return concurrency;
+	}
+
 }
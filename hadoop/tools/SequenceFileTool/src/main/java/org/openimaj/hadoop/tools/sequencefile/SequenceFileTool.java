@@ -29,6 +29,7 @@
  */
 package org.openimaj.hadoop.tools.sequencefile;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
@@ -36,8 +37,11 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
@@ -51,10 +55,14 @@ import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 import org.kohsuke.args4j.ProxyOptionHandler;
 import org.openimaj.hadoop.sequencefile.ExtractionState;
+import org.openimaj.hadoop.sequencefile.IndexedSequenceFileReader;
+import org.openimaj.hadoop.sequencefile.KeyValueDump;
 import org.openimaj.hadoop.sequencefile.NamingStrategy;
+import org.openimaj.hadoop.sequencefile.SequenceFileIndex;
 import org.openimaj.hadoop.sequencefile.SequenceFileUtility;
 import org.openimaj.hadoop.sequencefile.SequenceFileUtility.KeyProvider;
 import org.openimaj.hadoop.sequencefile.TextBytesSequenceFileUtility;
+import org.openimaj.io.FileUtils;
 
 /**
  * {@link SequenceFileTool} is a commandline tool for creating, extracting and
@@ -283,6 +291,20 @@ public class SequenceFileTool {
 				usage = "Automatically extract the filetype and append its appropriate extension")
 		boolean autoExtension = false;
 
+		@Option(
+				name = "--index",
+				aliases = "-idx",
+				required = false,
+				usage = "Index file created by the SequenceFileIndexer. If provided, records are looked up in the index rather than by scanning the sequence files.")
+		File indexFile;
+
+		@Option(
+				name = "--keys-file",
+				aliases = "-kf",
+				required = false,
+				usage = "File containing keys of the files to extract, one per line. Requires an index.")
+		File keysFile;
+
 		@Argument(required = true, usage = "Sequence file", metaVar = "input-path-or-uri")
 		private String inputPathOrUri;
 
@@ -294,6 +316,14 @@ public class SequenceFileTool {
 			if (offset < 0)
 				throw new IllegalArgumentException("Offset cannot be less than 0.");
 
+			if (indexFile != null) {
+				extractIndexed();
+				return;
+			}
+
+			if (keysFile != null)
+				throw new IllegalArgumentException("A keys file can only be used with an index.");
+
 			System.out.println("Getting file paths...");
 
 			final Path[] sequenceFiles = SequenceFileUtility.getFilePaths(inputPathOrUri, "part");
@@ -353,6 +383,86 @@ public class SequenceFileTool {
 			if (zos != null)
 				zos.close();
 		}
+
+		private void extractIndexed() throws IOException {
+			final List<Text> keys = new ArrayList<Text>();
+			if (queryKey != null)
+				keys.add(new Text(queryKey));
+			if (keysFile != null)
+				for (final String line : FileUtils.readlines(keysFile))
+					if (line.trim().length() > 0)
+						keys.add(new Text(line.trim()));
+
+			if (keys.isEmpty())
+				throw new IllegalArgumentException("A key or keys file is required when extracting with an index.");
+
+			if (zipMode && outputPathOrUri == null)
+				throw new IllegalArgumentException("An output path is required when extracting to a zip.");
+
+			final FileSystem fs;
+			final Path dirPath;
+			final ZipOutputStream zos;
+			if (zipMode) {
+				fs = null;
+				dirPath = null;
+				zos = SequenceFileUtility.openZipOutputStream(outputPathOrUri);
+			} else if (outputPathOrUri != null) {
+				final URI uri = SequenceFileUtility.convertToURI(outputPathOrUri);
+				fs = SequenceFileUtility.getFileSystem(uri, new Configuration());
+				dirPath = new Path(uri.toString());
+				zos = null;
+			} else {
+				fs = null;
+				dirPath = null;
+				zos = null;
+			}
+
+			final ExtractionState nps = new ExtractionState();
+			final IndexedSequenceFileReader<Text, BytesWritable> reader = new IndexedSequenceFileReader<Text, BytesWritable>(
+					SequenceFileIndex.read(indexFile));
+
+			try {
+				final List<Text> missing = reader.getAll(keys, new KeyValueDump<Text, BytesWritable>() {
+					@Override
+					public void dumpValue(Text key, BytesWritable val) {
+						try {
+							String name = np.getName(key, val, nps, autoExtension);
+							nps.tick();
+
+							if (zos != null) {
+								while (name.startsWith("/"))
+									name = name.substring(1);
+
+								zos.putNextEntry(new ZipEntry(name));
+								zos.write(val.getBytes(), 0, val.getLength());
+								zos.closeEntry();
+							} else if (fs != null) {
+								if (name.startsWith("/"))
+									name = "." + name;
+
+								final FSDataOutputStream dos = fs.create(new Path(dirPath, name));
+								try {
+									dos.write(val.getBytes(), 0, val.getLength());
+								} finally {
+									dos.close();
+								}
+							} else {
+								System.out.write(val.getBytes(), 0, val.getLength());
+							}
+						} catch (final IOException e) {
+							throw new RuntimeException(e);
+						}
+					}
+				});
+
+				for (final Text key : missing)
+					System.err.format("Key '%s' was not found in the index.\n", key);
+			} finally {
+				reader.close();
+				if (zos != null)
+					zos.close();
+			}
+		}
 	}
 
 	private static class ListMode extends ModeOp {
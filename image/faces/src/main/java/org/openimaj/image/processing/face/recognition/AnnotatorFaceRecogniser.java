@@ -139,6 +139,11 @@ public class AnnotatorFaceRecogniser<FACE extends DetectedFace, PERSON>
 		return annotator.annotate(object);
 	}
 
+	@Override
+	public List<List<ScoredAnnotation<PERSON>>> annotateAll(List<FACE> objects) {
+		return annotator.annotateAll(objects);
+	}
+
 	@Override
 	public void train(Annotated<FACE, PERSON> annotedImage) {
 		annotator.train(annotedImage);
@@ -0,0 +1,644 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.face.recognition;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+import org.openimaj.image.FImage;
+import org.openimaj.image.processing.face.detection.DatasetFaceDetector;
+import org.openimaj.image.processing.face.detection.DetectedFace;
+import org.openimaj.image.processing.face.detection.FaceDetector;
+import org.openimaj.ml.annotation.AnnotatedObject;
+import org.openimaj.ml.annotation.ScoredAnnotation;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.pair.IndependentPair;
+import org.openimaj.util.parallel.GlobalExecutorPool.DaemonThreadFactory;
+
+/**
+ * A pipelined, multi-threaded front-end to a {@link FaceRecognitionEngine}
+ * for processing large numbers of images. Face detection and recognition run
+ * as separate stages connected by bounded queues, each with its own
+ * configurable number of threads. The recognition stage collects the detected
+ * faces into batches, which are passed to
+ * {@link FaceRecogniser#annotateAll(List)}; alignment and feature extraction are
+ * performed by the recogniser as part of this call.
+ * <p>
+ * The images are read from the input iterator by a single thread, and the
+ * results are delivered to the handler (or the recogniser is trained) on the
+ * calling thread, so neither needs to be thread-safe. The detector and
+ * recogniser are shared between the worker threads of their stage, so they
+ * must be safe for concurrent use if more than one thread is configured for
+ * that stage.
+ * <p>
+ * The time spent and the number of items processed by each stage are
+ * recorded and can be retrieved with {@link #getDetectionStatistics()},
+ * {@link #getRecognitionStatistics()} and {@link #getOutputStatistics()}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <FACE>
+ *            Type of {@link DetectedFace}
+ * @param <PERSON>
+ *            Type representing a person
+ */
+public class FaceRecognitionPipeline<FACE extends DetectedFace, PERSON> {
+	private static final Logger logger = Logger.getLogger(FaceRecognitionPipeline.class);
+
+	/**
+	 * Throughput statistics for a single stage of the pipeline. The counts
+	 * accumulate over all runs until {@link #reset()} is called.
+	 */
+	public static class StageStatistics {
+		private final String name;
+		private final AtomicLong items = new AtomicLong();
+		private final AtomicLong outputs = new AtomicLong();
+		private final AtomicLong time = new AtomicLong();
+
+		StageStatistics(String name) {
+			this.name = name;
+		}
+
+		void record(int nItems, int nOutputs, long nanos) {
+			items.addAndGet(nItems);
+			outputs.addAndGet(nOutputs);
+			time.addAndGet(nanos);
+		}
+
+		/**
+		 * @return the number of items consumed by the stage
+		 */
+		public long getItems() {
+			return items.get();
+		}
+
+		/**
+		 * @return the number of items produced by the stage
+		 */
+		public long getOutputs() {
+			return outputs.get();
+		}
+
+		/**
+		 * @return the total time spent working in the stage, summed over all
+		 *         its threads, in nanoseconds
+		 */
+		public long getTime() {
+			return time.get();
+		}
+
+		/**
+		 * @return the number of items consumed per second of work (per thread)
+		 */
+		public double getThroughput() {
+			final long t = time.get();
+			return t == 0 ? 0 : items.get() / (t / 1e9);
+		}
+
+		/**
+		 * Reset the statistics
+		 */
+		public void reset() {
+			items.set(0);
+			outputs.set(0);
+			time.set(0);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d in, %d out, %.3fs, %.2f items/s/thread", name, getItems(), getOutputs(),
+					getTime() / 1e9, getThroughput());
+		}
+	}
+
+	/**
+	 * The result of recognising a single face found in an input image
+	 * 
+	 * @param <K>
+	 *            Type of the key identifying the input image
+	 * @param <FACE>
+	 *            Type of {@link DetectedFace}
+	 * @param <PERSON>
+	 *            Type representing a person
+	 */
+	public static class Recognition<K, FACE extends DetectedFace, PERSON> {
+		/**
+		 * The key of the image in which the face was found
+		 */
+		public final K key;
+
+		/**
+		 * The detected face
+		 */
+		public final FACE face;
+
+		/**
+		 * The potential people
+		 */
+		public final List<ScoredAnnotation<PERSON>> annotations;
+
+		Recognition(K key, FACE face, List<ScoredAnnotation<PERSON>> annotations) {
+			this.key = key;
+			this.face = face;
+			this.annotations = annotations;
+		}
+	}
+
+	/** End-of-stream marker passed between stages */
+	private static final Object END = new Object();
+
+	/**
+	 * A worker for a single stage. Consumes batches of items from its input
+	 * queue until it sees an end marker; the last worker of the stage to
+	 * finish passes end markers on to the next stage.
+	 */
+	private abstract static class Worker implements Runnable {
+		final BlockingQueue<Object> in;
+		final BlockingQueue<Object> out;
+		final int batchSize;
+		final AtomicInteger active;
+		final int downstream;
+		final AtomicReference<Throwable> error;
+		final StageStatistics stats;
+
+		Worker(BlockingQueue<Object> in, BlockingQueue<Object> out, int batchSize, AtomicInteger active,
+				int downstream, AtomicReference<Throwable> error, StageStatistics stats)
+		{
+			this.in = in;
+			this.out = out;
+			this.batchSize = batchSize;
+			this.active = active;
+			this.downstream = downstream;
+			this.error = error;
+			this.stats = stats;
+		}
+
+		abstract List<Object> process(List<Object> items);
+
+		@Override
+		public void run() {
+			try {
+				final List<Object> items = new ArrayList<Object>(batchSize);
+				boolean done = false;
+
+				while (!done) {
+					items.clear();
+					items.add(in.take());
+					if (batchSize > 1)
+						in.drainTo(items, batchSize - 1);
+
+					// end markers are only ever followed by other end markers;
+					// keep one and hand the rest back to the other workers
+					final int end = items.indexOf(END);
+					if (end >= 0) {
+						for (int i = end + 1; i < items.size(); i++)
+							in.put(END);
+						items.subList(end, items.size()).clear();
+						done = true;
+					}
+
+					// after a failure keep draining so the pipeline shuts down
+					if (items.isEmpty() || error.get() != null)
+						continue;
+
+					List<Object> results = null;
+					final long t0 = System.nanoTime();
+					try {
+						results = process(items);
+					} catch (final Throwable t) {
+						error.compareAndSet(null, t);
+					}
+					stats.record(items.size(), results == null ? 0 : results.size(), System.nanoTime() - t0);
+
+					if (results != null)
+						for (final Object o : results)
+							out.put(o);
+				}
+
+				if (active.decrementAndGet() == 0)
+					for (int i = 0; i < downstream; i++)
+						out.put(END);
+			} catch (final InterruptedException e) {
+				// the pipeline has been shut down
+			}
+		}
+	}
+
+	private FaceRecognitionEngine<FACE, PERSON> engine;
+	private int detectionThreads = Runtime.getRuntime().availableProcessors();
+	private int recognitionThreads = 1;
+	private int queueCapacity = 1000;
+	private int batchSize = 100;
+
+	private final StageStatistics detectionStats = new StageStatistics("detection");
+	private final StageStatistics recognitionStats = new StageStatistics("recognition");
+	private final StageStatistics outputStats = new StageStatistics("output");
+
+	/**
+	 * Construct a pipeline around the detector and recogniser of the given
+	 * {@link FaceRecognitionEngine}.
+	 * 
+	 * @param engine
+	 *            the engine
+	 */
+	public FaceRecognitionPipeline(FaceRecognitionEngine<FACE, PERSON> engine) {
+		this.engine = engine;
+	}
+
+	/**
+	 * Construct a pipeline with the given face detector and recogniser.
+	 * 
+	 * @param detector
+	 *            the face detector
+	 * @param recogniser
+	 *            the face recogniser
+	 */
+	public FaceRecognitionPipeline(FaceDetector<FACE, FImage> detector, FaceRecogniser<FACE, PERSON> recogniser) {
+		this(new FaceRecognitionEngine<FACE, PERSON>(detector, recogniser));
+	}
+
+	/**
+	 * @return the underlying engine
+	 */
+	public FaceRecognitionEngine<FACE, PERSON> getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Set the number of threads used for face detection. Defaults to the
+	 * number of available processors.
+	 * 
+	 * @param detectionThreads
+	 *            the number of threads
+	 */
+	public void setDetectionThreads(int detectionThreads) {
+		if (detectionThreads < 1)
+			throw new IllegalArgumentException("At least one detection thread is required");
+		this.detectionThreads = detectionThreads;
+	}
+
+	/**
+	 * @return the number of threads used for face detection
+	 */
+	public int getDetectionThreads() {
+		return detectionThreads;
+	}
+
+	/**
+	 * Set the number of threads used for recognition. Defaults to 1.
+	 * 
+	 * @param recognitionThreads
+	 *            the number of threads
+	 */
+	public void setRecognitionThreads(int recognitionThreads) {
+		if (recognitionThreads < 1)
+			throw new IllegalArgumentException("At least one recognition thread is required");
+		this.recognitionThreads = recognitionThreads;
+	}
+
+	/**
+	 * @return the number of threads used for recognition
+	 */
+	public int getRecognitionThreads() {
+		return recognitionThreads;
+	}
+
+	/**
+	 * Set the capacity of the queues between stages. Defaults to 1000.
+	 * 
+	 * @param queueCapacity
+	 *            the capacity
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		if (queueCapacity < 1)
+			throw new IllegalArgumentException("Queue capacity must be positive");
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * @return the capacity of the queues between stages
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * Set the maximum number of faces passed to the recogniser at once.
+	 * Defaults to 100.
+	 * 
+	 * @param batchSize
+	 *            the batch size
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1)
+			throw new IllegalArgumentException("Batch size must be positive");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @return the maximum number of faces passed to the recogniser at once
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @return statistics for the face detection stage (images in, faces out)
+	 */
+	public StageStatistics getDetectionStatistics() {
+		return detectionStats;
+	}
+
+	/**
+	 * @return statistics for the recognition stage (faces in, results out)
+	 */
+	public StageStatistics getRecognitionStatistics() {
+		return recognitionStats;
+	}
+
+	/**
+	 * @return statistics for the final stage that runs on the calling thread
+	 *         (delivering results to the handler, or training the recogniser)
+	 */
+	public StageStatistics getOutputStatistics() {
+		return outputStats;
+	}
+
+	/**
+	 * Reset all the stage statistics
+	 */
+	public void resetStatistics() {
+		detectionStats.reset();
+		recognitionStats.reset();
+		outputStats.reset();
+	}
+
+	/**
+	 * Detect and recognise the faces in all the given images. The handler is
+	 * called on the calling thread once for every detected face; the order in
+	 * which faces are delivered is not related to the order of the images.
+	 * 
+	 * @param <K>
+	 *            Type of the key identifying each image
+	 * @param images
+	 *            the images to process, paired with a key that identifies them
+	 * @param handler
+	 *            the handler for the results
+	 */
+	public <K> void recognise(final Iterator<? extends IndependentPair<K, FImage>> images,
+			final Operation<Recognition<K, FACE, PERSON>> handler)
+	{
+		final FaceDetector<FACE, FImage> detector = engine.getDetector();
+		final FaceRecogniser<FACE, PERSON> recogniser = engine.getRecogniser();
+
+		run(images, recognitionThreads, new Factory() {
+			@Override
+			Worker detectionWorker(BlockingQueue<Object> in, BlockingQueue<Object> out, AtomicInteger active,
+					AtomicReference<Throwable> error)
+			{
+				return new Worker(in, out, 1, active, recognitionThreads, error, detectionStats) {
+					@Override
+					List<Object> process(List<Object> items) {
+						final List<Object> faces = new ArrayList<Object>();
+						for (final Object o : items) {
+							final IndependentPair<?, ?> image = (IndependentPair<?, ?>) o;
+							final List<FACE> detected = detector.detectFaces((FImage) image.secondObject());
+
+							if (detected != null)
+								for (final FACE face : detected)
+									faces.add(IndependentPair.pair(image.firstObject(), face));
+						}
+						return faces;
+					}
+				};
+			}
+
+			@Override
+			Worker recognitionWorker(BlockingQueue<Object> in, BlockingQueue<Object> out, AtomicInteger active,
+					AtomicReference<Throwable> error)
+			{
+				return new Worker(in, out, batchSize, active, 1, error, recognitionStats) {
+					@SuppressWarnings("unchecked")
+					@Override
+					List<Object> process(List<Object> items) {
+						final List<FACE> faces = new ArrayList<FACE>(items.size());
+						for (final Object o : items)
+							faces.add(((IndependentPair<K, FACE>) o).secondObject());
+
+						final List<List<ScoredAnnotation<PERSON>>> annotations = recogniser.annotateAll(faces);
+
+						final List<Object> results = new ArrayList<Object>(items.size());
+						for (int i = 0; i < items.size(); i++) {
+							final K key = ((IndependentPair<K, FACE>) items.get(i)).firstObject();
+							results.add(new Recognition<K, FACE, PERSON>(key, faces.get(i), annotations.get(i)));
+						}
+						return results;
+					}
+				};
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			void output(Object item) {
+				handler.perform((Recognition<K, FACE, PERSON>) item);
+			}
+		});
+	}
+
+	/**
+	 * Train the recogniser with the given images of people. Faces are detected
+	 * in parallel, and the recogniser is trained on the calling thread with
+	 * the biggest face found in each image, as per
+	 * {@link FaceRecognitionEngine#train(Object, FImage)}. Images without a
+	 * face are skipped.
+	 * 
+	 * @param images
+	 *            the images, paired with the person they depict
+	 */
+	public void train(final Iterator<? extends IndependentPair<PERSON, FImage>> images) {
+		final FaceDetector<FACE, FImage> detector = engine.getDetector();
+		final FaceRecogniser<FACE, PERSON> recogniser = engine.getRecogniser();
+
+		run(images, 0, new Factory() {
+			@Override
+			Worker detectionWorker(BlockingQueue<Object> in, BlockingQueue<Object> out, AtomicInteger active,
+					AtomicReference<Throwable> error)
+			{
+				return new Worker(in, out, 1, active, 1, error, detectionStats) {
+					@Override
+					List<Object> process(List<Object> items) {
+						final List<Object> faces = new ArrayList<Object>();
+						for (final Object o : items) {
+							final IndependentPair<?, ?> image = (IndependentPair<?, ?>) o;
+							final List<FACE> detected = detector.detectFaces((FImage) image.secondObject());
+
+							if (detected == null || detected.size() == 0) {
+								logger.warn("no face detected");
+							} else {
+								if (detected.size() > 1)
+									logger.warn("More than one face found. Choosing biggest.");
+
+								faces.add(IndependentPair.pair(image.firstObject(),
+										DatasetFaceDetector.getBiggest(detected)));
+							}
+						}
+						return faces;
+					}
+				};
+			}
+
+			@Override
+			Worker recognitionWorker(BlockingQueue<Object> in, BlockingQueue<Object> out, AtomicInteger active,
+					AtomicReference<Throwable> error)
+			{
+				// the recogniser is trained on the calling thread, so there
+				// is no recognition stage
+				return null;
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			void output(Object item) {
+				final IndependentPair<PERSON, FACE> pair = (IndependentPair<PERSON, FACE>) item;
+				recogniser.train(AnnotatedObject.create(pair.secondObject(), pair.firstObject()));
+			}
+		});
+	}
+
+	/**
+	 * Creates the workers for a run of the pipeline and consumes its output
+	 */
+	private abstract class Factory {
+		abstract Worker detectionWorker(BlockingQueue<Object> in, BlockingQueue<Object> out, AtomicInteger active,
+				AtomicReference<Throwable> error);
+
+		/**
+		 * Create a recognition worker, or return null if the run has no
+		 * recognition stage (in which case it must have no recognition
+		 * threads)
+		 */
+		abstract Worker recognitionWorker(BlockingQueue<Object> in, BlockingQueue<Object> out,
+				AtomicInteger active, AtomicReference<Throwable> error);
+
+		abstract void output(Object item);
+	}
+
+	/**
+	 * Run the pipeline: one thread feeds the input into the detection stage,
+	 * which feeds the recognition stage (if there are any recognition
+	 * threads), the output of which is consumed on the calling thread.
+	 */
+	private void run(final Iterator<?> input, final int nRecognitionThreads, final Factory factory) {
+		final int nDetectionThreads = this.detectionThreads;
+		final BlockingQueue<Object> imageQueue = new ArrayBlockingQueue<Object>(queueCapacity);
+		final BlockingQueue<Object> faceQueue = new ArrayBlockingQueue<Object>(queueCapacity);
+		final BlockingQueue<Object> resultQueue = nRecognitionThreads > 0 ?
+				new ArrayBlockingQueue<Object>(queueCapacity) : faceQueue;
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+		final ExecutorService executor = Executors.newFixedThreadPool(1 + nDetectionThreads + nRecognitionThreads,
+				new DaemonThreadFactory());
+
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					boolean interrupted = false;
+					try {
+						while (error.get() == null && input.hasNext())
+							imageQueue.put(input.next());
+					} catch (final InterruptedException e) {
+						// the pipeline has been shut down
+						interrupted = true;
+					} catch (final Throwable t) {
+						error.compareAndSet(null, t);
+					} finally {
+						// the end markers must always be sent, otherwise the
+						// calling thread waits for the results forever
+						try {
+							if (!interrupted)
+								for (int i = 0; i < nDetectionThreads; i++)
+									imageQueue.put(END);
+						} catch (final InterruptedException e) {
+							// the pipeline has been shut down
+						}
+					}
+				}
+			});
+
+			final AtomicInteger activeDetectors = new AtomicInteger(nDetectionThreads);
+			for (int i = 0; i < nDetectionThreads; i++)
+				executor.execute(factory.detectionWorker(imageQueue, faceQueue, activeDetectors, error));
+
+			final AtomicInteger activeRecognisers = new AtomicInteger(nRecognitionThreads);
+			for (int i = 0; i < nRecognitionThreads; i++)
+				executor.execute(factory.recognitionWorker(faceQueue, resultQueue, activeRecognisers, error));
+
+			int remaining = 1;
+			while (remaining > 0) {
+				final Object item = resultQueue.take();
+
+				if (item == END) {
+					remaining--;
+				} else if (error.get() == null) {
+					final long t0 = System.nanoTime();
+					try {
+						factory.output(item);
+					} catch (final RuntimeException e) {
+						error.compareAndSet(null, e);
+					}
+					outputStats.record(1, 0, System.nanoTime() - t0);
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			error.compareAndSet(null, e);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		final Throwable t = error.get();
+		if (t instanceof RuntimeException)
+			throw (RuntimeException) t;
+		if (t instanceof Error)
+			throw (Error) t;
+		if (t != null)
+			throw new RuntimeException(t);
+	}
+}
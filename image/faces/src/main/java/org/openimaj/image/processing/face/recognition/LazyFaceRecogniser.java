@@ -133,7 +133,7 @@ abstract class LazyFaceRecogniser<FACE extends DetectedFace, PERSON, EXTRACTOR e
 	 */
 	protected abstract void beforeBatchTrain(GroupedDataset<PERSON, ListDataset<FACE>, FACE> dataset);
 
-	private void retrain() {
+	private synchronized void retrain() {
 		if (isInvalid) {
 			final GroupedDataset<PERSON, ListDataset<FACE>, FACE> dataset = faceCache.getDataset();
 			beforeBatchTrain(dataset);
@@ -153,4 +153,10 @@ abstract class LazyFaceRecogniser<FACE extends DetectedFace, PERSON, EXTRACTOR e
 		retrain();
 		return internalRecogniser.annotate(object);
 	}
+
+	@Override
+	public List<List<ScoredAnnotation<PERSON>>> annotateAll(List<FACE> objects) {
+		retrain();
+		return internalRecogniser.annotateAll(objects);
+	}
 }
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.face.recognition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.feature.DoubleFV;
+import org.openimaj.feature.DoubleFVComparison;
+import org.openimaj.feature.FeatureExtractor;
+import org.openimaj.image.FImage;
+import org.openimaj.image.processing.face.detection.DetectedFace;
+import org.openimaj.image.processing.face.detection.IdentityFaceDetector;
+import org.openimaj.image.processing.face.recognition.FaceRecognitionPipeline.Recognition;
+import org.openimaj.ml.annotation.basic.KNNAnnotator;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.pair.IndependentPair;
+
+/**
+ * Tests for the {@link FaceRecognitionPipeline}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class FaceRecognitionPipelineTest {
+	private FaceRecognitionEngine<DetectedFace, String> engine;
+	private FaceRecognitionPipeline<DetectedFace, String> pipeline;
+
+	private static FImage image(float value) {
+		return new FImage(16, 16).fill(value);
+	}
+
+	/**
+	 * Setup an engine that recognises people by the mean intensity of the
+	 * whole image
+	 */
+	@Before
+	public void setup() {
+		final FeatureExtractor<DoubleFV, DetectedFace> extractor = new FeatureExtractor<DoubleFV, DetectedFace>() {
+			@Override
+			public DoubleFV extractFeature(DetectedFace face) {
+				final FImage patch = face.getFacePatch();
+				return new DoubleFV(new double[] { patch.sum() / (patch.width * patch.height) });
+			}
+		};
+
+		final KNNAnnotator<DetectedFace, String, DoubleFV> knn = KNNAnnotator.create(extractor,
+				DoubleFVComparison.EUCLIDEAN);
+
+		engine = FaceRecognitionEngine.create(new IdentityFaceDetector<FImage>(),
+				AnnotatorFaceRecogniser.create(knn));
+
+		pipeline = new FaceRecognitionPipeline<DetectedFace, String>(engine);
+		pipeline.setDetectionThreads(3);
+		pipeline.setRecognitionThreads(2);
+		pipeline.setQueueCapacity(4);
+		pipeline.setBatchSize(3);
+
+		final List<IndependentPair<String, FImage>> training = new ArrayList<IndependentPair<String, FImage>>();
+		for (int i = 0; i < 10; i++) {
+			training.add(IndependentPair.pair("dark", image(0.1f + i * 0.01f)));
+			training.add(IndependentPair.pair("light", image(0.8f + i * 0.01f)));
+		}
+		pipeline.train(training.iterator());
+	}
+
+	/**
+	 * Test that training through the pipeline enrols every image
+	 */
+	@Test
+	public void testTrain() {
+		assertEquals(20, pipeline.getDetectionStatistics().getItems());
+		assertEquals(20, pipeline.getOutputStatistics().getItems());
+		assertEquals(2, engine.getRecogniser().listPeople().size());
+	}
+
+	/**
+	 * Test that the pipeline gives the same results as the engine
+	 */
+	@Test
+	public void testRecognise() {
+		final List<IndependentPair<Integer, FImage>> images = new ArrayList<IndependentPair<Integer, FImage>>();
+		for (int i = 0; i < 50; i++)
+			images.add(IndependentPair.pair(i, image(i / 50f)));
+
+		final Map<Integer, String> results = new HashMap<Integer, String>();
+		pipeline.resetStatistics();
+		pipeline.recognise(images.iterator(), new Operation<Recognition<Integer, DetectedFace, String>>() {
+			@Override
+			public void perform(Recognition<Integer, DetectedFace, String> r) {
+				results.put(r.key, r.annotations.get(0).annotation);
+			}
+		});
+
+		assertEquals(images.size(), results.size());
+		assertEquals(images.size(), pipeline.getRecognitionStatistics().getOutputs());
+
+		for (final IndependentPair<Integer, FImage> img : images) {
+			final String expected = engine.recogniseBest(img.secondObject()).get(0).secondObject().annotation;
+			assertEquals(expected, results.get(img.firstObject()));
+		}
+	}
+
+	/**
+	 * Test that an {@link Error} thrown by the input iterator is passed to the
+	 * caller rather than leaving the pipeline waiting for the end of the input
+	 */
+	@Test(timeout = 10000)
+	public void testInputError() {
+		final Iterator<IndependentPair<Integer, FImage>> images = new Iterator<IndependentPair<Integer, FImage>>() {
+			int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public IndependentPair<Integer, FImage> next() {
+				if (i == 5)
+					throw new OutOfMemoryError("decoding failed");
+				return IndependentPair.pair(i, image(i++ / 10f));
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+
+		try {
+			pipeline.recognise(images, new Operation<Recognition<Integer, DetectedFace, String>>() {
+				@Override
+				public void perform(Recognition<Integer, DetectedFace, String> r) {
+				}
+			});
+			fail();
+		} catch (final OutOfMemoryError e) {
+			assertEquals("decoding failed", e.getMessage());
+		}
+	}
+}
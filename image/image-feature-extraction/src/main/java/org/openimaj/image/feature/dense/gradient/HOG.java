@@ -143,6 +143,26 @@ public class HOG implements ImageAnalyser<FImage> {
 		extractor.analyseImage(image, edges);
 	}
 
+	/**
+	 * Get the underlying {@link GradientOrientationHistogramExtractor} that
+	 * holds the data computed by the last call to
+	 * {@link #analyseImage(FImage)}.
+	 *
+	 * @return the histogram extractor
+	 */
+	public GradientOrientationHistogramExtractor getExtractor() {
+		return extractor;
+	}
+
+	/**
+	 * Get the {@link SpatialBinningStrategy} used to compute the features.
+	 *
+	 * @return the strategy
+	 */
+	public SpatialBinningStrategy getStrategy() {
+		return strategy;
+	}
+
 	/**
 	 * Compute the HOG feature for the given window.
 	 *
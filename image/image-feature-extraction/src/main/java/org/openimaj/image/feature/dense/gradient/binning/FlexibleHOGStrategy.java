@@ -52,12 +52,12 @@ public class FlexibleHOGStrategy implements SpatialBinningStrategy {
 	int cellsPerBlockY = 2;
 	BlockNormalisation norm = BlockNormalisation.L2;
 
-	private int numBlocksX;
-	private int numBlocksY;
+	int numBlocksX;
+	int numBlocksY;
 	private int blockLength;
 	private int blockArea;
-	private int blockStepX;
-	private int blockStepY;
+	int blockStepX;
+	int blockStepY;
 
 	private transient Histogram[][] blocks;
 	private transient Histogram[][] cells;
@@ -154,6 +154,24 @@ public class FlexibleHOGStrategy implements SpatialBinningStrategy {
 		numBlocksY = 1 + (numCellsY - cellsPerBlockY) / blockStepY;
 	}
 
+	/**
+	 * Get the number of cells per window in the x direction
+	 *
+	 * @return the number of cells in the x direction
+	 */
+	public int getNumCellsX() {
+		return numCellsX;
+	}
+
+	/**
+	 * Get the number of cells per window in the y direction
+	 *
+	 * @return the number of cells in the y direction
+	 */
+	public int getNumCellsY() {
+		return numCellsY;
+	}
+
 	@Override
 	public Histogram extract(WindowedHistogramExtractor binnedData, Rectangle region, Histogram output) {
 		if (cells == null || cells[0][0].values.length != binnedData.getNumBins()) {
@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.dense.gradient.binning;
+
+import org.openimaj.image.analysis.algorithm.histogram.WindowedHistogramExtractor;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.math.statistics.distribution.Histogram;
+
+/**
+ * A dense grid of normalised HOG blocks laid out on a regular lattice of
+ * fixed-size cells. The grid is computed with the same cell and block
+ * parameters as a {@link FlexibleHOGStrategy}, and any window whose cells lie
+ * on the lattice can be extracted by simply concatenating the precomputed
+ * blocks. The extracted descriptors are identical to those produced by
+ * {@link FlexibleHOGStrategy#extract(WindowedHistogramExtractor, Rectangle, Histogram)}
+ * for the same window, but each cell and block is only computed once
+ * regardless of how many windows overlap it. This makes it possible to
+ * efficiently evaluate a classifier over every window of a sliding-window
+ * search.
+ * <p>
+ * The internal buffers are reused by successive calls to
+ * {@link #analyse(WindowedHistogramExtractor, int, int, int, int, int, int)}
+ * if the lattice dimensions do not change. Instances are not thread-safe.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class HOGBlockGrid {
+	private final FlexibleHOGStrategy strategy;
+
+	private int numCellsX;
+	private int numCellsY;
+	private int blockLength;
+
+	private transient Histogram[][] cells;
+	private transient Histogram[][] blocks;
+
+	/**
+	 * Construct a grid that uses the cell and block parameters of the given
+	 * strategy.
+	 *
+	 * @param strategy
+	 *            the strategy
+	 */
+	public HOGBlockGrid(FlexibleHOGStrategy strategy) {
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Compute the normalised cells and blocks for a lattice of cells of the
+	 * given size starting at the given position. Blocks are computed at every
+	 * cell position in which they fit, so that a window can start at any cell
+	 * of the lattice.
+	 *
+	 * @param binnedData
+	 *            the histogram data from which to build the cells
+	 * @param x
+	 *            the x-ordinate of the top-left of the lattice
+	 * @param y
+	 *            the y-ordinate of the top-left of the lattice
+	 * @param cellWidth
+	 *            the width of each cell in pixels
+	 * @param cellHeight
+	 *            the height of each cell in pixels
+	 * @param numCellsX
+	 *            the number of cells in the x direction
+	 * @param numCellsY
+	 *            the number of cells in the y direction
+	 */
+	public void analyse(WindowedHistogramExtractor binnedData, int x, int y, int cellWidth, int cellHeight,
+			int numCellsX, int numCellsY)
+	{
+		final int nbins = binnedData.getNumBins();
+		final int numBlocksX = Math.max(0, numCellsX - strategy.cellsPerBlockX + 1);
+		final int numBlocksY = Math.max(0, numCellsY - strategy.cellsPerBlockY + 1);
+
+		if (cells == null || this.numCellsX != numCellsX || this.numCellsY != numCellsY
+				|| (numCellsX > 0 && numCellsY > 0 && cells[0][0].values.length != nbins))
+		{
+			this.numCellsX = numCellsX;
+			this.numCellsY = numCellsY;
+			this.blockLength = nbins * strategy.cellsPerBlockX * strategy.cellsPerBlockY;
+
+			cells = new Histogram[numCellsY][numCellsX];
+			blocks = new Histogram[numBlocksY][numBlocksX];
+
+			for (int j = 0; j < numCellsY; j++)
+				for (int i = 0; i < numCellsX; i++)
+					cells[j][i] = new Histogram(nbins);
+
+			for (int j = 0; j < numBlocksY; j++)
+				for (int i = 0; i < numBlocksX; i++)
+					blocks[j][i] = new Histogram(blockLength);
+		}
+
+		for (int j = 0, yy = y; j < numCellsY; j++, yy += cellHeight) {
+			for (int i = 0, xx = x; i < numCellsX; i++, xx += cellWidth) {
+				binnedData.computeHistogram(xx, yy, cellWidth, cellHeight, cells[j][i]);
+				cells[j][i].normaliseL2();
+			}
+		}
+
+		final int blockArea = strategy.cellsPerBlockX * strategy.cellsPerBlockY;
+		for (int by = 0; by < numBlocksY; by++) {
+			for (int bx = 0; bx < numBlocksX; bx++) {
+				final double[] blockData = blocks[by][bx].values;
+
+				for (int j = 0, k = 0; j < strategy.cellsPerBlockY; j++) {
+					for (int i = 0; i < strategy.cellsPerBlockX; i++) {
+						final double[] cellData = cells[by + j][bx + i].values;
+
+						System.arraycopy(cellData, 0, blockData, k, cellData.length);
+
+						k += cellData.length;
+					}
+				}
+
+				strategy.norm.normalise(blocks[by][bx], blockArea);
+			}
+		}
+	}
+
+	/**
+	 * Test whether a window whose top-left cell is at the given lattice
+	 * position lies completely within the grid.
+	 *
+	 * @param cellX
+	 *            the x-index of the top-left cell of the window
+	 * @param cellY
+	 *            the y-index of the top-left cell of the window
+	 * @return true if the window can be extracted; false otherwise
+	 */
+	public boolean containsWindow(int cellX, int cellY) {
+		return cellX >= 0 && cellY >= 0 &&
+				cellX + strategy.numCellsX <= numCellsX &&
+				cellY + strategy.numCellsY <= numCellsY;
+	}
+
+	/**
+	 * Extract the HOG descriptor of the window whose top-left cell is at the
+	 * given lattice position by concatenating the precomputed blocks.
+	 *
+	 * @param cellX
+	 *            the x-index of the top-left cell of the window
+	 * @param cellY
+	 *            the y-index of the top-left cell of the window
+	 * @param output
+	 *            the histogram to write into; if null or of the wrong length
+	 *            a new one is created
+	 * @return the descriptor
+	 */
+	public Histogram extractWindow(int cellX, int cellY, Histogram output) {
+		final int numWindowBlocksX = strategy.numBlocksX;
+		final int numWindowBlocksY = strategy.numBlocksY;
+		final int length = numWindowBlocksX * numWindowBlocksY * blockLength;
+
+		if (output == null || output.values.length != length)
+			output = new Histogram(length);
+
+		for (int j = 0, k = 0; j < numWindowBlocksY; j++) {
+			final Histogram[] row = blocks[cellY + j * strategy.blockStepY];
+
+			for (int i = 0; i < numWindowBlocksX; i++, k++) {
+				System.arraycopy(row[cellX + i * strategy.blockStepX].values, 0, output.values, k * blockLength,
+						blockLength);
+			}
+		}
+
+		return output;
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.dense.gradient.binning;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.analysis.algorithm.histogram.GradientOrientationHistogramExtractor;
+import org.openimaj.image.feature.dense.gradient.binning.FixedHOGStrategy.BlockNormalisation;
+import org.openimaj.image.processing.convolution.FImageGradients;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.math.statistics.distribution.Histogram;
+
+/**
+ * Tests for {@link HOGBlockGrid}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class HOGBlockGridTest {
+	/**
+	 * Test that windows extracted from the grid are identical to those
+	 * computed directly by the {@link FlexibleHOGStrategy}
+	 */
+	@Test
+	public void testMatchesFlexibleStrategy() {
+		final Random rng = new Random(42);
+		final FImage image = new FImage(200, 240);
+		for (int y = 0; y < image.height; y++)
+			for (int x = 0; x < image.width; x++)
+				image.pixels[y][x] = rng.nextFloat();
+
+		final GradientOrientationHistogramExtractor extractor = new GradientOrientationHistogramExtractor(9, false,
+				FImageGradients.Mode.Unsigned);
+		extractor.analyseImage(image);
+
+		for (final BlockNormalisation norm : BlockNormalisation.values()) {
+			for (final int blockStep : new int[] { 1, 2 }) {
+				final FlexibleHOGStrategy strategy = new FlexibleHOGStrategy(8, 16, 2, blockStep, norm);
+				final HOGBlockGrid grid = new HOGBlockGrid(strategy);
+
+				final int cellSize = 9;
+				final int startX = 3;
+				final int startY = 5;
+				final int numCellsX = (image.width - startX) / cellSize;
+				final int numCellsY = (image.height - startY) / cellSize;
+				grid.analyse(extractor, startX, startY, cellSize, cellSize, numCellsX, numCellsY);
+
+				Histogram expected = null;
+				Histogram actual = null;
+				for (int cy = 0; grid.containsWindow(0, cy); cy++) {
+					for (int cx = 0; grid.containsWindow(cx, cy); cx++) {
+						final Rectangle window = new Rectangle(startX + cx * cellSize, startY + cy * cellSize,
+								8 * cellSize, 16 * cellSize);
+
+						expected = strategy.extract(extractor, window, expected);
+						actual = grid.extractWindow(cx, cy, actual);
+
+						assertArrayEquals(expected.values, actual.values, 0);
+					}
+				}
+			}
+		}
+	}
+}
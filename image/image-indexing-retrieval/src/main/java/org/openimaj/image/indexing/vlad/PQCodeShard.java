@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.indexing.vlad;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+/**
+ * A read-only shard of product-quantised codes (for example PQ-PCA-VLAD
+ * features) together with the identifiers of the items they represent. The
+ * codes and identifier table are memory-mapped rather than read onto the heap,
+ * so very large collections can be searched with little memory overhead and
+ * negligible load time. Shards are created with a {@link PQCodeShardWriter}
+ * and searched with a {@link ShardedPQIndex}.
+ * <p>
+ * Each region of a shard (the codes, the identifier bytes and the offset
+ * table) must be smaller than 2GB.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class PQCodeShard {
+	/**
+	 * The magic bytes at the start of a codes file
+	 */
+	public static final byte[] MAGIC = "PQCODES".getBytes(PQCodeShardWriter.UTF8);
+
+	/**
+	 * The extension of the file holding the codes
+	 */
+	public static final String CODES_EXTENSION = ".codes";
+
+	/**
+	 * The extension of the file holding the identifiers
+	 */
+	public static final String IDS_EXTENSION = ".ids";
+
+	private final File codesFile;
+	private final int numSubVectors;
+	private final int size;
+	private final ByteBuffer codes;
+	private final ByteBuffer idData;
+	private final LongBuffer offsets;
+
+	/**
+	 * Open the shard with the given codes file. The identifiers are read from
+	 * the file with the same base name and the {@link #IDS_EXTENSION}.
+	 * 
+	 * @param codesFile
+	 *            the codes file
+	 * @throws IOException
+	 *             if the shard cannot be read
+	 */
+	public PQCodeShard(File codesFile) throws IOException {
+		this.codesFile = codesFile;
+
+		final ByteBuffer codesMap = map(codesFile);
+		final byte[] magic = new byte[MAGIC.length];
+		if (codesMap.remaining() < MAGIC.length + 4)
+			throw new IOException("Invalid shard: " + codesFile);
+		codesMap.get(magic);
+		if (!Arrays.equals(magic, MAGIC))
+			throw new IOException("Invalid shard: " + codesFile);
+
+		numSubVectors = codesMap.getInt();
+		this.codes = codesMap.slice();
+		if (numSubVectors <= 0 || codes.remaining() % numSubVectors != 0)
+			throw new IOException("Invalid or truncated shard: " + codesFile);
+		this.size = codes.remaining() / numSubVectors;
+
+		final File idsFile = idsFile(codesFile);
+		final ByteBuffer idsMap = map(idsFile);
+		final int length = idsMap.remaining();
+		if (length < 16 || idsMap.getLong(length - 8) != size)
+			throw new IOException("Invalid or truncated identifier table: " + idsFile);
+
+		final int offsetsStart = length - 8 - 8 * (size + 1);
+		if (offsetsStart < 0)
+			throw new IOException("Invalid or truncated identifier table: " + idsFile);
+
+		idsMap.position(offsetsStart);
+		idsMap.limit(length - 8);
+		this.offsets = idsMap.slice().asLongBuffer();
+
+		idsMap.clear();
+		idsMap.limit(offsetsStart);
+		this.idData = idsMap.slice();
+	}
+
+	/**
+	 * Get the identifier file corresponding to the given codes file
+	 * 
+	 * @param codesFile
+	 *            the codes file
+	 * @return the identifiers file
+	 */
+	public static File idsFile(File codesFile) {
+		final String name = codesFile.getName();
+		final String base = name.endsWith(CODES_EXTENSION) ?
+				name.substring(0, name.length() - CODES_EXTENSION.length()) : name;
+
+		return new File(codesFile.getParentFile(), base + IDS_EXTENSION);
+	}
+
+	private static ByteBuffer map(File file) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Shard file is too large to be memory-mapped: " + file);
+
+			return channel.map(MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			// the mapping remains valid after the file is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * @return the codes file backing this shard
+	 */
+	public File getFile() {
+		return codesFile;
+	}
+
+	/**
+	 * @return the number of codes in the shard
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the length of each code
+	 */
+	public int numSubVectors() {
+		return numSubVectors;
+	}
+
+	/**
+	 * Get the code at the given index
+	 * 
+	 * @param index
+	 *            the index
+	 * @return the code
+	 */
+	public byte[] getCode(int index) {
+		final byte[] code = new byte[numSubVectors];
+		final ByteBuffer buffer = codes.duplicate();
+		buffer.position(index * numSubVectors);
+		buffer.get(code);
+		return code;
+	}
+
+	/**
+	 * Get the identifier of the item at the given index
+	 * 
+	 * @param index
+	 *            the index
+	 * @return the identifier
+	 */
+	public String getID(int index) {
+		final int start = (int) offsets.get(index);
+		final int end = (int) offsets.get(index + 1);
+
+		final byte[] data = new byte[end - start];
+		final ByteBuffer buffer = idData.duplicate();
+		buffer.position(start);
+		buffer.get(data);
+
+		return new String(data, PQCodeShardWriter.UTF8);
+	}
+
+	/**
+	 * Get a read-only view of the codes. The view starts at the first code
+	 * and has independent position and limit.
+	 * 
+	 * @return the codes
+	 */
+	ByteBuffer codes() {
+		return codes.duplicate();
+	}
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.indexing.vlad;
+
+import gnu.trove.list.array.TLongArrayList;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Streaming writer for a {@link PQCodeShard}. Codes and identifiers are
+ * written sequentially to a pair of streams, so shards can be produced
+ * directly on a distributed filesystem (for example, one per Hadoop task)
+ * without seeking.
+ * <p>
+ * The codes stream holds a short header (the magic bytes
+ * {@link PQCodeShard#MAGIC} and the number of sub-vectors) followed by the
+ * fixed-length product-quantised codes. The identifiers stream holds the
+ * UTF-8 encoded identifiers back-to-back, followed by a table of the
+ * <code>n+1</code> offsets of the identifiers and finally the number of
+ * identifiers <code>n</code>.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class PQCodeShardWriter implements Closeable {
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final DataOutputStream codes;
+	private final DataOutputStream ids;
+	private final int numSubVectors;
+	private final TLongArrayList offsets = new TLongArrayList();
+	private long idBytes;
+
+	/**
+	 * Construct a writer that writes to the given streams.
+	 * 
+	 * @param codes
+	 *            the stream for the codes
+	 * @param ids
+	 *            the stream for the identifiers
+	 * @param numSubVectors
+	 *            the length of each code
+	 * @throws IOException
+	 *             if an error occurs writing the header
+	 */
+	public PQCodeShardWriter(OutputStream codes, OutputStream ids, int numSubVectors) throws IOException {
+		this.codes = new DataOutputStream(new BufferedOutputStream(codes, 1 << 16));
+		this.ids = new DataOutputStream(new BufferedOutputStream(ids, 1 << 16));
+		this.numSubVectors = numSubVectors;
+
+		this.codes.write(PQCodeShard.MAGIC);
+		this.codes.writeInt(numSubVectors);
+		offsets.add(0);
+	}
+
+	/**
+	 * Construct a writer for a shard in the local filesystem. The codes and
+	 * identifiers will be written to files with the given base path and the
+	 * extensions {@link PQCodeShard#CODES_EXTENSION} and
+	 * {@link PQCodeShard#IDS_EXTENSION} respectively.
+	 * 
+	 * @param base
+	 *            the base path of the shard
+	 * @param numSubVectors
+	 *            the length of each code
+	 * @throws IOException
+	 *             if an error occurs opening the files
+	 */
+	public PQCodeShardWriter(File base, int numSubVectors) throws IOException {
+		this(new FileOutputStream(base.getPath() + PQCodeShard.CODES_EXTENSION),
+				new FileOutputStream(base.getPath() + PQCodeShard.IDS_EXTENSION), numSubVectors);
+	}
+
+	/**
+	 * Append a code and its identifier to the shard.
+	 * 
+	 * @param id
+	 *            the identifier
+	 * @param code
+	 *            the product-quantised code
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public void add(String id, byte[] code) throws IOException {
+		if (code.length != numSubVectors)
+			throw new IllegalArgumentException("Expected a code of length " + numSubVectors + " but got "
+					+ code.length);
+
+		final byte[] idData = id.getBytes(UTF8);
+		codes.write(code);
+		ids.write(idData);
+		idBytes += idData.length;
+		offsets.add(idBytes);
+	}
+
+	/**
+	 * @return the number of codes written so far
+	 */
+	public int size() {
+		return offsets.size() - 1;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			for (int i = 0; i < offsets.size(); i++)
+				ids.writeLong(offsets.get(i));
+			ids.writeLong(offsets.size() - 1);
+		} finally {
+			ids.close();
+			codes.close();
+		}
+	}
+}
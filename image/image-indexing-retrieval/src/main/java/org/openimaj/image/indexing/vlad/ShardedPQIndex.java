@@ -0,0 +1,313 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.indexing.vlad;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.knn.pq.FloatProductQuantiser;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.pair.IntFloatPair;
+import org.openimaj.util.pair.ObjectFloatPair;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.queue.BoundedPriorityQueue;
+
+/**
+ * A searchable index over a set of memory-mapped {@link PQCodeShard}s, using
+ * Asymmetric Distance Computation (ADC) with a {@link FloatProductQuantiser}.
+ * The distance tables for a query are computed once and shared by all the
+ * shards; each shard is scanned in blocks across the threads of a pool, and
+ * the per-block top-K lists are merged into the final result.
+ * <p>
+ * New shards (for example, the output of an indexing job run over newly
+ * acquired images) can be added at any time with {@link #addShard(File)} or
+ * {@link #addShards(File)}; existing shards are never rewritten. Searches in
+ * progress are unaffected by shards being added.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ShardedPQIndex {
+	private static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+	private static final int READ_SIZE = 4096;
+
+	private final FloatProductQuantiser pq;
+	private final ThreadPoolExecutor pool;
+	private final int blockSize;
+	private final List<PQCodeShard> shards = new CopyOnWriteArrayList<PQCodeShard>();
+	private final Set<File> files = new HashSet<File>();
+
+	/**
+	 * Construct an empty index that searches using the threads of the
+	 * {@link GlobalExecutorPool}.
+	 * 
+	 * @param pq
+	 *            the product quantiser used to create the codes
+	 */
+	public ShardedPQIndex(FloatProductQuantiser pq) {
+		this(pq, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Construct an empty index that searches using the threads of the given
+	 * pool.
+	 * 
+	 * @param pq
+	 *            the product quantiser used to create the codes
+	 * @param pool
+	 *            the thread pool
+	 */
+	public ShardedPQIndex(FloatProductQuantiser pq, ThreadPoolExecutor pool) {
+		this(pq, pool, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Construct an empty index that searches using the threads of the given
+	 * pool, scanning the shards in blocks of the given number of codes.
+	 * 
+	 * @param pq
+	 *            the product quantiser used to create the codes
+	 * @param pool
+	 *            the thread pool
+	 * @param blockSize
+	 *            the number of codes scanned by each task
+	 */
+	ShardedPQIndex(FloatProductQuantiser pq, ThreadPoolExecutor pool, int blockSize) {
+		this.pq = pq;
+		this.pool = pool;
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Add the shard with the given codes file. Shards that have already been
+	 * added are ignored.
+	 * 
+	 * @param codesFile
+	 *            the codes file of the shard
+	 * @return true if the shard was added; false if it was already present
+	 * @throws IOException
+	 *             if the shard cannot be read or has codes of the wrong length
+	 */
+	public synchronized boolean addShard(File codesFile) throws IOException {
+		final File file = codesFile.getCanonicalFile();
+		if (files.contains(file))
+			return false;
+
+		final PQCodeShard shard = new PQCodeShard(file);
+		if (shard.numSubVectors() != pq.numSubVectors())
+			throw new IOException("Shard " + file + " has codes of length " + shard.numSubVectors()
+					+ " but the quantiser has " + pq.numSubVectors() + " sub-vectors");
+
+		files.add(file);
+		shards.add(shard);
+		return true;
+	}
+
+	/**
+	 * Add all the shards in the given directory (i.e. all the files with the
+	 * {@link PQCodeShard#CODES_EXTENSION} extension) which have not already
+	 * been added. This can be called repeatedly to pick up new shards.
+	 * 
+	 * @param directory
+	 *            the directory
+	 * @return the number of shards added
+	 * @throws IOException
+	 *             if a shard cannot be read
+	 */
+	public int addShards(File directory) throws IOException {
+		final File[] codesFiles = directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File f) {
+				return f.isFile() && f.getName().endsWith(PQCodeShard.CODES_EXTENSION);
+			}
+		});
+
+		if (codesFiles == null)
+			throw new IOException("Unable to list " + directory);
+
+		Arrays.sort(codesFiles);
+
+		int count = 0;
+		for (final File f : codesFiles)
+			if (addShard(f))
+				count++;
+
+		return count;
+	}
+
+	/**
+	 * @return the shards in the index
+	 */
+	public List<PQCodeShard> getShards() {
+		return new ArrayList<PQCodeShard>(shards);
+	}
+
+	/**
+	 * @return the total number of codes in the index
+	 */
+	public long size() {
+		long size = 0;
+		for (final PQCodeShard s : shards)
+			size += s.size();
+		return size;
+	}
+
+	/**
+	 * Find the K nearest neighbours of the given (unquantised) query.
+	 * 
+	 * @param query
+	 *            the query vector
+	 * @param K
+	 *            the number of neighbours
+	 * @return the identifiers and distances of the neighbours, in order of
+	 *         increasing distance
+	 */
+	public List<ObjectFloatPair<String>> searchKNN(float[] query, final int K) {
+		if (K <= 0)
+			return new ArrayList<ObjectFloatPair<String>>(0);
+
+		final float[][] tables = pq.computeDistanceTables(query);
+		final List<PQCodeShard> shards = getShards();
+
+		// split the shards into blocks so that large shards are also
+		// searched in parallel
+		final List<int[]> blocks = new ArrayList<int[]>();
+		for (int s = 0; s < shards.size(); s++) {
+			final int size = shards.get(s).size();
+			for (int from = 0; from < size; from += blockSize)
+				blocks.add(new int[] { s, from, Math.min(size, from + blockSize) });
+		}
+
+		final Comparator<Hit> comparator = new Comparator<Hit>() {
+			@Override
+			public int compare(Hit o1, Hit o2) {
+				return Float.compare(o1.distance, o2.distance);
+			}
+		};
+		final BoundedPriorityQueue<Hit> results = new BoundedPriorityQueue<Hit>(K, comparator);
+
+		final Throwable[] errors = new Throwable[blocks.size()];
+		Parallel.forIndex(0, blocks.size(), 1, new Operation<Integer>() {
+			@Override
+			public void perform(Integer i) {
+				try {
+					final int[] block = blocks.get(i);
+					final List<IntFloatPair> blockResults = search(shards.get(block[0]), block[1], block[2], tables, K);
+
+					synchronized (results) {
+						for (final IntFloatPair p : blockResults)
+							if (p.first >= 0)
+								results.offer(new Hit(block[0], p.first, p.second));
+					}
+				} catch (final Throwable t) {
+					// don't throw here, as the parallel loop would never
+					// complete
+					errors[i] = t;
+				}
+			}
+		}, pool);
+
+		for (final Throwable t : errors) {
+			if (t instanceof RuntimeException)
+				throw (RuntimeException) t;
+			if (t instanceof Error)
+				throw (Error) t;
+		}
+
+		final List<Hit> ordered = results.toOrderedListDestructive();
+		final List<ObjectFloatPair<String>> ret = new ArrayList<ObjectFloatPair<String>>(ordered.size());
+		for (final Hit h : ordered)
+			ret.add(new ObjectFloatPair<String>(shards.get(h.shard).getID(h.index), h.distance));
+
+		return ret;
+	}
+
+	private static List<IntFloatPair> search(PQCodeShard shard, int from, int to, float[][] tables, int K) {
+		final int M = tables.length;
+
+		// a block can't contribute more than its own size
+		K = Math.min(K, to - from);
+		final BoundedPriorityQueue<IntFloatPair> queue =
+				new BoundedPriorityQueue<IntFloatPair>(K, IntFloatPair.SECOND_ITEM_ASCENDING_COMPARATOR);
+
+		// fill the queue with sentinels (index -1) so it is always full and
+		// the tail gives the current pruning threshold
+		IntFloatPair wp = null;
+		for (int i = 0; i <= K; i++)
+			wp = queue.offerItem(new IntFloatPair(-1, Float.MAX_VALUE));
+		float threshold = queue.peekTail().second;
+
+		final ByteBuffer codes = shard.codes();
+		codes.position(from * M);
+		final byte[] buffer = new byte[READ_SIZE * M];
+
+		for (int start = from; start < to; start += READ_SIZE) {
+			final int n = Math.min(READ_SIZE, to - start);
+			codes.get(buffer, 0, n * M);
+
+			for (int i = 0, offset = 0; i < n; i++, offset += M) {
+				float distance = 0;
+				for (int j = 0; j < M && distance < threshold; j++)
+					distance += tables[j][buffer[offset + j] + 128];
+
+				if (distance < threshold) {
+					wp.first = start + i;
+					wp.second = distance;
+					wp = queue.offerItem(wp);
+					threshold = queue.peekTail().second;
+				}
+			}
+		}
+
+		return queue.toOrderedListDestructive();
+	}
+
+	private static class Hit {
+		final int shard;
+		final int index;
+		final float distance;
+
+		Hit(int shard, int index, float distance) {
+			this.shard = shard;
+			this.index = index;
+			this.distance = distance;
+		}
+	}
+}
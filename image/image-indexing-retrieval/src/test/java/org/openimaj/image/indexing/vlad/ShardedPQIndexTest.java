@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.indexing.vlad;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openimaj.data.RandomData;
+import org.openimaj.knn.FloatNearestNeighboursExact;
+import org.openimaj.knn.pq.FloatProductQuantiser;
+import org.openimaj.knn.pq.IncrementalFloatADCNearestNeighbours;
+import org.openimaj.util.pair.IntFloatPair;
+import org.openimaj.util.pair.ObjectFloatPair;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for the {@link PQCodeShardWriter}, {@link PQCodeShard} and
+ * {@link ShardedPQIndex}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ShardedPQIndexTest {
+	private static final int M = 4;
+	private static final int SUB_DIMS = 4;
+	private static final int BLOCK_SIZE = 256;
+	private static final int[] SHARD_SIZES = { 1000, 0, 7, 2500 };
+
+	/**
+	 * Folder for the shards
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FloatProductQuantiser pq;
+	private List<String> ids;
+	private List<float[]> data;
+	private List<byte[]> codes;
+
+	/**
+	 * Create a quantiser with random centroids, and write random data to a
+	 * set of shards (including an empty shard and one smaller than the
+	 * largest K searched for)
+	 *
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		final FloatNearestNeighboursExact[] assigners = new FloatNearestNeighboursExact[M];
+		for (int i = 0; i < M; i++)
+			assigners[i] = new FloatNearestNeighboursExact(RandomData.getRandomFloatArray(200, SUB_DIMS, -1, 1, i));
+		pq = new FloatProductQuantiser(assigners);
+
+		ids = new ArrayList<String>();
+		data = new ArrayList<float[]>();
+		codes = new ArrayList<byte[]>();
+
+		for (int s = 0; s < SHARD_SIZES.length; s++) {
+			final float[][] shardData = RandomData.getRandomFloatArray(SHARD_SIZES[s], M * SUB_DIMS, -1, 1, 100 + s);
+
+			final PQCodeShardWriter writer = new PQCodeShardWriter(new File(folder.getRoot(), "shard" + s), M);
+			try {
+				for (int i = 0; i < shardData.length; i++) {
+					final String id = "shard" + s + "/\u00e9" + i;
+					final byte[] code = pq.quantise(shardData[i]);
+
+					writer.add(id, code);
+					ids.add(id);
+					data.add(shardData[i]);
+					codes.add(code);
+				}
+			} finally {
+				writer.close();
+			}
+		}
+	}
+
+	/**
+	 * Test that the shards read back the codes and identifiers that were
+	 * written
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		for (int s = 0, k = 0; s < SHARD_SIZES.length; s++) {
+			final PQCodeShard shard = new PQCodeShard(new File(folder.getRoot(), "shard" + s
+					+ PQCodeShard.CODES_EXTENSION));
+
+			assertEquals(M, shard.numSubVectors());
+			assertEquals(SHARD_SIZES[s], shard.size());
+
+			for (int i = 0; i < shard.size(); i++, k++) {
+				assertEquals(ids.get(k), shard.getID(i));
+				assertArrayEquals(codes.get(k), shard.getCode(i));
+			}
+		}
+	}
+
+	/**
+	 * Test that adding shards from a directory only adds each shard once
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testAddShards() throws IOException {
+		final ShardedPQIndex index = new ShardedPQIndex(pq);
+
+		assertEquals(SHARD_SIZES.length, index.addShards(folder.getRoot()));
+		assertEquals(0, index.addShards(folder.getRoot()));
+		assertEquals(data.size(), index.size());
+	}
+
+	/**
+	 * Test that searching the shards gives the same results as an exhaustive
+	 * ADC search over all the data, for values of K smaller and larger than
+	 * the blocks and shards
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testSearch() throws IOException {
+		final ShardedPQIndex index = new ShardedPQIndex(pq, GlobalExecutorPool.getPool(), BLOCK_SIZE);
+		index.addShards(folder.getRoot());
+
+		final IncrementalFloatADCNearestNeighbours adc = new IncrementalFloatADCNearestNeighbours(pq, data);
+
+		final float[][] queries = RandomData.getRandomFloatArray(5, M * SUB_DIMS, -1, 1, 42);
+		for (final float[] query : queries) {
+			final Map<String, Float> distances = new HashMap<String, Float>();
+			for (final IntFloatPair p : adc.searchKNN(query, data.size()))
+				distances.put(ids.get(p.first), p.second);
+
+			for (final int K : new int[] { 1, 10, BLOCK_SIZE + 50, data.size() + 10 }) {
+				final List<IntFloatPair> expected = adc.searchKNN(query, K);
+				final List<ObjectFloatPair<String>> actual = index.searchKNN(query, K);
+
+				assertEquals(Math.min(K, data.size()), actual.size());
+				assertEquals(expected.size(), actual.size());
+
+				for (int i = 0; i < actual.size(); i++) {
+					final ObjectFloatPair<String> r = actual.get(i);
+
+					assertEquals(expected.get(i).second, r.second, 1e-5);
+					assertEquals(distances.get(r.first), r.second, 1e-5);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature.local.matcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.image.feature.local.keypoints.Keypoint;
+import org.openimaj.knn.ByteNearestNeighbours;
+import org.openimaj.knn.NearestNeighboursFactory;
+import org.openimaj.knn.approximate.ByteNearestNeighboursKDTree;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.pair.Pair;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * Keypoint matcher that matches a set of query keypoints against one or more
+ * sets of model keypoints using Lowe's ratio test on the two nearest
+ * neighbours, in the same way as {@link FastBasicKeypointMatcher}.
+ * <p>
+ * A nearest-neighbour index is built once for each set of model keypoints
+ * when it is added, and is retained across calls to
+ * {@link #findMatches(List)}. Matching is performed in a single pass over the
+ * query keypoints, which is split across the threads of a
+ * {@link ThreadPoolExecutor}; each worker searches all the model indexes for
+ * its share of the queries. This makes the matcher well suited to verifying a
+ * single query image against many model images.
+ * <p>
+ * When used through the {@link LocalFeatureMatcher} interface,
+ * {@link #setModelFeatures(List)} replaces all the model sets with a single
+ * set, and {@link #getMatches()} returns the matches against all models.
+ * Matches against individual models can be obtained with
+ * {@link #getMatches(int)}.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * @param <T>
+ *            The type of keypoint
+ */
+public class BatchedKeypointMatcher<T extends Keypoint> implements LocalFeatureMatcher<T> {
+	protected NearestNeighboursFactory<? extends ByteNearestNeighbours, byte[]> factory;
+	protected ThreadPoolExecutor threadPool;
+	protected int thresh;
+
+	protected List<List<T>> modelKeypoints = new ArrayList<List<T>>();
+	protected List<ByteNearestNeighbours> modelIndexes = new ArrayList<ByteNearestNeighbours>();
+	protected List<List<Pair<T>>> matches = new ArrayList<List<Pair<T>>>();
+
+	/**
+	 * Construct with a threshold of 8, corresponding to the 0.8 in Lowe's IJCV
+	 * paper, using the same approximate KD-Tree settings as
+	 * {@link FastBasicKeypointMatcher} and the global thread pool.
+	 */
+	public BatchedKeypointMatcher() {
+		this(8);
+	}
+
+	/**
+	 * Construct with the given threshold, using the same approximate KD-Tree
+	 * settings as {@link FastBasicKeypointMatcher} and the global thread pool.
+	 *
+	 * @param threshold
+	 *            threshold for determining matching keypoints
+	 */
+	public BatchedKeypointMatcher(int threshold) {
+		this(threshold, new ByteNearestNeighboursKDTree.Factory(1, 100), GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Construct with the given threshold, nearest-neighbour index factory and
+	 * thread pool.
+	 *
+	 * @param threshold
+	 *            threshold for determining matching keypoints
+	 * @param factory
+	 *            the factory used to create the index for each set of model
+	 *            keypoints
+	 * @param threadPool
+	 *            the thread pool used for matching; if <code>null</code>
+	 *            matching is performed on the calling thread
+	 */
+	public BatchedKeypointMatcher(int threshold, NearestNeighboursFactory<? extends ByteNearestNeighbours, byte[]> factory,
+			ThreadPoolExecutor threadPool)
+	{
+		this.thresh = threshold;
+		this.factory = factory;
+		this.threadPool = threadPool;
+	}
+
+	@Override
+	public void setModelFeatures(List<T> modelkeys) {
+		clearModelFeatures();
+		addModelFeatures(modelkeys);
+	}
+
+	/**
+	 * Add a set of model keypoints, building its nearest-neighbour index.
+	 *
+	 * @param modelkeys
+	 *            the model keypoints
+	 * @return the index of the model, for use with {@link #getMatches(int)}
+	 */
+	public int addModelFeatures(List<T> modelkeys) {
+		final byte[][] data = new byte[modelkeys.size()][];
+		for (int i = 0; i < modelkeys.size(); i++)
+			data[i] = modelkeys.get(i).ivec;
+
+		modelKeypoints.add(modelkeys);
+		modelIndexes.add(data.length == 0 ? null : factory.create(data));
+		matches.add(new ArrayList<Pair<T>>());
+
+		return modelKeypoints.size() - 1;
+	}
+
+	/**
+	 * Remove all the model keypoints and their indexes
+	 */
+	public void clearModelFeatures() {
+		modelKeypoints.clear();
+		modelIndexes.clear();
+		matches.clear();
+	}
+
+	/**
+	 * @return the number of sets of model keypoints
+	 */
+	public int numModels() {
+		return modelKeypoints.size();
+	}
+
+	@Override
+	public boolean findMatches(final List<T> keys1) {
+		final int nModels = modelKeypoints.size();
+		final int nQueries = keys1.size();
+
+		final byte[][] data = new byte[nQueries][];
+		for (int i = 0; i < nQueries; i++)
+			data[i] = keys1.get(i).ivec;
+
+		final int[][][] argmins = new int[nModels][nQueries][];
+		final float[][][] mins = new float[nModels][nQueries][];
+
+		if (threadPool == null) {
+			search(data, 0, nQueries, argmins, mins);
+		} else {
+			Parallel.forRange(0, nQueries, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					search(data, range.start, range.stop, argmins, mins);
+				}
+			}, threadPool);
+		}
+
+		// assemble the matches in query order
+		for (int m = 0; m < nModels; m++) {
+			final List<T> model = modelKeypoints.get(m);
+			final List<Pair<T>> modelMatches = new ArrayList<Pair<T>>();
+
+			if (modelIndexes.get(m) != null && model.size() >= 2) {
+				for (int i = 0; i < nQueries; i++) {
+					final float distsq1 = mins[m][i][0];
+					final float distsq2 = mins[m][i][1];
+
+					if (10 * 10 * distsq1 < thresh * thresh * distsq2) {
+						modelMatches.add(new Pair<T>(keys1.get(i), model.get(argmins[m][i][0])));
+					}
+				}
+			}
+
+			matches.set(m, modelMatches);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Find the two nearest neighbours in every model of the queries from
+	 * <code>start</code> (inclusive) to <code>stop</code> (exclusive)
+	 */
+	protected void search(byte[][] data, int start, int stop, int[][][] argmins, float[][][] mins) {
+		final int n = stop - start;
+		if (n <= 0)
+			return;
+
+		final byte[][] queries = new byte[n][];
+		System.arraycopy(data, start, queries, 0, n);
+
+		for (int m = 0; m < modelIndexes.size(); m++) {
+			final ByteNearestNeighbours index = modelIndexes.get(m);
+			if (index == null)
+				continue;
+
+			final int[][] am = new int[n][2];
+			final float[][] mn = new float[n][2];
+			index.searchKNN(queries, 2, am, mn);
+
+			System.arraycopy(am, 0, argmins[m], start, n);
+			System.arraycopy(mn, 0, mins[m], start, n);
+		}
+	}
+
+	/**
+	 * Get the matches against all the models from the last call to
+	 * {@link #findMatches(List)}.
+	 *
+	 * @return List of pairs of matching keypoints
+	 */
+	@Override
+	public List<Pair<T>> getMatches() {
+		if (matches.size() == 1)
+			return matches.get(0);
+
+		final List<Pair<T>> all = new ArrayList<Pair<T>>();
+		for (final List<Pair<T>> m : matches)
+			all.addAll(m);
+
+		return all;
+	}
+
+	/**
+	 * Get the matches against the given model from the last call to
+	 * {@link #findMatches(List)}.
+	 *
+	 * @param model
+	 *            the index of the model
+	 * @return List of pairs of matching keypoints
+	 */
+	public List<Pair<T>> getMatches(int model) {
+		return matches.get(model);
+	}
+
+	/**
+	 * Set the matching threshold
+	 *
+	 * @param thresh
+	 *            the threshold
+	 */
+	public void setThreshold(int thresh) {
+		this.thresh = thresh;
+	}
+
+	/**
+	 * Set the thread pool used for matching
+	 *
+	 * @param threadPool
+	 *            the thread pool; if <code>null</code> matching is performed
+	 *            on the calling thread
+	 */
+	public void setThreadPool(ThreadPoolExecutor threadPool) {
+		this.threadPool = threadPool;
+	}
+}
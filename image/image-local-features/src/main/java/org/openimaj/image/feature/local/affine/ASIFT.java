@@ -47,6 +47,14 @@ import org.openimaj.image.processor.SinglebandImageProcessor;
  * This is implemented as an extension of the {@link AffineSimulationExtractor}
  * which uses a {@link DoGSIFTEngine} to extract SIFT features from each affine
  * simulation.
+ * <p>
+ * The simulations are processed sequentially unless a pool is set with
+ * {@link #setThreadPool(java.util.concurrent.ThreadPoolExecutor)}. The
+ * concurrent simulations share the engine returned by
+ * {@link #constructEngine(DoGSIFTEngineOptions)}, so implementations must
+ * return an engine that can be used from several threads at once (the
+ * {@link DoGSIFTEngine} and
+ * {@link org.openimaj.image.feature.local.engine.DoGColourSIFTEngine} can).
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
@@ -30,9 +30,12 @@
 package org.openimaj.image.feature.local.affine;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
@@ -42,11 +45,21 @@ import org.openimaj.image.processing.transform.AffineParams;
 import org.openimaj.image.processing.transform.AffineSimulation;
 import org.openimaj.image.processor.SinglebandImageProcessor;
 import org.openimaj.math.geometry.point.ScaleSpacePoint;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
 
 /**
  * Base class for local feature detectors/extractors that use affine simulations
  * in order to increase detections and improve performance with respect to
  * affine change.
+ * <p>
+ * The simulations can optionally be processed concurrently using a
+ * {@link ThreadPoolExecutor} (see {@link #setThreadPool(ThreadPoolExecutor)}),
+ * in which case {@link #detectFeatures(Image)} must be safe to call from
+ * multiple threads. The number of simulated images held in memory at any one
+ * time can be limited with {@link #setMaxConcurrentSimulations(int)}.
+ * Regardless of how the simulations are processed, the results are merged in
+ * the order of {@link #simulationOrder}.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
@@ -88,6 +101,10 @@ public abstract class AffineSimulationExtractor<Q extends List<T>, T extends Sca
 	 */
 	public List<AffineParams> simulationOrder;
 
+	protected ThreadPoolExecutor threadPool;
+	protected int maxConcurrentSimulations = 0;
+	protected float minimumTilt = 1;
+
 	/**
 	 * Detect and describe the local features in the given (transformed) image.
 	 * The returned features should be in the coordinate system of the given
@@ -127,7 +144,7 @@ public abstract class AffineSimulationExtractor<Q extends List<T>, T extends Sca
 	 * @throws IllegalArgumentException
 	 *             if the number of tilts < 1
 	 */
-	public void detectFeatures(I image, int num_of_tilts) {
+	public void detectFeatures(final I image, int num_of_tilts) {
 		if (num_of_tilts < 1) {
 			throw new IllegalArgumentException("Number of tilts num_tilt should be equal or larger than 1.");
 		}
@@ -135,7 +152,54 @@ public abstract class AffineSimulationExtractor<Q extends List<T>, T extends Sca
 		// setup the storage
 		allInterestPoints = newList();
 		mappedInterestPoints = new HashMap<AffineParams, Q>();
-		simulationOrder = new ArrayList<AffineParams>();
+		simulationOrder = computeSimulationParams(num_of_tilts);
+
+		final int nSimulations = simulationOrder.size();
+		final List<Q> results = new ArrayList<Q>(Collections.nCopies(nSimulations, (Q) null));
+
+		if (threadPool == null) {
+			for (int i = 0; i < nSimulations; i++)
+				results.set(i, detectSimulation(image, simulationOrder.get(i)));
+		} else {
+			final Semaphore permits = maxConcurrentSimulations > 0 ? new Semaphore(maxConcurrentSimulations) : null;
+
+			Parallel.forIndex(0, nSimulations, 1, new Operation<Integer>() {
+				@Override
+				public void perform(Integer i) {
+					if (permits != null)
+						permits.acquireUninterruptibly();
+
+					try {
+						results.set(i, detectSimulation(image, simulationOrder.get(i)));
+					} finally {
+						if (permits != null)
+							permits.release();
+					}
+				}
+			}, threadPool);
+		}
+
+		// merge the results in simulation order
+		for (int i = 0; i < nSimulations; i++) {
+			final Q keypoints = results.get(i);
+
+			mappedInterestPoints.put(simulationOrder.get(i), keypoints);
+			allInterestPoints.addAll(keypoints);
+		}
+	}
+
+	/**
+	 * Compute the parameters of the simulations performed for the given number
+	 * of tilts, in the order in which they are performed. The first simulation
+	 * is always the original image (a tilt of 1); simulations with a tilt less
+	 * than the minimum tilt (see {@link #setMinimumTilt(float)}) are skipped.
+	 * 
+	 * @param num_of_tilts
+	 *            the number of tilt simulations
+	 * @return the simulation parameters
+	 */
+	public List<AffineParams> computeSimulationParams(int num_of_tilts) {
+		final List<AffineParams> params = new ArrayList<AffineParams>();
 
 		final int num_rot_t2 = 10; // num rotations at final tilt
 		final float t_min = 1;
@@ -143,19 +207,14 @@ public abstract class AffineSimulationExtractor<Q extends List<T>, T extends Sca
 
 		for (int tt = 1; tt <= num_of_tilts; tt++) {
 			final float t = t_min * (float) Math.pow(t_k, tt - 1);
-			AffineParams addedParams = null;
-			if (t == 1) {
-				addedParams = new AffineParams(0, t);
-				// lowe_sift_yu_nodouble_v1(image_tmp1,keypoints,display,verb);
-				final Q keypoints = detectFeatures(image.clone());
-
-				/* Store the number of keypoints */
-				mappedInterestPoints.put(addedParams, keypoints);
 
-				/* Store the keypoints */
-				allInterestPoints.addAll(keypoints);
-				simulationOrder.add(addedParams);
+			if (t == 1) {
+				params.add(new AffineParams(0, t));
 			} else {
+				// allow for rounding in the computation of t
+				if (t < minimumTilt - 1e-4f)
+					continue;
+
 				int num_rots = Math.round(num_rot_t2 * t / 2);
 
 				if (num_rots % 2 == 1) {
@@ -168,20 +227,29 @@ public abstract class AffineSimulationExtractor<Q extends List<T>, T extends Sca
 				for (int rr = 1; rr <= num_rots; rr++) {
 					final float theta = delta_theta * (rr - 1);
 
-					final I image_tmp1 = AffineSimulation.transformImage(image, theta, t);
-					final Q keypoints = detectFeatures(image_tmp1);
-
-					filterEdgesTransformed(keypoints, theta, image, 1.0f / t);
-
-					AffineSimulation.transformToOriginal(keypoints, image, theta, t);
-
-					addedParams = new AffineParams(theta, t);
-					mappedInterestPoints.put(addedParams, keypoints);
-					allInterestPoints.addAll(keypoints);
-					simulationOrder.add(addedParams);
+					params.add(new AffineParams(theta, t));
 				}
 			}
 		}
+
+		return params;
+	}
+
+	/**
+	 * Detect the features of a single simulation. The untilted simulation is
+	 * performed directly on (a copy of) the image.
+	 * 
+	 * @param image
+	 *            the image
+	 * @param params
+	 *            the simulation parameters
+	 * @return the detected features
+	 */
+	protected Q detectSimulation(I image, AffineParams params) {
+		if (params.tilt == 1)
+			return detectFeatures(image.clone());
+
+		return detectFeatures(image, params.theta, params.tilt);
 	}
 
 	/**
@@ -311,6 +379,47 @@ public abstract class AffineSimulationExtractor<Q extends List<T>, T extends Sca
 		keypoints.removeAll(keys_to_remove);
 	}
 
+	/**
+	 * Set the thread pool used to process the simulations concurrently. If
+	 * the pool is <code>null</code> (the default) the simulations are
+	 * processed sequentially.
+	 * 
+	 * @param threadPool
+	 *            the thread pool
+	 */
+	public void setThreadPool(ThreadPoolExecutor threadPool) {
+		this.threadPool = threadPool;
+	}
+
+	/**
+	 * Set the maximum number of simulations that may be processed at the same
+	 * time when running concurrently. This bounds the number of simulated
+	 * images (and their scale-spaces) that are held in memory at once. A value
+	 * less than 1 means that the number is only limited by the size of the
+	 * thread pool.
+	 * 
+	 * @param maxConcurrentSimulations
+	 *            the maximum number of concurrent simulations
+	 */
+	public void setMaxConcurrentSimulations(int maxConcurrentSimulations) {
+		this.maxConcurrentSimulations = maxConcurrentSimulations;
+	}
+
+	/**
+	 * Set the minimum tilt at which simulations are performed. The low-tilt
+	 * simulations are largely redundant with the untilted image because of
+	 * the inherent robustness of the features to small affine changes;
+	 * skipping them saves a significant amount of computation. The untilted
+	 * image is always processed. The default value of 1 means that no
+	 * simulations are skipped.
+	 * 
+	 * @param minimumTilt
+	 *            the minimum tilt
+	 */
+	public void setMinimumTilt(float minimumTilt) {
+		this.minimumTilt = minimumTilt;
+	}
+
 	/**
 	 * get the detected interest points, grouped by simulation
 	 * 
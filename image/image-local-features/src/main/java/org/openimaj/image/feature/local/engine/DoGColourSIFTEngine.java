@@ -37,6 +37,7 @@ import org.openimaj.image.FImage;
 import org.openimaj.image.MBFImage;
 import org.openimaj.image.analysis.pyramid.gaussian.GaussianOctave;
 import org.openimaj.image.analysis.pyramid.gaussian.GaussianPyramid;
+import org.openimaj.image.analysis.pyramid.gaussian.GaussianPyramidOptions;
 import org.openimaj.image.colour.ColourSpace;
 import org.openimaj.image.feature.local.descriptor.gradient.SIFTFeatureProvider;
 import org.openimaj.image.feature.local.detector.dog.collector.Collector;
@@ -48,6 +49,7 @@ import org.openimaj.image.feature.local.detector.dog.pyramid.FirstBandDoGOctaveE
 import org.openimaj.image.feature.local.detector.pyramid.BasicOctaveExtremaFinder;
 import org.openimaj.image.feature.local.detector.pyramid.OctaveInterestPointFinder;
 import org.openimaj.image.feature.local.keypoints.Keypoint;
+import org.openimaj.image.processor.SinglebandImageProcessor;
 
 /**
  * The {@link DoGSIFTEngine} extended to colour images (aka Colour-SIFT).
@@ -168,9 +170,18 @@ public class DoGColourSIFTEngine implements Engine<Keypoint, MBFImage> {
 
 		finder.setOctaveInterestPointListener(collector);
 
-		options.setOctaveProcessor(finder);
+		// the finder is set on a per-call copy of the options, rather than on
+		// the shared options, so that the engine can be used concurrently
+		final GaussianPyramidOptions<MBFImage> pyramidOptions = new GaussianPyramidOptions<MBFImage>(options) {
+			@Override
+			public SinglebandImageProcessor<Float, FImage> createGaussianBlur(float sigma) {
+				return options.createGaussianBlur(sigma);
+			}
+		};
+		pyramidOptions.setPyramidProcessor(options.getPyramidProcessor());
+		pyramidOptions.setOctaveProcessor(finder);
 
-		final GaussianPyramid<MBFImage> pyr = new GaussianPyramid<MBFImage>(options);
+		final GaussianPyramid<MBFImage> pyr = new GaussianPyramid<MBFImage>(pyramidOptions);
 		pyr.process(image);
 
 		return collector.getFeatures();
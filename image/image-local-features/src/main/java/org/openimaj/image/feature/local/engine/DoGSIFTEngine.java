@@ -36,6 +36,7 @@ import org.openimaj.feature.local.list.LocalFeatureList;
 import org.openimaj.image.FImage;
 import org.openimaj.image.analysis.pyramid.gaussian.GaussianOctave;
 import org.openimaj.image.analysis.pyramid.gaussian.GaussianPyramid;
+import org.openimaj.image.analysis.pyramid.gaussian.GaussianPyramidOptions;
 import org.openimaj.image.feature.local.descriptor.gradient.SIFTFeatureProvider;
 import org.openimaj.image.feature.local.detector.dog.collector.Collector;
 import org.openimaj.image.feature.local.detector.dog.collector.OctaveKeypointCollector;
@@ -46,6 +47,7 @@ import org.openimaj.image.feature.local.detector.dog.pyramid.DoGOctaveExtremaFin
 import org.openimaj.image.feature.local.detector.pyramid.BasicOctaveExtremaFinder;
 import org.openimaj.image.feature.local.detector.pyramid.OctaveInterestPointFinder;
 import org.openimaj.image.feature.local.keypoints.Keypoint;
+import org.openimaj.image.processor.SinglebandImageProcessor;
 
 /**
  * <p>
@@ -130,9 +132,18 @@ public class DoGSIFTEngine implements Engine<Keypoint, FImage> {
 
 		finder.setOctaveInterestPointListener(collector);
 
-		options.setOctaveProcessor(finder);
+		// the finder is set on a per-call copy of the options, rather than on
+		// the shared options, so that the engine can be used concurrently
+		final GaussianPyramidOptions<FImage> pyramidOptions = new GaussianPyramidOptions<FImage>(options) {
+			@Override
+			public SinglebandImageProcessor<Float, FImage> createGaussianBlur(float sigma) {
+				return options.createGaussianBlur(sigma);
+			}
+		};
+		pyramidOptions.setPyramidProcessor(options.getPyramidProcessor());
+		pyramidOptions.setOctaveProcessor(finder);
 
-		final GaussianPyramid<FImage> pyr = new GaussianPyramid<FImage>(options);
+		final GaussianPyramid<FImage> pyr = new GaussianPyramid<FImage>(pyramidOptions);
 		pyr.process(image);
 
 		return collector.getFeatures();
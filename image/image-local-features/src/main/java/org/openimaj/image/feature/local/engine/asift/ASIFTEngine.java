@@ -30,6 +30,7 @@
 package org.openimaj.image.feature.local.engine.asift;
 
 import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
@@ -168,11 +169,49 @@ public class ASIFTEngine implements Engine<AffineSimulationKeypoint, FImage> {
 		asift.detectFeatures(image, nTilts);
 		final Map<AffineParams, LocalFeatureList<Keypoint>> keypointMap = asift.getKeypointsMap();
 		final LocalFeatureList<AffineSimulationKeypoint> affineSimulationList = new MemoryLocalFeatureList<AffineSimulationKeypoint>();
-		for (final AffineParams params : asift.simulationOrder) {
+		for (int i = 0; i < asift.simulationOrder.size(); i++) {
+			final AffineParams params = asift.simulationOrder.get(i);
 			for (final Keypoint k : keypointMap.get(params)) {
-				affineSimulationList.add(new AffineSimulationKeypoint(k, params, asift.simulationOrder.indexOf(params)));
+				affineSimulationList.add(new AffineSimulationKeypoint(k, params, i));
 			}
 		}
 		return affineSimulationList;
 	}
+
+	/**
+	 * Set the thread pool used to process the affine simulations
+	 * concurrently. If the pool is <code>null</code> the simulations are
+	 * processed sequentially, which is the default. Do not use a pool
+	 * that the caller is itself running on, as this can deadlock.
+	 *
+	 * @param threadPool
+	 *            the thread pool
+	 */
+	public void setThreadPool(ThreadPoolExecutor threadPool) {
+		asift.setThreadPool(threadPool);
+	}
+
+	/**
+	 * Set the maximum number of simulated images that may be processed at the
+	 * same time. A value less than 1 means that the number is only limited by
+	 * the size of the thread pool.
+	 *
+	 * @param maxConcurrentSimulations
+	 *            the maximum number of concurrent simulations
+	 */
+	public void setMaxConcurrentSimulations(int maxConcurrentSimulations) {
+		asift.setMaxConcurrentSimulations(maxConcurrentSimulations);
+	}
+
+	/**
+	 * Set the minimum tilt at which simulations are performed, allowing the
+	 * largely redundant low-tilt simulations to be skipped. The untilted image
+	 * is always processed.
+	 *
+	 * @param minimumTilt
+	 *            the minimum tilt
+	 */
+	public void setMinimumTilt(float minimumTilt) {
+		asift.setMinimumTilt(minimumTilt);
+	}
 }
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature.keypoints.matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.feature.local.matcher.BatchedKeypointMatcher;
+import org.openimaj.image.feature.local.keypoints.Keypoint;
+import org.openimaj.knn.ByteNearestNeighboursExact;
+import org.openimaj.util.pair.Pair;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link BatchedKeypointMatcher}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class BatchedKeypointMatcherTest {
+	private static final int N_QUERY = 300;
+	private static final int N_MODELS = 3;
+	private static final int N_DISTRACTORS = 100;
+
+	private Random rng;
+	private List<Keypoint> query;
+	private List<List<Keypoint>> models;
+	private Map<Keypoint, Keypoint> truth;
+
+	private Keypoint randomKeypoint() {
+		final byte[] ivec = new byte[128];
+		for (int i = 0; i < ivec.length; i++)
+			ivec[i] = (byte) rng.nextInt(128);
+		return new Keypoint(rng.nextFloat(), rng.nextFloat(), 0, 1, ivec);
+	}
+
+	/**
+	 * Create random query keypoints, and models each containing a noisy copy
+	 * of a subset of the queries together with random distractors
+	 */
+	@Before
+	public void setup() {
+		rng = new Random(0);
+		query = new ArrayList<Keypoint>();
+		models = new ArrayList<List<Keypoint>>();
+		truth = new HashMap<Keypoint, Keypoint>();
+
+		for (int m = 0; m < N_MODELS; m++)
+			models.add(new ArrayList<Keypoint>());
+
+		for (int i = 0; i < N_QUERY; i++) {
+			final Keypoint q = randomKeypoint();
+			final Keypoint copy = new Keypoint(q);
+			for (int j = 0; j < 5; j++)
+				copy.ivec[rng.nextInt(copy.ivec.length)] += 1;
+
+			query.add(q);
+			models.get(i % N_MODELS).add(copy);
+			truth.put(q, copy);
+		}
+
+		for (final List<Keypoint> model : models) {
+			for (int i = 0; i < N_DISTRACTORS; i++)
+				model.add(randomKeypoint());
+			Collections.shuffle(model, rng);
+		}
+	}
+
+	private List<List<Pair<Keypoint>>> match(BatchedKeypointMatcher<Keypoint> matcher) {
+		for (final List<Keypoint> model : models)
+			matcher.addModelFeatures(model);
+
+		assertTrue(matcher.findMatches(query));
+
+		final List<List<Pair<Keypoint>>> result = new ArrayList<List<Pair<Keypoint>>>();
+		for (int m = 0; m < N_MODELS; m++)
+			result.add(matcher.getMatches(m));
+		return result;
+	}
+
+	/**
+	 * Every query should be matched to its copy in the correct model, and the
+	 * parallel and sequential results should be identical
+	 */
+	@Test
+	public void testMultipleModels() {
+		final List<List<Pair<Keypoint>>> parallel = match(new BatchedKeypointMatcher<Keypoint>(8,
+				new ByteNearestNeighboursExact.Factory(), GlobalExecutorPool.getPool()));
+		final List<List<Pair<Keypoint>>> sequential = match(new BatchedKeypointMatcher<Keypoint>(8,
+				new ByteNearestNeighboursExact.Factory(), null));
+
+		for (int m = 0; m < N_MODELS; m++) {
+			int correct = 0;
+			for (final Pair<Keypoint> p : parallel.get(m)) {
+				if (truth.get(p.firstObject()) == p.secondObject())
+					correct++;
+			}
+			assertEquals(N_QUERY / N_MODELS, correct);
+
+			assertEquals(sequential.get(m).size(), parallel.get(m).size());
+			for (int i = 0; i < parallel.get(m).size(); i++) {
+				assertSame(sequential.get(m).get(i).firstObject(), parallel.get(m).get(i).firstObject());
+				assertSame(sequential.get(m).get(i).secondObject(), parallel.get(m).get(i).secondObject());
+			}
+		}
+	}
+
+	/**
+	 * Test use through the LocalFeatureMatcher interface with the default
+	 * approximate index
+	 */
+	@Test
+	public void testSingleModel() {
+		final BatchedKeypointMatcher<Keypoint> matcher = new BatchedKeypointMatcher<Keypoint>();
+		matcher.setModelFeatures(models.get(0));
+		matcher.findMatches(query);
+
+		int correct = 0;
+		for (final Pair<Keypoint> p : matcher.getMatches()) {
+			if (truth.get(p.firstObject()) == p.secondObject())
+				correct++;
+		}
+		assertTrue(correct > 0.9 * N_QUERY / N_MODELS);
+		assertEquals(1, matcher.numModels());
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.engine.asift;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.openimaj.feature.local.list.LocalFeatureList;
+import org.openimaj.image.FImage;
+import org.openimaj.image.feature.local.affine.AffineSimulationKeypoint;
+import org.openimaj.math.geometry.shape.Circle;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link ASIFTEngine}.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ASIFTEngineTest {
+	private static final int REPETITIONS = 10;
+
+	FImage image;
+
+	/**
+	 * Constructor
+	 */
+	public ASIFTEngineTest() {
+		image = new FImage(200, 200);
+		image.drawShapeFilled(new Circle(60, 60, 30), 1f);
+		image.drawShapeFilled(new Rectangle(110, 100, 60, 40), 0.5f);
+	}
+
+	/**
+	 * Processing the simulations concurrently must give exactly the same
+	 * features in the same order as processing them sequentially. All the
+	 * concurrent simulations share a single keypoint engine, so this is
+	 * repeated a number of times to give any interference between them a
+	 * chance to show up.
+	 */
+	@Test
+	public void testConcurrentSimulations() {
+		final ASIFTEngine sequential = new ASIFTEngine(false, 3);
+		final LocalFeatureList<AffineSimulationKeypoint> expected = sequential.findFeatures(image);
+		assertTrue(expected.size() > 0);
+
+		final ASIFTEngine concurrent = new ASIFTEngine(false, 3);
+		concurrent.setThreadPool(GlobalExecutorPool.getPool());
+
+		for (int r = 0; r < REPETITIONS; r++) {
+			final LocalFeatureList<AffineSimulationKeypoint> actual = concurrent.findFeatures(image);
+
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				final AffineSimulationKeypoint e = expected.get(i);
+				final AffineSimulationKeypoint a = actual.get(i);
+
+				assertEquals(e.index, a.index);
+				assertEquals(e.affineParams, a.affineParams);
+				assertEquals(e.x, a.x, 0);
+				assertEquals(e.y, a.y, 0);
+				assertEquals(e.scale, a.scale, 0);
+				assertEquals(e.ori, a.ori, 0);
+				assertArrayEquals(e.ivec, a.ivec);
+			}
+		}
+	}
+
+	/**
+	 * Limiting the number of concurrent simulations must not change the
+	 * features
+	 */
+	@Test
+	public void testMaxConcurrentSimulations() {
+		final ASIFTEngine sequential = new ASIFTEngine(false, 3);
+		final LocalFeatureList<AffineSimulationKeypoint> expected = sequential.findFeatures(image);
+
+		final ASIFTEngine concurrent = new ASIFTEngine(false, 3);
+		concurrent.setThreadPool(GlobalExecutorPool.getPool());
+		concurrent.setMaxConcurrentSimulations(2);
+		final LocalFeatureList<AffineSimulationKeypoint> actual = concurrent.findFeatures(image);
+
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).index, actual.get(i).index);
+			assertArrayEquals(expected.get(i).ivec, actual.get(i).ivec);
+		}
+	}
+
+	/**
+	 * Skipping the low tilts should only process the untilted image and the
+	 * higher tilt simulations
+	 */
+	@Test
+	public void testMinimumTilt() {
+		final ASIFTEngine engine = new ASIFTEngine(false, 3);
+		final int all = engine.findKeypointsMapped(image).size();
+
+		engine.setMinimumTilt(2);
+		final int skipped = engine.findKeypointsMapped(image).size();
+
+		// tilt sqrt(2) has 4 rotations
+		assertEquals(all - 4, skipped);
+	}
+}
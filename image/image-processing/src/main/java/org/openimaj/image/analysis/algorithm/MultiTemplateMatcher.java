@@ -0,0 +1,453 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.analysis.algorithm;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.analyser.ImageAnalyser;
+import org.openimaj.image.analysis.algorithm.TemplateMatcher.Mode;
+import org.openimaj.image.pixel.FValuePixel;
+import org.openimaj.image.processing.algorithm.FourierTransform;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+
+import edu.emory.mathcs.jtransforms.fft.FloatFFT_2D;
+
+/**
+ * Template matching for many templates against a single {@link FImage}. This
+ * is useful in cases like logo detection where a large number of templates
+ * must be found in every frame.
+ * <p>
+ * Every {@link Mode} can be expressed as the cross-correlation of the image
+ * and (prepared) template, combined with the sum and sum-of-squares of the
+ * image under the template. The sums are computed once per image with a
+ * {@link SummedSqAreaTable}. The cross-correlation is computed for each
+ * template either directly in the spatial domain or in the frequency domain,
+ * depending on which is cheaper for the size of the template (see
+ * {@link #useFrequencyDomain(int, int, int, int)}). The transform of the image
+ * is only computed once per call to {@link #analyseImage(FImage)} and shared
+ * between all the templates, and the transforms of the templates are cached
+ * for as long as the image size doesn't change. Templates are matched in
+ * parallel.
+ * <p>
+ * The responses are the same as those of a {@link TemplateMatcher} with the
+ * same mode searching the whole image (up to floating point error), and are
+ * laid out in the same way: the top-left of the response map corresponds to
+ * the template centred at ({@link #getXOffset(int)}, {@link #getYOffset(int)})
+ * in the image.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class MultiTemplateMatcher implements ImageAnalyser<FImage> {
+	/**
+	 * A cached FFT plan and working buffer for an image size
+	 */
+	private static class Plan {
+		FloatFFT_2D fft;
+		float[][] work;
+
+		Plan(int h, int w) {
+			this.fft = new FloatFFT_2D(h, w);
+			this.work = new float[h][2 * w];
+		}
+	}
+
+	/**
+	 * A template and its precomputed statistics and spectrum
+	 */
+	private static class TemplateData {
+		FImage template;
+		float sum;
+		float sumSq;
+		float[][] spectrum;
+		FImage responseMap;
+	}
+
+	private static final double FFT_COST = 4;
+
+	private final Mode mode;
+	private final List<TemplateData> templates = new ArrayList<TemplateData>();
+	private ThreadPoolExecutor threadPool = GlobalExecutorPool.getPool();
+
+	private final ThreadLocal<Map<Long, Plan>> plans = new ThreadLocal<Map<Long, Plan>>() {
+		@Override
+		protected Map<Long, Plan> initialValue() {
+			return new HashMap<Long, Plan>();
+		}
+	};
+
+	/**
+	 * Construct with the mode with which to estimate template responses.
+	 * Templates must be added with {@link #addTemplate(FImage)} before
+	 * matching.
+	 *
+	 * @param mode
+	 *            The mode.
+	 */
+	public MultiTemplateMatcher(Mode mode) {
+		this.mode = mode;
+	}
+
+	/**
+	 * Construct with the templates to match and the mode with which to
+	 * estimate template responses.
+	 *
+	 * @param templates
+	 *            The templates
+	 * @param mode
+	 *            The mode.
+	 */
+	public MultiTemplateMatcher(List<FImage> templates, Mode mode) {
+		this(mode);
+
+		for (final FImage t : templates)
+			addTemplate(t);
+	}
+
+	/**
+	 * Add a template to match.
+	 *
+	 * @param template
+	 *            the template
+	 * @return the index of the template
+	 */
+	public int addTemplate(FImage template) {
+		final TemplateData td = new TemplateData();
+		td.template = mode.prepareTemplate(template);
+
+		final float[][] pix = td.template.pixels;
+		for (int y = 0; y < td.template.height; y++) {
+			for (int x = 0; x < td.template.width; x++) {
+				td.sum += pix[y][x];
+				td.sumSq += pix[y][x] * pix[y][x];
+			}
+		}
+
+		templates.add(td);
+		return templates.size() - 1;
+	}
+
+	/**
+	 * Set the thread pool used to match the templates in parallel. Setting
+	 * the pool to <code>null</code> will cause the templates to be matched
+	 * sequentially.
+	 *
+	 * @param threadPool
+	 *            the thread pool; can be <code>null</code>
+	 */
+	public void setThreadPool(ThreadPoolExecutor threadPool) {
+		this.threadPool = threadPool;
+	}
+
+	/**
+	 * Determine whether the cross-correlation of a template with an image
+	 * should be computed in the frequency domain. The default implementation
+	 * compares the number of multiply-adds required by the direct computation
+	 * against an estimate of the cost of the inverse transform.
+	 *
+	 * @param templateWidth
+	 *            the width of the template
+	 * @param templateHeight
+	 *            the height of the template
+	 * @param imageWidth
+	 *            the width of the image
+	 * @param imageHeight
+	 *            the height of the image
+	 * @return true if the frequency domain should be used; false otherwise.
+	 */
+	protected boolean useFrequencyDomain(int templateWidth, int templateHeight, int imageWidth, int imageHeight) {
+		final double n = (double) imageWidth * imageHeight;
+		final double spatial = (double) templateWidth * templateHeight *
+				(imageWidth - templateWidth + 1) * (imageHeight - templateHeight + 1);
+		final double frequency = FFT_COST * n * Math.log(n) / Math.log(2);
+
+		return spatial > frequency;
+	}
+
+	/**
+	 * Match all the templates against the given image.
+	 *
+	 * @see org.openimaj.image.analyser.ImageAnalyser#analyseImage(org.openimaj.image.Image)
+	 */
+	@Override
+	public void analyseImage(final FImage image) {
+		final SummedSqAreaTable sat = new SummedSqAreaTable(image);
+		final int rows = image.height;
+		final int cols = image.width;
+
+		boolean needsSpectrum = false;
+		for (final TemplateData td : templates) {
+			td.responseMap = null;
+			if (td.template.width <= cols && td.template.height <= rows &&
+					useFrequencyDomain(td.template.width, td.template.height, cols, rows))
+				needsSpectrum = true;
+		}
+
+		final float[][] imageSpectrum;
+		if (needsSpectrum) {
+			imageSpectrum = FourierTransform.prepareData(image.pixels, rows, cols, false);
+			getPlan(rows, cols).fft.complexForward(imageSpectrum);
+		} else {
+			imageSpectrum = null;
+		}
+
+		final Operation<Integer> op = new Operation<Integer>() {
+			@Override
+			public void perform(Integer i) {
+				final TemplateData td = templates.get(i);
+
+				if (td.template.width > cols || td.template.height > rows)
+					return;
+
+				final FImage corr;
+				if (useFrequencyDomain(td.template.width, td.template.height, cols, rows))
+					corr = correlateFrequency(imageSpectrum, td, rows, cols);
+				else
+					corr = correlateSpatial(image, td.template);
+
+				normalise(corr, sat, td);
+				td.responseMap = corr;
+			}
+		};
+
+		if (threadPool == null) {
+			for (int i = 0; i < templates.size(); i++)
+				op.perform(i);
+		} else {
+			Parallel.forIndex(0, templates.size(), 1, op, threadPool);
+		}
+	}
+
+	private Plan getPlan(int rows, int cols) {
+		final Map<Long, Plan> map = plans.get();
+		final long key = ((long) rows << 32) | cols;
+
+		Plan plan = map.get(key);
+		if (plan == null)
+			map.put(key, plan = new Plan(rows, cols));
+
+		return plan;
+	}
+
+	private FImage correlateSpatial(FImage image, FImage template) {
+		final int width = image.width - template.width + 1;
+		final int height = image.height - template.height + 1;
+		final FImage corr = new FImage(width, height);
+
+		final float[][] img = image.pixels;
+		final float[][] tmpl = template.pixels;
+
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				float score = 0;
+
+				for (int j = 0; j < template.height; j++) {
+					final float[] irow = img[y + j];
+					final float[] trow = tmpl[j];
+
+					for (int i = 0; i < template.width; i++)
+						score += irow[x + i] * trow[i];
+				}
+
+				corr.pixels[y][x] = score;
+			}
+		}
+
+		return corr;
+	}
+
+	private FImage correlateFrequency(float[][] imageSpectrum, TemplateData td, int rows, int cols) {
+		final Plan plan = getPlan(rows, cols);
+
+		// the template spectrum only depends on the image size, so is kept
+		// between images
+		if (td.spectrum == null || td.spectrum.length != rows || td.spectrum[0].length != 2 * cols) {
+			final float[][] spectrum = FourierTransform.prepareData(td.template.pixels, rows, cols, false);
+			plan.fft.complexForward(spectrum);
+			td.spectrum = spectrum;
+		}
+
+		final float[][] work = plan.work;
+		final float[][] tmpl = td.spectrum;
+		for (int y = 0; y < rows; y++) {
+			final float[] irow = imageSpectrum[y];
+			final float[] trow = tmpl[y];
+			final float[] wrow = work[y];
+
+			for (int x = 0; x < 2 * cols; x += 2) {
+				final float reImage = irow[x];
+				final float imImage = irow[x + 1];
+				final float reKernel = trow[x];
+				final float imKernelConj = -trow[x + 1];
+
+				wrow[x] = reImage * reKernel - imImage * imKernelConj;
+				wrow[x + 1] = reImage * imKernelConj + imImage * reKernel;
+			}
+		}
+
+		plan.fft.complexInverse(work, true);
+
+		// the correlation is circular, but the valid region doesn't wrap
+		final int width = cols - td.template.width + 1;
+		final int height = rows - td.template.height + 1;
+		final FImage corr = new FImage(width, height);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				corr.pixels[y][x] = work[y][2 * x];
+
+		return corr;
+	}
+
+	/**
+	 * Convert the cross-correlation into the response of the mode using the
+	 * sums of the image under the template
+	 */
+	private void normalise(FImage corr, SummedSqAreaTable sat, TemplateData td) {
+		final int tw = td.template.width;
+		final int th = td.template.height;
+		final float area = tw * th;
+		final float templateMean = td.sum / area;
+		final float[][] pix = corr.pixels;
+
+		for (int y = 0; y < corr.height; y++) {
+			for (int x = 0; x < corr.width; x++) {
+				final float c = pix[y][x];
+
+				switch (mode) {
+				case SUM_SQUARED_DIFFERENCE:
+					pix[y][x] = sat.calculateSqSumArea(x, y, x + tw, y + th) - 2 * c + td.sumSq;
+					break;
+				case NORM_SUM_SQUARED_DIFFERENCE: {
+					final float si = sat.calculateSqSumArea(x, y, x + tw, y + th);
+					pix[y][x] = (float) ((si - 2 * c + td.sumSq) / Math.sqrt(si * td.sumSq));
+					break;
+				}
+				case CORRELATION:
+					break;
+				case NORM_CORRELATION: {
+					final float si = sat.calculateSqSumArea(x, y, x + tw, y + th);
+					pix[y][x] = (float) (c / Math.sqrt(si * td.sumSq));
+					break;
+				}
+				case CORRELATION_COEFFICIENT:
+					pix[y][x] = c - sat.calculateSumArea(x, y, x + tw, y + th) * templateMean;
+					break;
+				case NORM_CORRELATION_COEFFICIENT: {
+					// the template has already been mean-centred
+					final float s = sat.calculateSumArea(x, y, x + tw, y + th);
+					final float si = Math.max(0, sat.calculateSqSumArea(x, y, x + tw, y + th) - s * s / area);
+					final double norm = Math.sqrt(si * td.sumSq);
+
+					pix[y][x] = norm == 0 ? 0 : (float) (c / norm);
+					break;
+				}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of templates
+	 */
+	public int numTemplates() {
+		return templates.size();
+	}
+
+	/**
+	 * Get the given template. This might be different to the image that was
+	 * added as it might have been pre-processed by the mode.
+	 *
+	 * @param index
+	 *            the index of the template
+	 * @return the template
+	 */
+	public FImage getTemplate(int index) {
+		return templates.get(index).template;
+	}
+
+	/**
+	 * Get the response map of the given template generated from the last call
+	 * to {@link #analyseImage(FImage)}. If the template was bigger than the
+	 * image the response map will be <code>null</code>.
+	 *
+	 * @param index
+	 *            the index of the template
+	 * @return the response map
+	 */
+	public FImage getResponseMap(int index) {
+		return templates.get(index).responseMap;
+	}
+
+	/**
+	 * Get the top-N "best" responses found for the given template.
+	 *
+	 * @param index
+	 *            the index of the template
+	 * @param numResponses
+	 *            The number of responses
+	 * @return the best responses found
+	 */
+	public FValuePixel[] getBestResponses(int index, int numResponses) {
+		final Comparator<FValuePixel> comparator = mode.scoresAscending() ? FValuePixel.ReverseValueComparator.INSTANCE
+				: FValuePixel.ValueComparator.INSTANCE;
+
+		return TemplateMatcher.getBestResponses(numResponses, getResponseMap(index), getXOffset(index),
+				getYOffset(index), comparator);
+	}
+
+	/**
+	 * @param index
+	 *            the index of the template
+	 * @return The x-offset of the top-left of the response map returned by
+	 *         {@link #getResponseMap(int)} to the original image analysed by
+	 *         {@link #analyseImage(FImage)}.
+	 */
+	public int getXOffset(int index) {
+		return templates.get(index).template.width / 2;
+	}
+
+	/**
+	 * @param index
+	 *            the index of the template
+	 * @return The y-offset of the top-left of the response map returned by
+	 *         {@link #getResponseMap(int)} to the original image analysed by
+	 *         {@link #analyseImage(FImage)}.
+	 */
+	public int getYOffset(int index) {
+		return templates.get(index).template.height / 2;
+	}
+}
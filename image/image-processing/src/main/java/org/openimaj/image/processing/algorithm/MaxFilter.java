@@ -34,6 +34,7 @@ import java.util.Set;
 import org.openimaj.image.FImage;
 import org.openimaj.image.pixel.Pixel;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.image.processor.ThreadSafeProcessor;
 
 /**
  * Max filter; replaces each pixel with the maximum of its neighbours. This is
@@ -42,7 +43,7 @@ import org.openimaj.image.processor.SinglebandImageProcessor;
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
  */
-public class MaxFilter implements SinglebandImageProcessor<Float, FImage> {
+public class MaxFilter implements SinglebandImageProcessor<Float, FImage>, ThreadSafeProcessor {
 	private Set<Pixel> support;
 	private int blockWidth;
 	private int blockHeight;
@@ -34,6 +34,7 @@ import java.util.Set;
 import org.openimaj.image.FImage;
 import org.openimaj.image.pixel.Pixel;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.image.processor.ThreadSafeProcessor;
 import org.openimaj.math.util.FloatArrayStatsUtils;
 
 /**
@@ -42,7 +43,7 @@ import org.openimaj.math.util.FloatArrayStatsUtils;
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
  */
-public class MedianFilter implements SinglebandImageProcessor<Float, FImage> {
+public class MedianFilter implements SinglebandImageProcessor<Float, FImage>, ThreadSafeProcessor {
 	private Set<Pixel> support;
 
 	/**
@@ -32,6 +32,7 @@ package org.openimaj.image.processing.convolution;
 import org.openimaj.image.FImage;
 import org.openimaj.image.analysis.algorithm.SummedAreaTable;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.image.processor.ThreadSafeProcessor;
 
 /**
  * A rectangular averaging convolution operator (often known as a Box filter).
@@ -40,7 +41,7 @@ import org.openimaj.image.processor.SinglebandImageProcessor;
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
-public class AverageBoxFilter implements SinglebandImageProcessor<Float, FImage> {
+public class AverageBoxFilter implements SinglebandImageProcessor<Float, FImage>, ThreadSafeProcessor {
 	private int width;
 	private int height;
 
@@ -31,6 +31,7 @@ package org.openimaj.image.processing.convolution;
 
 import org.openimaj.image.FImage;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.image.processor.ThreadSafeProcessor;
 import org.openimaj.math.matrix.MatrixUtils;
 
 import Jama.SingularValueDecomposition;
@@ -42,7 +43,7 @@ import Jama.SingularValueDecomposition;
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
-public class FConvolution implements SinglebandImageProcessor<Float, FImage> {
+public class FConvolution implements SinglebandImageProcessor<Float, FImage>, ThreadSafeProcessor {
 	/** The kernel */
 	public FImage kernel;
 
@@ -31,6 +31,7 @@ package org.openimaj.image.processing.convolution;
 
 import org.openimaj.image.FImage;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.image.processor.ThreadSafeProcessor;
 
 import edu.emory.mathcs.jtransforms.fft.FloatFFT_2D;
 
@@ -48,7 +49,7 @@ import edu.emory.mathcs.jtransforms.fft.FloatFFT_2D;
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
  *
  */
-public class FDiscGausConvolve implements SinglebandImageProcessor<Float, FImage> {
+public class FDiscGausConvolve implements SinglebandImageProcessor<Float, FImage>, ThreadSafeProcessor {
 	private float sigma2;
 
 	/**
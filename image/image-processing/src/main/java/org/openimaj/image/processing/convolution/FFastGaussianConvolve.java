@@ -33,6 +33,7 @@ import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
 import org.openimaj.image.FImage;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.image.processor.ThreadSafeProcessor;
 
 /**
  * Fast approximate Gaussian smoothing using repeated fast box filtering.
@@ -52,7 +53,7 @@ import org.openimaj.image.processor.SinglebandImageProcessor;
 				"keywords", "Gaussian processes;approximation theory;band-pass filters;image processing;Gaussian bandpass filters;fast almost-Gaussian filtering;image averaging;integral images;log-Gabor filters;separable moving average filters;summed area tables;symmetric transfer function;Approximation methods;Bandwidth;Computer vision;Frequency domain analysis;Laplace equations;Pixel;Transfer functions;Difference of Gaussian filtering;Gaussian smoothing",
 				"doi", "10.1109/DICTA.2010.30"
 		})
-public class FFastGaussianConvolve implements SinglebandImageProcessor<Float, FImage> {
+public class FFastGaussianConvolve implements SinglebandImageProcessor<Float, FImage>, ThreadSafeProcessor {
 	private final int n;
 	private final int m;
 	private SinglebandImageProcessor<Float, FImage> wlBox;
@@ -31,13 +31,14 @@ package org.openimaj.image.processing.convolution;
 
 import org.openimaj.image.FImage;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.image.processor.ThreadSafeProcessor;
 
 /**
  * Image processor for FImage capable of performing convolutions with Gaussians.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
-public class FGaussianConvolve implements SinglebandImageProcessor<Float, FImage> {
+public class FGaussianConvolve implements SinglebandImageProcessor<Float, FImage>, ThreadSafeProcessor {
 	/**
 	 * The default number of sigmas at which the Gaussian function is truncated
 	 * when building a kernel
@@ -31,6 +31,7 @@ package org.openimaj.image.processing.convolution;
 
 import org.openimaj.image.FImage;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.image.processor.ThreadSafeProcessor;
 
 /**
  * Image processor for separable convolution of an FImage. Capable of doing
@@ -38,7 +39,7 @@ import org.openimaj.image.processor.SinglebandImageProcessor;
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
-public class FImageConvolveSeparable implements SinglebandImageProcessor<Float, FImage> {
+public class FImageConvolveSeparable implements SinglebandImageProcessor<Float, FImage>, ThreadSafeProcessor {
 	float[] hkernel;
 	float[] vkernel;
 
@@ -31,6 +31,7 @@ package org.openimaj.image.processing.convolution;
 
 import org.openimaj.image.FImage;
 import org.openimaj.image.processor.SinglebandKernelProcessor;
+import org.openimaj.image.processor.ThreadSafeProcessor;
 
 /**
  * Apply the sobel operator to an image. This is achieved using a kernel convolution in the X and Y. 
@@ -40,7 +41,7 @@ import org.openimaj.image.processor.SinglebandKernelProcessor;
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
  *
  */
-public class FSobelMagnitude implements SinglebandKernelProcessor<Float, FImage> {
+public class FSobelMagnitude implements SinglebandKernelProcessor<Float, FImage>, ThreadSafeProcessor {
 
 	/**
 	 * The 3x3 derivative of a gaussian of sigma 1 in the x direction
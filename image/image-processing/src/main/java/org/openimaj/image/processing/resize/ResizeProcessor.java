@@ -35,6 +35,7 @@ import org.openimaj.image.FImage;
 import org.openimaj.image.Image;
 import org.openimaj.image.processing.resize.filters.TriangleFilter;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.image.processor.ThreadSafeProcessor;
 import org.openimaj.math.geometry.shape.Rectangle;
 
 /**
@@ -64,7 +65,7 @@ import org.openimaj.math.geometry.shape.Rectangle;
 				"acmid", "130747",
 				"address", "San Diego, CA, USA"
 		})
-public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage> {
+public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>, ThreadSafeProcessor {
 	/**
 	 * The resize mode to use.
 	 *
@@ -296,8 +297,8 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 			zoomInplace(image, (int) newX, (int) newY, filterFunction);
 			break;
 		case SCALE:
-			newX = image.width * amount;
-			newY = image.height * amount;
+			resample(image, (int) (image.width * amount), (int) (image.height * amount), true, filterFunction);
+			break;
 		case ASPECT_RATIO:
 			resample(image, (int) newX, (int) newY, true, filterFunction);
 			break;
@@ -32,6 +32,8 @@ package org.openimaj.image.analysis.algorithm;
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -95,4 +97,55 @@ public class TemplateMatchingTest {
 			}
 		}
 	}
+
+	/**
+	 * Compare the multi-template matcher against the spatial template matcher,
+	 * with the correlations computed in both the spatial domain (sequentially)
+	 * and the frequency domain (in parallel)
+	 */
+	@Test
+	public void compareMultiTest() {
+		final List<FImage> templates = Arrays.asList(template, image.extractROI(250, 200, 60, 40));
+
+		for (TemplateMatcher.Mode mode : TemplateMatcher.Mode.values()) {
+			final TemplateMatcher[] sMatchers = new TemplateMatcher[templates.size()];
+			for (int t=0; t<templates.size(); t++) {
+				sMatchers[t] = new TemplateMatcher(templates.get(t), mode);
+				sMatchers[t].analyseImage(image);
+			}
+
+			for (final boolean frequency : new boolean[] { false, true }) {
+				MultiTemplateMatcher mMatcher = new MultiTemplateMatcher(templates, mode) {
+					@Override
+					protected boolean useFrequencyDomain(int tw, int th, int iw, int ih) {
+						return frequency;
+					}
+				};
+				if (!frequency)
+					mMatcher.setThreadPool(null);
+				mMatcher.analyseImage(image);
+
+				assertEquals(templates.size(), mMatcher.numTemplates());
+
+				for (int t=0; t<templates.size(); t++) {
+					FValuePixel sBest = sMatchers[t].getBestResponses(1)[0];
+					FValuePixel mBest = mMatcher.getBestResponses(t, 1)[0];
+					assertEquals(sBest.x, mBest.x);
+					assertEquals(sBest.y, mBest.y);
+
+					FImage sResponse = sMatchers[t].getResponseMap().clone().normalise();
+					FImage mResponse = mMatcher.getResponseMap(t).normalise();
+
+					assertEquals(sResponse.width, mResponse.width);
+					assertEquals(sResponse.height, mResponse.height);
+
+					for (int y=0; y<sResponse.height; y++) {
+						for (int x=0; x<sResponse.width; x++) {
+							assertEquals(sResponse.pixels[y][x], mResponse.pixels[y][x], 0.01);
+						}
+					}
+				}
+			}
+		}
+	}
 }
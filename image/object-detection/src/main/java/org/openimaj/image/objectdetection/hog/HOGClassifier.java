@@ -50,8 +50,18 @@ public class HOGClassifier {
 	}
 
 	public double classify(Rectangle current) {
-		final Histogram fv = hogExtractor.getFeatureVector(current);
+		return classify(hogExtractor.getFeatureVector(current));
+	}
 
+	/**
+	 * Classify a precomputed HOG feature. This method can be called
+	 * concurrently if the underlying annotator is thread-safe.
+	 * 
+	 * @param fv
+	 *            the feature
+	 * @return the confidence that the feature represents the object
+	 */
+	public double classify(Histogram fv) {
 		final List<ScoredAnnotation<Boolean>> res = classifier.annotate(fv);
 
 		if (res.get(0).annotation) {
@@ -31,16 +31,26 @@ package org.openimaj.image.objectdetection.hog;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.image.FImage;
+import org.openimaj.image.analysis.algorithm.histogram.WindowedHistogramExtractor;
+import org.openimaj.image.feature.dense.gradient.binning.FlexibleHOGStrategy;
+import org.openimaj.image.feature.dense.gradient.binning.HOGBlockGrid;
 import org.openimaj.image.objectdetection.AbstractMultiScaleObjectDetector;
 import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.math.statistics.distribution.Histogram;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
 
 public class HOGDetector extends AbstractMultiScaleObjectDetector<FImage, Rectangle> {
 	protected float scaleFactor = 1.2f;
 	protected HOGClassifier classifier;
 	double threshold = 0.5;
 
+	private ThreadPoolExecutor threadPool;
+	private HOGBlockGrid[] grids;
+
 	public HOGDetector(HOGClassifier classifier, float scaleFactor) {
 		this.classifier = classifier;
 		this.scaleFactor = scaleFactor;
@@ -50,6 +60,21 @@ public class HOGDetector extends AbstractMultiScaleObjectDetector<FImage, Rectan
 		this.classifier = classifier;
 	}
 
+	/**
+	 * Set the thread pool used to search the scales of the image in parallel.
+	 * By default (or if the pool is <code>null</code>) the scales are
+	 * searched sequentially. The pool must not be one that the caller is
+	 * itself running on, as this can deadlock. Parallel search requires that the classifier's
+	 * annotator is thread-safe, and is only used when the classifier's HOG
+	 * features are computed with a {@link FlexibleHOGStrategy}.
+	 * 
+	 * @param threadPool
+	 *            the thread pool; can be <code>null</code>
+	 */
+	public void setThreadPool(ThreadPoolExecutor threadPool) {
+		this.threadPool = threadPool;
+	}
+
 	@Override
 	public List<Rectangle> detect(FImage image) {
 		final List<Rectangle> results = new ArrayList<Rectangle>();
@@ -79,26 +104,65 @@ public class HOGDetector extends AbstractMultiScaleObjectDetector<FImage, Rectan
 			nFactors++;
 		}
 
-		// run the detection at each scale
+		final int nScales = Math.max(0, nFactors - startFactor);
+		final float[] factors = new float[nScales];
 		float factor = (float) Math.pow(scaleFactor, startFactor);
-		for (int scaleStep = startFactor; scaleStep < nFactors; factor *=
-				scaleFactor, scaleStep++)
-		{
-			final float ystep = 8 * factor;
-			final int windowWidth = (int) (factor * classifier.width);
-			final int windowHeight = (int) (factor * classifier.height);
-
-			// determine the spatial range, taking into account any ROI.
-			final int startX = (int) (roi == null ? 0 : Math.max(0, roi.x));
-			final int startY = (int) (roi == null ? 0 : Math.max(0, roi.y));
-			final int stopX = Math.round(
-					(roi == null ? imageWidth : Math.min(imageWidth, roi.x + roi.width)) - windowWidth);
-			final int stopY = Math.round((((roi == null ? imageHeight : Math.min(imageHeight, roi.y +
-					roi.height)) - windowHeight)));
+		for (int i = 0; i < nScales; factor *= scaleFactor, i++)
+			factors[i] = factor;
 
-			detectAtScale(startX, stopX, startY, stopY, ystep, windowWidth, windowHeight, results);
+		// the block grids are kept between calls so that their buffers can be
+		// reused when processing frames of the same size
+		final boolean gridded = classifier.hogExtractor.getStrategy() instanceof FlexibleHOGStrategy;
+		if (gridded) {
+			if (grids == null || grids.length != nScales)
+				grids = new HOGBlockGrid[nScales];
+
+			final FlexibleHOGStrategy strategy = (FlexibleHOGStrategy) classifier.hogExtractor.getStrategy();
+			for (int i = 0; i < nScales; i++)
+				if (grids[i] == null)
+					grids[i] = new HOGBlockGrid(strategy);
+		}
+
+		final List<List<Rectangle>> scaleResults = new ArrayList<List<Rectangle>>(nScales);
+		for (int i = 0; i < nScales; i++)
+			scaleResults.add(new ArrayList<Rectangle>());
+
+		final Operation<Integer> op = new Operation<Integer>() {
+			@Override
+			public void perform(Integer i) {
+				final float factor = factors[i];
+				final float ystep = 8 * factor;
+				final int windowWidth = (int) (factor * classifier.width);
+				final int windowHeight = (int) (factor * classifier.height);
+
+				// determine the spatial range, taking into account any ROI.
+				final int startX = (int) (roi == null ? 0 : Math.max(0, roi.x));
+				final int startY = (int) (roi == null ? 0 : Math.max(0, roi.y));
+				final int stopX = Math.round(
+						(roi == null ? imageWidth : Math.min(imageWidth, roi.x + roi.width)) - windowWidth);
+				final int stopY = Math.round((((roi == null ? imageHeight : Math.min(imageHeight, roi.y +
+						roi.height)) - windowHeight)));
+
+				if (gridded)
+					detectAtScale(grids[i], startX, stopX, startY, stopY, ystep, windowWidth, windowHeight,
+							scaleResults.get(i));
+				else
+					detectAtScale(startX, stopX, startY, stopY, ystep, windowWidth, windowHeight,
+							scaleResults.get(i));
+			}
+		};
+
+		// run the detection at each scale
+		if (gridded && threadPool != null) {
+			Parallel.forIndex(0, nScales, 1, op, threadPool);
+		} else {
+			for (int i = 0; i < nScales; i++)
+				op.perform(i);
 		}
 
+		for (final List<Rectangle> r : scaleResults)
+			results.addAll(r);
+
 		return results;
 	}
 
@@ -143,4 +207,112 @@ public class HOGDetector extends AbstractMultiScaleObjectDetector<FImage, Rectan
 			}
 		}
 	}
+
+	/**
+	 * Perform detection at a single scale using a block grid. This is used
+	 * instead of
+	 * {@link #detectAtScale(int, int, int, int, float, int, int, List)} when
+	 * the classifier's HOG strategy is a {@link FlexibleHOGStrategy}, so
+	 * subclasses customising the spatial search should override both.
+	 * <p>
+	 * The normalised HOG blocks are computed once for the whole lattice of
+	 * cells covered by the windows at this scale, and the feature of each
+	 * window is assembled from the shared blocks; the features are identical
+	 * to those computed by {@link HOGClassifier#classify(Rectangle)}. This
+	 * method may be called concurrently for different scales when a grid is
+	 * given.
+	 * 
+	 * @param grid
+	 *            the block grid to use for this scale, or <code>null</code> to
+	 *            delegate to
+	 *            {@link #detectAtScale(int, int, int, int, float, int, int, List)}
+	 * @param startX
+	 *            the starting x-ordinate
+	 * @param stopX
+	 *            the stopping x-ordinate
+	 * @param startY
+	 *            the starting y-ordinate
+	 * @param stopY
+	 *            the stopping y-ordinate
+	 * @param ystep
+	 *            the amount to step
+	 * @param windowWidth
+	 *            the window width at the current scale
+	 * @param windowHeight
+	 *            the window height at the current scale
+	 * @param results
+	 *            the list to store detection results in
+	 */
+	protected void detectAtScale(final HOGBlockGrid grid, final int startX, final int stopX, final int startY,
+			final int stopY, final float ystep, final int windowWidth, final int windowHeight,
+			final List<Rectangle> results)
+	{
+		if (grid == null) {
+			detectAtScale(startX, stopX, startY, stopY, ystep, windowWidth, windowHeight, results);
+			return;
+		}
+
+		final FlexibleHOGStrategy strategy = (FlexibleHOGStrategy) classifier.hogExtractor.getStrategy();
+		final WindowedHistogramExtractor extractor = classifier.hogExtractor.getExtractor();
+		final int numCellsX = strategy.getNumCellsX();
+		final int numCellsY = strategy.getNumCellsY();
+		final int cellWidth = windowWidth / numCellsX;
+		final int cellHeight = windowHeight / numCellsY;
+
+		// the window positions are generated exactly as in the per-window
+		// search so that the same windows are tested
+		final int[] xs = positions(startX, stopX, ystep);
+		final int[] ys = positions(startY, stopY, ystep);
+		if (xs.length == 0 || ys.length == 0)
+			return;
+
+		final boolean aligned = isAligned(xs, cellWidth) && isAligned(ys, cellHeight);
+		if (aligned) {
+			final int latticeCellsX = (xs[xs.length - 1] - startX) / cellWidth + numCellsX;
+			final int latticeCellsY = (ys[ys.length - 1] - startY) / cellHeight + numCellsY;
+			grid.analyse(extractor, startX, startY, cellWidth, cellHeight, latticeCellsX, latticeCellsY);
+		}
+
+		Histogram fv = null;
+		for (final int iy : ys) {
+			for (final int ix : xs) {
+				if (aligned) {
+					fv = grid.extractWindow((ix - startX) / cellWidth, (iy - startY) / cellHeight, fv);
+				} else {
+					// the windows don't share cells, so compute a grid
+					// covering just this window
+					grid.analyse(extractor, ix, iy, cellWidth, cellHeight, numCellsX, numCellsY);
+					fv = grid.extractWindow(0, 0, fv);
+				}
+
+				if (classifier.classify(fv) > threshold) {
+					results.add(new Rectangle(ix, iy, windowWidth, windowHeight));
+				}
+			}
+		}
+	}
+
+	private static int[] positions(int start, int stop, float step) {
+		int count = 0;
+		for (int i = start; i < stop; i += step)
+			count++;
+
+		final int[] pos = new int[count];
+		count = 0;
+		for (int i = start; i < stop; i += step)
+			pos[count++] = i;
+
+		return pos;
+	}
+
+	private static boolean isAligned(int[] pos, int cellSize) {
+		if (cellSize <= 0)
+			return false;
+
+		for (final int p : pos)
+			if ((p - pos[0]) % cellSize != 0)
+				return false;
+
+		return true;
+	}
 }
@@ -132,13 +132,23 @@ public class DBSCAN {
 
 	private void expandCluster(int p, List<IntDoublePair> region, TIntList cluster, State state) {
 		addToCluster(p,cluster,state);
+		// each point is queued at most once, so the region list never grows
+		// beyond the number of points. Points that are already queued or in
+		// the cluster would be skipped when reached again anyway.
+		TIntHashSet queued = new TIntHashSet();
+		for (IntDoublePair neighbour : region)
+			queued.add(neighbour.first);
 		for (int regionIndex = 0; regionIndex < region.size(); regionIndex++) {
 			int pprime = region.get(regionIndex).first;
 			if (!state.visited.contains(pprime)){
 				state.visited.add(pprime);
 				List<IntDoublePair> regionPrime = state.regionMode.regionQuery(pprime);
-				if(state.regionMode.validRegion(regionPrime)) 
-					region.addAll(regionPrime);
+				if(state.regionMode.validRegion(regionPrime)) {
+					for (IntDoublePair neighbour : regionPrime) {
+						if(!state.addedToCluster.contains(neighbour.first) && queued.add(neighbour.first))
+							region.add(neighbour);
+					}
+				}
 				else
 					state.noise.add(pprime);
 			}
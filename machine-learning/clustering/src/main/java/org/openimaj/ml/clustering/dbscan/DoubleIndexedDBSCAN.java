@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.clustering.dbscan;
+
+import java.util.Iterator;
+
+import org.openimaj.data.DataSource;
+import org.openimaj.ml.clustering.DataClusterer;
+import org.openimaj.ml.clustering.SpatialClusterer;
+import org.openimaj.ml.clustering.dbscan.neighbourhood.DoubleGridRegionMode;
+import org.openimaj.ml.clustering.dbscan.neighbourhood.DoubleKDTreeRegionMode;
+import org.openimaj.ml.clustering.dbscan.neighbourhood.DoubleRadiusRegionMode;
+import org.openimaj.ml.clustering.dbscan.neighbourhood.PrecomputedRegionMode;
+import org.openimaj.ml.clustering.dbscan.neighbourhood.RegionMode;
+import org.openimaj.util.pair.IntDoublePair;
+
+/**
+ * Implementation of DBSCAN (http://en.wikipedia.org/wiki/DBSCAN) in which
+ * neighbourhoods are found with radius queries against a spatial index
+ * (either a KD-Tree or, for low dimensional data, a uniform grid). Unlike
+ * {@link DoubleNNDBSCAN}, which sorts the distances to every point for each
+ * query, the cost of each query depends on the size of the neighbourhood, so
+ * large datasets can be clustered. Optionally, neighbourhoods can be computed
+ * in parallel before clustering, up to a bound on the number of neighbours
+ * held in memory.
+ * <p>
+ * As with {@link DoubleNNDBSCAN} using the default nearest-neighbour
+ * implementation, eps is a threshold on the <em>squared</em> Euclidean
+ * distance, and the clusters produced are the same.
+ *
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ */
+public class DoubleIndexedDBSCAN extends DBSCAN
+		implements
+		SpatialClusterer<DoubleDBSCANClusters, double[]>,
+		DataClusterer<double[][], DoubleDBSCANClusters>
+{
+	/**
+	 * The type of spatial index
+	 */
+	public enum IndexType {
+		/**
+		 * Use a grid if the data has at most 3 dimensions and the grid isn't
+		 * too big, otherwise a KD-Tree
+		 */
+		AUTO,
+		/**
+		 * Use a KD-Tree
+		 */
+		KDTREE,
+		/**
+		 * Use a uniform grid
+		 */
+		GRID
+	}
+
+	private double eps;
+	private int minPts;
+	private IndexType indexType;
+	private boolean precompute = false;
+	private long maxPrecomputedNeighbours = 50000000;
+
+	/**
+	 * Construct with the given parameters and the automatically chosen index
+	 *
+	 * @param eps
+	 *            the (squared Euclidean) neighbourhood threshold
+	 * @param minPts
+	 *            the minimum number of points in a neighbourhood
+	 */
+	public DoubleIndexedDBSCAN(double eps, int minPts) {
+		this(eps, minPts, IndexType.AUTO);
+	}
+
+	/**
+	 * Construct with the given parameters and type of index
+	 *
+	 * @param eps
+	 *            the (squared Euclidean) neighbourhood threshold
+	 * @param minPts
+	 *            the minimum number of points in a neighbourhood
+	 * @param indexType
+	 *            the type of index
+	 */
+	public DoubleIndexedDBSCAN(double eps, int minPts, IndexType indexType) {
+		this.eps = eps;
+		this.minPts = minPts;
+		this.indexType = indexType;
+	}
+
+	/**
+	 * Set whether the neighbourhoods should be computed in parallel before
+	 * clustering. Off by default.
+	 *
+	 * @param precompute
+	 *            true to precompute neighbourhoods
+	 */
+	public void setPrecompute(boolean precompute) {
+		this.precompute = precompute;
+	}
+
+	/**
+	 * Set the maximum total number of neighbours held in memory when
+	 * precomputing neighbourhoods; neighbourhoods that don't fit are computed
+	 * when needed. Defaults to 50 million.
+	 *
+	 * @param maxPrecomputedNeighbours
+	 *            the maximum number of neighbours
+	 */
+	public void setMaxPrecomputedNeighbours(long maxPrecomputedNeighbours) {
+		this.maxPrecomputedNeighbours = maxPrecomputedNeighbours;
+	}
+
+	protected DoubleRadiusRegionMode createIndex(double[][] data) {
+		switch (indexType) {
+		case GRID:
+			return new DoubleGridRegionMode(data, eps, minPts);
+		case KDTREE:
+			return new DoubleKDTreeRegionMode(data, eps, minPts);
+		default:
+			if (data.length > 0 && data[0].length <= 3) {
+				try {
+					return new DoubleGridRegionMode(data, eps, minPts);
+				} catch (final IllegalArgumentException e) {
+					// grid would be too big
+				}
+			}
+			return new DoubleKDTreeRegionMode(data, eps, minPts);
+		}
+	}
+
+	@Override
+	public DoubleDBSCANClusters cluster(double[][] data) {
+		RegionMode<IntDoublePair> mode = createIndex(data);
+
+		if (precompute)
+			mode = new PrecomputedRegionMode(mode, data.length, maxPrecomputedNeighbours);
+
+		final State state = new State(data.length, mode, this.noiseAsClusters);
+		return dbscan(state);
+	}
+
+	@Override
+	public DoubleDBSCANClusters cluster(DataSource<double[]> data) {
+		final double[][] allData = new double[data.size()][];
+		final Iterator<double[]> iterator = data.iterator();
+		for (int i = 0; i < allData.length; i++) {
+			allData[i] = iterator.next();
+		}
+		return this.cluster(allData);
+	}
+
+	@Override
+	public int[][] performClustering(double[][] data) {
+		return cluster(data).clusters();
+	}
+
+	/**
+	 * @return the eps parameter
+	 */
+	public double getEps() {
+		return this.eps;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: eps=%2.2f, minpts=%d, index=%s", this.getClass().getSimpleName(), eps, minPts,
+				indexType);
+	}
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.clustering.dbscan.neighbourhood;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.procedure.TIntProcedure;
+
+/**
+ * A {@link DoubleRadiusRegionMode} backed by a uniform grid whose cells are
+ * slightly bigger than the neighbourhood radius, so a region query only has
+ * to look at the 3<sup>d</sup> cells around the query point. This is the most
+ * efficient index for low-dimensional data (e.g. geographic coordinates), but
+ * the number of cells visited grows exponentially with the dimensionality.
+ *
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ */
+public class DoubleGridRegionMode extends DoubleRadiusRegionMode {
+	/**
+	 * The maximum dimensionality supported by the grid
+	 */
+	public static final int MAX_DIMENSIONS = 4;
+
+	private final double cellSize;
+	private final long[] min;
+	private final long[] stride;
+	private final TLongObjectHashMap<int[]> cells = new TLongObjectHashMap<int[]>();
+
+	/**
+	 * @param data
+	 *            the data
+	 * @param eps
+	 *            the (squared Euclidean) neighbourhood threshold
+	 * @param minPts
+	 *            the minimum number of points in a valid region
+	 * @throws IllegalArgumentException
+	 *             if the data has too many dimensions, or the grid would have
+	 *             too many cells to be indexed
+	 */
+	public DoubleGridRegionMode(double[][] data, double eps, int minPts) {
+		super(data, eps, minPts);
+
+		final int ndims = data.length == 0 ? 0 : data[0].length;
+		if (ndims > MAX_DIMENSIONS)
+			throw new IllegalArgumentException("Grid index only supports up to " + MAX_DIMENSIONS + " dimensions");
+
+		this.cellSize = halfWidth * 1.0001;
+		this.min = new long[ndims];
+		this.stride = new long[ndims];
+
+		if (data.length == 0)
+			return;
+
+		final long[] max = new long[ndims];
+		for (int d = 0; d < ndims; d++) {
+			min[d] = Long.MAX_VALUE;
+			max[d] = Long.MIN_VALUE;
+		}
+		for (final double[] point : data) {
+			for (int d = 0; d < ndims; d++) {
+				final long c = cell(point[d]);
+				if (c < min[d])
+					min[d] = c;
+				if (c > max[d])
+					max[d] = c;
+			}
+		}
+
+		// mixed-radix cell numbering with a one cell margin on each side, so
+		// that neighbouring cells of any point have a unique key
+		long size = 1;
+		for (int d = 0; d < ndims; d++) {
+			min[d]--;
+			stride[d] = size;
+
+			final long extent = max[d] - min[d] + 2;
+			if (extent <= 0 || size > Long.MAX_VALUE / extent)
+				throw new IllegalArgumentException("Too many grid cells; eps is too small for the extent of the data");
+			size *= extent;
+		}
+
+		final TLongObjectHashMap<TIntArrayList> tmp = new TLongObjectHashMap<TIntArrayList>();
+		for (int i = 0; i < data.length; i++) {
+			final long key = key(data[i]);
+			TIntArrayList list = tmp.get(key);
+			if (list == null)
+				tmp.put(key, list = new TIntArrayList(4));
+			list.add(i);
+		}
+		for (final long key : tmp.keys())
+			cells.put(key, tmp.get(key).toArray());
+	}
+
+	private long cell(double v) {
+		return (long) Math.floor(v / cellSize);
+	}
+
+	private long key(double[] point) {
+		long key = 0;
+		for (int d = 0; d < point.length; d++)
+			key += (cell(point[d]) - min[d]) * stride[d];
+		return key;
+	}
+
+	@Override
+	protected void candidates(double[] query, TIntProcedure proc) {
+		final long base = key(query);
+		final int ndims = query.length;
+
+		int ncells = 1;
+		for (int d = 0; d < ndims; d++)
+			ncells *= 3;
+
+		for (int c = 0; c < ncells; c++) {
+			long key = base;
+			for (int d = 0, r = c; d < ndims; d++, r /= 3)
+				key += ((r % 3) - 1) * stride[d];
+
+			final int[] members = cells.get(key);
+			if (members != null)
+				for (final int idx : members)
+					proc.execute(idx);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.clustering.dbscan.neighbourhood;
+
+import gnu.trove.procedure.TIntObjectProcedure;
+import gnu.trove.procedure.TIntProcedure;
+
+import org.openimaj.util.tree.DoubleKDTree;
+
+/**
+ * A {@link DoubleRadiusRegionMode} backed by a {@link DoubleKDTree}. Each
+ * region query is a range search of the tree, so its cost depends on the
+ * size of the neighbourhood rather than the size of the dataset.
+ *
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ */
+public class DoubleKDTreeRegionMode extends DoubleRadiusRegionMode {
+	private final DoubleKDTree tree;
+
+	/**
+	 * @param data
+	 *            the data
+	 * @param eps
+	 *            the (squared Euclidean) neighbourhood threshold
+	 * @param minPts
+	 *            the minimum number of points in a valid region
+	 */
+	public DoubleKDTreeRegionMode(double[][] data, double eps, int minPts) {
+		super(data, eps, minPts);
+		this.tree = new DoubleKDTree(data);
+	}
+
+	@Override
+	protected void candidates(double[] query, final TIntProcedure proc) {
+		final double[] lower = new double[query.length];
+		final double[] upper = new double[query.length];
+
+		for (int i = 0; i < query.length; i++) {
+			lower[i] = Math.nextAfter(query[i] - halfWidth, Double.NEGATIVE_INFINITY);
+			upper[i] = Math.nextUp(query[i] + halfWidth);
+		}
+
+		tree.rangeSearch(lower, upper, new TIntObjectProcedure<double[]>() {
+			@Override
+			public boolean execute(int idx, double[] point) {
+				return proc.execute(idx);
+			}
+		});
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.clustering.dbscan.neighbourhood;
+
+import gnu.trove.procedure.TIntProcedure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.openimaj.knn.DoubleNearestNeighbours;
+import org.openimaj.util.pair.IntDoublePair;
+
+/**
+ * Base class for {@link RegionMode}s that answer region queries with true
+ * radius searches over a spatial index, rather than by sorting the distances
+ * to every point. Distances are squared Euclidean distances, and a point is a
+ * neighbour if its distance is strictly less than eps (this matches the
+ * behaviour of the nearest-neighbour based region query with the default
+ * Euclidean nearest-neighbours). The neighbours are returned in order of
+ * increasing distance.
+ * <p>
+ * Implementations only read the index once it has been built, so
+ * {@link #regionQuery(int)} can be called concurrently.
+ *
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ */
+public abstract class DoubleRadiusRegionMode implements RegionMode<IntDoublePair> {
+	protected final double[][] data;
+	protected final double eps;
+	protected final int minPts;
+
+	/**
+	 * The half-width of the hypercube that encloses the eps-ball, inflated
+	 * slightly so that rounding can't exclude valid neighbours
+	 */
+	protected final double halfWidth;
+
+	/**
+	 * @param data
+	 *            the data
+	 * @param eps
+	 *            the (squared Euclidean) neighbourhood threshold
+	 * @param minPts
+	 *            the minimum number of points in a valid region
+	 */
+	public DoubleRadiusRegionMode(double[][] data, double eps, int minPts) {
+		this.data = data;
+		this.eps = eps;
+		this.minPts = minPts;
+		this.halfWidth = Math.sqrt(eps) * (1 + 1e-9);
+	}
+
+	/**
+	 * Report the index of every point that might lie within the neighbourhood
+	 * of the query. Every point inside the hypercube of half-width
+	 * {@link #halfWidth} around the query must be reported exactly once;
+	 * points outside it may also be reported.
+	 *
+	 * @param query
+	 *            the query point
+	 * @param proc
+	 *            the procedure to receive candidate indices
+	 */
+	protected abstract void candidates(double[] query, TIntProcedure proc);
+
+	@Override
+	public List<IntDoublePair> regionQuery(int index) {
+		final double[] query = data[index];
+		final List<IntDoublePair> ret = new ArrayList<IntDoublePair>();
+
+		candidates(query, new TIntProcedure() {
+			@Override
+			public boolean execute(int idx) {
+				final double d = DoubleNearestNeighbours.distanceFunc(query, data[idx]);
+				if (d < eps)
+					ret.add(new IntDoublePair(idx, d));
+				return true;
+			}
+		});
+
+		Collections.sort(ret, IntDoublePair.SECOND_ITEM_ASCENDING_COMPARATOR);
+		return ret;
+	}
+
+	@Override
+	public boolean validRegion(List<IntDoublePair> region) {
+		return region.size() >= minPts;
+	}
+}
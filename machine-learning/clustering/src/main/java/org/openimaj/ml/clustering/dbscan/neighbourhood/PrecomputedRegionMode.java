@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.clustering.dbscan.neighbourhood;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.pair.IntDoublePair;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * A {@link RegionMode} that computes the neighbourhoods of the points in
+ * parallel before clustering starts, using an underlying {@link RegionMode}
+ * that can be safely queried concurrently. The neighbourhoods are stored in a
+ * compact form up to a maximum total number of neighbours; the neighbourhoods
+ * of any remaining points are computed on demand. As DBSCAN queries the
+ * region of each point only once, a stored neighbourhood is released as soon
+ * as it has been read.
+ *
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ */
+public class PrecomputedRegionMode implements RegionMode<IntDoublePair> {
+	private final RegionMode<IntDoublePair> inner;
+	private final int[][] indices;
+	private final double[][] distances;
+
+	/**
+	 * Construct and precompute the neighbourhoods using the
+	 * {@link GlobalExecutorPool}.
+	 *
+	 * @param inner
+	 *            the underlying region mode; must be thread-safe
+	 * @param npoints
+	 *            the number of points
+	 * @param maxNeighbours
+	 *            the maximum total number of neighbours to store
+	 */
+	public PrecomputedRegionMode(RegionMode<IntDoublePair> inner, int npoints, long maxNeighbours) {
+		this(inner, npoints, maxNeighbours, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Construct and precompute the neighbourhoods using the given pool.
+	 *
+	 * @param inner
+	 *            the underlying region mode; must be thread-safe
+	 * @param npoints
+	 *            the number of points
+	 * @param maxNeighbours
+	 *            the maximum total number of neighbours to store
+	 * @param pool
+	 *            the thread pool
+	 */
+	public PrecomputedRegionMode(final RegionMode<IntDoublePair> inner, int npoints, final long maxNeighbours,
+			ThreadPoolExecutor pool)
+	{
+		this.inner = inner;
+		this.indices = new int[npoints][];
+		this.distances = new double[npoints][];
+
+		final AtomicLong remaining = new AtomicLong(maxNeighbours);
+		Parallel.forRange(0, npoints, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int i = range.start; i < range.stop; i += range.incr) {
+					if (remaining.get() <= 0)
+						return;
+
+					final List<IntDoublePair> region = inner.regionQuery(i);
+					if (remaining.addAndGet(-region.size()) < 0)
+						return;
+
+					final int[] idx = new int[region.size()];
+					final double[] dst = new double[region.size()];
+					for (int j = 0; j < idx.length; j++) {
+						idx[j] = region.get(j).first;
+						dst[j] = region.get(j).second;
+					}
+					indices[i] = idx;
+					distances[i] = dst;
+				}
+			}
+		}, pool);
+	}
+
+	@Override
+	public List<IntDoublePair> regionQuery(int index) {
+		final int[] idx = indices[index];
+		if (idx == null)
+			return inner.regionQuery(index);
+
+		final double[] dst = distances[index];
+		indices[index] = null;
+		distances[index] = null;
+
+		final List<IntDoublePair> region = new ArrayList<IntDoublePair>(idx.length);
+		for (int j = 0; j < idx.length; j++)
+			region.add(new IntDoublePair(idx[j], dst[j]));
+		return region;
+	}
+
+	@Override
+	public boolean validRegion(List<IntDoublePair> region) {
+		return inner.validRegion(region);
+	}
+}
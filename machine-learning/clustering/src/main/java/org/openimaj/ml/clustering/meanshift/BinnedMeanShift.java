@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.clustering.meanshift;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.math.statistics.distribution.MultivariateKernelDensityEstimate;
+
+/**
+ * Mean shift implementation that uses binned seeding to reduce the number of
+ * starting points. The underlying points are quantised onto a grid, and the
+ * centroids of the grid cells containing at least a minimum number of points
+ * are used as seeds for the mode seeking. Each of the underlying points is
+ * then assigned to its nearest mode.
+ * <p>
+ * Apart from the seeding, this behaves in the same way as
+ * {@link ExactMeanShift}. Seeds that have no points within the kernel
+ * support are dropped.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class BinnedMeanShift extends ExactMeanShift {
+	private static class Bin {
+		final long[] key;
+		final double[] sum;
+		int count;
+
+		Bin(long[] key, int ndims) {
+			this.key = key;
+			this.sum = new double[ndims];
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(key);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Bin && Arrays.equals(key, ((Bin) obj).key);
+		}
+	}
+
+	/**
+	 * Perform the mean shift operation on the given KDE, using bins the size of
+	 * the KDE bandwidth and seeding from every non-empty bin. The mode seeking
+	 * is performed in the calling thread.
+	 *
+	 * @param kde
+	 *            the density estimate
+	 */
+	public BinnedMeanShift(MultivariateKernelDensityEstimate kde) {
+		this(kde, kde.getBandwidth(), 1);
+	}
+
+	/**
+	 * Perform the mean shift operation on the given KDE. The mode seeking is
+	 * performed in the calling thread.
+	 *
+	 * @param kde
+	 *            the density estimate
+	 * @param binSize
+	 *            the size of the bins used for seeding
+	 * @param minBinFreq
+	 *            the minimum number of points a bin must contain to be used as
+	 *            a seed
+	 */
+	public BinnedMeanShift(MultivariateKernelDensityEstimate kde, double binSize, int minBinFreq) {
+		this(kde, binSize, minBinFreq, null);
+	}
+
+	/**
+	 * Perform the mean shift operation on the given KDE.
+	 *
+	 * @param kde
+	 *            the density estimate
+	 * @param binSize
+	 *            the size of the bins used for seeding
+	 * @param minBinFreq
+	 *            the minimum number of points a bin must contain to be used as
+	 *            a seed
+	 * @param pool
+	 *            the pool used to perform the mode seeking in parallel; if
+	 *            null the mode seeking is performed in the calling thread.
+	 */
+	public BinnedMeanShift(MultivariateKernelDensityEstimate kde, double binSize, int minBinFreq,
+			ThreadPoolExecutor pool)
+	{
+		super(kde, computeSeeds(kde.getData(), binSize, minBinFreq), pool);
+	}
+
+	/**
+	 * Compute the seeds for the mode seeking by binning the data. The seeds are
+	 * the centroids of the points within each bin that contains at least
+	 * <code>minBinFreq</code> points. If no bin is sufficiently populated, all
+	 * the data points are returned.
+	 *
+	 * @param data
+	 *            the data
+	 * @param binSize
+	 *            the size of the bins
+	 * @param minBinFreq
+	 *            the minimum number of points in a bin
+	 * @return the seeds
+	 */
+	public static double[][] computeSeeds(double[][] data, double binSize, int minBinFreq) {
+		if (binSize <= 0)
+			throw new IllegalArgumentException("Bin size must be positive");
+
+		final Map<Bin, Bin> bins = new LinkedHashMap<Bin, Bin>();
+		for (final double[] point : data) {
+			final long[] key = new long[point.length];
+			for (int j = 0; j < point.length; j++)
+				key[j] = (long) Math.floor(point[j] / binSize);
+
+			Bin bin = new Bin(key, point.length);
+			final Bin existing = bins.get(bin);
+			if (existing == null)
+				bins.put(bin, bin);
+			else
+				bin = existing;
+
+			bin.count++;
+			for (int j = 0; j < point.length; j++)
+				bin.sum[j] += point[j];
+		}
+
+		int nseeds = 0;
+		for (final Bin bin : bins.keySet())
+			if (bin.count >= minBinFreq)
+				nseeds++;
+
+		if (nseeds == 0)
+			return data;
+
+		final double[][] seeds = new double[nseeds][];
+		int i = 0;
+		for (final Bin bin : bins.keySet()) {
+			if (bin.count >= minBinFreq) {
+				seeds[i] = bin.sum;
+				for (int j = 0; j < seeds[i].length; j++)
+					seeds[i][j] /= bin.count;
+				i++;
+			}
+		}
+
+		return seeds;
+	}
+}
@@ -31,17 +31,28 @@ package org.openimaj.ml.clustering.meanshift;
 
 import gnu.trove.procedure.TIntObjectProcedure;
 
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.math.statistics.distribution.MultivariateKernelDensityEstimate;
+import org.openimaj.util.function.Operation;
 import org.openimaj.util.pair.ObjectDoublePair;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 import org.openimaj.util.set.DisjointSetForest;
 import org.openimaj.util.tree.DoubleKDTree;
 
 /**
  * Exact mean shift implementation. The mean shift procedure is applied to every
- * underlying point. This can be quite slow, especially with many points.
+ * underlying point. Each mean shift step only considers the points within the
+ * kernel support (found using the KD-Tree of the
+ * {@link MultivariateKernelDensityEstimate}), and the mode seeking for the
+ * individual points can optionally be performed in parallel using a thread
+ * pool. This can still be quite slow with many points;
+ * {@link BinnedMeanShift} can be used to reduce the number of starting points.
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  *
@@ -50,39 +61,123 @@ public class ExactMeanShift {
 	private int maxIter = 300;
 
 	private MultivariateKernelDensityEstimate kde;
+	private ThreadPoolExecutor pool;
 	private int[] assignments;
 
 	private double[][] modes;
 	private int[] counts;
 
 	/**
-	 * Perform the ExactMeanShift operation on the given KDE.
+	 * Perform the ExactMeanShift operation on the given KDE. The mode seeking
+	 * is performed in the calling thread.
 	 *
 	 * @param kde
 	 */
 	public ExactMeanShift(MultivariateKernelDensityEstimate kde) {
+		this(kde, null);
+	}
+
+	/**
+	 * Perform the ExactMeanShift operation on the given KDE, using the given
+	 * pool to perform the mode seeking in parallel. The calling thread waits
+	 * for the work to complete, so this must not be called from a task
+	 * running on the same pool.
+	 *
+	 * @param kde
+	 *            the density estimate
+	 * @param pool
+	 *            the pool; if null the mode seeking is performed in the
+	 *            calling thread.
+	 */
+	public ExactMeanShift(MultivariateKernelDensityEstimate kde, ThreadPoolExecutor pool) {
+		this(kde, null, pool);
+	}
+
+	/**
+	 * Perform the mean shift operation on the given KDE, starting the mode
+	 * seeking from the given seeds rather than every underlying point. The
+	 * underlying points are assigned to the nearest mode after the modes have
+	 * been found.
+	 *
+	 * @param kde
+	 *            the density estimate
+	 * @param seeds
+	 *            the starting points; if null the underlying data points are
+	 *            used.
+	 * @param pool
+	 *            the pool; if null the mode seeking is performed in the
+	 *            calling thread.
+	 */
+	protected ExactMeanShift(MultivariateKernelDensityEstimate kde, double[][] seeds, ThreadPoolExecutor pool) {
 		this.kde = kde;
+		this.pool = pool;
 
-		performMeanShift();
+		performMeanShift(seeds);
 	}
 
 	protected void performMeanShift() {
+		performMeanShift(null);
+	}
+
+	protected void performMeanShift(double[][] seeds) {
 		final double[][] data = kde.getData();
-		final double[][] modePerPoint = new double[data.length][];
+		final double[][] starts = seeds == null ? data : seeds;
+		final double[][] modePerPoint = new double[starts.length][];
 
 		// perform the MS procedure on each point
-		for (int i = 0; i < data.length; i++) {
-			final double[] point = data[i].clone();
+		if (pool == null) {
+			for (int i = 0; i < starts.length; i++)
+				modePerPoint[i] = seekMode(starts[i]);
+		} else {
+			Parallel.forRange(0, starts.length, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					for (int i = range.start; i < range.stop; i += range.incr)
+						modePerPoint[i] = seekMode(starts[i]);
+				}
+			}, pool);
+		}
+
+		if (seeds != null) {
+			// seeds (unlike the data points) can have no points within the
+			// kernel support; these are dropped
+			int nmodes = 0;
+			for (final double[] mode : modePerPoint)
+				if (mode != null)
+					modePerPoint[nmodes++] = mode;
 
-			for (int iter = 0; iter < maxIter; iter++) {
-				if (computeMeanShift(point))
-					break;
+			if (nmodes == 0) {
+				performMeanShift(null);
+				return;
 			}
-			modePerPoint[i] = point;
+
+			// now need to merge modes that are <bandwidth away
+			mergeModes(Arrays.copyOf(modePerPoint, nmodes));
+			assignToModes(data);
+		} else {
+			// now need to merge modes that are <bandwidth away
+			mergeModes(modePerPoint);
+		}
+	}
+
+	/**
+	 * Seek the mode from the given starting point
+	 *
+	 * @return the mode, or null if there are no points within the kernel
+	 *         support of the start
+	 */
+	private double[] seekMode(double[] start) {
+		if (kde.getSupport(start).isEmpty())
+			return null;
+
+		final double[] point = start.clone();
+
+		for (int iter = 0; iter < maxIter; iter++) {
+			if (computeMeanShift(point))
+				break;
 		}
 
-		// now need to merge modes that are <bandwidth away
-		mergeModes(modePerPoint);
+		return point;
 	}
 
 	/**
@@ -103,6 +198,15 @@ public class ExactMeanShift {
 		return assignments;
 	}
 
+	/**
+	 * Get the number of points assigned to each mode
+	 *
+	 * @return the counts
+	 */
+	public int[] getCounts() {
+		return counts;
+	}
+
 	protected void mergeModes(double[][] modePerPoint) {
 		final DisjointSetForest<double[]> forest = new DisjointSetForest<double[]>();
 
@@ -122,34 +226,59 @@ public class ExactMeanShift {
 			});
 		}
 
-		final Set<Set<double[]>> subsets = forest.getSubsets();
+		// arrays use identity hashing, so the representatives can be used
+		// directly as keys
+		final Map<double[], Integer> setIndex = new IdentityHashMap<double[], Integer>();
+		for (int i = 0; i < modePerPoint.length; i++) {
+			final double[] repr = forest.find(modePerPoint[i]);
+			if (!setIndex.containsKey(repr))
+				setIndex.put(repr, setIndex.size());
+		}
+
 		this.assignments = new int[modePerPoint.length];
-		this.modes = new double[subsets.size()][];
-		this.counts = new int[subsets.size()];
-		int current = 0;
-		for (final Set<double[]> s : subsets) {
-			this.modes[current] = new double[modePerPoint[0].length];
-
-			for (int i = 0; i < modePerPoint.length; i++) {
-				if (s.contains(modePerPoint[i])) {
-					assignments[i] = current;
-					for (int j = 0; j < modes[current].length; j++) {
-						modes[current][j] = modePerPoint[i][j];
-					}
-				}
+		this.modes = new double[setIndex.size()][modePerPoint[0].length];
+		this.counts = new int[setIndex.size()];
+		for (int i = 0; i < modePerPoint.length; i++) {
+			final int current = setIndex.get(forest.find(modePerPoint[i]));
+
+			assignments[i] = current;
+			counts[current]++;
+			for (int j = 0; j < modes[current].length; j++) {
+				modes[current][j] += modePerPoint[i][j];
 			}
-			this.counts[current] = s.size();
+		}
+
+		for (int current = 0; current < modes.length; current++) {
 			for (int j = 0; j < modes[current].length; j++) {
 				modes[current][j] /= counts[current];
 			}
-			current++;
+		}
+	}
+
+	/**
+	 * Assign each of the given points to its nearest mode, replacing the
+	 * assignments and counts.
+	 *
+	 * @param data
+	 *            the points
+	 */
+	protected void assignToModes(double[][] data) {
+		final DoubleKDTree tree = new DoubleKDTree(modes);
+
+		this.assignments = new int[data.length];
+		this.counts = new int[modes.length];
+		for (int i = 0; i < data.length; i++) {
+			assignments[i] = tree.nearestNeighbour(data[i]).first;
+			counts[assignments[i]]++;
 		}
 	}
 
 	protected boolean computeMeanShift(double[] pt) {
 		final List<ObjectDoublePair<double[]>> support = kde.getSupport(pt);
 
-		if (support.size() == 1) {
+		// no other points within the kernel support; note that the support
+		// can be empty if the point is not one of the underlying data points
+		if (support.size() <= 1) {
 			return true;
 		}
 
@@ -89,9 +89,14 @@ public class ChangeDetectingEigenChooser extends EigenChooser {
 
 	@Override
 	public FewEigenvalues prepare(final SparseMatrix laplacian) {
-		int total = laplacian.columnCount();
 		FewEigenvalues eig = FewEigenvalues.of(laplacian);
-		return eig.greatest((int) (total*maxSelect));
+		return eig.greatest(nEigenValues(laplacian));
+	}
+
+	@Override
+	public int nEigenValues(SparseMatrix laplacian) {
+		int total = laplacian.columnCount();
+		return (int) (total*maxSelect);
 	}
 
 
@@ -57,4 +57,16 @@ public abstract class EigenChooser{
 	 * @return the prepared eigen values
 	 */
 	public abstract Eigenvalues prepare(SparseMatrix laplacian) ;
+
+	/**
+	 * The number of eigen values that {@link #prepare(SparseMatrix)} would
+	 * extract from the given matrix. Solvers other than the one returned by
+	 * {@link #prepare(SparseMatrix)} use this to decide how many eigen vectors
+	 * to compute. By default all the eigen values are requested.
+	 * @param laplacian the matrix to be decomposed
+	 * @return the number of eigen values to extract
+	 */
+	public int nEigenValues(SparseMatrix laplacian) {
+		return laplacian.columnCount();
+	}
 }
\ No newline at end of file
@@ -62,6 +62,10 @@ public class HardCodedEigenChooser extends EigenChooser{
 		FewEigenvalues eig = FewEigenvalues.of(laplacian);
 		return eig.greatest(count);
 	}
+	@Override
+	public int nEigenValues(SparseMatrix laplacian) {
+		return count;
+	}
 	
 	@Override
 	public String toString() {
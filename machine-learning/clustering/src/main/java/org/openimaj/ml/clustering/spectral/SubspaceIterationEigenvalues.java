@@ -0,0 +1,479 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.clustering.spectral;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+import ch.akuhn.matrix.SparseMatrix;
+import ch.akuhn.matrix.Vector;
+import ch.akuhn.matrix.Vector.Entry;
+import ch.akuhn.matrix.eigenvalues.Eigenvalues;
+
+/**
+ * Finds the eigen values of greatest magnitude (and their eigen vectors) of a
+ * symmetric {@link SparseMatrix} using subspace iteration with Rayleigh-Ritz
+ * projection. Unlike the ARPACK based {@link ch.akuhn.matrix.eigenvalues.FewEigenvalues},
+ * the iteration can be warm-started from a previous set of eigen vectors, which
+ * makes re-solving a slightly modified matrix much cheaper than a cold solve.
+ * The sparse matrix products which dominate each iteration are computed in
+ * parallel over the rows of the matrix.
+ * <p>
+ * Iteration stops when {@link #converged(double[], double[])} returns true,
+ * which by default happens when none of the requested eigen values change by
+ * more than the tolerance (relative to the largest eigen value) between
+ * iterations. As with the ARPACK solver, the eigen values are stored in
+ * ascending order.
+ *
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ *
+ */
+public class SubspaceIterationEigenvalues extends Eigenvalues {
+	/**
+	 * The default convergence tolerance
+	 */
+	public static final double DEFAULT_TOLERANCE = 1e-6;
+
+	/**
+	 * The default maximum number of iterations
+	 */
+	public static final int DEFAULT_MAX_ITERATIONS = 300;
+
+	/**
+	 * The default number of extra basis vectors
+	 */
+	public static final int DEFAULT_OVERSAMPLING = 5;
+
+	private SparseMatrix matrix;
+	private Vector[] start;
+	private double tolerance = DEFAULT_TOLERANCE;
+	private int maxIterations = DEFAULT_MAX_ITERATIONS;
+	private int oversampling = DEFAULT_OVERSAMPLING;
+	private ThreadPoolExecutor threadPool = GlobalExecutorPool.getPool();
+	private Random random = new Random();
+	private int iterations;
+
+	/**
+	 * @param matrix
+	 *            the symmetric matrix to decompose
+	 */
+	public SubspaceIterationEigenvalues(SparseMatrix matrix) {
+		super(matrix.columnCount());
+		this.matrix = matrix;
+		this.greatest(20);
+	}
+
+	/**
+	 * Compute the largest eigenvalues in magnitude.
+	 *
+	 * @param nev0
+	 *            the number of eigen values
+	 * @return this
+	 */
+	public SubspaceIterationEigenvalues greatest(int nev0) {
+		this.nev = Math.max(1, Math.min(nev0, n));
+		return this;
+	}
+
+	/**
+	 * Start the iteration from the given vectors rather than from random
+	 * vectors. Typically these are the eigen vectors of a previous, similar
+	 * matrix. Vectors of a different size to the matrix are truncated or
+	 * padded with random values; missing vectors are filled randomly.
+	 *
+	 * @param start
+	 *            the starting vectors, or null to start randomly
+	 * @return this
+	 */
+	public SubspaceIterationEigenvalues warmStart(Vector[] start) {
+		this.start = start;
+		return this;
+	}
+
+	/**
+	 * @param tolerance
+	 *            the relative convergence tolerance of the eigen values
+	 * @return this
+	 */
+	public SubspaceIterationEigenvalues tolerance(double tolerance) {
+		this.tolerance = tolerance;
+		return this;
+	}
+
+	/**
+	 * @param maxIterations
+	 *            the maximum number of iterations
+	 * @return this
+	 */
+	public SubspaceIterationEigenvalues maxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+		return this;
+	}
+
+	/**
+	 * Set the number of basis vectors used in addition to the requested number
+	 * of eigen vectors. Extra vectors speed up convergence.
+	 *
+	 * @param oversampling
+	 *            the number of extra basis vectors
+	 * @return this
+	 */
+	public SubspaceIterationEigenvalues oversampling(int oversampling) {
+		this.oversampling = oversampling;
+		return this;
+	}
+
+	/**
+	 * Set the thread pool used for the matrix products. If null, the products
+	 * are computed in the calling thread.
+	 *
+	 * @param threadPool
+	 *            the thread pool
+	 * @return this
+	 */
+	public SubspaceIterationEigenvalues threadPool(ThreadPoolExecutor threadPool) {
+		this.threadPool = threadPool;
+		return this;
+	}
+
+	/**
+	 * @param random
+	 *            the source of random starting vectors
+	 * @return this
+	 */
+	public SubspaceIterationEigenvalues random(Random random) {
+		this.random = random;
+		return this;
+	}
+
+	/**
+	 * @return the number of iterations performed by the last call to
+	 *         {@link #run()}
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * @return the tolerance
+	 */
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	@Override
+	public SubspaceIterationEigenvalues run() {
+		final int k = Math.min(nev, n);
+		final int p = Math.min(k + oversampling, n);
+		final Vector[] rows = new Vector[n];
+		for (int i = 0; i < n; i++)
+			rows[i] = matrix.row(i);
+
+		double[][] q = initialBasis(p);
+		orthonormalise(q, p);
+
+		double[] prev = null;
+		iterations = 0;
+		while (true) {
+			final double[][] z = multiply(rows, q, p);
+			final double[][] h = innerProducts(q, z, p);
+			for (int i = 0; i < p; i++) {
+				for (int j = i + 1; j < p; j++) {
+					h[i][j] = h[j][i] = (h[i][j] + h[j][i]) / 2;
+				}
+			}
+
+			final EigenvalueDecomposition evd = new Matrix(h).eig();
+			final double[] vals = evd.getRealEigenvalues();
+			final double[][] v = evd.getV().getArray();
+
+			// order the ritz pairs by descending magnitude
+			final Integer[] order = new Integer[p];
+			for (int i = 0; i < p; i++)
+				order[i] = i;
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					return Double.compare(Math.abs(vals[o2]), Math.abs(vals[o1]));
+				}
+			});
+			final double[][] rotation = new double[p][p];
+			for (int i = 0; i < p; i++)
+				for (int j = 0; j < p; j++)
+					rotation[i][j] = v[i][order[j]];
+
+			final double[] current = new double[k];
+			for (int i = 0; i < k; i++)
+				current[i] = vals[order[i]];
+			Arrays.sort(current);
+
+			iterations++;
+			if ((prev != null && converged(prev, current)) || iterations >= maxIterations) {
+				store(multiply(q, rotation, p), vals, order, k, p);
+				return this;
+			}
+			prev = current;
+
+			q = multiply(z, rotation, p);
+			orthonormalise(q, p);
+		}
+	}
+
+	/**
+	 * Test whether the iteration has converged. The default implementation
+	 * returns true if no eigen value has changed by more than the tolerance
+	 * multiplied by the magnitude of the largest eigen value.
+	 *
+	 * @param previous
+	 *            the eigen value estimates of the previous iteration, in
+	 *            ascending order
+	 * @param current
+	 *            the eigen value estimates of the current iteration, in
+	 *            ascending order
+	 * @return true if the iteration should stop
+	 */
+	protected boolean converged(double[] previous, double[] current) {
+		double scale = 0;
+		for (final double v : current)
+			scale = Math.max(scale, Math.abs(v));
+
+		for (int i = 0; i < current.length; i++) {
+			if (Math.abs(current[i] - previous[i]) > tolerance * scale)
+				return false;
+		}
+		return true;
+	}
+
+	private void store(double[][] x, final double[] vals, Integer[] order, int k, int p) {
+		// ascending order of value, as the ARPACK solver
+		final Integer[] top = Arrays.copyOf(order, k);
+		Arrays.sort(top, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare(vals[o1], vals[o2]);
+			}
+		});
+
+		final int[] column = new int[p];
+		for (int i = 0; i < p; i++)
+			column[order[i]] = i;
+
+		value = new double[k];
+		vector = new Vector[k];
+		for (int i = 0; i < k; i++) {
+			value[i] = vals[top[i]];
+
+			final double[] vec = new double[n];
+			final int c = column[top[i]];
+			for (int r = 0; r < n; r++)
+				vec[r] = x[r][c];
+			vector[i] = Vector.wrap(vec);
+		}
+	}
+
+	private double[][] initialBasis(int p) {
+		final double[][] q = new double[n][p];
+
+		for (int c = 0; c < p; c++) {
+			final Vector s = start != null && c < start.length ? start[c] : null;
+			final int size = s == null ? 0 : Math.min(s.size(), n);
+
+			for (int r = 0; r < size; r++)
+				q[r][c] = s.get(r);
+			for (int r = size; r < n; r++)
+				q[r][c] = random.nextDouble() - 0.5;
+		}
+
+		return q;
+	}
+
+	/**
+	 * Modified Gram-Schmidt orthonormalisation of the columns of q, applied
+	 * twice for numerical stability. Columns that are (numerically) linearly
+	 * dependent on their predecessors are replaced by random vectors.
+	 */
+	private void orthonormalise(double[][] q, int p) {
+		for (int c = 0; c < p; c++) {
+			for (int attempt = 0;; attempt++) {
+				final double before = norm(q, c);
+
+				for (int pass = 0; pass < 2; pass++) {
+					for (int o = 0; o < c; o++) {
+						double dot = 0;
+						for (int r = 0; r < n; r++)
+							dot += q[r][o] * q[r][c];
+						for (int r = 0; r < n; r++)
+							q[r][c] -= dot * q[r][o];
+					}
+				}
+
+				final double after = norm(q, c);
+				if (after > 1e-10 * Math.max(before, 1e-300) || attempt > 3) {
+					for (int r = 0; r < n; r++)
+						q[r][c] /= after;
+					break;
+				}
+
+				for (int r = 0; r < n; r++)
+					q[r][c] = random.nextDouble() - 0.5;
+			}
+		}
+	}
+
+	private double norm(double[][] q, int c) {
+		double sum = 0;
+		for (int r = 0; r < n; r++)
+			sum += q[r][c] * q[r][c];
+		return Math.sqrt(sum);
+	}
+
+	/**
+	 * Sparse product of the matrix with the columns of q
+	 */
+	private double[][] multiply(final Vector[] rows, final double[][] q, final int p) {
+		final double[][] z = new double[n][p];
+
+		forRows(new RowOperation() {
+			@Override
+			void perform(int from, int to) {
+				for (int i = from; i < to; i++) {
+					final double[] zi = z[i];
+
+					for (final Entry e : rows[i].entries()) {
+						final double[] qj = q[e.index];
+						final double a = e.value;
+
+						for (int c = 0; c < p; c++)
+							zi[c] += a * qj[c];
+					}
+				}
+			}
+		});
+
+		return z;
+	}
+
+	/**
+	 * Dense product of the n x p matrix a with the p x p matrix b
+	 */
+	private double[][] multiply(final double[][] a, final double[][] b, final int p) {
+		final double[][] out = new double[n][p];
+
+		forRows(new RowOperation() {
+			@Override
+			void perform(int from, int to) {
+				for (int i = from; i < to; i++) {
+					final double[] ai = a[i];
+					final double[] oi = out[i];
+
+					for (int j = 0; j < p; j++) {
+						final double aij = ai[j];
+						if (aij == 0)
+							continue;
+
+						final double[] bj = b[j];
+						for (int c = 0; c < p; c++)
+							oi[c] += aij * bj[c];
+					}
+				}
+			}
+		});
+
+		return out;
+	}
+
+	/**
+	 * The p x p matrix of inner products between the columns of a and b. The
+	 * partial sums of each range of rows are added in row order, so the result
+	 * doesn't depend on the order in which the ranges complete.
+	 */
+	private double[][] innerProducts(final double[][] a, final double[][] b, final int p) {
+		final TreeMap<Integer, double[][]> partials = new TreeMap<Integer, double[][]>();
+
+		forRows(new RowOperation() {
+			@Override
+			void perform(int from, int to) {
+				final double[][] partial = new double[p][p];
+
+				for (int r = from; r < to; r++) {
+					final double[] ar = a[r];
+					final double[] br = b[r];
+
+					for (int i = 0; i < p; i++) {
+						final double ari = ar[i];
+						for (int j = 0; j < p; j++)
+							partial[i][j] += ari * br[j];
+					}
+				}
+
+				synchronized (partials) {
+					partials.put(from, partial);
+				}
+			}
+		});
+
+		final double[][] out = new double[p][p];
+		for (final double[][] partial : partials.values())
+			for (int i = 0; i < p; i++)
+				for (int j = 0; j < p; j++)
+					out[i][j] += partial[i][j];
+
+		return out;
+	}
+
+	/**
+	 * An operation over a contiguous range of rows
+	 */
+	private static abstract class RowOperation implements Operation<IntRange> {
+		@Override
+		public void perform(IntRange range) {
+			perform(range.start, range.stop);
+		}
+
+		abstract void perform(int from, int to);
+	}
+
+	private void forRows(RowOperation op) {
+		if (threadPool == null)
+			op.perform(0, n);
+		else
+			Parallel.forRange(0, n, 1, op, threadPool);
+	}
+}
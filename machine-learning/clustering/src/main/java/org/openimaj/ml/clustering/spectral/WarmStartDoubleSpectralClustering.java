@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.clustering.spectral;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.ml.clustering.incremental.IncrementalSparseClusterer;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+import ch.akuhn.matrix.SparseMatrix;
+import ch.akuhn.matrix.Vector;
+import ch.akuhn.matrix.eigenvalues.Eigenvalues;
+
+/**
+ * {@link DoubleSpectralClustering} extension which solves the eigen problem
+ * with a {@link SubspaceIterationEigenvalues} warm-started from the eigen
+ * vectors found by the previous call. This makes re-clustering a graph after a
+ * small update (for example, the growing windows of an
+ * {@link IncrementalSparseClusterer}) much cheaper than a cold solve. Rows
+ * added since the previous call are initialised randomly.
+ * <p>
+ * The solver stops as soon as the number of eigen vectors selected by the
+ * {@link EigenChooser} stops changing and the eigen values that define the
+ * selection (the selected values and the first rejected one) are stable to
+ * within the gap tolerance, or when all the eigen values have converged.
+ * <p>
+ * Instances hold the previous solution, so are not thread-safe.
+ *
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ *
+ */
+public class WarmStartDoubleSpectralClustering extends DoubleSpectralClustering {
+	/**
+	 * The default tolerance of the eigen values defining the eigen-gap
+	 */
+	public static final double DEFAULT_GAP_TOLERANCE = 1e-4;
+
+	private Vector[] previous;
+	private int lastIterations;
+	private double tolerance = SubspaceIterationEigenvalues.DEFAULT_TOLERANCE;
+	private double gapTolerance = DEFAULT_GAP_TOLERANCE;
+	private int maxIterations = SubspaceIterationEigenvalues.DEFAULT_MAX_ITERATIONS;
+	private ThreadPoolExecutor threadPool = GlobalExecutorPool.getPool();
+
+	/**
+	 * @param conf
+	 *            cluster the eigen vectors
+	 */
+	public WarmStartDoubleSpectralClustering(SpectralClusteringConf<double[]> conf) {
+		super(conf);
+	}
+
+	@Override
+	protected Eigenvalues laplacianEigenVectors(final SparseMatrix laplacian) {
+		final int total = laplacian.columnCount();
+		final SubspaceIterationEigenvalues eig = new SubspaceIterationEigenvalues(laplacian) {
+			@Override
+			protected boolean converged(double[] prev, double[] current) {
+				return super.converged(prev, current) || gapStable(prev, current, total);
+			}
+		};
+
+		eig.greatest(conf.eigenChooser.nEigenValues(laplacian))
+				.warmStart(previous)
+				.tolerance(tolerance)
+				.maxIterations(maxIterations)
+				.threadPool(threadPool)
+				.run();
+
+		logger.debug(String.format("Eigen solver converged in %d iterations (warm start: %s)",
+				eig.getIterations(), previous != null));
+		this.previous = eig.vector;
+		this.lastIterations = eig.getIterations();
+
+		return eig;
+	}
+
+	private boolean gapStable(double[] prev, double[] current, int total) {
+		final int count = selected(current, total);
+		if (count != selected(prev, total))
+			return false;
+
+		double scale = 0;
+		for (final double v : current)
+			scale = Math.max(scale, Math.abs(v));
+
+		// values are ascending, the eigen chooser considers them from the end
+		final int m = Math.min(count + 1, current.length);
+		for (int i = current.length - m; i < current.length; i++) {
+			if (Math.abs(current[i] - prev[i]) > gapTolerance * scale)
+				return false;
+		}
+
+		return true;
+	}
+
+	private int selected(double[] values, int total) {
+		final Eigenvalues eig = new Eigenvalues(total);
+		eig.value = values;
+		eig.vector = new Vector[values.length];
+
+		return conf.eigenChooser.nEigenVectors(conf.laplacian.eigenIterator(eig), total);
+	}
+
+	/**
+	 * Forget the previous solution, so the next call performs a cold solve
+	 */
+	public void reset() {
+		this.previous = null;
+	}
+
+	/**
+	 * @return the number of iterations the eigen solver performed in the most
+	 *         recent clustering
+	 */
+	public int getLastIterations() {
+		return lastIterations;
+	}
+
+	/**
+	 * @param tolerance
+	 *            the relative tolerance at which all eigen values are
+	 *            considered converged
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * @param gapTolerance
+	 *            the relative tolerance at which the eigen values defining
+	 *            the eigen-gap are considered stable
+	 */
+	public void setGapTolerance(double gapTolerance) {
+		this.gapTolerance = gapTolerance;
+	}
+
+	/**
+	 * @param maxIterations
+	 *            the maximum number of solver iterations
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * @param threadPool
+	 *            the thread pool for the sparse matrix products, or null to
+	 *            compute them in the calling thread
+	 */
+	public void setThreadPool(ThreadPoolExecutor threadPool) {
+		this.threadPool = threadPool;
+	}
+}
@@ -113,6 +113,33 @@ public class TestDoubleDBSCAN {
 			assertTrue(toSet(this.testClusters[i]).equals(toSet(res.clusters()[i])));
 		}
 	}
+	/**
+	 * Check that the indexed radius-query implementations give the same
+	 * clusters as the exact nearest-neighbour implementation, with and
+	 * without neighbourhood precomputation
+	 */
+	@Test
+	public void testIndexedDBSCAN(){
+		for (DoubleIndexedDBSCAN.IndexType type : DoubleIndexedDBSCAN.IndexType.values()) {
+			for (boolean precompute : new boolean[] { false, true }) {
+				DoubleIndexedDBSCAN dbscan = new DoubleIndexedDBSCAN(
+					this.testStats.eps,
+					this.testStats.minpts,
+					type
+				);
+				dbscan.setPrecompute(precompute);
+				DoubleDBSCANClusters res = dbscan.cluster(testData);
+				for (int i = 0; i < res.getNoise().length; i++) {
+					assertTrue(res.getNoise()[i] < this.testStats.noutliers);
+				}
+				assertTrue(res.getNoise().length == this.testStats.noutliers);
+				for (int i = 0; i < this.testClusters.length; i++) {
+					assertTrue(toSet(this.testClusters[i]).equals(toSet(res.clusters()[i])));
+				}
+			}
+		}
+	}
+
 	private Set<Integer> toSet(int[] is) {
 		Set<Integer> set = new HashSet<Integer>();
 		for (int i = 0; i < is.length; i++) {
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.clustering.meanshift;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.math.statistics.distribution.MultivariateKernelDensityEstimate;
+import org.openimaj.math.statistics.distribution.kernel.StandardUnivariateKernels;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link ExactMeanShift} and {@link BinnedMeanShift}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class TestMeanShift {
+	private static final double[][] CENTRES = { { 0, 0 }, { 10, 10 }, { -10, 8 } };
+	private double[][] data;
+	private MultivariateKernelDensityEstimate kde;
+
+	/**
+	 * Create three well separated gaussian blobs
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(3);
+		data = new double[600][2];
+		for (int i = 0; i < data.length; i++) {
+			data[i][0] = CENTRES[i % 3][0] + rng.nextGaussian();
+			data[i][1] = CENTRES[i % 3][1] + rng.nextGaussian();
+		}
+		kde = new MultivariateKernelDensityEstimate(data, StandardUnivariateKernels.Gaussian, 1);
+	}
+
+	private void checkResult(ExactMeanShift ms) {
+		assertEquals(3, ms.getModes().length);
+
+		final int[] assignments = ms.getAssignments();
+		assertEquals(data.length, assignments.length);
+		for (int i = 0; i < data.length; i++)
+			assertEquals(assignments[i % 3], assignments[i]);
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals(200, ms.getCounts()[assignments[i]]);
+			assertArrayEquals(CENTRES[i], ms.getModes()[assignments[i]], 0.5);
+		}
+	}
+
+	/**
+	 * Test the exact mean shift, both sequentially and in parallel
+	 */
+	@Test
+	public void testExact() {
+		final ExactMeanShift seq = new ExactMeanShift(kde);
+		final ExactMeanShift par = new ExactMeanShift(kde, GlobalExecutorPool.getPool());
+
+		checkResult(seq);
+		checkResult(par);
+		assertArrayEquals(seq.getAssignments(), par.getAssignments());
+	}
+
+	/**
+	 * Test the mean shift with binned seeding
+	 */
+	@Test
+	public void testBinned() {
+		final double[][] seeds = BinnedMeanShift.computeSeeds(data, 1, 1);
+		assertTrue(seeds.length < data.length);
+
+		checkResult(new BinnedMeanShift(kde));
+		checkResult(new BinnedMeanShift(kde, 1, 5, GlobalExecutorPool.getPool()));
+	}
+
+	/**
+	 * Test that seeds with no points within the kernel support don't produce
+	 * invalid modes. Here the bins are much bigger than the bandwidth, and the
+	 * only seed lies halfway between two clusters.
+	 */
+	@Test
+	public void testBinnedEmptySupport() {
+		final Random rng = new Random(5);
+		final double[][] pairs = new double[100][2];
+		for (int i = 0; i < pairs.length; i++) {
+			pairs[i][0] = (i % 2 == 0 ? 5 : 25) + 0.1 * rng.nextGaussian();
+			pairs[i][1] = 5 + 0.1 * rng.nextGaussian();
+		}
+		final MultivariateKernelDensityEstimate pairsKde = new MultivariateKernelDensityEstimate(pairs,
+				StandardUnivariateKernels.Gaussian, 1);
+
+		assertEquals(1, BinnedMeanShift.computeSeeds(pairs, 100, 1).length);
+
+		final BinnedMeanShift ms = new BinnedMeanShift(pairsKde, 100, 1);
+		assertEquals(2, ms.getModes().length);
+		for (final double[] mode : ms.getModes())
+			for (final double v : mode)
+				assertFalse(Double.isNaN(v));
+
+		assertEquals(50, ms.getCounts()[0]);
+		assertEquals(50, ms.getCounts()[1]);
+	}
+}
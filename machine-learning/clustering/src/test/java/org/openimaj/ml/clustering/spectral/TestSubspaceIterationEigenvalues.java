@@ -0,0 +1,249 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.clustering.spectral;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.openimaj.feature.DoubleFVComparison;
+import org.openimaj.knn.DoubleNearestNeighboursExact;
+import org.openimaj.ml.clustering.IndexClusters;
+import org.openimaj.ml.clustering.dbscan.DoubleNNDBSCAN;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+import ch.akuhn.matrix.SparseMatrix;
+import ch.akuhn.matrix.Vector;
+
+/**
+ * Tests for {@link SubspaceIterationEigenvalues} and
+ * {@link WarmStartDoubleSpectralClustering}
+ *
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ *
+ */
+public class TestSubspaceIterationEigenvalues {
+	private static SparseMatrix randomSymmetric(int n, double density, Random rng) {
+		final SparseMatrix mat = new SparseMatrix(n, n);
+		for (int i = 0; i < n; i++) {
+			for (int j = i; j < n; j++) {
+				if (i == j || rng.nextDouble() < density) {
+					final double v = rng.nextDouble() * 2 - 1;
+					mat.put(i, j, v);
+					mat.put(j, i, v);
+				}
+			}
+		}
+		return mat;
+	}
+
+	/**
+	 * The normalised affinity of a random graph with four planted partitions.
+	 * The first n-1 items of graph n are identical to graph n-1.
+	 */
+	private static SparseMatrix planted(int n) {
+		final Random rng = new Random(7);
+		final SparseMatrix adj = new SparseMatrix(n, n);
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < i; j++) {
+				final double p = i % 4 == j % 4 ? 0.2 : 0.05;
+				if (rng.nextDouble() < p) {
+					adj.put(i, j, 1);
+					adj.put(j, i, 1);
+				}
+			}
+		}
+		return new GraphLaplacian.Normalised().laplacian(adj);
+	}
+
+	/**
+	 * The eigen values and vectors should agree with a dense decomposition
+	 */
+	@Test
+	public void testAgreesWithDense() {
+		final Random rng = new Random(1);
+		final SparseMatrix mat = randomSymmetric(60, 0.1, rng);
+
+		final SubspaceIterationEigenvalues eig = new SubspaceIterationEigenvalues(mat)
+				.greatest(4).tolerance(1e-12).random(rng);
+		eig.run();
+
+		final double[] dense = new Matrix(mat.asDenseDoubleDouble()).eig().getRealEigenvalues().clone();
+		final Double[] sorted = new Double[dense.length];
+		for (int i = 0; i < dense.length; i++)
+			sorted[i] = dense[i];
+		Arrays.sort(sorted, new java.util.Comparator<Double>() {
+			@Override
+			public int compare(Double o1, Double o2) {
+				return Double.compare(Math.abs(o2), Math.abs(o1));
+			}
+		});
+		final double[] expected = new double[4];
+		for (int i = 0; i < 4; i++)
+			expected[i] = sorted[i];
+		Arrays.sort(expected);
+
+		assertEquals(4, eig.value.length);
+		for (int i = 0; i < 4; i++) {
+			assertEquals(expected[i], eig.value[i], 1e-6);
+
+			// check the residual |Av - lv|
+			final Vector v = eig.vector[i];
+			final Vector av = mat.mult(v);
+			double res = 0;
+			for (int j = 0; j < v.size(); j++) {
+				final double d = av.get(j) - eig.value[i] * v.get(j);
+				res += d * d;
+			}
+			assertEquals(1, v.norm(), 1e-8);
+			assertTrue(Math.sqrt(res) < 1e-3);
+		}
+	}
+
+	/**
+	 * Parallel and sequential products should give the same answer
+	 */
+	@Test
+	public void testSequential() {
+		final SparseMatrix mat = randomSymmetric(50, 0.2, new Random(2));
+
+		final SubspaceIterationEigenvalues par = new SubspaceIterationEigenvalues(mat)
+				.greatest(3).random(new Random(3));
+		par.run();
+		final SubspaceIterationEigenvalues seq = new SubspaceIterationEigenvalues(mat)
+				.greatest(3).random(new Random(3)).threadPool(null);
+		seq.run();
+
+		assertEquals(seq.getIterations(), par.getIterations());
+		for (int i = 0; i < 3; i++)
+			assertEquals(seq.value[i], par.value[i], 1e-10);
+	}
+
+	/**
+	 * Warm starting from the solution of the graph without its last item should
+	 * converge in fewer iterations than starting from scratch
+	 */
+	@Test
+	public void testWarmStart() {
+		final SubspaceIterationEigenvalues first = new SubspaceIterationEigenvalues(planted(300))
+				.greatest(4).random(new Random(4));
+		first.run();
+
+		final SparseMatrix updated = planted(301);
+		final SubspaceIterationEigenvalues cold = new SubspaceIterationEigenvalues(updated)
+				.greatest(4).random(new Random(5));
+		cold.run();
+		final SubspaceIterationEigenvalues warm = new SubspaceIterationEigenvalues(updated)
+				.greatest(4).random(new Random(5)).warmStart(first.vector);
+		warm.run();
+
+		for (int i = 0; i < 4; i++)
+			assertEquals(cold.value[i], warm.value[i], 1e-4);
+		assertTrue(warm.getIterations() < cold.getIterations());
+	}
+
+	/**
+	 * Re-clustering a graph of well separated cliques after adding items
+	 * should give the cliques, reusing the previous eigen vectors
+	 */
+	@Test
+	public void testWarmStartClustering() {
+		final SpectralClusteringConf<double[]> conf = new SpectralClusteringConf<double[]>(
+				new DoubleNNDBSCAN(0.2, 2, new DoubleNearestNeighboursExact.Factory(DoubleFVComparison.EUCLIDEAN)),
+				new GraphLaplacian.Normalised(), 3);
+		final WarmStartDoubleSpectralClustering clust = new WarmStartDoubleSpectralClustering(conf);
+
+		final int[] sizes = { 10, 12, 14 };
+		IndexClusters res = clust.cluster(cliques(sizes, 0));
+		checkCliques(res, sizes, 0);
+		final int cold = clust.getLastIterations();
+
+		res = clust.cluster(cliques(sizes, 1));
+		checkCliques(res, sizes, 1);
+		assertTrue(clust.getLastIterations() <= cold);
+	}
+
+	/**
+	 * Cliques of the given sizes, with each clique grown by the given number
+	 * of items appended at the end of the matrix
+	 */
+	private static SparseMatrix cliques(int[] sizes, int extra) {
+		int n = 0;
+		for (final int s : sizes)
+			n += s + extra;
+
+		final int[] assignment = assignment(sizes, extra);
+		final SparseMatrix adj = new SparseMatrix(n, n);
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				if (i != j && assignment[i] == assignment[j])
+					adj.put(i, j, 1);
+			}
+		}
+		return adj;
+	}
+
+	private static int[] assignment(int[] sizes, int extra) {
+		int n = 0;
+		for (final int s : sizes)
+			n += s + extra;
+
+		final int[] assignment = new int[n];
+		int i = 0;
+		for (int c = 0; c < sizes.length; c++)
+			for (int j = 0; j < sizes[c]; j++)
+				assignment[i++] = c;
+		for (int c = 0; c < sizes.length; c++)
+			for (int j = 0; j < extra; j++)
+				assignment[i++] = c;
+
+		return assignment;
+	}
+
+	private static void checkCliques(IndexClusters res, int[] sizes, int extra) {
+		final int[] assignment = assignment(sizes, extra);
+		final Set<Integer> seen = new HashSet<Integer>();
+
+		assertEquals(sizes.length, res.clusters().length);
+		for (final int[] cluster : res.clusters()) {
+			final int c = assignment[cluster[0]];
+			assertEquals(sizes[c] + extra, cluster.length);
+			for (final int i : cluster)
+				assertEquals(c, assignment[i]);
+			assertTrue(seen.add(c));
+		}
+	}
+}
@@ -29,6 +29,9 @@
  */
 package org.openimaj.ml.annotation;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.openimaj.experiment.evaluation.classification.BasicClassificationResult;
 import org.openimaj.experiment.evaluation.classification.ClassificationResult;
 
@@ -62,4 +65,24 @@ public abstract class AbstractAnnotator<OBJECT, ANNOTATION>
 
 		return res;
 	}
+
+	/**
+	 * Generate annotations for a batch of objects. The default implementation
+	 * just calls {@link #annotate(Object)} for each object in turn, but
+	 * subclasses can override this to amortise work (e.g. building a search
+	 * index) over the whole batch.
+	 * 
+	 * @param objects
+	 *            the objects to annotate
+	 * @return the annotations for each object, in the same order as the input
+	 */
+	public List<List<ScoredAnnotation<ANNOTATION>>> annotateAll(List<OBJECT> objects) {
+		final List<List<ScoredAnnotation<ANNOTATION>>> results = new ArrayList<List<ScoredAnnotation<ANNOTATION>>>(
+				objects.size());
+
+		for (final OBJECT object : objects)
+			results.add(annotate(object));
+
+		return results;
+	}
 }
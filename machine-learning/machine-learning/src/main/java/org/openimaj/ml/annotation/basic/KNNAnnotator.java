@@ -32,25 +32,45 @@ package org.openimaj.ml.annotation.basic;
 import gnu.trove.iterator.TObjectIntIterator;
 import gnu.trove.map.hash.TObjectIntHashMap;
 
+import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.feature.FeatureExtractor;
+import org.openimaj.knn.NearestNeighbours;
+import org.openimaj.knn.NearestNeighboursFactory;
 import org.openimaj.knn.ObjectNearestNeighbours;
 import org.openimaj.knn.ObjectNearestNeighboursExact;
 import org.openimaj.ml.annotation.Annotated;
 import org.openimaj.ml.annotation.IncrementalAnnotator;
 import org.openimaj.ml.annotation.ScoredAnnotation;
 import org.openimaj.util.comparator.DistanceComparator;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.pair.IntFloatPair;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
- * Annotator based on a multi-class k-nearest-neighbour classifier. Uses a
- * {@link ObjectNearestNeighboursExact} to perform the kNN search, so is
+ * Annotator based on a multi-class k-nearest-neighbour classifier. By default
+ * uses a {@link ObjectNearestNeighboursExact} to perform the kNN search, so is
  * applicable to any objects that can be compared with a
  * {@link DistanceComparator}.
+ * <p>
+ * Alternatively, a {@link NearestNeighboursFactory} can be provided with
+ * {@link #setNearestNeighboursFactory(NearestNeighboursFactory)} in order to
+ * index the training features with a different (for example approximate)
+ * nearest-neighbour implementation, such as a KD-Tree ensemble, LSH or
+ * product-quantiser based index. The distances produced by the index are
+ * compared against the threshold directly, so the threshold should be
+ * expressed in the units of the chosen index.
+ * <p>
+ * Batches of objects can be annotated with {@link #annotateAll(List)}, or in
+ * parallel with {@link #annotateAll(List, ThreadPoolExecutor)}.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
@@ -70,6 +90,8 @@ public class KNNAnnotator<OBJECT, ANNOTATION, FEATURE>
 	protected final List<Collection<ANNOTATION>> annotations = new ArrayList<Collection<ANNOTATION>>();
 	protected final Set<ANNOTATION> annotationsSet = new HashSet<ANNOTATION>();
 	protected ObjectNearestNeighbours<FEATURE> nn;
+	private NearestNeighbours<FEATURE, float[], IntFloatPair> index;
+	private NearestNeighboursFactory<? extends NearestNeighbours<FEATURE, float[], IntFloatPair>, FEATURE> factory;
 	protected DistanceComparator<? super FEATURE> comparator;
 	protected final float threshold;
 	protected FeatureExtractor<FEATURE, OBJECT> extractor;
@@ -281,8 +303,9 @@ public class KNNAnnotator<OBJECT, ANNOTATION, FEATURE>
 	}
 
 	@Override
-	public void train(final Annotated<OBJECT, ANNOTATION> annotated) {
+	public synchronized void train(final Annotated<OBJECT, ANNOTATION> annotated) {
 		this.nn = null;
+		this.index = null;
 
 		this.features.add(this.extractor.extractFeature(annotated.getObject()));
 
@@ -292,8 +315,9 @@ public class KNNAnnotator<OBJECT, ANNOTATION, FEATURE>
 	}
 
 	@Override
-	public void reset() {
+	public synchronized void reset() {
 		this.nn = null;
+		this.index = null;
 		this.features.clear();
 		this.annotations.clear();
 		this.annotationsSet.clear();
@@ -304,29 +328,98 @@ public class KNNAnnotator<OBJECT, ANNOTATION, FEATURE>
 		return this.annotationsSet;
 	}
 
+	/**
+	 * Get the nearest-neighbour index over the training features, building it
+	 * if necessary. Without a factory this is {@link #nn}.
+	 * 
+	 * @return the index
+	 */
+	@SuppressWarnings("unchecked")
+	protected synchronized NearestNeighbours<FEATURE, float[], IntFloatPair> getNearestNeighbours() {
+		if (this.factory == null || this.features.isEmpty()) {
+			if (this.nn == null)
+				this.nn = new ObjectNearestNeighboursExact<FEATURE>(this.features, this.comparator);
+
+			return this.nn;
+		}
+
+		if (this.index == null) {
+			final FEATURE[] data = this.features.toArray((FEATURE[]) Array.newInstance(
+					this.features.get(0).getClass(), this.features.size()));
+
+			this.index = this.factory.create(data);
+		}
+
+		return this.index;
+	}
+
 	@Override
 	public List<ScoredAnnotation<ANNOTATION>> annotate(final OBJECT object) {
-		if (this.nn == null)
-			this.nn = new ObjectNearestNeighboursExact<FEATURE>(this.features, this.comparator);
+		final NearestNeighbours<FEATURE, float[], IntFloatPair> index = getNearestNeighbours();
 
-		final TObjectIntHashMap<ANNOTATION> selected = new TObjectIntHashMap<ANNOTATION>();
+		return vote(index.searchKNN(this.extractor.extractFeature(object), this.k));
+	}
+
+	/**
+	 * Annotate a batch of objects in the calling thread. The
+	 * nearest-neighbour index is only looked up (and built if necessary) once
+	 * for the whole batch.
+	 * 
+	 * @param objects
+	 *            the objects to annotate
+	 * @return the annotations for each object, in the same order as the input
+	 */
+	@Override
+	public List<List<ScoredAnnotation<ANNOTATION>>> annotateAll(final List<OBJECT> objects) {
+		return annotateAll(objects, null);
+	}
 
-		final List<FEATURE> queryfv = new ArrayList<FEATURE>(1);
-		queryfv.add(this.extractor.extractFeature(object));
+	/**
+	 * Annotate a batch of objects. The feature extraction and nearest-neighbour
+	 * search for the objects is performed in parallel using the given pool,
+	 * which must not be one that the caller is itself running on.
+	 * 
+	 * @param objects
+	 *            the objects to annotate
+	 * @param pool
+	 *            the pool; if null the objects are annotated in the calling
+	 *            thread.
+	 * @return the annotations for each object, in the same order as the input
+	 */
+	@SuppressWarnings("unchecked")
+	public List<List<ScoredAnnotation<ANNOTATION>>> annotateAll(final List<OBJECT> objects,
+			ThreadPoolExecutor pool)
+	{
+		final NearestNeighbours<FEATURE, float[], IntFloatPair> index = getNearestNeighbours();
+		final List<ScoredAnnotation<ANNOTATION>>[] results = new List[objects.size()];
+
+		if (pool == null) {
+			for (int i = 0; i < results.length; i++)
+				results[i] = vote(index.searchKNN(extractor.extractFeature(objects.get(i)), k));
+		} else {
+			Parallel.forRange(0, results.length, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					for (int i = range.start; i < range.stop; i += range.incr)
+						results[i] = vote(index.searchKNN(extractor.extractFeature(objects.get(i)), k));
+				}
+			}, pool);
+		}
 
-		final int[][] indices = new int[1][this.k];
-		final float[][] distances = new float[1][this.k];
+		return Arrays.asList(results);
+	}
 
-		this.nn.searchKNN(queryfv, this.k, indices, distances);
+	protected List<ScoredAnnotation<ANNOTATION>> vote(final List<IntFloatPair> neighbours) {
+		final TObjectIntHashMap<ANNOTATION> selected = new TObjectIntHashMap<ANNOTATION>();
 
 		int count = 0;
-		for (int i = 0; i < this.k; i++) {
+		for (final IntFloatPair neighbour : neighbours) {
 			// Distance check
-			if (distances[0][i] > this.threshold) {
+			if (neighbour.first < 0 || neighbour.second > this.threshold) {
 				continue;
 			}
 
-			final Collection<ANNOTATION> anns = this.annotations.get(indices[0][i]);
+			final Collection<ANNOTATION> anns = this.annotations.get(neighbour.first);
 
 			for (final ANNOTATION ann : anns) {
 				selected.adjustOrPutValue(ann, 1, 1);
@@ -345,6 +438,31 @@ public class KNNAnnotator<OBJECT, ANNOTATION, FEATURE>
 		return result;
 	}
 
+	/**
+	 * Set the factory used to create the nearest-neighbour index over the
+	 * training features. If the factory is null (the default), an
+	 * {@link ObjectNearestNeighboursExact} using the comparator is used.
+	 * 
+	 * @param factory
+	 *            the factory
+	 */
+	public synchronized void setNearestNeighboursFactory(
+			NearestNeighboursFactory<? extends NearestNeighbours<FEATURE, float[], IntFloatPair>, FEATURE> factory)
+	{
+		this.factory = factory;
+		this.index = null;
+	}
+
+	/**
+	 * @return the factory used to create the nearest-neighbour index; null
+	 *         indicates an {@link ObjectNearestNeighboursExact} is used.
+	 */
+	public NearestNeighboursFactory<? extends NearestNeighbours<FEATURE, float[], IntFloatPair>, FEATURE>
+			getNearestNeighboursFactory()
+	{
+		return this.factory;
+	}
+
 	/**
 	 * @return the number of neighbours to search for
 	 */
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.pgm.vb.lda.mle;
+
+/**
+ * Statistics about a single iteration of the EM algorithm (or a single batch
+ * of the online EM algorithm) of the {@link LDALearner}
+ * 
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ * 
+ */
+public class LDAIterationStatistics {
+	/**
+	 * The iteration (or batch) number
+	 */
+	public int iteration;
+	/**
+	 * The number of documents processed
+	 */
+	public int ndocuments;
+	/**
+	 * The number of words (including repeats) in the processed documents
+	 */
+	public long nwords;
+	/**
+	 * The variational lower bound on the log likelihood of the processed
+	 * documents
+	 */
+	public double likelihood;
+	/**
+	 * The time taken in milliseconds
+	 */
+	public long time;
+
+	LDAIterationStatistics(int iteration, int ndocuments, long nwords, double likelihood, long time) {
+		this.iteration = iteration;
+		this.ndocuments = ndocuments;
+		this.nwords = nwords;
+		this.likelihood = likelihood;
+		this.time = time;
+	}
+
+	/**
+	 * @return the perplexity of the processed documents, exp(-likelihood /
+	 *         nwords)
+	 */
+	public double perplexity() {
+		return Math.exp(-likelihood / nwords);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("iteration %d: %d documents, likelihood %.4f, perplexity %.4f, %dms",
+				iteration, ndocuments, likelihood, perplexity(), time);
+	}
+}
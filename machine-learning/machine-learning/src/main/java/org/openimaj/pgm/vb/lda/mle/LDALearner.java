@@ -29,44 +29,88 @@
  */
 package org.openimaj.pgm.vb.lda.mle;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.commons.math.special.Gamma;
 import org.openimaj.math.util.MathUtils;
 import org.openimaj.pgm.util.Corpus;
 import org.openimaj.pgm.util.Document;
 import org.openimaj.util.array.SparseIntArray.Entry;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.pair.IndependentPair;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * An implementation of variational inference LDA which can be saved and loaded
+ * <p>
+ * The E step of each iteration can be performed over the documents in
+ * parallel by setting a pool with {@link #setThreadPool(ThreadPoolExecutor)};
+ * each thread accumulates its own sufficient statistics, which are merged at
+ * the end of the iteration. An online (stepwise) variant of the EM algorithm
+ * is also provided through {@link #estimateOnline(Iterator, int, long)} for
+ * corpora that are too large to hold in memory.
  * 
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
  * 
  */
 public class LDALearner {
+	/**
+	 * The value of log \Beta_wi used for words that have not been seen with a
+	 * topic. \Beta_wi is then taken to be a very small constant, ETA.
+	 */
+	private static final double UNSEEN_WORD_LOG_BETA = -100;
+
 	private int ntopics;
 	private Map<LDAConfig, Object> config = new HashMap<LDAConfig, Object>();
+	private ThreadPoolExecutor pool;
+	private LDAModel model;
+	private List<LDAIterationStatistics> statistics = new ArrayList<LDAIterationStatistics>();
 
-	enum LDAConfig {
+	/**
+	 * Configuration options for the {@link LDALearner}
+	 * 
+	 * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+	 */
+	public enum LDAConfig {
+		/**
+		 * Maximum number of EM iterations
+		 */
 		MAX_ITERATIONS {
 			@Override
 			public Integer defaultValue() {
 				return 10;
 			}
 		},
+		/**
+		 * The topic dirichlet parameter
+		 */
 		ALPHA {
 			@Override
 			public Double defaultValue() {
 				return 0.3d;
 			}
 		},
+		/**
+		 * Maximum number of iterations of the variational E step
+		 */
 		VAR_MAX_ITERATIONS {
 			@Override
 			public Integer defaultValue() {
 				return 10;
 			}
 		},
+		/**
+		 * The initialisation strategy for beta
+		 */
 		INIT_STRATEGY {
 
 			@Override
@@ -75,6 +119,9 @@ public class LDALearner {
 			}
 
 		},
+		/**
+		 * The relative change in likelihood below which EM is converged
+		 */
 		EM_CONVERGED {
 
 			@Override
@@ -83,6 +130,10 @@ public class LDALearner {
 			}
 
 		},
+		/**
+		 * The relative change in likelihood below which the variational E step
+		 * is converged
+		 */
 		VAR_EM_CONVERGED {
 
 			@Override
@@ -90,7 +141,38 @@ public class LDALearner {
 				return 1e-5;
 			}
 
+		},
+		/**
+		 * The number of documents in each batch of the online EM
+		 */
+		ONLINE_BATCH_SIZE {
+			@Override
+			public Integer defaultValue() {
+				return 256;
+			}
+		},
+		/**
+		 * The delay (tau0) of the online EM step size, (tau0 + t)^-kappa.
+		 */
+		ONLINE_TAU0 {
+			@Override
+			public Double defaultValue() {
+				return 1d;
+			}
+		},
+		/**
+		 * The forgetting rate (kappa) of the online EM step size, (tau0 +
+		 * t)^-kappa. Should be in (0.5, 1].
+		 */
+		ONLINE_KAPPA {
+			@Override
+			public Double defaultValue() {
+				return 0.7d;
+			}
 		};
+		/**
+		 * @return the default value of the option
+		 */
 		public abstract Object defaultValue();
 	}
 
@@ -113,6 +195,42 @@ public class LDALearner {
 		return val;
 	}
 
+	/**
+	 * Set a configuration parameter
+	 * 
+	 * @param key
+	 * @param value
+	 */
+	public void setConfig(LDAConfig key, Object value) {
+		this.config.put(key, value);
+	}
+
+	/**
+	 * Set the pool used to perform the E step in parallel. If the pool is
+	 * null (the default), documents are processed in the calling thread. The
+	 * {@link GlobalExecutorPool} can be used to process them in parallel.
+	 * 
+	 * @param pool
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @return the estimated model, or null if nothing has been estimated
+	 */
+	public LDAModel getModel() {
+		return model;
+	}
+
+	/**
+	 * @return the statistics of each iteration (or online batch) of the last
+	 *         estimation
+	 */
+	public List<LDAIterationStatistics> getStatistics() {
+		return statistics;
+	}
+
 	/**
 	 * initiates the EM algorithm on documents in the corpus
 	 * 
@@ -126,29 +244,149 @@ public class LDALearner {
 		// some variables
 		final double initialAlpha = (Double) this.getConfig(LDAConfig.ALPHA);
 		final LDABetaInitStrategy initStrat = this.getConfig(LDAConfig.INIT_STRATEGY);
+		final List<Document> documents = corpus.getDocuments();
+		final long nwords = countWords(documents);
 
 		// initialise the first state
-		final LDAModel state = new LDAModel(this.ntopics);
+		LDAModel state = new LDAModel(this.ntopics);
 		state.prepare(corpus);
 		state.setAlpha(initialAlpha);
 		initStrat.initModel(state, corpus);
 
-		final LDAVariationlState vstate = new LDAVariationlState(state);
-		while (modelConverged(vstate.state)) {
-			final LDAModel nextState = vstate.state.newInstance();
+		this.statistics = new ArrayList<LDAIterationStatistics>();
+		do {
+			final long start = System.currentTimeMillis();
+			final LDAModel nextState = state.newInstance();
 			nextState.setAlpha(initialAlpha);
-			for (final Document doc : corpus.getDocuments()) {
-				vstate.prepare(doc);
-				performE(doc, vstate); // updates the variation parameters given
-										// the current Beta
-				performM(doc, vstate, nextState); // updates the nextState given
-													// the variational
-													// parameters
+
+			// updates the variational parameters of each document given the
+			// current Beta, and the nextState given the variational parameters
+			performEM(documents, state, nextState);
+
+			nextState.iteration++;
+			state = nextState;
+
+			statistics.add(new LDAIterationStatistics(state.iteration, documents.size(), nwords,
+					state.likelihood, System.currentTimeMillis() - start));
+		} while (!modelConverged(state));
+
+		this.model = state;
+	}
+
+	/**
+	 * Estimate the model using online (stepwise) EM over a stream of
+	 * documents. The documents are consumed in batches of
+	 * {@link LDAConfig#ONLINE_BATCH_SIZE}; the sufficient statistics of each
+	 * batch are estimated using the current model and blended into the model
+	 * with a step size of (tau0 + t)^-kappa. Only a single batch of documents
+	 * is held in memory at any time.
+	 * 
+	 * @param documents
+	 *            the documents
+	 * @param vocabularySize
+	 *            the size of the vocabulary
+	 * @param corpusSize
+	 *            the (approximate) total number of documents in the stream,
+	 *            used to scale the batch statistics
+	 */
+	public void estimateOnline(Iterator<? extends Document> documents, int vocabularySize, long corpusSize) {
+		final double initialAlpha = (Double) this.getConfig(LDAConfig.ALPHA);
+		final LDABetaInitStrategy initStrat = this.getConfig(LDAConfig.INIT_STRATEGY);
+		final int batchSize = (Integer) this.getConfig(LDAConfig.ONLINE_BATCH_SIZE);
+		final double tau0 = (Double) this.getConfig(LDAConfig.ONLINE_TAU0);
+		final double kappa = (Double) this.getConfig(LDAConfig.ONLINE_KAPPA);
+
+		final LDAModel state = new LDAModel(this.ntopics);
+		state.prepare(vocabularySize);
+		state.setAlpha(initialAlpha);
+		initStrat.initModel(state, new Corpus(vocabularySize));
+
+		this.statistics = new ArrayList<LDAIterationStatistics>();
+		final List<Document> batch = new ArrayList<Document>(batchSize);
+		while (documents.hasNext()) {
+			batch.clear();
+			while (batch.size() < batchSize && documents.hasNext())
+				batch.add(documents.next());
+
+			final long start = System.currentTimeMillis();
+			final LDAModel batchState = state.newInstance();
+			performEM(batch, state, batchState);
+
+			final double rho = Math.pow(tau0 + state.iteration, -kappa);
+			final double batchLikelihood = batchState.likelihood;
+			batchState.scale(rho * corpusSize / batch.size());
+			batchState.likelihood = 0;
+			state.scale(1 - rho);
+			state.add(batchState);
+
+			state.iteration++;
+			state.oldLikelihood = state.likelihood;
+			state.likelihood = batchLikelihood;
+
+			statistics.add(new LDAIterationStatistics(state.iteration, batch.size(), countWords(batch),
+					batchLikelihood, System.currentTimeMillis() - start));
+		}
+
+		this.model = state;
+	}
+
+	/**
+	 * Perform the E step for each document using the current state, and
+	 * accumulate the resultant sufficient statistics and likelihood into the
+	 * next state. If a pool is set, the documents are split across threads and
+	 * each thread works with its own sufficient statistics, which are merged
+	 * into the next state in document order. The result is reproducible for a
+	 * given pool size, but the summation order differs from the sequential
+	 * case so it can differ from it by rounding error.
+	 */
+	private void performEM(final List<Document> documents, final LDAModel state, final LDAModel nextState) {
+		if (pool == null) {
+			final LDAVariationlState vstate = new LDAVariationlState(state);
+			for (final Document doc : documents) {
+				performE(doc, vstate);
+				performM(doc, vstate, nextState);
 				nextState.likelihood += vstate.likelihood;
 			}
-			nextState.iteration++;
-			vstate.state = nextState;
+			return;
 		}
+
+		final List<IndependentPair<Integer, LDAModel>> partials = new ArrayList<IndependentPair<Integer, LDAModel>>();
+		Parallel.forRange(0, documents.size(), 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				final LDAVariationlState vstate = new LDAVariationlState(state);
+				final LDAModel partial = state.newInstance();
+
+				for (int i = range.start; i < range.stop; i += range.incr) {
+					final Document doc = documents.get(i);
+					performE(doc, vstate);
+					performM(doc, vstate, partial);
+					partial.likelihood += vstate.likelihood;
+				}
+
+				synchronized (partials) {
+					partials.add(IndependentPair.pair(range.start, partial));
+				}
+			}
+		}, pool);
+
+		// merge in a fixed order so the result doesn't depend on scheduling
+		Collections.sort(partials, new Comparator<IndependentPair<Integer, LDAModel>>() {
+			@Override
+			public int compare(IndependentPair<Integer, LDAModel> o1, IndependentPair<Integer, LDAModel> o2) {
+				return o1.firstObject().compareTo(o2.firstObject());
+			}
+		});
+		for (final IndependentPair<Integer, LDAModel> partial : partials)
+			nextState.add(partial.secondObject());
+	}
+
+	private static long countWords(List<Document> documents) {
+		long nwords = 0;
+		for (final Document doc : documents)
+			for (final Entry wordCount : doc.getVector().entries())
+				nwords += wordCount.value;
+		return nwords;
 	}
 
 	private LDAVariationlState performE(Document doc, LDAVariationlState vstate) {
@@ -159,10 +397,10 @@ public class LDALearner {
 				double phiSum = 0;
 				final int word = wordCount.index;
 				final int count = wordCount.value;
-				for (int topicIndex = 0; topicIndex < vstate.phi.length; topicIndex++) {
+				for (int topicIndex = 0; topicIndex < ntopics; topicIndex++) {
 					vstate.oldphi[topicIndex] = vstate.phi[docWordIndex][topicIndex];
 					// If this word has been seen in this class before
-					if (vstate.state.topicWord[topicIndex][docWordIndex] > 0) {
+					if (vstate.state.topicWord[topicIndex][word] > 0) {
 						// Update phi
 						// Remember this phi is actually the same value for
 						// every instance of thisparticular word.
@@ -179,9 +417,9 @@ public class LDALearner {
 								logBeta +
 										Gamma.digamma(vstate.varGamma[topicIndex]);
 					} else {
-						// if not, \Beta_wi = ETA (very small) so log \Beta_wi
-						// ~= -100 (ETA = 10-34)
-						vstate.phi[docWordIndex][topicIndex] = Gamma.digamma(vstate.varGamma[topicIndex]) - 100;
+						// if not, \Beta_wi = ETA (very small)
+						vstate.phi[docWordIndex][topicIndex] = Gamma.digamma(vstate.varGamma[topicIndex])
+								+ UNSEEN_WORD_LOG_BETA;
 					}
 					if (topicIndex == 0) {
 						phiSum = vstate.phi[docWordIndex][topicIndex];
@@ -195,7 +433,7 @@ public class LDALearner {
 								vstate.phi[docWordIndex][topicIndex]);
 					}
 				}
-				for (int topicIndex = 0; topicIndex < vstate.phi.length; topicIndex++) {
+				for (int topicIndex = 0; topicIndex < ntopics; topicIndex++) {
 					// Replace log phi with the normalised phi
 					// normalise a given word's phi summing over all i in eqn 16
 					vstate.phi[docWordIndex][topicIndex] = Math.exp(
@@ -222,9 +460,9 @@ public class LDALearner {
 		final double EM_CONVERGED = (Double) this.getConfig(LDAConfig.EM_CONVERGED);
 		final int MAX_ITER = (Integer) this.getConfig(LDAConfig.MAX_ITERATIONS);
 		// if likelihood ~= oldLikelihood then this value will approach 0.
-		final double converged = (model.likelihood - model.oldLikelihood) / model.oldLikelihood;
-		final boolean liklihoodSettled = ((converged < EM_CONVERGED) || (model.iteration <= 2));
-		final boolean maxIterExceeded = model.iteration > MAX_ITER;
+		final double converged = Math.abs((model.likelihood - model.oldLikelihood) / model.oldLikelihood);
+		final boolean liklihoodSettled = (converged < EM_CONVERGED) && (model.iteration > 2);
+		final boolean maxIterExceeded = model.iteration >= MAX_ITER;
 
 		return liklihoodSettled || maxIterExceeded;
 	}
@@ -233,9 +471,9 @@ public class LDALearner {
 		final double EM_CONVERGED = (Double) this.getConfig(LDAConfig.VAR_EM_CONVERGED);
 		final int MAX_ITER = (Integer) this.getConfig(LDAConfig.VAR_MAX_ITERATIONS);
 		// if likelihood ~= oldLikelihood then this value will approach 0.
-		final double converged = (vstate.likelihood - vstate.oldLikelihood) / vstate.oldLikelihood;
-		final boolean liklihoodSettled = ((converged < EM_CONVERGED) || (vstate.iteration <= 2));
-		final boolean maxIterExceeded = vstate.iteration > MAX_ITER;
+		final double converged = Math.abs((vstate.likelihood - vstate.oldLikelihood) / vstate.oldLikelihood);
+		final boolean liklihoodSettled = (converged < EM_CONVERGED) && (vstate.iteration > 2);
+		final boolean maxIterExceeded = vstate.iteration >= MAX_ITER;
 
 		return liklihoodSettled || maxIterExceeded;
 	}
@@ -249,14 +487,16 @@ public class LDALearner {
 	 * @param nextState
 	 */
 	private void performM(Document d, LDAVariationlState vstate, LDAModel nextState) {
-
+		int docWordIndex = 0;
 		for (final Entry entry : d.values.entries()) {
+			final int wordIndex = entry.index;
+			final int count = entry.value;
 			for (int topicIndex = 0; topicIndex < ntopics; topicIndex++) {
-				final int wordIndex = entry.index;
-				final int count = entry.value;
-				nextState.incTopicWord(topicIndex, wordIndex, count * vstate.phi[wordIndex][topicIndex]);
-				nextState.incTopicTotal(topicIndex, count);
+				final double expected = count * vstate.phi[docWordIndex][topicIndex];
+				nextState.incTopicWord(topicIndex, wordIndex, expected);
+				nextState.incTopicTotal(topicIndex, expected);
 			}
+			docWordIndex++;
 		}
 	}
 
@@ -273,57 +513,54 @@ public class LDALearner {
 	 */
 	public double computeLikelihood(Document doc, LDAVariationlState vstate) {
 		double likelihood = 0;
+		final double alpha = vstate.state.alpha;
 
 		// Prepare some variables we need
 		double sumVarGamma = 0;
-		double sumDiGamma = 0;
 		for (int topicIndex = 0; topicIndex < ntopics; topicIndex++) {
 			sumVarGamma += vstate.varGamma[topicIndex];
 			vstate.digamma[topicIndex] = Gamma
 					.digamma(vstate.varGamma[topicIndex]);
-			sumDiGamma += vstate.digamma[topicIndex];
 		}
+		final double digammaSum = Gamma.digamma(sumVarGamma);
+
 		// first we sum the parameters which don't rely on iteration through the
-		// classes or
-		// iteration through the documents
-
-		likelihood += Gamma.logGamma(vstate.state.alpha * ntopics) - // eqn (15)
-																		// line
-																		// 1
-				Gamma.logGamma(vstate.state.alpha) * ntopics + // eqn (15) line
-																// 1
+		// classes or iteration through the documents
+		likelihood += Gamma.logGamma(alpha * ntopics) - // eqn (15) line 1
+				Gamma.logGamma(alpha) * ntopics - // eqn (15) line 1
 				Gamma.logGamma(sumVarGamma); // eqn (15) line 4
 		for (int topicIndex = 0; topicIndex < ntopics; topicIndex++) {
 			// Now add the things that just need an interation over k
-			// eqn (15) line 4
-			final double topicGammaDiff = vstate.digamma[topicIndex] - sumDiGamma;
-			likelihood += Gamma.logGamma(vstate.varGamma[topicIndex]) - (vstate.varGamma[topicIndex] - 1)
-					* topicGammaDiff;
+			final double topicGammaDiff = vstate.digamma[topicIndex] - digammaSum;
+			likelihood += (alpha - 1) * topicGammaDiff + // eqn (15) line 1
+					Gamma.logGamma(vstate.varGamma[topicIndex]) - // eqn (15) line 4
+					(vstate.varGamma[topicIndex] - 1) * topicGammaDiff;
 			int wordIndex = 0;
 			for (final Entry wordCount : doc.getVector().entries()) {
 				final int word = wordCount.index;
 				final int count = wordCount.value;
-				final double logBeta = Math.log(
-						vstate.state.topicWord[topicIndex][word]) -
-						Math.log(vstate.state.topicTotal[topicIndex]
-								);
+				final double phi = vstate.phi[wordIndex][topicIndex];
+				wordIndex++;
+
+				if (phi <= 0)
+					continue;
+
+				final double topicWord = vstate.state.topicWord[topicIndex][word];
+				// \Beta_wi = ETA (very small) for unseen words, as in the E step
+				final double logBeta = topicWord > 0 ?
+						Math.log(topicWord) - Math.log(vstate.state.topicTotal[topicIndex]) :
+						UNSEEN_WORD_LOG_BETA;
 				likelihood +=
 						// Count because these sums are over N and
 						// the sum of the counts of each unique word is == N
-						count * (
-								// Each of these lines happens to multiply by
-								// the current word's phi
-								vstate.phi[wordIndex][topicIndex] * (
+						count * phi * (
 								// eqn (15) line 2
 								topicGammaDiff +
 										// eqn (15) line 3
-										count * logBeta -
+										logBeta -
 								// eqn (15) line 5
-								Math.log(vstate.phi[wordIndex][topicIndex]
-											)
-								)
+								Math.log(phi)
 								);
-				wordIndex++;
 			}
 		}
 		return likelihood;
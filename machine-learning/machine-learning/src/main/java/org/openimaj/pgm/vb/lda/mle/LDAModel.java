@@ -118,6 +118,57 @@ public class LDAModel{
 		this.alpha = initialAlpha;
 	}
 
+	/**
+	 * Add the sufficient statistics and likelihood of another model to this
+	 * one. The other model must have the same number of topics and vocabulary
+	 * size.
+	 * 
+	 * @param other
+	 *            the model to add
+	 */
+	public void add(LDAModel other) {
+		for (int topicIndex = 0; topicIndex < ntopics; topicIndex++) {
+			final double[] src = other.topicWord[topicIndex];
+			final double[] dst = this.topicWord[topicIndex];
+			for (int wordIndex = 0; wordIndex < dst.length; wordIndex++) {
+				dst[wordIndex] += src[wordIndex];
+			}
+			this.topicTotal[topicIndex] += other.topicTotal[topicIndex];
+		}
+		this.likelihood += other.likelihood;
+	}
+
+	/**
+	 * Multiply the sufficient statistics by a constant
+	 * 
+	 * @param scalar
+	 *            the constant
+	 */
+	public void scale(double scalar) {
+		for (int topicIndex = 0; topicIndex < ntopics; topicIndex++) {
+			final double[] tw = this.topicWord[topicIndex];
+			for (int wordIndex = 0; wordIndex < tw.length; wordIndex++) {
+				tw[wordIndex] *= scalar;
+			}
+			this.topicTotal[topicIndex] *= scalar;
+		}
+	}
+
+	/**
+	 * @return the number of iterations of EM (or batches of online EM) that
+	 *         produced this model
+	 */
+	public int getIteration() {
+		return iteration;
+	}
+
+	/**
+	 * @return the likelihood of the data used to estimate this model
+	 */
+	public double getLikelihood() {
+		return likelihood;
+	}
+
 	/**
 	 * This method also swaps the likelihoods (i.e. oldLikelihood == likelihood, likelhood = 0)
 	 * @return a blank copy with unset alpha matching the current model's configuration 
@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.annotation.basic;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.feature.IdentityFeatureExtractor;
+import org.openimaj.knn.FloatNearestNeighboursExact;
+import org.openimaj.knn.approximate.FloatNearestNeighboursKDTree;
+import org.openimaj.ml.annotation.AnnotatedObject;
+import org.openimaj.ml.annotation.ScoredAnnotation;
+import org.openimaj.util.comparator.DistanceComparator;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for the {@link KNNAnnotator}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class KNNAnnotatorTest {
+	private static final DistanceComparator<float[]> SQUARED_EUCLIDEAN = new DistanceComparator<float[]>() {
+		@Override
+		public double compare(float[] o1, float[] o2) {
+			double d = 0;
+			for (int i = 0; i < o1.length; i++)
+				d += (o1[i] - o2[i]) * (o1[i] - o2[i]);
+			return d;
+		}
+
+		@Override
+		public boolean isDistance() {
+			return true;
+		}
+	};
+
+	private List<AnnotatedObject<float[], Integer>> training;
+	private List<float[]> queries;
+	private List<Integer> expected;
+
+	/**
+	 * Create some well separated clusters of points
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(0);
+
+		training = new ArrayList<AnnotatedObject<float[], Integer>>();
+		queries = new ArrayList<float[]>();
+		expected = new ArrayList<Integer>();
+		for (int i = 0; i < 500; i++) {
+			final int cls = i % 5;
+			final float[] pt = { cls * 10 + (float) rng.nextGaussian(), (float) rng.nextGaussian() };
+
+			if (i < 400)
+				training.add(AnnotatedObject.create(pt, cls));
+			else {
+				queries.add(pt);
+				expected.add(cls);
+			}
+		}
+	}
+
+	private KNNAnnotator<float[], Integer, float[]> createAnnotator() {
+		final KNNAnnotator<float[], Integer, float[]> ann = KNNAnnotator.create(
+				new IdentityFeatureExtractor<float[]>(), SQUARED_EUCLIDEAN, 5);
+		ann.train(training);
+		return ann;
+	}
+
+	private void checkBatch(KNNAnnotator<float[], Integer, float[]> ann) {
+		checkBatch(ann, ann.annotateAll(queries));
+		checkBatch(ann, ann.annotateAll(queries, GlobalExecutorPool.getPool()));
+	}
+
+	private void checkBatch(KNNAnnotator<float[], Integer, float[]> ann, List<List<ScoredAnnotation<Integer>>> results) {
+		assertEquals(queries.size(), results.size());
+
+		for (int i = 0; i < queries.size(); i++) {
+			final List<ScoredAnnotation<Integer>> single = ann.annotate(queries.get(i));
+
+			assertEquals(1, results.get(i).size());
+			assertEquals(expected.get(i), results.get(i).get(0).annotation);
+			assertEquals(single.get(0).annotation, results.get(i).get(0).annotation);
+			assertEquals(1f, results.get(i).get(0).confidence, 0f);
+		}
+	}
+
+	/**
+	 * Test the default exact index
+	 */
+	@Test
+	public void testDefaultIndex() {
+		checkBatch(createAnnotator());
+	}
+
+	/**
+	 * Test with an exact flat-array index from a factory
+	 */
+	@Test
+	public void testExactFactory() {
+		final KNNAnnotator<float[], Integer, float[]> ann = createAnnotator();
+		ann.setNearestNeighboursFactory(new FloatNearestNeighboursExact.Factory());
+
+		checkBatch(ann);
+	}
+
+	/**
+	 * Test with a KD-Tree ensemble index from a factory
+	 */
+	@Test
+	public void testKDTreeFactory() {
+		final KNNAnnotator<float[], Integer, float[]> ann = createAnnotator();
+		ann.setNearestNeighboursFactory(new FloatNearestNeighboursKDTree.Factory());
+
+		checkBatch(ann);
+	}
+
+	/**
+	 * Test that requesting more neighbours than training examples only
+	 * considers the real examples
+	 */
+	@Test
+	public void testLargeK() {
+		final KNNAnnotator<float[], Integer, float[]> ann = KNNAnnotator.create(
+				new IdentityFeatureExtractor<float[]>(), SQUARED_EUCLIDEAN, 10);
+		ann.train(AnnotatedObject.create(new float[] { 0, 0 }, 1));
+		ann.train(AnnotatedObject.create(new float[] { 1, 1 }, 2));
+
+		final List<ScoredAnnotation<Integer>> result = ann.annotate(new float[] { 0, 0 });
+		assertEquals(2, result.size());
+		assertEquals(0.5f, result.get(0).confidence, 0f);
+	}
+}
@@ -29,13 +29,21 @@
  */
 package org.openimaj.pgm.vb.lda.mle;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.io.IOException;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
-import org.openimaj.pgm.util.SimpleCorpusReader;
 import org.openimaj.pgm.util.Corpus;
 import org.openimaj.pgm.util.CorpusReader;
+import org.openimaj.pgm.util.Document;
+import org.openimaj.pgm.util.SimpleCorpusReader;
+import org.openimaj.pgm.vb.lda.mle.LDALearner.LDAConfig;
+import org.openimaj.util.parallel.GlobalExecutorPool;
 
 /**
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
@@ -55,4 +63,89 @@ public class TestLDAMLE {
 		LDALearner learner = new LDALearner(10);
 		learner.estimate(corpus);
 	}
+
+	/**
+	 * Create a corpus of documents, each drawn from two of four topics which
+	 * each have their own block of ten words
+	 */
+	private static Corpus createSyntheticCorpus(int ndocs, int seed) {
+		final Random rng = new Random(seed);
+		final Corpus corpus = new Corpus(40);
+
+		for (int i = 0; i < ndocs; i++) {
+			final int[] counts = new int[40];
+			final int t1 = rng.nextInt(4);
+			final int t2 = rng.nextInt(4);
+			for (int w = 0; w < 30; w++)
+				counts[(rng.nextBoolean() ? t1 : t2) * 10 + rng.nextInt(10)]++;
+
+			final Document doc = new Document(corpus);
+			for (int w = 0; w < counts.length; w++)
+				if (counts[w] > 0)
+					doc.values.set(w, counts[w]);
+			corpus.addDocument(doc);
+		}
+
+		return corpus;
+	}
+
+	/**
+	 * Check that each topic puts almost all its mass on one block of words
+	 */
+	private static void checkTopics(LDAModel model) {
+		for (int topic = 0; topic < model.ntopics; topic++) {
+			double max = 0;
+			for (int block = 0; block < 4; block++) {
+				double mass = 0;
+				for (int w = block * 10; w < (block + 1) * 10; w++)
+					mass += model.topicWord[topic][w] / model.topicTotal[topic];
+				max = Math.max(max, mass);
+			}
+			assertTrue(max > 0.95);
+		}
+	}
+
+	/**
+	 * Test that the parallel EM gives the same result as the sequential EM and
+	 * recovers the topics
+	 */
+	@Test
+	public void testParallelEstimation() {
+		final Corpus synthetic = createSyntheticCorpus(1000, 1);
+
+		final LDALearner sequential = new LDALearner(4);
+		sequential.setConfig(LDAConfig.INIT_STRATEGY, new LDABetaInitStrategy.RandomBetaInit(1));
+		sequential.setConfig(LDAConfig.MAX_ITERATIONS, 30);
+		sequential.estimate(synthetic);
+
+		final LDALearner parallel = new LDALearner(4);
+		parallel.setConfig(LDAConfig.INIT_STRATEGY, new LDABetaInitStrategy.RandomBetaInit(1));
+		parallel.setConfig(LDAConfig.MAX_ITERATIONS, 30);
+		parallel.setThreadPool(GlobalExecutorPool.getPool());
+		parallel.estimate(synthetic);
+
+		final List<LDAIterationStatistics> stats = parallel.getStatistics();
+		assertEquals(sequential.getStatistics().size(), stats.size());
+		assertEquals(sequential.getModel().getLikelihood(), parallel.getModel().getLikelihood(),
+				1e-6 * Math.abs(sequential.getModel().getLikelihood()));
+		assertTrue(stats.get(stats.size() - 1).perplexity() < stats.get(0).perplexity());
+
+		checkTopics(parallel.getModel());
+	}
+
+	/**
+	 * Test that the online EM recovers the topics from a stream of documents
+	 */
+	@Test
+	public void testOnlineEstimation() {
+		final Corpus synthetic = createSyntheticCorpus(3000, 2);
+
+		final LDALearner learner = new LDALearner(4);
+		learner.setConfig(LDAConfig.INIT_STRATEGY, new LDABetaInitStrategy.RandomBetaInit(1));
+		learner.setConfig(LDAConfig.ONLINE_BATCH_SIZE, 100);
+		learner.estimateOnline(synthetic.getDocuments().iterator(), synthetic.vocabularySize(), synthetic.size());
+
+		assertEquals(30, learner.getStatistics().size());
+		checkTopics(learner.getModel());
+	}
 }
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.knn.pq;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.data.RandomData;
+import org.openimaj.knn.FloatNearestNeighboursExact;
+import org.openimaj.util.pair.IntFloatPair;
+
+/**
+ * Tests for the {@link FloatProductQuantiser}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class FloatProductQuantiserTest {
+	private static final int M = 4;
+	private static final int SUB_DIMS = 4;
+	private static final int CENTROIDS = 200;
+
+	private FloatProductQuantiser pq;
+	private float[][] data;
+	private float[][] queries;
+
+	/**
+	 * Create a quantiser with random centroids, and some random data
+	 */
+	@Before
+	public void setup() {
+		final FloatNearestNeighboursExact[] assigners = new FloatNearestNeighboursExact[M];
+		for (int i = 0; i < M; i++)
+			assigners[i] = new FloatNearestNeighboursExact(RandomData.getRandomFloatArray(CENTROIDS, SUB_DIMS, -1,
+					1, i));
+
+		pq = new FloatProductQuantiser(assigners);
+		data = RandomData.getRandomFloatArray(500, M * SUB_DIMS, -1, 1, 42);
+		queries = RandomData.getRandomFloatArray(10, M * SUB_DIMS, -1, 1, 43);
+	}
+
+	/**
+	 * Test that summing the distance tables over a code (offset by 128) gives
+	 * the distances computed by {@link FloatADCNearestNeighbours}
+	 */
+	@Test
+	public void testDistanceTables() {
+		assertEquals(M, pq.numSubVectors());
+
+		final byte[][] codes = new byte[data.length][];
+		for (int i = 0; i < data.length; i++)
+			codes[i] = pq.quantise(data[i]);
+
+		final FloatADCNearestNeighbours adc = new FloatADCNearestNeighbours(pq, codes, M * SUB_DIMS);
+
+		for (final float[] query : queries) {
+			final float[][] tables = pq.computeDistanceTables(query);
+
+			assertEquals(M, tables.length);
+			for (final float[] table : tables)
+				assertEquals(CENTROIDS, table.length);
+
+			final List<IntFloatPair> all = adc.searchKNN(query, data.length);
+			assertEquals(data.length, all.size());
+
+			for (final IntFloatPair p : all) {
+				float distance = 0;
+				for (int j = 0; j < M; j++)
+					distance += tables[j][codes[p.first][j] + 128];
+
+				assertEquals(p.second, distance, 1e-5 * Math.max(1, p.second));
+			}
+		}
+	}
+}
@@ -0,0 +1,452 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.text.nlp;
+
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringEscapeUtils;
+
+/**
+ * An alternative engine for the {@link TweetTokeniser} and
+ * {@link EntityTweetTokeniser} grammars which produces exactly the same tokens,
+ * but is considerably cheaper to run over large numbers of tweets.
+ * <p>
+ * The original tokenisers combine all the protecting patterns into one
+ * large alternation and search it with {@link Matcher#find()}. Because a number
+ * of the patterns rely on look-ahead and word boundaries they cannot be turned
+ * into a true DFA; instead each token class is compiled separately and the
+ * scanner merges the leftmost match of each class, preferring the earliest
+ * class on ties (which is exactly the semantics of the alternation). The
+ * position of the next match of each class is cached and only recomputed once
+ * the scanner moves past it. Each class is only attempted at positions whose
+ * character can start one of its matches (a table which is computed lazily by
+ * probing the compiled pattern), and every class can declare a set of
+ * characters of which at least one must appear in any of its matches; classes
+ * whose required characters do not occur in the remainder of the text are
+ * never searched. This removes most of the expensive backtracking (for
+ * example in the emoticon and email patterns) on typical tweets.
+ * <p>
+ * Tokens are written as offsets into a reusable {@link TweetTokenBuffer}
+ * rather than as lists of {@link String}s. Instances of this class are
+ * immutable and can be shared between threads; the buffers cannot.
+ *
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ */
+public class CompiledTweetTokeniser {
+	/**
+	 * A single class of protected token: a regular expression, together with
+	 * an optional set of characters at least one of which must appear in any
+	 * match of the expression.
+	 *
+	 * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+	 */
+	public static class TokenClass {
+		final String pattern;
+		final String requiredChars;
+
+		/**
+		 * Construct a token class with no required characters
+		 *
+		 * @param pattern
+		 *            the regular expression
+		 */
+		public TokenClass(String pattern) {
+			this(pattern, null);
+		}
+
+		/**
+		 * Construct a token class
+		 *
+		 * @param pattern
+		 *            the regular expression
+		 * @param requiredChars
+		 *            characters of which at least one appears in every match
+		 *            of the pattern (taking into account case-insensitivity),
+		 *            or null if there is no such set
+		 */
+		public TokenClass(String pattern, String requiredChars) {
+			this.pattern = pattern;
+			this.requiredChars = requiredChars;
+		}
+	}
+
+	private static final int NO_MATCH = Integer.MAX_VALUE;
+	private static final int MAX_CLASSES = 31;
+	private static final int COMPUTED = 1 << MAX_CLASSES;
+	private static final String[] PROBE_CONTEXTS = { "", " ", "a" };
+	private static final int DEFAULT_FLAGS = Pattern.UNICODE_CASE | Pattern.CASE_INSENSITIVE;
+
+	private static CompiledTweetTokeniser tweetTokeniser;
+	private static CompiledTweetTokeniser entityTweetTokeniser;
+
+	private final Pattern[] patterns;
+	private final boolean[] matchesEmpty;
+	private final boolean[] unconstrained;
+	private final int[] requiredMasks;
+	private final int[] firstCharMasks;
+
+	/**
+	 * Construct a tokeniser from the given token classes. The classes are
+	 * tried in order, so earlier classes take precedence over later ones when
+	 * they match at the same position.
+	 *
+	 * @param classes
+	 *            the protected token classes
+	 * @param flags
+	 *            the {@link Pattern} flags used to compile each class
+	 */
+	public CompiledTweetTokeniser(TokenClass[] classes, int flags) {
+		if (classes.length > MAX_CLASSES)
+			throw new IllegalArgumentException("At most " + MAX_CLASSES + " token classes are supported");
+
+		this.patterns = new Pattern[classes.length];
+		this.matchesEmpty = new boolean[classes.length];
+		this.unconstrained = new boolean[classes.length];
+		this.requiredMasks = new int[Character.MAX_VALUE + 1];
+		this.firstCharMasks = new int[Character.MAX_VALUE + 1];
+
+		for (int k = 0; k < classes.length; k++) {
+			patterns[k] = Pattern.compile(classes[k].pattern, flags);
+			matchesEmpty[k] = patterns[k].matcher("").lookingAt();
+
+			final String required = classes[k].requiredChars;
+			if (required == null) {
+				unconstrained[k] = true;
+			} else {
+				for (int j = 0; j < required.length(); j++)
+					requiredMasks[required.charAt(j)] |= 1 << k;
+			}
+		}
+	}
+
+	/**
+	 * @return a tokeniser with the same grammar as {@link TweetTokeniser}
+	 */
+	public static synchronized CompiledTweetTokeniser tweetTokeniser() {
+		if (tweetTokeniser == null) {
+			tweetTokeniser = new CompiledTweetTokeniser(new TokenClass[] {
+					new TokenClass(TweetTokeniser.twitterPart.patternString(), "@\uFF20#\uFF03rR"),
+					new TokenClass(TweetTokeniser.emoticons.patternString()),
+					new TokenClass(TweetTokeniser.truncatedURL.patternString(), ":"),
+					new TokenClass(TweetTokeniser.url.patternString(), "/wW"),
+					new TokenClass(TweetTokeniser.email.patternString(), "@"),
+					new TokenClass(TweetTokeniser.entity.patternString(), "&"),
+					new TokenClass(TweetTokeniser.time.patternString(), ":"),
+					new TokenClass(TweetTokeniser.number.patternString(), "0123456789"),
+					new TokenClass(TweetTokeniser.embedded.patternString(), "'\u2019\u2018\u201B-"),
+					new TokenClass(TweetTokeniser.punctuation.patternString()),
+					new TokenClass(TweetTokeniser.abbrev.patternString(), "."),
+					new TokenClass(TweetTokeniser.Separators, "-\u2015"),
+					new TokenClass(TweetTokeniser.Decorations, "\u266b"),
+			}, DEFAULT_FLAGS);
+		}
+		return tweetTokeniser;
+	}
+
+	/**
+	 * @return a tokeniser with the same grammar as {@link EntityTweetTokeniser}
+	 */
+	public static synchronized CompiledTweetTokeniser entityTweetTokeniser() {
+		if (entityTweetTokeniser == null) {
+			entityTweetTokeniser = new CompiledTweetTokeniser(new TokenClass[] {
+					new TokenClass(EntityTweetTokeniser.twitterPart.patternString(), "@\uFF20#\uFF03rR"),
+					new TokenClass(EntityTweetTokeniser.emoticons.patternString()),
+					new TokenClass(EntityTweetTokeniser.url.patternString(), "/wW"),
+					new TokenClass(EntityTweetTokeniser.email.patternString(), "@"),
+					new TokenClass(EntityTweetTokeniser.entity.patternString(), "&"),
+					new TokenClass(EntityTweetTokeniser.time.patternString(), ":"),
+					new TokenClass(EntityTweetTokeniser.number.patternString(), "0123456789"),
+					new TokenClass(EntityTweetTokeniser.punctuation.patternString()),
+					new TokenClass(EntityTweetTokeniser.abbrev.patternString(), "."),
+					new TokenClass(EntityTweetTokeniser.Separators, "-\u2015"),
+					new TokenClass(EntityTweetTokeniser.Decorations, "\u266b"),
+			}, DEFAULT_FLAGS);
+		}
+		return entityTweetTokeniser;
+	}
+
+	/**
+	 * Tokenise the given string into a new buffer
+	 *
+	 * @param s
+	 *            the string to tokenise
+	 * @return the buffer containing the tokens
+	 * @throws UnsupportedEncodingException
+	 */
+	public TweetTokenBuffer tokenise(String s) throws UnsupportedEncodingException {
+		return tokenise(s, new TweetTokenBuffer());
+	}
+
+	/**
+	 * Tokenise the given string into the given buffer. Any tokens already in
+	 * the buffer are discarded.
+	 *
+	 * @param s
+	 *            the string to tokenise
+	 * @param buffer
+	 *            the buffer to fill
+	 * @return the buffer
+	 * @throws UnsupportedEncodingException
+	 */
+	public TweetTokenBuffer tokenise(String s, TweetTokenBuffer buffer) throws UnsupportedEncodingException {
+		final String text = normalise(s);
+		buffer.reset(text);
+
+		final int nClasses = patterns.length;
+		final Matcher[] matchers = buffer.matchers(this, patterns);
+		final int[] nextStart = buffer.nextStart;
+		final int[] nextEnd = buffer.nextEnd;
+		final int[] lastRequired = buffer.lastRequired;
+
+		computeLastRequired(text, lastRequired);
+		for (int k = 0; k < nClasses; k++) {
+			matchers[k].reset(text);
+			matchers[k].useTransparentBounds(true);
+			matchers[k].useAnchoringBounds(false);
+			nextStart[k] = -1;
+		}
+
+		final int length = text.length();
+		int unprotectedStart = 0;
+		int searchFrom = 0;
+		while (searchFrom <= length) {
+			int best = -1;
+			int bestStart = NO_MATCH;
+			for (int k = 0; k < nClasses; k++) {
+				if (nextStart[k] < searchFrom) {
+					nextStart[k] = find(k, matchers[k], text, searchFrom, lastRequired[k]);
+					if (nextStart[k] != NO_MATCH)
+						nextEnd[k] = matchers[k].end();
+				}
+
+				if (nextStart[k] < bestStart) {
+					bestStart = nextStart[k];
+					best = k;
+				}
+			}
+
+			if (best < 0)
+				break;
+
+			final int bestEnd = nextEnd[best];
+			addUnprotected(text, unprotectedStart, bestStart, buffer);
+			buffer.add(bestStart, bestEnd, true);
+
+			unprotectedStart = bestEnd;
+			searchFrom = bestEnd == bestStart ? bestEnd + 1 : bestEnd;
+		}
+		addUnprotected(text, unprotectedStart, length, buffer);
+
+		return buffer;
+	}
+
+	/**
+	 * Convenience method to tokenise the given string and return all tokens as
+	 * strings
+	 *
+	 * @param s
+	 *            the string to tokenise
+	 * @return the tokens
+	 * @throws UnsupportedEncodingException
+	 */
+	public List<String> getStringTokens(String s) throws UnsupportedEncodingException {
+		return tokenise(s).getStringTokens();
+	}
+
+	/**
+	 * Find the leftmost match of the k-th class starting at or after the given
+	 * position, leaving the matcher holding the match.
+	 *
+	 * @return the start of the match or {@link #NO_MATCH}
+	 */
+	private int find(int k, Matcher matcher, String text, int from, int lastRequired) {
+		if (matchesEmpty[k])
+			return matcher.find(from) ? matcher.start() : NO_MATCH;
+
+		final int length = text.length();
+		final int limit = Math.min(lastRequired, length - 1);
+		final int bit = 1 << k;
+		for (int p = from; p <= limit; p++) {
+			if ((firstCharMask(text.charAt(p)) & bit) != 0) {
+				matcher.region(p, length);
+				if (matcher.lookingAt())
+					return p;
+			}
+		}
+		return NO_MATCH;
+	}
+
+	/**
+	 * Get the mask of the classes that could start a match with the given
+	 * character, computing it if necessary. Concurrent computation of the same
+	 * entry is harmless as all threads will compute the same value.
+	 */
+	private int firstCharMask(char c) {
+		int mask = firstCharMasks[c];
+		if (mask == 0) {
+			mask = computeFirstCharMask(c) | COMPUTED;
+			firstCharMasks[c] = mask;
+		}
+		return mask;
+	}
+
+	/**
+	 * Probe each pattern with the character preceded by the start of the
+	 * input, a non-word character and a word character (which covers all the
+	 * distinctions that can be made by <code>^</code> and <code>\b</code>). If
+	 * the pattern neither matches nor needs to read beyond the character then
+	 * no match can start with it.
+	 */
+	private int computeFirstCharMask(char c) {
+		if (Character.isSurrogate(c))
+			return COMPUTED - 1;
+
+		int mask = 0;
+		for (final String context : PROBE_CONTEXTS) {
+			final String probe = context + c;
+			for (int k = 0; k < patterns.length; k++) {
+				if ((mask & (1 << k)) != 0)
+					continue;
+
+				final Matcher matcher = patterns[k].matcher(probe);
+				matcher.useTransparentBounds(true);
+				matcher.useAnchoringBounds(false);
+				matcher.region(context.length(), probe.length());
+				if (matcher.lookingAt() || matcher.hitEnd())
+					mask |= 1 << k;
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * For each class, find the last position in the text containing one of its
+	 * required characters. Classes without required characters can match
+	 * anywhere.
+	 */
+	private void computeLastRequired(String text, int[] lastRequired) {
+		int remaining = 0;
+		for (int k = 0; k < patterns.length; k++) {
+			if (unconstrained[k]) {
+				lastRequired[k] = text.length();
+			} else {
+				lastRequired[k] = -1;
+				remaining |= 1 << k;
+			}
+		}
+
+		for (int i = text.length() - 1; i >= 0 && remaining != 0; i--) {
+			int found = requiredMasks[text.charAt(i)] & remaining;
+			remaining &= ~found;
+			while (found != 0) {
+				final int k = Integer.numberOfTrailingZeros(found);
+				lastRequired[k] = i;
+				found &= found - 1;
+			}
+		}
+	}
+
+	/**
+	 * Split the unprotected region [start, end) on spaces. The text has been
+	 * normalised so that all whitespace runs are single spaces.
+	 */
+	private static void addUnprotected(String text, int start, int end, TweetTokenBuffer buffer) {
+		int tokenStart = -1;
+		for (int i = start; i < end; i++) {
+			if (text.charAt(i) == ' ') {
+				if (tokenStart >= 0) {
+					buffer.add(tokenStart, i, false);
+					tokenStart = -1;
+				}
+			} else if (tokenStart < 0) {
+				tokenStart = i;
+			}
+		}
+		if (tokenStart >= 0)
+			buffer.add(tokenStart, end, false);
+	}
+
+	/**
+	 * Apply the same normalisation as the {@link TweetTokeniser}: fix the
+	 * encoding, unescape html entities and squeeze all whitespace runs into a
+	 * single space.
+	 */
+	static String normalise(String s) throws UnsupportedEncodingException {
+		String text = s;
+		for (int i = 0; i < text.length(); i++) {
+			if (Character.isSurrogate(text.charAt(i))) {
+				text = new String(text.getBytes("UTF-8"), "UTF-8");
+				break;
+			}
+		}
+		text = StringEscapeUtils.unescapeHtml(text);
+
+		return squeezeWhitespace(text);
+	}
+
+	/**
+	 * Equivalent to <code>text.replaceAll("\\s+", " ")</code>
+	 */
+	private static String squeezeWhitespace(String text) {
+		final int length = text.length();
+		StringBuilder sb = null;
+		for (int i = 0; i < length; i++) {
+			final char c = text.charAt(i);
+			if (isWhitespace(c)) {
+				int j = i + 1;
+				while (j < length && isWhitespace(text.charAt(j)))
+					j++;
+
+				if (c != ' ' || j > i + 1) {
+					if (sb == null) {
+						sb = new StringBuilder(length);
+						sb.append(text, 0, i);
+					}
+				}
+				if (sb != null)
+					sb.append(' ');
+				i = j - 1;
+			} else if (sb != null) {
+				sb.append(c);
+			}
+		}
+		return sb == null ? text : sb.toString();
+	}
+
+	/**
+	 * The characters matched by <code>\s</code> in a {@link Pattern}
+	 */
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.text.nlp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A reusable buffer holding the output of a {@link CompiledTweetTokeniser}.
+ * Rather than creating a {@link String} per token, the tokens are represented
+ * as start and end offsets into the normalised text of the tweet, together
+ * with a flag indicating whether the token was protected by one of the token
+ * patterns. The backing arrays grow as required and are kept between calls to
+ * {@link CompiledTweetTokeniser#tokenise(String, TweetTokenBuffer)}, so a
+ * single buffer can be used to tokenise a whole stream of tweets without
+ * further allocation.
+ * <p>
+ * Instances are not thread-safe; use one buffer per thread.
+ *
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ */
+public class TweetTokenBuffer {
+	private static final int DEFAULT_CAPACITY = 32;
+
+	String text;
+	int[] starts;
+	int[] ends;
+	boolean[] protectedFlags;
+	int size;
+
+	// scanner state, kept here so it can be reused between calls
+	CompiledTweetTokeniser owner;
+	Matcher[] matchers;
+	int[] nextStart;
+	int[] nextEnd;
+	int[] lastRequired;
+
+	/**
+	 * Construct an empty buffer with the default capacity
+	 */
+	public TweetTokenBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Construct an empty buffer with the given initial capacity
+	 *
+	 * @param capacity
+	 *            the initial number of tokens that can be stored without
+	 *            resizing
+	 */
+	public TweetTokenBuffer(int capacity) {
+		capacity = Math.max(1, capacity);
+		this.starts = new int[capacity];
+		this.ends = new int[capacity];
+		this.protectedFlags = new boolean[capacity];
+	}
+
+	/**
+	 * Clear the buffer and set the text that offsets refer to
+	 *
+	 * @param text
+	 *            the normalised text
+	 */
+	void reset(String text) {
+		this.text = text;
+		this.size = 0;
+	}
+
+	/**
+	 * Get the per-class matchers for the given tokeniser, creating them if the
+	 * buffer was last used with a different tokeniser.
+	 */
+	Matcher[] matchers(CompiledTweetTokeniser tokeniser, Pattern[] patterns) {
+		if (owner != tokeniser) {
+			matchers = new Matcher[patterns.length];
+			for (int k = 0; k < patterns.length; k++)
+				matchers[k] = patterns[k].matcher("");
+			nextStart = new int[patterns.length];
+			nextEnd = new int[patterns.length];
+			lastRequired = new int[patterns.length];
+			owner = tokeniser;
+		}
+		return matchers;
+	}
+
+	/**
+	 * Append a token
+	 *
+	 * @param start
+	 *            the start offset (inclusive)
+	 * @param end
+	 *            the end offset (exclusive)
+	 * @param isProtected
+	 *            true if the token was matched by a protecting pattern
+	 */
+	void add(int start, int end, boolean isProtected) {
+		if (size == starts.length) {
+			final int newCapacity = starts.length * 2;
+			starts = Arrays.copyOf(starts, newCapacity);
+			ends = Arrays.copyOf(ends, newCapacity);
+			protectedFlags = Arrays.copyOf(protectedFlags, newCapacity);
+		}
+
+		starts[size] = start;
+		ends[size] = end;
+		protectedFlags[size] = isProtected;
+		size++;
+	}
+
+	/**
+	 * @return the normalised text that the token offsets refer to
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return the number of tokens in the buffer
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param i
+	 *            the token index
+	 * @return the start offset (inclusive) of the i-th token
+	 */
+	public int start(int i) {
+		return starts[i];
+	}
+
+	/**
+	 * @param i
+	 *            the token index
+	 * @return the end offset (exclusive) of the i-th token
+	 */
+	public int end(int i) {
+		return ends[i];
+	}
+
+	/**
+	 * @param i
+	 *            the token index
+	 * @return true if the i-th token was protected by one of the token patterns
+	 */
+	public boolean isProtected(int i) {
+		return protectedFlags[i];
+	}
+
+	/**
+	 * Get the text of the i-th token. This allocates a new {@link String}.
+	 *
+	 * @param i
+	 *            the token index
+	 * @return the token text
+	 */
+	public String token(int i) {
+		return text.substring(starts[i], ends[i]);
+	}
+
+	/**
+	 * @return all tokens as a {@link List} of {@link String}, in the same
+	 *         order as {@link TweetTokeniser#getStringTokens()}
+	 */
+	public List<String> getStringTokens() {
+		final List<String> tokens = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++)
+			tokens.add(token(i));
+		return tokens;
+	}
+
+	/**
+	 * @return all protected tokens as a {@link List} of {@link String}, in the
+	 *         same order as {@link TweetTokeniser#getProtectedStringTokens()}
+	 */
+	public List<String> getProtectedStringTokens() {
+		return getStringTokens(true);
+	}
+
+	/**
+	 * @return all unprotected tokens as a {@link List} of {@link String}, in
+	 *         the same order as
+	 *         {@link TweetTokeniser#getUnprotectedStringTokens()}
+	 */
+	public List<String> getUnprotectedStringTokens() {
+		return getStringTokens(false);
+	}
+
+	private List<String> getStringTokens(boolean isProtected) {
+		final List<String> tokens = new ArrayList<String>();
+		for (int i = 0; i < size; i++) {
+			if (protectedFlags[i] == isProtected)
+				tokens.add(token(i));
+		}
+		return tokens;
+	}
+}
@@ -0,0 +1,492 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.text.nlp.language;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.text.nlp.language.LanguageDetector.WeightedLocale;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * A high-throughput version of the {@link LanguageDetector} designed for
+ * classifying large numbers of short texts such as tweets.
+ * <p>
+ * Rather than multiplying a dense feature vector with the full naive-bayes
+ * matrix (which costs features &times; languages operations per text), the
+ * model is compiled into a single flat index in which the log-probabilities of
+ * every language are stored side-by-side for each feature. A text is scored by
+ * only visiting the rows of the features it actually contains. The byte-level
+ * tokeniser DFA outputs are also flattened into primitive arrays.
+ * <p>
+ * In the default (exact) mode the results are the same as those of
+ * {@link LanguageDetector#classify(String)}; the features are accumulated in
+ * the same order as the reference BLAS matrix product. Optionally, scoring can terminate
+ * early once the leading language can no longer be overtaken by any other
+ * language given the features that remain to be scored; the winning language
+ * is unaffected, and the confidence is computed from precomputed per-feature
+ * sums so it only differs from the exact value by rounding.
+ * <p>
+ * Results for short texts can be held in an LRU cache, which is effective for
+ * streams with many repeated messages (e.g. retweets). Instances are
+ * thread-safe, and the batch methods score texts in parallel.
+ *
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ */
+public class BatchLanguageDetector {
+	/**
+	 * The default maximum number of cached results
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 10000;
+
+	/**
+	 * The default maximum length of text for which results are cached
+	 */
+	public static final int DEFAULT_MAX_CACHED_LENGTH = 140;
+
+	/**
+	 * Number of features scored between checks for early termination
+	 */
+	private static final int TERMINATION_CHECK_INTERVAL = 8;
+
+	private final String[] classes;
+	private final int nClasses;
+	private final int nFeats;
+	private final int[] nextMove;
+	private final int[][] stateOutputs;
+	private final double[] prior;
+	private final double[] logProbs;
+	private final double[] featureRange;
+	private final double[] featureSum;
+	private final double priorSum;
+
+	private boolean earlyTermination = false;
+	private int maxCachedLength;
+	private final Map<String, WeightedLocale> cache;
+	private final ThreadLocal<Workspace> workspaces = new ThreadLocal<Workspace>() {
+		@Override
+		protected Workspace initialValue() {
+			return new Workspace();
+		}
+	};
+
+	/**
+	 * Construct with the given model. Early termination is disabled and
+	 * results for texts of up to {@value #DEFAULT_MAX_CACHED_LENGTH} characters
+	 * are cached in an LRU cache of size {@value #DEFAULT_CACHE_SIZE}.
+	 *
+	 * @param model
+	 *            the language model
+	 */
+	public BatchLanguageDetector(LanguageModel model) {
+		this(model, DEFAULT_CACHE_SIZE, DEFAULT_MAX_CACHED_LENGTH);
+	}
+
+	/**
+	 * Construct with the given model and cache settings.
+	 *
+	 * @param model
+	 *            the language model
+	 * @param cacheSize
+	 *            the maximum number of cached results; 0 disables caching
+	 * @param maxCachedLength
+	 *            the maximum length of text for which results are cached
+	 */
+	public BatchLanguageDetector(LanguageModel model, final int cacheSize, int maxCachedLength) {
+		this.classes = model.naiveBayesClasses;
+		this.nClasses = classes.length;
+		this.nFeats = model.naiveBayesNFeats;
+		this.nextMove = model.tk_nextmove;
+
+		final int nStates = nextMove.length >> 8;
+		this.stateOutputs = new int[nStates][];
+		for (int s = 0; s < nStates; s++)
+			stateOutputs[s] = model.tk_output.get(s);
+
+		this.prior = Arrays.copyOf(model.naiveBayesPC.getData(), nClasses);
+		double ps = 0;
+		for (int c = 0; c < nClasses; c++)
+			ps += prior[c];
+		this.priorSum = ps;
+
+		// the mtj matrix is column-major (features x classes); store the
+		// classes of each feature side-by-side
+		final double[] ptc = model.naiveBayesPTC.getData();
+		this.logProbs = new double[nFeats * nClasses];
+		this.featureRange = new double[nFeats];
+		this.featureSum = new double[nFeats];
+		for (int f = 0; f < nFeats; f++) {
+			double min = Double.MAX_VALUE;
+			double max = -Double.MAX_VALUE;
+			double sum = 0;
+			for (int c = 0; c < nClasses; c++) {
+				final double v = ptc[f + c * nFeats];
+				logProbs[f * nClasses + c] = v;
+				min = Math.min(min, v);
+				max = Math.max(max, v);
+				sum += v;
+			}
+			featureRange[f] = max - min;
+			featureSum[f] = sum;
+		}
+
+		this.maxCachedLength = maxCachedLength;
+		if (cacheSize > 0) {
+			this.cache = new LinkedHashMap<String, WeightedLocale>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, WeightedLocale> eldest) {
+					return size() > cacheSize;
+				}
+			};
+		} else {
+			this.cache = null;
+		}
+	}
+
+	/**
+	 * Enable or disable early termination of scoring once the best language
+	 * is decided.
+	 *
+	 * @param earlyTermination
+	 *            true to enable early termination
+	 */
+	public void setEarlyTermination(boolean earlyTermination) {
+		this.earlyTermination = earlyTermination;
+	}
+
+	/**
+	 * @return true if early termination is enabled
+	 */
+	public boolean isEarlyTermination() {
+		return earlyTermination;
+	}
+
+	/**
+	 * Classify the language of a single text
+	 *
+	 * @param text
+	 *            the text
+	 * @return the detected language
+	 */
+	public WeightedLocale classify(String text) {
+		return classify(text, workspaces.get());
+	}
+
+	/**
+	 * Classify the language of many texts in parallel using the global thread
+	 * pool.
+	 *
+	 * @param texts
+	 *            the texts
+	 * @return the detected languages, in the same order as the texts
+	 */
+	public WeightedLocale[] classify(List<String> texts) {
+		return classify(texts, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Classify the language of many texts in parallel using the given thread
+	 * pool.
+	 *
+	 * @param texts
+	 *            the texts
+	 * @param pool
+	 *            the thread pool
+	 * @return the detected languages, in the same order as the texts
+	 */
+	public WeightedLocale[] classify(final List<String> texts, ThreadPoolExecutor pool) {
+		final WeightedLocale[] results = new WeightedLocale[texts.size()];
+
+		Parallel.forRange(0, texts.size(), 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				final Workspace workspace = workspaces.get();
+				for (int i = range.start; i < range.stop; i += range.incr)
+					results[i] = classify(texts.get(i), workspace);
+			}
+		}, pool);
+
+		return results;
+	}
+
+	private WeightedLocale classify(String text, Workspace workspace) {
+		final boolean cacheable = cache != null && text.length() <= maxCachedLength;
+		if (cacheable) {
+			final WeightedLocale cached;
+			synchronized (cache) {
+				cached = cache.get(text);
+			}
+			if (cached != null)
+				return new WeightedLocale(cached.language, cached.confidence);
+		}
+
+		final int nnz = extractFeatures(text, workspace);
+		final WeightedLocale result = earlyTermination ? scoreEarly(workspace, nnz) : scoreExact(workspace, nnz);
+
+		if (cacheable) {
+			synchronized (cache) {
+				cache.put(text, new WeightedLocale(result.language, result.confidence));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Run the tokeniser DFA over the utf-8 bytes of the text and accumulate
+	 * the sparse feature counts into the workspace.
+	 *
+	 * @return the number of non-zero features
+	 */
+	private int extractFeatures(String text, Workspace workspace) {
+		byte[] ords = null;
+		try {
+			ords = text.getBytes("UTF-8");
+		} catch (final UnsupportedEncodingException e) {
+		}
+
+		final int[] stateCounts = workspace.stateCounts;
+		int[] states = workspace.states;
+		int nStates = 0;
+		int state = 0;
+		for (final byte letter : ords) {
+			state = nextMove[(state << 8) + (letter & 0xff)];
+			if (stateCounts[state]++ == 0) {
+				if (nStates == states.length)
+					states = workspace.states = Arrays.copyOf(states, nStates * 2);
+				states[nStates++] = state;
+			}
+		}
+
+		final int[] featureCounts = workspace.featureCounts;
+		int[] features = workspace.features;
+		int nnz = 0;
+		for (int i = 0; i < nStates; i++) {
+			final int s = states[i];
+			final int count = stateCounts[s];
+			stateCounts[s] = 0;
+
+			final int[] outputs = stateOutputs[s];
+			if (outputs == null)
+				continue;
+			for (final int f : outputs) {
+				if (featureCounts[f] == 0) {
+					if (nnz == features.length)
+						features = workspace.features = Arrays.copyOf(features, nnz * 2);
+					features[nnz++] = f;
+				}
+				featureCounts[f] += count;
+			}
+		}
+		return nnz;
+	}
+
+	/**
+	 * Score all features, in the same order as the dense matrix product of the
+	 * {@link LanguageDetector}.
+	 */
+	private WeightedLocale scoreExact(Workspace workspace, int nnz) {
+		final int[] features = workspace.features;
+		final int[] featureCounts = workspace.featureCounts;
+		final double[] scores = workspace.scores;
+
+		Arrays.sort(features, 0, nnz);
+		Arrays.fill(scores, 0);
+		double logFVSum = 0;
+		for (int i = 0; i < nnz; i++) {
+			final int f = features[i];
+			final int count = featureCounts[f];
+			featureCounts[f] = 0;
+
+			for (int j = 1; j < count + 1; j++)
+				logFVSum += Math.log(j);
+
+			final double dcount = count;
+			final int offset = f * nClasses;
+			for (int c = 0; c < nClasses; c++)
+				scores[c] += dcount * logProbs[offset + c];
+		}
+
+		int bestIndex = -1;
+		double best = 0;
+		double sum = 0;
+		for (int c = 0; c < nClasses; c++) {
+			final double correctedScore = (scores[c] + prior[c]) - logFVSum;
+			sum += correctedScore;
+			if (bestIndex == -1 || correctedScore > best) {
+				bestIndex = c;
+				best = correctedScore;
+			}
+		}
+
+		return new WeightedLocale(classes[bestIndex], best / sum);
+	}
+
+	/**
+	 * Score the most discriminative features first, and stop accumulating the
+	 * scores of all languages once the leader cannot be overtaken. The
+	 * remaining features are then only accumulated for the winning language,
+	 * and the sum over all languages needed for the confidence is computed
+	 * from the per-feature sums.
+	 */
+	private WeightedLocale scoreEarly(Workspace workspace, int nnz) {
+		final int[] features = workspace.features;
+		final int[] featureCounts = workspace.featureCounts;
+		final double[] scores = workspace.scores;
+		final long[] order = workspace.order(nnz);
+
+		double remainingRange = 0;
+		double logFVSum = 0;
+		double sum = priorSum;
+		for (int i = 0; i < nnz; i++) {
+			final int f = features[i];
+			final int count = featureCounts[f];
+			final double range = count * featureRange[f];
+
+			remainingRange += range;
+			for (int j = 1; j < count + 1; j++)
+				logFVSum += Math.log(j);
+			sum += count * featureSum[f];
+
+			// sort on decreasing range; ranges are non-negative so the raw
+			// bits order the same way as the values
+			order[i] = (Double.doubleToLongBits(range) & ~0xFFFFFL) | i;
+		}
+		Arrays.sort(order, 0, nnz);
+
+		System.arraycopy(prior, 0, scores, 0, nClasses);
+		int bestIndex = -1;
+		int i = nnz - 1;
+		for (int processed = 0; i >= 0; i--, processed++) {
+			if (processed % TERMINATION_CHECK_INTERVAL == 0) {
+				bestIndex = leaderIfDecided(scores, remainingRange);
+				if (bestIndex >= 0)
+					break;
+			}
+
+			final int f = features[(int) (order[i] & 0xFFFFFL)];
+			final double dcount = featureCounts[f];
+			final int offset = f * nClasses;
+			for (int c = 0; c < nClasses; c++)
+				scores[c] += dcount * logProbs[offset + c];
+			remainingRange -= dcount * featureRange[f];
+		}
+
+		if (bestIndex < 0) {
+			bestIndex = 0;
+			for (int c = 1; c < nClasses; c++) {
+				if (scores[c] > scores[bestIndex])
+					bestIndex = c;
+			}
+		} else {
+			for (; i >= 0; i--) {
+				final int f = features[(int) (order[i] & 0xFFFFFL)];
+				scores[bestIndex] += featureCounts[f] * logProbs[f * nClasses + bestIndex];
+			}
+		}
+
+		for (int j = 0; j < nnz; j++)
+			featureCounts[features[j]] = 0;
+
+		final double best = scores[bestIndex] - logFVSum;
+		sum -= nClasses * logFVSum;
+		return new WeightedLocale(classes[bestIndex], best / sum);
+	}
+
+	/**
+	 * @return the index of the leading class if its lead over the second best
+	 *         is larger than the maximum change that the remaining features
+	 *         could make, or -1 otherwise
+	 */
+	private int leaderIfDecided(double[] scores, double remainingRange) {
+		int first = 0;
+		double second = -Double.MAX_VALUE;
+		for (int c = 1; c < nClasses; c++) {
+			if (scores[c] > scores[first]) {
+				second = scores[first];
+				first = c;
+			} else if (scores[c] > second) {
+				second = scores[c];
+			}
+		}
+		return scores[first] - second > remainingRange ? first : -1;
+	}
+
+	/**
+	 * @return the number of cached results
+	 */
+	public int cacheSize() {
+		if (cache == null)
+			return 0;
+
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Clear the result cache
+	 */
+	public void clearCache() {
+		if (cache == null)
+			return;
+
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Per-thread working memory. The count arrays are always left zeroed
+	 * after use so they can be reused without clearing.
+	 */
+	private class Workspace {
+		final int[] stateCounts = new int[nextMove.length >> 8];
+		final int[] featureCounts = new int[nFeats];
+		final double[] scores = new double[nClasses];
+		int[] states = new int[256];
+		int[] features = new int[256];
+		long[] order = new long[256];
+
+		long[] order(int size) {
+			if (order.length < size)
+				order = new long[size];
+			return order;
+		}
+	}
+}
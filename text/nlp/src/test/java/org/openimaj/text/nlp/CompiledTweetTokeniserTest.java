@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.text.nlp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link CompiledTweetTokeniser}
+ *
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ *
+ */
+public class CompiledTweetTokeniserTest {
+	private List<String> allTweets;
+
+	/**
+	 * Load the test tweets
+	 *
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				CompiledTweetTokeniserTest.class.getResourceAsStream("/org/openimaj/twitter/tweets.txt"), "UTF-8"));
+		String line = null;
+		allTweets = new ArrayList<String>();
+		while ((line = reader.readLine()) != null) {
+			allTweets.add(line);
+		}
+		reader.close();
+
+		allTweets.add("words\r\nacross new\nlines");
+		allTweets.add("@SincereDreamsz  AJ&gt;&gt;&gt;&gt;&gt;Justin! I'm willing to bank on that! #checkmate baby daddy!");
+		allTweets.add("D'angelo=");
+		allTweets.add("");
+		allTweets.add("   ");
+	}
+
+	/**
+	 * Check the compiled tokeniser produces the same tokens as the
+	 * {@link TweetTokeniser}
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSameAsTweetTokeniser() throws Exception {
+		final CompiledTweetTokeniser compiled = CompiledTweetTokeniser.tweetTokeniser();
+		final TweetTokenBuffer buffer = new TweetTokenBuffer(1);
+
+		for (final String text : allTweets) {
+			final TweetTokeniser tokeniser = new TweetTokeniser(text);
+			compiled.tokenise(text, buffer);
+
+			assertEquals(text, tokeniser.getStringTokens(), buffer.getStringTokens());
+			assertEquals(text, tokeniser.getProtectedStringTokens(), buffer.getProtectedStringTokens());
+			assertEquals(text, tokeniser.getUnprotectedStringTokens(), buffer.getUnprotectedStringTokens());
+		}
+	}
+
+	/**
+	 * Check the compiled tokeniser produces the same tokens as the
+	 * {@link EntityTweetTokeniser}
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSameAsEntityTweetTokeniser() throws Exception {
+		final CompiledTweetTokeniser compiled = CompiledTweetTokeniser.entityTweetTokeniser();
+		final TweetTokenBuffer buffer = new TweetTokenBuffer();
+
+		for (final String text : allTweets) {
+			final EntityTweetTokeniser tokeniser = new EntityTweetTokeniser(text);
+			compiled.tokenise(text, buffer);
+
+			assertEquals(text, tokeniser.getStringTokens(), buffer.getStringTokens());
+			assertEquals(text, tokeniser.getProtectedStringTokens(), buffer.getProtectedStringTokens());
+			assertEquals(text, tokeniser.getUnprotectedStringTokens(), buffer.getUnprotectedStringTokens());
+		}
+	}
+
+	/**
+	 * Check the offsets refer to the normalised text
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testOffsets() throws Exception {
+		final TweetTokenBuffer buffer = CompiledTweetTokeniser.tweetTokeniser().tokenise("hello\t\t@world :-)");
+
+		assertEquals("hello @world :-)", buffer.getText());
+		assertEquals(3, buffer.size());
+		assertEquals(0, buffer.start(0));
+		assertEquals(5, buffer.end(0));
+		assertEquals(false, buffer.isProtected(0));
+		assertEquals("@world", buffer.token(1));
+		assertEquals(true, buffer.isProtected(1));
+		assertEquals(13, buffer.start(2));
+		assertEquals(16, buffer.end(2));
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.text.nlp.language;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.text.nlp.language.LanguageDetector.WeightedLocale;
+
+/**
+ * Test the {@link BatchLanguageDetector} against the {@link LanguageDetector}
+ *
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ *
+ */
+public class BatchLanguageDetectorTest {
+	private LanguageDetector detector;
+	private List<String> tweets;
+
+	/**
+	 * Load the model and some tweets
+	 *
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		detector = new LanguageDetector();
+
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				BatchLanguageDetectorTest.class.getResourceAsStream("/org/openimaj/twitter/tweets.txt"), "UTF-8"));
+		String line = null;
+		tweets = new ArrayList<String>();
+		while ((line = reader.readLine()) != null && tweets.size() < 1000) {
+			tweets.add(line);
+		}
+		reader.close();
+	}
+
+	/**
+	 * The exact mode should give the same results
+	 */
+	@Test
+	public void testExact() {
+		final BatchLanguageDetector batch = new BatchLanguageDetector(detector.getLanguageModel());
+
+		for (final String tweet : tweets) {
+			final WeightedLocale expected = detector.classify(tweet);
+			final WeightedLocale actual = batch.classify(tweet);
+
+			assertEquals(expected.language, actual.language);
+			assertEquals(expected.confidence, actual.confidence, 1e-10);
+		}
+	}
+
+	/**
+	 * Early termination should give the same language and almost the same
+	 * confidence
+	 */
+	@Test
+	public void testEarlyTermination() {
+		final BatchLanguageDetector batch = new BatchLanguageDetector(detector.getLanguageModel(), 0, 0);
+		batch.setEarlyTermination(true);
+
+		for (final String tweet : tweets) {
+			final WeightedLocale expected = detector.classify(tweet);
+			final WeightedLocale actual = batch.classify(tweet);
+
+			assertEquals(expected.language, actual.language);
+			assertEquals(expected.confidence, actual.confidence, 1e-10);
+		}
+	}
+
+	/**
+	 * The batch method and the cache should give the same results as single
+	 * classification
+	 */
+	@Test
+	public void testBatchAndCache() {
+		final BatchLanguageDetector batch = new BatchLanguageDetector(detector.getLanguageModel(), 100, 140);
+
+		final List<String> texts = new ArrayList<String>(tweets);
+		texts.addAll(tweets);
+		final WeightedLocale[] results = batch.classify(texts);
+
+		assertEquals(texts.size(), results.length);
+		for (int i = 0; i < texts.size(); i++) {
+			final WeightedLocale expected = detector.classify(texts.get(i));
+			assertEquals(expected.language, results[i].language);
+			assertEquals(expected.confidence, results[i].confidence, 1e-10);
+		}
+		assertTrue(batch.cacheSize() <= 100);
+	}
+}
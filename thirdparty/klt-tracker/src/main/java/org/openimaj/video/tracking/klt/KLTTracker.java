@@ -13,12 +13,17 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Comparator;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.image.FImage;
 import org.openimaj.image.ImageUtilities;
 import org.openimaj.image.processing.convolution.FGaussianConvolve;
 import org.openimaj.math.geometry.point.Point2d;
 import org.openimaj.math.geometry.point.Point2dImpl;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * The KLT tracker
@@ -73,6 +78,15 @@ public class KLTTracker {
 	boolean isNorm = true; // true if input images are in [0..1] range, false if
 							// [0..255]
 
+	ThreadPoolExecutor pool;
+	boolean pyramidReuse = true;
+	final TrackingStatistics stats = new TrackingStatistics();
+
+	/* the last image tracked to (scaled to [0..255]) and its pyramids */
+	private FImage lastImage;
+	private PyramidSet lastPyramid;
+	private float[] lastPyramidParams;
+
 	/**
 	 * Construct with the given target number of features.
 	 * 
@@ -1712,13 +1726,11 @@ public class KLTTracker {
 	 */
 	public void trackFeatures(FImage img1, FImage img2)
 	{
-		if (isNorm) {
-			img1 = img1.multiply(255f);
-			img2 = img2.multiply(255f);
-		}
+		final long t0 = System.nanoTime();
 		PyramidSet pyr1, pyr2;
 		int i;
 		final int nrows = img1.height, ncols = img1.width;
+		boolean reused = true;
 
 		if (KLT_verbose >= 1) {
 			System.out.println(String.format("(KLT) Tracking %d features in a %d by %d image...  ",
@@ -1762,14 +1774,25 @@ public class KLTTracker {
 			assert (pyramid1_gradx != null);
 			assert (pyramid1_grady != null);
 			pyr1 = ppSet;
-		} else {
+		} else if ((pyr1 = getCachedPyramid(img1)) == null) {
+			if (isNorm)
+				img1 = img1.multiply(255f);
 			pyr1 = new PyramidSet(img1, tc);
-
+			reused = false;
 		}
 
 		/* Do the same thing with second image */
+		if (isNorm)
+			img2 = img2.multiply(255f);
 		pyr2 = new PyramidSet(img2, tc);
 
+		if (pyramidReuse && !tc.sequentialMode)
+			setCachedPyramid(isNorm ? img2 : img2.clone(), pyr2);
+		else
+			setCachedPyramid(null, null);
+
+		final long pyramidTime = System.nanoTime() - t0;
+
 		/* Write internal images */
 		if (tc.writeInternalImages) {
 			String fname;
@@ -1794,6 +1817,8 @@ public class KLTTracker {
 		}
 
 		trackFeatures(img1, img2, pyr1, pyr2);
+		stats.pyramidTime = pyramidTime;
+		stats.pyramidReused = reused;
 
 		if (tc.sequentialMode) {
 			tc.setPreviousPyramid(pyr2);
@@ -1818,184 +1843,322 @@ public class KLTTracker {
 	 * @param pyr1
 	 * @param pyr2
 	 */
-	public void trackFeatures(FImage img1, FImage img2, PyramidSet pyr1, PyramidSet pyr2) {
+	public void trackFeatures(FImage img1, FImage img2, final PyramidSet pyr1, final PyramidSet pyr2) {
+		final long t0 = System.nanoTime();
+		final int nrows = img1.height, ncols = img1.width;
+		final Feature[] features = featurelist.features;
+
+		final boolean[] active = new boolean[features.length];
+		for (int i = 0; i < features.length; i++)
+			active[i] = features[i].val >= 0;
+
+		/* For each feature, do ... */
+		if (pool == null || features.length < 2) {
+			for (int indx = 0; indx < features.length; indx++)
+				_trackFeatureAtIndex(indx, pyr1, pyr2, ncols, nrows);
+		} else {
+			Parallel.forRange(0, features.length, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					for (int indx = range.start; indx < range.stop; indx += range.incr)
+						_trackFeatureAtIndex(indx, pyr1, pyr2, ncols, nrows);
+				}
+			}, pool);
+		}
+
+		stats.reset();
+		for (int i = 0; i < features.length; i++) {
+			if (active[i]) {
+				stats.nActive++;
+				stats.count(features[i].val);
+			}
+		}
+		stats.trackingTime = System.nanoTime() - t0;
+	}
+
+	/**
+	 * Track a single feature from the first pyramid to the second. Features
+	 * are tracked independently of each other, so this can be called
+	 * concurrently for different indices.
+	 */
+	private void _trackFeatureAtIndex(int indx, PyramidSet pyr1, PyramidSet pyr2, int ncols, int nrows) {
 		float xloc, yloc, xlocout, ylocout;
 		int val = -1;
-		int indx, r;
+		int r;
 		final float subsampling = tc.subsampling;
-		final int nrows = img1.height, ncols = img1.width;
-		/* For each feature, do ... */
-		for (indx = 0; indx < featurelist.features.length; indx++) {
 
-			/* Only track features that are not lost */
-			if (featurelist.features[indx].val >= 0) {
+		/* Only track features that are not lost */
+		if (featurelist.features[indx].val >= 0) {
 
-				xloc = featurelist.features[indx].x;
-				yloc = featurelist.features[indx].y;
+			xloc = featurelist.features[indx].x;
+			yloc = featurelist.features[indx].y;
 
-				/* Transform location to coarsest resolution */
-				for (r = tc.nPyramidLevels - 1; r >= 0; r--) {
-					xloc /= subsampling;
-					yloc /= subsampling;
-				}
-				xlocout = xloc;
-				ylocout = yloc;
-
-				/* Beginning with coarsest resolution, do ... */
-				for (r = tc.nPyramidLevels - 1; r >= 0; r--) {
-
-					/* Track feature at current resolution */
-					xloc *= subsampling;
-					yloc *= subsampling;
-					xlocout *= subsampling;
-					ylocout *= subsampling;
-
-					final float[] xylocout = new float[2];
-					xylocout[0] = xlocout;
-					xylocout[1] = ylocout;
-
-					val = _trackFeature(xloc, yloc,
-							xylocout,
-							pyr1.imgPyr.img[r],
-							pyr1.gradx.img[r], pyr1.grady.img[r],
-							pyr2.imgPyr.img[r],
-							pyr2.gradx.img[r], pyr2.grady.img[r],
-							tc.window_width, tc.window_height,
-							tc.step_factor,
-							tc.max_iterations,
-							tc.min_determinant,
-							tc.min_displacement,
-							tc.max_residue,
-							tc.lighting_insensitive);
-
-					xlocout = xylocout[0];
-					ylocout = xylocout[1];
-
-					if (val == KLT_SMALL_DET || val == KLT_OOB)
-						break;
-				}
+			/* Transform location to coarsest resolution */
+			for (r = tc.nPyramidLevels - 1; r >= 0; r--) {
+				xloc /= subsampling;
+				yloc /= subsampling;
+			}
+			xlocout = xloc;
+			ylocout = yloc;
+
+			/* Beginning with coarsest resolution, do ... */
+			for (r = tc.nPyramidLevels - 1; r >= 0; r--) {
+
+				/* Track feature at current resolution */
+				xloc *= subsampling;
+				yloc *= subsampling;
+				xlocout *= subsampling;
+				ylocout *= subsampling;
+
+				final float[] xylocout = new float[2];
+				xylocout[0] = xlocout;
+				xylocout[1] = ylocout;
+
+				val = _trackFeature(xloc, yloc,
+						xylocout,
+						pyr1.imgPyr.img[r],
+						pyr1.gradx.img[r], pyr1.grady.img[r],
+						pyr2.imgPyr.img[r],
+						pyr2.gradx.img[r], pyr2.grady.img[r],
+						tc.window_width, tc.window_height,
+						tc.step_factor,
+						tc.max_iterations,
+						tc.min_determinant,
+						tc.min_displacement,
+						tc.max_residue,
+						tc.lighting_insensitive);
+
+				xlocout = xylocout[0];
+				ylocout = xylocout[1];
+
+				if (val == KLT_SMALL_DET || val == KLT_OOB)
+					break;
+			}
 
-				/* Record feature */
-				if (val == KLT_OOB) {
-					featurelist.features[indx].x = -1.0f;
-					featurelist.features[indx].y = -1.0f;
-					featurelist.features[indx].val = KLT_OOB;
+			/* Record feature */
+			if (val == KLT_OOB) {
+				featurelist.features[indx].x = -1.0f;
+				featurelist.features[indx].y = -1.0f;
+				featurelist.features[indx].val = KLT_OOB;
 
-					// featurelist.features[indx].aff_img = null;
-					// featurelist.features[indx].aff_img_gradx = null;
-					// featurelist.features[indx].aff_img_grady = null;
+				// featurelist.features[indx].aff_img = null;
+				// featurelist.features[indx].aff_img_gradx = null;
+				// featurelist.features[indx].aff_img_grady = null;
 
-				} else if (_outOfBounds(xlocout, ylocout, ncols, nrows, tc.borderx, tc.bordery)) {
-					featurelist.features[indx].x = -1.0f;
-					featurelist.features[indx].y = -1.0f;
-					featurelist.features[indx].val = KLT_OOB;
+			} else if (_outOfBounds(xlocout, ylocout, ncols, nrows, tc.borderx, tc.bordery)) {
+				featurelist.features[indx].x = -1.0f;
+				featurelist.features[indx].y = -1.0f;
+				featurelist.features[indx].val = KLT_OOB;
 
-					// featurelist.features[indx].aff_img = null;
-					// featurelist.features[indx].aff_img_gradx = null;
-					// featurelist.features[indx].aff_img_grady = null;
-				} else if (val == KLT_SMALL_DET) {
-					featurelist.features[indx].x = -1.0f;
-					featurelist.features[indx].y = -1.0f;
-					featurelist.features[indx].val = KLT_SMALL_DET;
+				// featurelist.features[indx].aff_img = null;
+				// featurelist.features[indx].aff_img_gradx = null;
+				// featurelist.features[indx].aff_img_grady = null;
+			} else if (val == KLT_SMALL_DET) {
+				featurelist.features[indx].x = -1.0f;
+				featurelist.features[indx].y = -1.0f;
+				featurelist.features[indx].val = KLT_SMALL_DET;
 
-					// featurelist.features[indx].aff_img = null;
-					// featurelist.features[indx].aff_img_gradx = null;
-					// featurelist.features[indx].aff_img_grady = null;
-				} else if (val == KLT_LARGE_RESIDUE) {
-					featurelist.features[indx].x = -1.0f;
-					featurelist.features[indx].y = -1.0f;
-					featurelist.features[indx].val = KLT_LARGE_RESIDUE;
+				// featurelist.features[indx].aff_img = null;
+				// featurelist.features[indx].aff_img_gradx = null;
+				// featurelist.features[indx].aff_img_grady = null;
+			} else if (val == KLT_LARGE_RESIDUE) {
+				featurelist.features[indx].x = -1.0f;
+				featurelist.features[indx].y = -1.0f;
+				featurelist.features[indx].val = KLT_LARGE_RESIDUE;
 
-					// featurelist.features[indx].aff_img = null;
-					// featurelist.features[indx].aff_img_gradx = null;
-					// featurelist.features[indx].aff_img_grady = null;
-				} else if (val == KLT_MAX_ITERATIONS) {
-					featurelist.features[indx].x = -1.0f;
-					featurelist.features[indx].y = -1.0f;
-					featurelist.features[indx].val = KLT_MAX_ITERATIONS;
+				// featurelist.features[indx].aff_img = null;
+				// featurelist.features[indx].aff_img_gradx = null;
+				// featurelist.features[indx].aff_img_grady = null;
+			} else if (val == KLT_MAX_ITERATIONS) {
+				featurelist.features[indx].x = -1.0f;
+				featurelist.features[indx].y = -1.0f;
+				featurelist.features[indx].val = KLT_MAX_ITERATIONS;
 
+				// featurelist.features[indx].aff_img = null;
+				// featurelist.features[indx].aff_img_gradx = null;
+				// featurelist.features[indx].aff_img_grady = null;
+			} else {
+				featurelist.features[indx].x = xlocout;
+				featurelist.features[indx].y = ylocout;
+				featurelist.features[indx].val = KLT_TRACKED;
+				if (tc.affineConsistencyCheck >= 0 && val == KLT_TRACKED) { /*
+																			 * for
+																			 * affine
+																			 * mapping
+																			 */
+					throw new UnsupportedOperationException("Affine mapping not yet implemented");
+					// int border = 2; /* add border for interpolation */
+					//
+					// if(featurelist.features[indx].aff_img == null){
+					// /* save image and gradient for each feature at finest
+					// resolution after first successful track */
+					// featurelist.features[indx].aff_img = new
+					// FImage((tc.affine_window_height+border),
+					// (tc.affine_window_width+border));
+					// featurelist.features[indx].aff_img_gradx = new
+					// FImage((tc.affine_window_height+border),
+					// (tc.affine_window_width+border));
+					// featurelist.features[indx].aff_img_grady = new
+					// FImage((tc.affine_window_height+border),
+					// (tc.affine_window_width+border));
+					// _am_getSubFloatImage(pyramid1.img[0],xloc,yloc,featurelist.features[indx].aff_img);
+					// _am_getSubFloatImage(pyramid1_gradx.img[0],xloc,yloc,featurelist.features[indx].aff_img_gradx);
+					// _am_getSubFloatImage(pyramid1_grady.img[0],xloc,yloc,featurelist.features[indx].aff_img_grady);
+					// featurelist.features[indx].aff_x = xloc - (int) xloc
+					// + (tc.affine_window_width+border)/2;
+					// featurelist.features[indx].aff_y = yloc - (int) yloc
+					// + (tc.affine_window_height+border)/2;;
+					// }else{
+					// /* affine tracking */
+					// val =
+					// _am_trackFeatureAffine(featurelist.features[indx].aff_x,
+					// featurelist.features[indx].aff_y,
+					// &xlocout, &ylocout,
+					// featurelist.features[indx].aff_img,
+					// featurelist.features[indx].aff_img_gradx,
+					// featurelist.features[indx].aff_img_grady,
+					// pyramid2.img[0],
+					// pyramid2_gradx.img[0], pyramid2_grady.img[0],
+					// tc.affine_window_width, tc.affine_window_height,
+					// tc.step_factor,
+					// tc.affine_max_iterations,
+					// tc.min_determinant,
+					// tc.min_displacement,
+					// tc.affine_min_displacement,
+					// tc.affine_max_residue,
+					// tc.lighting_insensitive,
+					// tc.affineConsistencyCheck,
+					// tc.affine_max_displacement_differ,
+					// &featurelist.features[indx].aff_Axx,
+					// &featurelist.features[indx].aff_Ayx,
+					// &featurelist.features[indx].aff_Axy,
+					// &featurelist.features[indx].aff_Ayy
+					// );
+					// featurelist.features[indx].val = val;
+					// if(val != KLT_TRACKED){
+					// featurelist.features[indx].x = -1.0f;
+					// featurelist.features[indx].y = -1.0f;
+					// featurelist.features[indx].aff_x = -1.0f;
+					// featurelist.features[indx].aff_y = -1.0f;
+					//
 					// featurelist.features[indx].aff_img = null;
 					// featurelist.features[indx].aff_img_gradx = null;
 					// featurelist.features[indx].aff_img_grady = null;
-				} else {
-					featurelist.features[indx].x = xlocout;
-					featurelist.features[indx].y = ylocout;
-					featurelist.features[indx].val = KLT_TRACKED;
-					if (tc.affineConsistencyCheck >= 0 && val == KLT_TRACKED) { /*
-																				 * for
-																				 * affine
-																				 * mapping
-																				 */
-						throw new UnsupportedOperationException("Affine mapping not yet implemented");
-						// int border = 2; /* add border for interpolation */
-						//
-						// if(featurelist.features[indx].aff_img == null){
-						// /* save image and gradient for each feature at finest
-						// resolution after first successful track */
-						// featurelist.features[indx].aff_img = new
-						// FImage((tc.affine_window_height+border),
-						// (tc.affine_window_width+border));
-						// featurelist.features[indx].aff_img_gradx = new
-						// FImage((tc.affine_window_height+border),
-						// (tc.affine_window_width+border));
-						// featurelist.features[indx].aff_img_grady = new
-						// FImage((tc.affine_window_height+border),
-						// (tc.affine_window_width+border));
-						// _am_getSubFloatImage(pyramid1.img[0],xloc,yloc,featurelist.features[indx].aff_img);
-						// _am_getSubFloatImage(pyramid1_gradx.img[0],xloc,yloc,featurelist.features[indx].aff_img_gradx);
-						// _am_getSubFloatImage(pyramid1_grady.img[0],xloc,yloc,featurelist.features[indx].aff_img_grady);
-						// featurelist.features[indx].aff_x = xloc - (int) xloc
-						// + (tc.affine_window_width+border)/2;
-						// featurelist.features[indx].aff_y = yloc - (int) yloc
-						// + (tc.affine_window_height+border)/2;;
-						// }else{
-						// /* affine tracking */
-						// val =
-						// _am_trackFeatureAffine(featurelist.features[indx].aff_x,
-						// featurelist.features[indx].aff_y,
-						// &xlocout, &ylocout,
-						// featurelist.features[indx].aff_img,
-						// featurelist.features[indx].aff_img_gradx,
-						// featurelist.features[indx].aff_img_grady,
-						// pyramid2.img[0],
-						// pyramid2_gradx.img[0], pyramid2_grady.img[0],
-						// tc.affine_window_width, tc.affine_window_height,
-						// tc.step_factor,
-						// tc.affine_max_iterations,
-						// tc.min_determinant,
-						// tc.min_displacement,
-						// tc.affine_min_displacement,
-						// tc.affine_max_residue,
-						// tc.lighting_insensitive,
-						// tc.affineConsistencyCheck,
-						// tc.affine_max_displacement_differ,
-						// &featurelist.features[indx].aff_Axx,
-						// &featurelist.features[indx].aff_Ayx,
-						// &featurelist.features[indx].aff_Axy,
-						// &featurelist.features[indx].aff_Ayy
-						// );
-						// featurelist.features[indx].val = val;
-						// if(val != KLT_TRACKED){
-						// featurelist.features[indx].x = -1.0f;
-						// featurelist.features[indx].y = -1.0f;
-						// featurelist.features[indx].aff_x = -1.0f;
-						// featurelist.features[indx].aff_y = -1.0f;
-						//
-						// featurelist.features[indx].aff_img = null;
-						// featurelist.features[indx].aff_img_gradx = null;
-						// featurelist.features[indx].aff_img_grady = null;
-						// }else{
-						// /*featurelist.features[indx].x = xlocout;*/
-						// /*featurelist.features[indx].y = ylocout;*/
-						// }
-						// }
-					}
-
+					// }else{
+					// /*featurelist.features[indx].x = xlocout;*/
+					// /*featurelist.features[indx].y = ylocout;*/
+					// }
+					// }
 				}
+
 			}
 		}
 	}
 
+	private float[] pyramidParams() {
+		return new float[] { tc.computeSmoothSigma(), tc.subsampling, tc.nPyramidLevels, tc.grad_sigma,
+				tc.pyramid_sigma_fact };
+	}
+
+	private void setCachedPyramid(FImage image, PyramidSet pyr) {
+		lastImage = image;
+		lastPyramid = pyr;
+		lastPyramidParams = pyr == null ? null : pyramidParams();
+	}
+
+	/**
+	 * Get the pyramids computed for the previous frame if the given image has
+	 * exactly the same content (after scaling) as that frame and the pyramid
+	 * parameters haven't changed; otherwise return null. The comparison is
+	 * much cheaper than rebuilding the pyramids and guarantees that the
+	 * tracking results are unaffected by the reuse.
+	 */
+	private PyramidSet getCachedPyramid(FImage img) {
+		if (!pyramidReuse || lastPyramid == null || img.width != lastImage.width || img.height != lastImage.height)
+			return null;
+
+		if (!Arrays.equals(lastPyramidParams, pyramidParams()))
+			return null;
+
+		final float scale = isNorm ? 255f : 1f;
+		for (int y = 0; y < img.height; y++) {
+			final float[] a = img.pixels[y];
+			final float[] b = lastImage.pixels[y];
+			for (int x = 0; x < img.width; x++)
+				if (a[x] * scale != b[x])
+					return null;
+		}
+
+		return lastPyramid;
+	}
+
+	/**
+	 * Enable or disable parallel tracking of features using the
+	 * {@link GlobalExecutorPool}. Each feature is tracked independently, so
+	 * the results are identical to sequential tracking.
+	 * 
+	 * @param parallel
+	 *            true to track features in parallel
+	 */
+	public void setParallelTracking(boolean parallel) {
+		this.pool = parallel ? GlobalExecutorPool.getPool() : null;
+	}
+
+	/**
+	 * Track features in parallel using the given pool. This is useful when
+	 * multiple trackers (i.e. for multiple cameras) need to share or partition
+	 * the available cores.
+	 * 
+	 * @param pool
+	 *            the pool; if null features are tracked sequentially.
+	 */
+	public void setParallelTracking(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @return true if features are tracked in parallel
+	 */
+	public boolean isParallelTracking() {
+		return pool != null;
+	}
+
+	/**
+	 * Enable or disable the reuse of the pyramids of the previous frame when
+	 * not in sequential mode. If enabled (the default), the pyramids of the
+	 * second image passed to {@link #trackFeatures(FImage, FImage)} are
+	 * retained, and reused on the next call if its first image has identical
+	 * content. This makes the common pattern of tracking
+	 * <code>(f0, f1), (f1, f2), ...</code> only compute the pyramids of the
+	 * new frame.
+	 * 
+	 * @param pyramidReuse
+	 *            true to enable reuse
+	 */
+	public void setPyramidReuse(boolean pyramidReuse) {
+		this.pyramidReuse = pyramidReuse;
+		if (!pyramidReuse)
+			setCachedPyramid(null, null);
+	}
+
+	/**
+	 * @return true if pyramids of the previous frame may be reused
+	 */
+	public boolean isPyramidReuse() {
+		return pyramidReuse;
+	}
+
+	/**
+	 * Get the timing and lost-feature counters for the most recent call to
+	 * {@link #trackFeatures(FImage, FImage)}. The returned object is updated
+	 * in place by subsequent calls.
+	 * 
+	 * @return the statistics
+	 */
+	public TrackingStatistics getTrackingStatistics() {
+		return stats;
+	}
+
 	/**
 	 * @return the tracking context
 	 */
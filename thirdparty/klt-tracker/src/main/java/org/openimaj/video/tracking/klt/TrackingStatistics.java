@@ -0,0 +1,112 @@
+/**
+ * This source code file is part of a direct port of Stan Birchfield's implementation
+ * of a Kanade-Lucas-Tomasi feature tracker. The original implementation can be found
+ * here: http://www.ces.clemson.edu/~stb/klt/
+ *
+ * As per the original code, the source code is in the public domain, available
+ * for both commercial and non-commercial use.
+ */
+package org.openimaj.video.tracking.klt;
+
+/**
+ * Statistics about the most recent call to
+ * {@link KLTTracker#trackFeatures(org.openimaj.image.FImage, org.openimaj.image.FImage)}
+ * . Times are in nanoseconds.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class TrackingStatistics {
+	/**
+	 * Time spent building the image and gradient pyramids
+	 */
+	public long pyramidTime;
+
+	/**
+	 * Time spent tracking the features through the pyramids
+	 */
+	public long trackingTime;
+
+	/**
+	 * True if the pyramids of the first image were reused from the previous
+	 * frame rather than being recomputed
+	 */
+	public boolean pyramidReused;
+
+	/**
+	 * Number of features that were being tracked at the start of the frame
+	 */
+	public int nActive;
+
+	/**
+	 * Number of features that were successfully tracked
+	 */
+	public int nTracked;
+
+	/**
+	 * Number of features lost because they went out of bounds
+	 */
+	public int nLostOutOfBounds;
+
+	/**
+	 * Number of features lost because the determinant was too small
+	 */
+	public int nLostSmallDeterminant;
+
+	/**
+	 * Number of features lost because the residue was too large
+	 */
+	public int nLostLargeResidue;
+
+	/**
+	 * Number of features lost because the maximum number of iterations was
+	 * exceeded
+	 */
+	public int nLostMaxIterations;
+
+	/**
+	 * @return the total number of features lost in the frame
+	 */
+	public int nLost() {
+		return nActive - nTracked;
+	}
+
+	void reset() {
+		pyramidTime = 0;
+		trackingTime = 0;
+		pyramidReused = false;
+		nActive = 0;
+		nTracked = 0;
+		nLostOutOfBounds = 0;
+		nLostSmallDeterminant = 0;
+		nLostLargeResidue = 0;
+		nLostMaxIterations = 0;
+	}
+
+	void count(int val) {
+		switch (val) {
+		case KLTTracker.KLT_TRACKED:
+			nTracked++;
+			break;
+		case KLTTracker.KLT_OOB:
+			nLostOutOfBounds++;
+			break;
+		case KLTTracker.KLT_SMALL_DET:
+			nLostSmallDeterminant++;
+			break;
+		case KLTTracker.KLT_LARGE_RESIDUE:
+			nLostLargeResidue++;
+			break;
+		case KLTTracker.KLT_MAX_ITERATIONS:
+			nLostMaxIterations++;
+			break;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("pyramid: %.3fms%s, tracking: %.3fms, tracked %d/%d (lost: %d oob, %d small det, "
+				+ "%d large residue, %d max iterations)", pyramidTime / 1e6, pyramidReused ? " (reused)" : "",
+				trackingTime / 1e6, nTracked, nActive, nLostOutOfBounds, nLostSmallDeterminant, nLostLargeResidue,
+				nLostMaxIterations);
+	}
+}
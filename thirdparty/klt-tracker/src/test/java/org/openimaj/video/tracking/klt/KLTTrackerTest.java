@@ -0,0 +1,101 @@
+/**
+ * This source code file is part of a direct port of Stan Birchfield's implementation
+ * of a Kanade-Lucas-Tomasi feature tracker. The original implementation can be found
+ * here: http://www.ces.clemson.edu/~stb/klt/
+ *
+ * As per the original code, the source code is in the public domain, available
+ * for both commercial and non-commercial use.
+ */
+package org.openimaj.video.tracking.klt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for the {@link KLTTracker}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class KLTTrackerTest {
+	private static final int WIDTH = 160;
+	private static final int HEIGHT = 120;
+	private static final int NFEATURES = 100;
+	private static final float DX = 2;
+	private static final float DY = 1;
+
+	/**
+	 * Create a smooth textured image, translated by the given amount
+	 */
+	private static FImage createImage(float dx, float dy) {
+		final FImage img = new FImage(WIDTH, HEIGHT);
+
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				final double xx = x - dx;
+				final double yy = y - dy;
+
+				img.pixels[y][x] = (float) (0.5 + 0.25 * Math.sin(xx / 4.0) * Math.cos(yy / 5.0) + 0.2 * Math
+						.sin((xx + 2 * yy) / 9.0));
+			}
+		}
+
+		return img;
+	}
+
+	private static void assertSameFeatures(FeatureList expected, FeatureList actual) {
+		assertEquals(expected.features.length, actual.features.length);
+
+		for (int i = 0; i < expected.features.length; i++) {
+			assertEquals(expected.features[i].x, actual.features[i].x, 0);
+			assertEquals(expected.features[i].y, actual.features[i].y, 0);
+			assertEquals(expected.features[i].val, actual.features[i].val);
+		}
+	}
+
+	/**
+	 * Tracking the features in parallel must give exactly the same results as
+	 * tracking them sequentially, and both must recover the translation of the
+	 * synthetic images
+	 */
+	@Test
+	public void testParallelTracking() {
+		final FImage[] frames = {
+				createImage(0, 0),
+				createImage(DX, DY),
+				createImage(2 * DX, 2 * DY)
+		};
+
+		final KLTTracker sequential = new KLTTracker(NFEATURES);
+		final KLTTracker parallel = new KLTTracker(NFEATURES);
+		parallel.setParallelTracking(GlobalExecutorPool.getPool());
+
+		sequential.selectGoodFeatures(frames[0]);
+		parallel.selectGoodFeatures(frames[0]);
+		assertSameFeatures(sequential.getFeatureList(), parallel.getFeatureList());
+
+		for (int f = 1; f < frames.length; f++) {
+			final FeatureList before = sequential.getFeatureList().clone();
+
+			sequential.trackFeatures(frames[f - 1], frames[f]);
+			parallel.trackFeatures(frames[f - 1], frames[f]);
+			assertSameFeatures(sequential.getFeatureList(), parallel.getFeatureList());
+
+			int tracked = 0;
+			for (int i = 0; i < before.features.length; i++) {
+				final Feature b = before.features[i];
+				final Feature a = sequential.getFeatureList().features[i];
+
+				if (b.val >= 0 && a.val == KLTTracker.KLT_TRACKED) {
+					assertEquals(b.x + DX, a.x, 0.1);
+					assertEquals(b.y + DY, a.y, 0.1);
+					tracked++;
+				}
+			}
+			assertTrue(tracked > before.countRemainingFeatures() / 2);
+		}
+	}
+}
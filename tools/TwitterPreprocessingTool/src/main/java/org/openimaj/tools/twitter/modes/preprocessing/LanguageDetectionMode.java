@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.util.Map;
 
 import org.openimaj.io.FileUtils;
+import org.openimaj.text.nlp.language.BatchLanguageDetector;
 import org.openimaj.text.nlp.language.LanguageDetector;
 import org.openimaj.twitter.GeneralJSON;
 import org.openimaj.twitter.GeneralJSONRDF;
@@ -45,14 +46,17 @@ import com.hp.hpl.jena.rdf.model.Resource;
 import com.hp.hpl.jena.update.UpdateAction;
 
 /**
- * A gateway class which loads and uses the #LanguageDetector
+ * A gateway class which loads and uses the #LanguageDetector. Classification
+ * is performed with a {@link BatchLanguageDetector}, which gives the same
+ * results but only scores the features present in each tweet and caches the
+ * results for repeated short texts.
  * 
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
  * 
  */
 public class LanguageDetectionMode extends TwitterPreprocessingMode<Map<String, Object>> {
 
-	private LanguageDetector detector;
+	private BatchLanguageDetector detector;
 	final static String LANGUAGES = "langid";
 
 	/**
@@ -61,7 +65,7 @@ public class LanguageDetectionMode extends TwitterPreprocessingMode<Map<String,
 	 * @throws IOException
 	 */
 	public LanguageDetectionMode() throws IOException {
-		detector = new LanguageDetector();
+		detector = new BatchLanguageDetector(new LanguageDetector().getLanguageModel());
 	}
 
 	@Override
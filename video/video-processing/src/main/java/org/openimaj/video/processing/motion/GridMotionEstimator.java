@@ -34,17 +34,22 @@ package org.openimaj.video.processing.motion;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.image.FImage;
 import org.openimaj.math.geometry.point.Point2d;
 import org.openimaj.math.geometry.point.Point2dImpl;
 import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
 import org.openimaj.video.Video;
 import org.openimaj.video.VideoFrame;
 import org.openimaj.video.VideoSubFrame;
 
 /**
- *	Estimates the motion field over a grid.
+ *	Estimates the motion field over a grid. The blocks of the grid are
+ *	processed sequentially unless a thread pool is set with
+ *	{@link #setThreadPool(ThreadPoolExecutor)}.
  *
  *	@author David Dupplaw (dpd@ecs.soton.ac.uk)
  *  @created 1 Mar 2012
@@ -54,6 +59,7 @@ public class GridMotionEstimator extends MotionEstimator
 {
 	private int x, y;
 	private boolean fixed;
+	private ThreadPoolExecutor threadPool;
 
 	/**
 	 * 	Construct a grid-based motion estimator. If <code>fixed</code> is
@@ -94,14 +100,27 @@ public class GridMotionEstimator extends MotionEstimator
 		this.fixed = fixed;
 	}
 
+	/**
+	 * 	Set the thread pool used to estimate the motion of the grid blocks
+	 * 	concurrently. If <code>null</code>, the blocks are processed
+	 * 	sequentially, which is the default. The pool must not be one that
+	 * 	the caller is itself running on, as this can deadlock.
+	 *
+	 *	@param threadPool The thread pool, or <code>null</code>
+	 */
+	public void setThreadPool( ThreadPoolExecutor threadPool )
+	{
+		this.threadPool = threadPool;
+	}
+
 	/**
 	 *	{@inheritDoc}
 	 * 	@see org.openimaj.video.analysis.motion.MotionEstimator#estimateMotionField(org.openimaj.video.analysis.motion.MotionEstimator.MotionEstimatorAlgorithm, org.openimaj.image.FImage, org.openimaj.image.FImage[])
 	 */
 	@Override
 	protected Map<Point2d, Point2d> estimateMotionField(
-			MotionEstimatorAlgorithm estimator, VideoFrame<FImage> vf,
-			VideoFrame<FImage>[] array )
+			final MotionEstimatorAlgorithm estimator, final VideoFrame<FImage> vf,
+			final VideoFrame<FImage>[] array )
 	{
 		if( array.length < 1 )
 			return new HashMap<Point2d,Point2d>();
@@ -118,30 +137,51 @@ public class GridMotionEstimator extends MotionEstimator
 			gh = vf.frame.getHeight()/y;
 		}
 
-		Map<Point2d,Point2d> out = new HashMap<Point2d, Point2d>();
-
-		@SuppressWarnings( "unchecked" )
-		VideoSubFrame<FImage>[] otherFrames = new VideoSubFrame[array.length];
+		final int fw = gw, fh = gh;
+		final int nx = (vf.frame.getWidth() + gw - 1) / gw;
+		final int ny = (vf.frame.getHeight() + gh - 1) / gh;
+		final Point2d[] vectors = new Point2d[nx * ny];
 
-		for( int yy = 0; yy < vf.frame.getHeight(); yy += gh )
+		final Operation<Integer> cell = new Operation<Integer>()
 		{
-			for( int xx = 0; xx < vf.frame.getWidth(); xx += gw )
+			@Override
+			public void perform( Integer i )
 			{
+				final int xx = (i % nx) * fw;
+				final int yy = (i / nx) * fh;
+
+				@SuppressWarnings( "unchecked" )
+				VideoSubFrame<FImage>[] otherFrames = new VideoSubFrame[array.length];
 				for( int ff = 0; ff < array.length; ff++ )
 					otherFrames[ff] = new VideoSubFrame<FImage>(
 							array[ff].frame,
 							array[ff].timecode,
-							new Rectangle(xx, yy, gw, gh));
-
-				// vf.frame.drawShape( new Rectangle(xx,yy,gw,gh), 1, 0f );
+							new Rectangle(xx, yy, fw, fh));
 
-				out.put( new Point2dImpl(xx+gw/2f,yy+gh/2f),
-						estimator.estimateMotion( new VideoSubFrame<FImage>(
-							vf.frame,
-							vf.timecode,
-							new Rectangle(xx, yy, gw, gh)),
-							otherFrames ) );
+				vectors[i] = estimator.estimateMotion( new VideoSubFrame<FImage>(
+						vf.frame,
+						vf.timecode,
+						new Rectangle(xx, yy, fw, fh)),
+						otherFrames );
 			}
+		};
+
+		if( threadPool == null )
+		{
+			for( int i = 0; i < vectors.length; i++ )
+				cell.perform( i );
+		}
+		else
+		{
+			Parallel.forIndex( 0, vectors.length, 1, cell, threadPool );
+		}
+
+		Map<Point2d,Point2d> out = new HashMap<Point2d, Point2d>();
+		for( int i = 0; i < vectors.length; i++ )
+		{
+			final int xx = (i % nx) * gw;
+			final int yy = (i / nx) * gh;
+			out.put( new Point2dImpl(xx+gw/2f,yy+gh/2f), vectors[i] );
 		}
 
 		return out;
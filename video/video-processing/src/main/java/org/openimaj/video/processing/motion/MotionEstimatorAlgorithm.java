@@ -29,14 +29,15 @@
  */
 package org.openimaj.video.processing.motion;
 
-import org.apache.commons.math.complex.Complex;
-import org.apache.commons.math.linear.Array2DRowFieldMatrix;
-import org.apache.commons.math.linear.FieldLUDecompositionImpl;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.openimaj.image.FImage;
 import org.openimaj.image.analysis.algorithm.TemplateMatcher;
 import org.openimaj.image.analysis.algorithm.TemplateMatcher.Mode;
 import org.openimaj.image.pixel.FValuePixel;
-import org.openimaj.image.processing.algorithm.FourierTransform;
 import org.openimaj.math.geometry.point.Point2d;
 import org.openimaj.math.geometry.point.Point2dImpl;
 import org.openimaj.math.geometry.shape.Rectangle;
@@ -139,9 +140,55 @@ public abstract class MotionEstimatorAlgorithm
 	 * Basic phase correlation algorithm that finds peaks in the cross-power
 	 * spectrum between two images. This is the basic implementation without
 	 * sub-pixel accuracy.
+	 * <p>
+	 * FFT plans and working buffers are cached per block size (and per
+	 * thread), the spectra are held in interleaved primitive float arrays, and
+	 * the transformed blocks of the current frame are cached so that they can
+	 * be reused when the next frame is compared against it. Instances are
+	 * thread-safe, so blocks can be processed concurrently (see
+	 * {@link GridMotionEstimator}).
 	 */
 	public static class PHASE_CORRELATION extends MotionEstimatorAlgorithm
 	{
+		/**
+		 * The number of frames whose block spectra are cached
+		 */
+		private static final int CACHED_FRAMES = 2;
+
+		/**
+		 * A cached FFT plan and working buffer for a block size
+		 */
+		private static class Plan {
+			FloatFFT_2D fft;
+			float[][] work;
+
+			Plan(int h, int w) {
+				this.fft = new FloatFFT_2D(h, w);
+				this.work = new float[h][2 * w];
+			}
+		}
+
+		/**
+		 * The spectra of the blocks of a frame
+		 */
+		private static class FrameSpectra {
+			FImage frame;
+			Map<Rectangle, float[][]> blocks = new ConcurrentHashMap<Rectangle, float[][]>();
+
+			FrameSpectra(FImage frame) {
+				this.frame = frame;
+			}
+		}
+
+		private final ThreadLocal<Map<Long, Plan>> plans = new ThreadLocal<Map<Long, Plan>>() {
+			@Override
+			protected Map<Long, Plan> initialValue() {
+				return new HashMap<Long, Plan>();
+			}
+		};
+
+		private final LinkedList<FrameSpectra> spectra = new LinkedList<FrameSpectra>();
+
 		/**
 		 * Calculate the estimated motion vector between <code>images</code>
 		 * which [0] is first in the sequence and <code>img2</code> which is
@@ -164,88 +211,145 @@ public abstract class MotionEstimatorAlgorithm
 				VideoSubFrame<FImage>... imagesSub)
 		{
 			// The previous image will be the first in the images array
-			final FImage img1 = imagesSub[0].extract().frame;
-			final VideoFrame<FImage> img2 = img2sub.extract();
+			final VideoSubFrame<FImage> img1sub = imagesSub[0];
 
 			// No previous frame?
-			if (img1 == null)
+			if (img1sub.frame == null)
 				return new Point2dImpl(0, 0);
 
-			// The images must have comparable shapes and must be square
-			if (img1.getRows() != img2.frame.getRows() ||
-					img1.getCols() != img2.frame.getCols() ||
-					img1.getCols() != img2.frame.getRows())
+			// The blocks must have comparable shapes
+			final int h = (int) img2sub.roi.height;
+			final int w = (int) img2sub.roi.width;
+			if (h < 1 || w < 1 || (int) img1sub.roi.height != h || (int) img1sub.roi.width != w)
 				return new Point2dImpl(0, 0);
 
-			// Prepare and perform an FFT for each of the incoming images.
-			final int h = img1.getRows();
-			final int w = img1.getCols();
+			final Plan plan = plan(h, w);
+			final float[][] data1 = spectrum(img1sub, plan);
+			final float[][] data2 = spectrum(img2sub, plan);
 
-			try
+			// Multiply (element-wise) the fft and the conjugate of the fft.
+			// The original implementation also normalised by the determinant
+			// of the cross-power matrix; as this is a positive scalar it
+			// cannot move the peak, so is skipped.
+			final float[][] work = plan.work;
+			for (int y = 0; y < h; y++)
 			{
-				final FloatFFT_2D fft1 = new FloatFFT_2D(h, w);
-				final FloatFFT_2D fft2 = new FloatFFT_2D(h, w);
-				final float[][] data1 = FourierTransform.prepareData(img1, h, w, false);
-				final float[][] data2 = FourierTransform.prepareData(img2.frame, h, w, false);
-				fft1.complexForward(data1);
-				fft2.complexForward(data2);
-
-				// Multiply (element-wise) the fft and the conjugate of the fft.
-				Complex[][] cfft = new Complex[h][w];
-				for (int y = 0; y < h; y++)
+				final float[] d1 = data1[y];
+				final float[] d2 = data2[y];
+				final float[] out = work[y];
+
+				for (int x = 0; x < w; x++)
 				{
-					for (int x = 0; x < w; x++)
-					{
-						final float re1 = data1[y][x * 2];
-						final float im1 = data1[y][1 + x * 2];
-						final float re2 = data2[y][x * 2];
-						final float im2 = data2[y][1 + x * 2];
-
-						final Complex c1 = new Complex(re1, im1);
-						final Complex c2 = new Complex(re2, -im2);
-						cfft[y][x] = c1.multiply(c2);
-					}
+					final float re1 = d1[x * 2];
+					final float im1 = d1[1 + x * 2];
+					final float re2 = d2[x * 2];
+					final float im2 = -d2[1 + x * 2];
+
+					out[x * 2] = re1 * re2 - im1 * im2;
+					out[1 + x * 2] = re1 * im2 + im1 * re2;
 				}
+			}
 
-				// ----------------------------------------
-				// Normalise by the determinant
-				// ----------------------------------------
-				// First calculate the determinant
-				final Array2DRowFieldMatrix<Complex> cmat =
-						new Array2DRowFieldMatrix<Complex>(cfft);
-				final FieldLUDecompositionImpl<Complex> luDecomp =
-						new FieldLUDecompositionImpl<Complex>(cmat);
-				final Complex det = luDecomp.getDeterminant();
-				cmat.scalarMultiply(new Complex(1d / det.abs(), 0));
-
-				// Convert back to an array for doing the inverse FFTing
-				cfft = cmat.getData();
-				for (int y = 0; y < h; y++)
+			// Perform the inverse FFT
+			plan.fft.complexInverse(work, false);
+
+			// Get the estimated motion vector from the peak in the space
+			float max = -Float.MAX_VALUE;
+			int px = -1, py = -1;
+			for (int y = 0; y < h; y++)
+			{
+				final float[] row = work[y];
+				for (int x = 0; x < w; x++)
 				{
-					for (int x = 0; x < w; x++)
+					if (max < row[x * 2])
 					{
-						data1[y][x * 2] = (float) cfft[y][x].getReal();
-						data1[y][1 + x * 2] = (float) cfft[y][x].getImaginary();
+						max = row[x * 2];
+						px = x;
+						py = y;
 					}
 				}
+			}
 
-				// Perform the inverse FFT
-				fft1.complexInverse(data1, false);
+			return new Point2dImpl(
+					-(px > w / 2 ? px - w : px),
+					-(py > h / 2 ? py - h : py));
+		}
 
-				// Get the data back out
-				FourierTransform.unprepareData(data1, img1, false);
+		private Plan plan(int h, int w) {
+			final Map<Long, Plan> cache = plans.get();
+			final Long key = ((long) h << 32) | w;
 
-				// Get the estimated motion vector from the peak in the space
-				final FValuePixel p = img1.maxPixel();
-				return new Point2dImpl(
-						-(p.x > w / 2 ? p.x - w : p.x),
-						-(p.y > w / 2 ? p.y - w : p.y));
-			} catch (final Exception e)
-			{
-				return new Point2dImpl(0, 0);
+			Plan plan = cache.get(key);
+			if (plan == null) {
+				plan = new Plan(h, w);
+				cache.put(key, plan);
+			}
+
+			return plan;
+		}
+
+		/**
+		 * Get the forward transform of the block, reusing the cached spectrum
+		 * if the block has already been transformed (typically when the frame
+		 * was the current frame of the previous call).
+		 */
+		private float[][] spectrum(VideoSubFrame<FImage> sub, Plan plan) {
+			final FrameSpectra fs = frameSpectra(sub.frame);
+
+			float[][] data = fs.blocks.get(sub.roi);
+			if (data == null) {
+				data = transform(sub.frame, sub.roi, plan);
+				fs.blocks.put(sub.roi.clone(), data);
 			}
+
+			return data;
 		}
-	};
+
+		private FrameSpectra frameSpectra(FImage frame) {
+			synchronized (spectra) {
+				for (final FrameSpectra fs : spectra)
+					if (fs.frame == frame)
+						return fs;
+
+				final FrameSpectra fs = new FrameSpectra(frame);
+				spectra.addLast(fs);
+				if (spectra.size() > CACHED_FRAMES)
+					spectra.removeFirst();
+
+				return fs;
+			}
+		}
+
+		/**
+		 * Copy the block (zero padded outside of the frame) into an
+		 * interleaved complex array and transform it in place
+		 */
+		private float[][] transform(FImage frame, Rectangle roi, Plan plan) {
+			final int h = (int) roi.height;
+			final int w = (int) roi.width;
+			final int bx = (int) roi.x;
+			final int by = (int) roi.y;
+			final float[][] data = new float[h][2 * w];
+
+			for (int y = 0; y < h; y++) {
+				final int r = by + y;
+				if (r < 0 || r >= frame.height)
+					continue;
+
+				final float[] src = frame.pixels[r];
+				final float[] dst = data[y];
+				for (int x = 0; x < w; x++) {
+					final int c = bx + x;
+					if (c >= 0 && c < frame.width)
+						dst[x * 2] = src[c];
+				}
+			}
+
+			plan.fft.complexForward(data);
+
+			return data;
+		}
+	}
 
 	/**
 	 * Estimate the motion to the given subimage, <code>img1sub</code> from the
@@ -255,6 +359,9 @@ public abstract class MotionEstimatorAlgorithm
 	 * by {@link #requiredNumberOfFrames()}. It could be less if at the
 	 * beginning of the video. If you require more frames, return an empty
 	 * motion vector - that is (0,0).
+	 * <p>
+	 * The {@link GridMotionEstimator} calls this method concurrently for the
+	 * blocks of a frame, so implementations must be thread-safe.
 	 *
 	 * @param img1sub
 	 *            The image to which we want to estimate the motion.